@@ -9,6 +9,8 @@ import javax.annotation.concurrent.GuardedBy;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 
+import utils.stream.FStream;
+
 import marmot.GRecordSchema;
 import marmot.Record;
 import marmot.RecordSchema;
@@ -17,6 +19,7 @@ import marmot.dataset.GeometryColumnInfo;
 import marmot.geo.CoordinateTransform;
 import marmot.io.geo.quadtree.EnvelopedValue;
 import marmot.io.geo.quadtree.QuadTree;
+import marmot.io.geo.quadtree.QuadTreeBuilder;
 import marmot.io.geo.quadtree.SimplePartition;
 import marmot.support.EnvelopeTaggedRecord;
 import marmot.type.MapTile;
@@ -80,13 +83,12 @@ public class InMemoryIndexedClusterBuilder implements Supplier<InMemoryQuadClust
 		// 주어진 개수의 cluster가 생성되도록 partition당 레코드 갯수를 추정하여 QuadTree를 설정한다.
 		int guessCount = Math.max(1, Math.min(m_clusterCountHint, dataset.size()/256));
 		m_clusterSizeGuess = (int)Math.round(dataset.size() / (guessCount*0.5));
+		List<IMValue> values = FStream.from(dataset).map(IMValue::new).toList();
 		while ( true ) {
-			QuadTree<IMValue,IMPartition> qtree = new QuadTree<>(mbTile.getQuadKey(),
-																qkey->new IMPartition(m_clusterSizeGuess));
-			qtree.setRangeExpandable(false);
-		
-			// 모든 레코드를 QuadTree에 삽입한 뒤, 생성된 leafnode별로 cluster를 생성시킨다.
-			dataset.forEach(rec -> qtree.insert(new IMValue(rec)));
+			// 모든 레코드를 QuadTree에 일괄 적재한 뒤, 생성된 leafnode별로 cluster를 생성시킨다.
+			QuadTree<IMValue,IMPartition> qtree
+						= QuadTreeBuilder.bulkLoad(mbTile.getQuadKey(), values,
+													qkey->new IMPartition(m_clusterSizeGuess));
 			
 			long nclusters = qtree.streamLeafNodes().count();
 			if ( nclusters <= m_clusterCountHint*2 ) {
@@ -8,6 +8,7 @@ import org.locationtech.jts.geom.Geometry;
 import com.google.common.collect.Lists;
 
 import marmot.GRecordSchema;
+import marmot.io.geo.quadtree.LeafCapacityPolicy;
 import marmot.io.geo.quadtree.Pointer;
 import marmot.io.geo.quadtree.PointerPartition;
 import marmot.io.geo.quadtree.QuadTree;
@@ -29,7 +30,7 @@ class InMemoryQuadCluster extends QuadTreeSpatialCluster implements CacheableQua
 		
 		m_dataBounds = new Envelope();
 		m_records = Lists.newArrayList();
-		m_qtree = new QuadTree<>(quadKey, qkey->new PointerPartition());
+		m_qtree = new QuadTree<>(quadKey, qkey->new PointerPartition(qkey, LeafCapacityPolicy.DEFAULT));
 		
 		m_duplicateCount = 0;
 	}
@@ -79,4 +80,30 @@ class InMemoryQuadCluster extends QuadTreeSpatialCluster implements CacheableQua
 		Envelope mbr = (isOutlier()) ? new Envelope() : toWgs84(geom.getEnvelopeInternal());
 		m_qtree.insert(new Pointer(mbr, m_records.size()-1));
 	}
+	
+	/**
+	 * 주어진 순번의 레코드를 새 레코드로 교체하고, 변경된 위치에 따라 QuadTree를 갱신한다.
+	 * 클러스터의 데이터 MBR은 확장만 되기 때문에 이동 전 위치를 포함할 수 있다.
+	 * 
+	 * @param index	교체할 레코드의 순번
+	 * @param geom	새 레코드의 공간 정보
+	 * @param etr	새 레코드
+	 */
+	void update(int index, Geometry geom, EnvelopeTaggedRecord etr) {
+		EnvelopeTaggedRecord prev = m_records.get(index);
+		Geometry prevGeom = prev.getRecord().getGeometry(m_geomColIdx);
+		
+		if ( isOwnerOf(prev.getEnvelope()) ) {
+			--m_duplicateCount;
+		}
+		if ( isOwnerOf(etr.getEnvelope()) ) {
+			++m_duplicateCount;
+		}
+		m_dataBounds.expandToInclude(geom.getEnvelopeInternal());
+		m_records.set(index, etr);
+
+		Envelope prevMbr = (isOutlier()) ? new Envelope() : toWgs84(prevGeom.getEnvelopeInternal());
+		Envelope mbr = (isOutlier()) ? new Envelope() : toWgs84(geom.getEnvelopeInternal());
+		m_qtree.update(new Pointer(prevMbr, index), new Pointer(mbr, index));
+	}
 }
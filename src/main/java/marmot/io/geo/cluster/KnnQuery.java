@@ -0,0 +1,331 @@
+package marmot.io.geo.cluster;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import utils.Preconditions;
+import utils.func.FOption;
+import utils.stream.FStreams.AbstractFStream;
+
+import marmot.Record;
+import marmot.geo.CoordinateTransform;
+import marmot.io.geo.quadtree.LeafNode;
+import marmot.io.geo.quadtree.Node;
+import marmot.io.geo.quadtree.NonLeafNode;
+import marmot.io.geo.quadtree.Pointer;
+import marmot.io.geo.quadtree.QuadTree;
+import marmot.optor.geo.cluster.Constants;
+import marmot.support.EnvelopeTaggedRecord;
+import marmot.type.MapTile;
+
+
+/**
+ * 공간 클러스터 파일에서 주어진 점에서 가장 가까운 k개의 레코드를 거리 순으로 반환하는
+ * 레코드 스트림 클래스.
+ * <p>
+ * 클러스터 인덱스, 클러스터, 클러스터 내부 QuadTree의 노드, 그리고 레코드들을 하나의
+ * priority queue에 넣고 질의 점과의 최소 거리 순으로 확장하는 best-first 방식으로 검색한다.
+ * 클러스터는 queue에서 꺼내질 때 적재되기 때문에 k개의 결과가 확정되면 나머지 클러스터는
+ * 적재하지 않는다.
+ * <p>
+ * 질의 점과 거리는 레코드의 좌표계를 기준으로 하며, EPSG:4326 좌표계로 표현된 타일 및
+ * 노드 영역은 레코드 좌표계로 변환하여 거리를 계산한다.
+ * 여러 클러스터에 중복 저장된 레코드는 가장 먼저 적재된 클러스터에서만 반환된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class KnnQuery extends AbstractFStream<Record> {
+	private static final Logger s_logger = LoggerFactory.getLogger(KnnQuery.class);
+
+	private final QuadClusterFile<? extends QuadCluster> m_file;
+	private final Point m_point;
+	private final Envelope m_pointEnvl;
+	private final int m_k;
+	private final double m_maxDistance;
+	private final int m_geomColIdx;
+	@Nullable private final CoordinateTransform m_fromWgs84;
+
+	private final PriorityQueue<Candidate> m_queue = new PriorityQueue<>();
+	private final Set<String> m_loadedKeys = Sets.newHashSet();
+	private final List<Envelope> m_loadedTiles = Lists.newArrayList();	// 적재 순서대로 저장
+	private int m_emitCount = 0;
+
+	/**
+	 * kNN 질의 객체를 생성한다.
+	 * 생성된 객체에는 검색 대상 클러스터가 등록되어 있지 않기 때문에
+	 * {@link #addCluster(String)} 또는 {@link #addClusterIndex(QuadTree, IntFunction)}를
+	 * 통해 검색 대상 클러스터를 등록하여야 한다.
+	 *
+	 * @param file			질의 대상 클러스터 파일.
+	 * @param point			질의 점. 레코드의 좌표계 사용
+	 * @param k				검색할 최대 레코드 수.
+	 * @param maxDistance	검색 대상 최대 거리. 레코드의 좌표계 단위를 사용하며,
+	 * 						거리 제한이 없는 경우는 {@link Double#POSITIVE_INFINITY}.
+	 */
+	public KnnQuery(QuadClusterFile<? extends QuadCluster> file, Point point, int k,
+					double maxDistance) {
+		Preconditions.checkNotNullArgument(file, "QuadClusterFile is null");
+		Preconditions.checkNotNullArgument(point, "query point is null");
+		Preconditions.checkArgument(k > 0, "invalid k: " + k);
+		Preconditions.checkArgument(maxDistance >= 0, "invalid max distance: " + maxDistance);
+
+		m_file = file;
+		m_point = point;
+		m_pointEnvl = point.getEnvelopeInternal();
+		m_k = k;
+		m_maxDistance = maxDistance;
+		m_geomColIdx = file.getGRecordSchema().getGeometryColumnIdx();
+
+		String srid = file.getGRecordSchema().getSrid();
+		m_fromWgs84 = (!srid.equals("EPSG:4326")) ? CoordinateTransform.get("EPSG:4326", srid) : null;
+	}
+
+	/**
+	 * 주어진 식별자의 클러스터를 검색 대상으로 등록한다.
+	 * 클러스터의 거리는 클러스터 타일 영역을 기준으로 계산된다.
+	 *
+	 * @param quadKey	등록할 클러스터의 식별자.
+	 * @return	본 질의 객체.
+	 */
+	public KnnQuery addCluster(String quadKey) {
+		Preconditions.checkNotNullArgument(quadKey, "quadKey is null");
+
+		if ( quadKey.equals(Constants.QUADKEY_OUTLIER) ) {
+			// outlier 클러스터는 영역 정보가 없기 때문에 가장 먼저 적재되도록 한다.
+			m_queue.add(new ClusterCandidate(quadKey, null, 0));
+		}
+		else {
+			Envelope tile84 = MapTile.fromQuadKey(quadKey).getBounds();
+			double dist = distance84(tile84);
+			if ( dist <= m_maxDistance ) {
+				m_queue.add(new ClusterCandidate(quadKey, tile84, dist));
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * 클러스터 타일 영역들로 구성된 QuadTree를 검색 대상으로 등록한다.
+	 * QuadTree의 노드들은 필요한 경우에만 확장되므로, 모든 클러스터를 등록하는 것보다
+	 * 클러스터의 수가 많은 경우 효과적이다.
+	 *
+	 * @param index		클러스터 타일 영역들로 구성된 QuadTree.
+	 * @param quadKeyOf	{@link Pointer}의 index에 해당하는 클러스터 식별자를 반환하는 함수.
+	 * @return	본 질의 객체.
+	 */
+	public KnnQuery addClusterIndex(QuadTree<Pointer,?> index, IntFunction<String> quadKeyOf) {
+		Preconditions.checkNotNullArgument(index, "cluster index is null");
+		Preconditions.checkNotNullArgument(quadKeyOf, "quadKeyOf is null");
+
+		addNode(index.getRootNode(), ptr -> addCluster(quadKeyOf.apply(ptr.index())));
+		return this;
+	}
+
+	/**
+	 * 지금까지 적재된 클러스터의 수를 반환한다.
+	 *
+	 * @return	클러스터 수.
+	 */
+	public int getLoadedClusterCount() {
+		return m_loadedKeys.size();
+	}
+
+	@Override
+	protected void closeInGuard() throws Exception {
+		m_queue.clear();
+	}
+
+	@Override
+	public FOption<Record> nextInGuard() {
+		if ( m_emitCount >= m_k ) {
+			return FOption.empty();
+		}
+
+		Candidate cand;
+		while ( (cand = m_queue.poll()) != null ) {
+			if ( cand instanceof RecordCandidate ) {
+				++m_emitCount;
+				return FOption.of(((RecordCandidate)cand).m_record.getRecord());
+			}
+			cand.expand();
+		}
+
+		return FOption.empty();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[point=%s, k=%d, emitted=%d, loaded=%d]",
+							getClass().getSimpleName(), m_point, m_k, m_emitCount,
+							m_loadedKeys.size());
+	}
+
+	private double distance84(Envelope envl84) {
+		Envelope envl = (m_fromWgs84 != null) ? m_fromWgs84.transform(envl84) : envl84;
+		return m_pointEnvl.distance(envl);
+	}
+
+	private void addNode(Node<Pointer,?> node, Consumer<Pointer> pointerConsumer) {
+		Envelope bounds84 = node.getDataBounds();
+		if ( bounds84.isNull() ) {
+			return;
+		}
+
+		double dist = distance84(bounds84);
+		if ( dist <= m_maxDistance ) {
+			m_queue.add(new NodeCandidate(node, pointerConsumer, dist));
+		}
+	}
+
+	private void loadCluster(String quadKey, @Nullable Envelope tile84) {
+		if ( !m_loadedKeys.add(quadKey) ) {
+			return;
+		}
+
+		QuadCluster cluster = m_file.getCluster(quadKey);
+		LoadedCluster loaded = new LoadedCluster(m_loadedTiles.size());
+		m_loadedTiles.add(tile84);
+
+		if ( s_logger.isDebugEnabled() ) {
+			s_logger.debug("loaded: cluster={}, count={}", quadKey, cluster.getRecordCount());
+		}
+
+		if ( cluster instanceof QuadTreeSpatialCluster ) {
+			QuadTreeSpatialCluster qcluster = (QuadTreeSpatialCluster)cluster;
+			List<EnvelopeTaggedRecord> records = qcluster.getRecordList();
+			Set<Integer> visiteds = Sets.newHashSet();
+			addNode(qcluster.getQuadTree().getRootNode(), ptr -> {
+				if ( visiteds.add(ptr.index()) ) {
+					addRecord(loaded, records.get(ptr.index()));
+				}
+			});
+		}
+		else {
+			cluster.read(false).forEach(etr -> addRecord(loaded, etr));
+		}
+	}
+
+	private void addRecord(LoadedCluster cluster, EnvelopeTaggedRecord etr) {
+		if ( cluster.isLoadedBefore(etr.getEnvelope()) ) {
+			return;
+		}
+
+		Geometry geom = etr.getRecord().getGeometry(m_geomColIdx);
+		if ( geom == null || geom.isEmpty() ) {
+			return;
+		}
+
+		double dist = m_point.distance(geom);
+		if ( dist <= m_maxDistance ) {
+			m_queue.add(new RecordCandidate(etr, dist));
+		}
+	}
+
+	private class LoadedCluster {
+		private final int m_seqno;
+
+		LoadedCluster(int seqno) {
+			m_seqno = seqno;
+		}
+
+		/**
+		 * 주어진 영역의 레코드가 본 클러스터 이전에 적재된 클러스터에 포함되었는지 여부를 반환한다.
+		 * 레코드는 겹치는 모든 클러스터에 중복 저장되기 때문에, 이전에 적재된 클러스터의 타일과
+		 * 겹치는 경우는 해당 클러스터에서 이미 처리된 것으로 간주한다.
+		 */
+		boolean isLoadedBefore(Envelope mbr84) {
+			for ( int i =0; i < m_seqno; ++i ) {
+				Envelope tile84 = m_loadedTiles.get(i);
+				if ( tile84 != null && tile84.intersects(mbr84) ) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static abstract class Candidate implements Comparable<Candidate> {
+		protected final double m_distance;
+
+		protected Candidate(double distance) {
+			m_distance = distance;
+		}
+
+		abstract void expand();
+
+		@Override
+		public int compareTo(Candidate o) {
+			return Double.compare(m_distance, o.m_distance);
+		}
+	}
+
+	private class ClusterCandidate extends Candidate {
+		private final String m_quadKey;
+		@Nullable private final Envelope m_tile84;
+
+		ClusterCandidate(String quadKey, @Nullable Envelope tile84, double distance) {
+			super(distance);
+
+			m_quadKey = quadKey;
+			m_tile84 = tile84;
+		}
+
+		@Override
+		void expand() {
+			loadCluster(m_quadKey, m_tile84);
+		}
+	}
+
+	private class NodeCandidate extends Candidate {
+		private final Node<Pointer,?> m_node;
+		private final Consumer<Pointer> m_pointerConsumer;
+
+		NodeCandidate(Node<Pointer,?> node, Consumer<Pointer> pointerConsumer, double distance) {
+			super(distance);
+
+			m_node = node;
+			m_pointerConsumer = pointerConsumer;
+		}
+
+		@Override
+		void expand() {
+			if ( m_node instanceof LeafNode ) {
+				((LeafNode<Pointer,?>)m_node).values().forEach(m_pointerConsumer);
+			}
+			else {
+				for ( Node<Pointer,?> child: ((NonLeafNode<Pointer,?>)m_node).getChildrenNode() ) {
+					addNode(child, m_pointerConsumer);
+				}
+			}
+		}
+	}
+
+	private static class RecordCandidate extends Candidate {
+		private final EnvelopeTaggedRecord m_record;
+
+		RecordCandidate(EnvelopeTaggedRecord record, double distance) {
+			super(distance);
+
+			m_record = record;
+		}
+
+		@Override
+		void expand() {
+			throw new AssertionError();
+		}
+	}
+}
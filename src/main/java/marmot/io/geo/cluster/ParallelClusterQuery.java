@@ -0,0 +1,291 @@
+package marmot.io.geo.cluster;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
+import utils.StopWatch;
+import utils.Throwables;
+import utils.func.FOption;
+import utils.stream.FStreams.AbstractFStream;
+
+import marmot.Record;
+import marmot.support.EnvelopeTaggedRecord;
+
+
+/**
+ * 복수개의 클러스터를 동시에 적재하여 주어진 영역 질의를 수행하는 레코드 스트림 클래스.
+ * <p>
+ * 클러스터 적재/질의는 외부에서 주어진 {@link Executor}에서 수행되며, 본 객체는 쓰레드 풀을
+ * 따로 생성하지 않는다. Executor가 주어지지 않은 경우는 모든 질의가 공유하는 daemon 쓰레드
+ * 풀({@link #getSharedExecutor()})을 사용한다.
+ * <p>
+ * 동시에 적재/질의 중인 클러스터의 수는 {@code parallelism}으로, 적재 중이거나 소비를
+ * 대기하는 클러스터의 수는 {@code maxInFlight}로 제한되어, 소비 속도가 느린 경우에는
+ * 더 이상의 클러스터 적재가 진행되지 않는다 (backpressure).
+ * {@code ordered}가 {@code true}인 경우는 클러스터의 quad-key 순서대로 결과를 반환하고,
+ * 그렇지 않은 경우는 먼저 처리가 완료된 클러스터의 결과부터 반환한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class ParallelClusterQuery extends AbstractFStream<Record> {
+	private static final Logger s_logger = LoggerFactory.getLogger(ParallelClusterQuery.class);
+	private static final AtomicInteger s_threadSeqno = new AtomicInteger(0);
+	private static volatile ExecutorService s_sharedExecutor;
+
+	private final QuadClusterFile<? extends QuadCluster> m_file;
+	private final Envelope m_range84;
+	private final boolean m_ordered;
+	private final int m_maxInFlight;
+
+	private final Executor m_executor;
+	private final Semaphore m_running;
+	private final Iterator<String> m_keys;
+	private final Deque<Future<ClusterResult>> m_pendings = new ArrayDeque<>();	// 제출 순서
+	private final CompletionService<ClusterResult> m_completion;				// unordered 경우
+	private int m_inFlight = 0;
+
+	private Iterator<EnvelopeTaggedRecord> m_current = Collections.emptyIterator();
+	private final List<ClusterQueryStat> m_stats = Lists.newArrayList();
+
+	/**
+	 * 병렬 클러스터 질의 객체를 생성한다.
+	 *
+	 * @param file			질의 대상 클러스터 파일.
+	 * @param range84		질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param executor		클러스터 적재/질의를 수행할 executor.
+	 * @param parallelism	동시에 적재/질의할 최대 클러스터 수.
+	 * @param maxInFlight	동시에 적재 중이거나 적재되어 소비를 대기하는 최대 클러스터 수.
+	 * @param ordered		quad-key 순서대로 결과를 반환할지 여부.
+	 */
+	public ParallelClusterQuery(QuadClusterFile<? extends QuadCluster> file, Envelope range84,
+								Executor executor, int parallelism, int maxInFlight,
+								boolean ordered) {
+		Preconditions.checkNotNullArgument(file, "QuadClusterFile is null");
+		Preconditions.checkNotNullArgument(range84, "range is null");
+		Preconditions.checkNotNullArgument(executor, "executor is null");
+		Preconditions.checkArgument(parallelism > 0, "invalid parallelism: " + parallelism);
+		Preconditions.checkArgument(maxInFlight >= parallelism,
+									"maxInFlight should be larger than or equal to parallelism");
+
+		m_file = file;
+		m_range84 = range84;
+		m_ordered = ordered;
+		m_maxInFlight = maxInFlight;
+
+		m_executor = executor;
+		m_running = new Semaphore(parallelism);
+		m_completion = new ExecutorCompletionService<>(executor);
+
+		List<String> keys = file.queryClusterKeys(range84).toList();
+		if ( ordered ) {
+			Collections.sort(keys);
+		}
+		m_keys = keys.iterator();
+	}
+
+	/**
+	 * Executor가 주어지지 않은 병렬 질의들이 공유하는 쓰레드 풀을 반환한다.
+	 * 쓰레드 풀은 최초 사용시 생성되며, 일정 시간 사용되지 않은 쓰레드는 자동으로 제거된다.
+	 *
+	 * @return	공유 쓰레드 풀
+	 */
+	public static Executor getSharedExecutor() {
+		if ( s_sharedExecutor == null ) {
+			synchronized ( ParallelClusterQuery.class ) {
+				if ( s_sharedExecutor == null ) {
+					s_sharedExecutor = Executors.newCachedThreadPool(newThreadFactory());
+				}
+			}
+		}
+		return s_sharedExecutor;
+	}
+
+	/**
+	 * 지금까지 처리가 완료된 클러스터별 처리 시간 정보를 반환한다.
+	 *
+	 * @return	클러스터별 처리 시간 정보 리스트.
+	 */
+	public List<ClusterQueryStat> getClusterStats() {
+		return Collections.unmodifiableList(m_stats);
+	}
+
+	@Override
+	protected void closeInGuard() throws Exception {
+		m_pendings.forEach(future -> future.cancel(true));
+		m_pendings.clear();
+	}
+
+	@Override
+	public FOption<Record> nextInGuard() {
+		while ( true ) {
+			if ( m_current.hasNext() ) {
+				return FOption.of(m_current.next().getRecord());
+			}
+
+			fillUp();
+			if ( m_inFlight == 0 ) {
+				return FOption.empty();
+			}
+
+			ClusterResult result = takeNext();
+			--m_inFlight;
+
+			m_stats.add(result.m_stat);
+			if ( s_logger.isDebugEnabled() ) {
+				s_logger.debug("queried: {}", result.m_stat);
+			}
+			m_current = result.m_records.iterator();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[range=%s, ordered=%s, done=%d, in_flight=%d]",
+							getClass().getSimpleName(), m_range84, m_ordered,
+							m_stats.size(), m_inFlight);
+	}
+
+	private void fillUp() {
+		// 처리 중인 클러스터는 완료 즉시 permit을 반환하기 때문에, 소비되지 않은 클러스터가
+		// 없는 경우(m_inFlight == 0)는 항상 permit을 얻을 수 있다.
+		while ( m_inFlight < m_maxInFlight && m_keys.hasNext() && m_running.tryAcquire() ) {
+			String quadKey = m_keys.next();
+			if ( m_ordered ) {
+				FutureTask<ClusterResult> task = new FutureTask<>(() -> run(quadKey));
+				m_executor.execute(task);
+				m_pendings.addLast(task);
+			}
+			else {
+				m_pendings.addLast(m_completion.submit(() -> run(quadKey)));
+			}
+			++m_inFlight;
+		}
+	}
+
+	private ClusterResult takeNext() {
+		try {
+			Future<ClusterResult> future;
+			if ( m_ordered ) {
+				future = m_pendings.removeFirst();
+			}
+			else {
+				future = m_completion.take();
+				m_pendings.remove(future);
+			}
+			return future.get();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw Throwables.toRuntimeException(e);
+		}
+		catch ( ExecutionException e ) {
+			throw Throwables.toRuntimeException(Throwables.unwrapThrowable(e));
+		}
+	}
+
+	private ClusterResult run(String quadKey) {
+		try {
+			return loadAndQuery(quadKey);
+		}
+		finally {
+			m_running.release();
+		}
+	}
+
+	private ClusterResult loadAndQuery(String quadKey) {
+		StopWatch watch = StopWatch.start();
+		QuadCluster cluster = m_file.getCluster(quadKey);
+		long loadMillis = watch.getElapsedInMillis();
+
+		List<EnvelopeTaggedRecord> records = cluster.query(m_range84, true).toList();
+		long queryMillis = watch.getElapsedInMillis() - loadMillis;
+		watch.stop();
+
+		ClusterQueryStat stat = new ClusterQueryStat(quadKey, cluster.getRecordCount(),
+													records.size(), loadMillis, queryMillis);
+		return new ClusterResult(stat, records);
+	}
+
+	private static ThreadFactory newThreadFactory() {
+		return runnable -> {
+			Thread thread = new Thread(runnable, String.format("cluster-query-%d",
+																s_threadSeqno.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static final class ClusterResult {
+		private final ClusterQueryStat m_stat;
+		private final List<EnvelopeTaggedRecord> m_records;
+
+		ClusterResult(ClusterQueryStat stat, List<EnvelopeTaggedRecord> records) {
+			m_stat = stat;
+			m_records = records;
+		}
+	}
+
+	public static final class ClusterQueryStat {
+		private final String m_quadKey;
+		private final long m_recordCount;
+		private final long m_matchCount;
+		private final long m_loadMillis;
+		private final long m_queryMillis;
+
+		ClusterQueryStat(String quadKey, long recordCount, long matchCount, long loadMillis,
+						long queryMillis) {
+			m_quadKey = quadKey;
+			m_recordCount = recordCount;
+			m_matchCount = matchCount;
+			m_loadMillis = loadMillis;
+			m_queryMillis = queryMillis;
+		}
+
+		public String quadKey() {
+			return m_quadKey;
+		}
+
+		public long recordCount() {
+			return m_recordCount;
+		}
+
+		public long matchCount() {
+			return m_matchCount;
+		}
+
+		public long loadMillis() {
+			return m_loadMillis;
+		}
+
+		public long queryMillis() {
+			return m_queryMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("cluster[key=%s, count=%d, matches=%d, load=%dms, query=%dms]",
+								m_quadKey, m_recordCount, m_matchCount, m_loadMillis, m_queryMillis);
+		}
+	}
+}
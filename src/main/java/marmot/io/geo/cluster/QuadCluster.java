@@ -88,5 +88,38 @@ public interface QuadCluster extends SpatialLookupTable {
 	 */
 	public FStream<EnvelopeTaggedRecord> query(Envelope range84, boolean dropDuplicates);
 
+	/**
+	 * 클러스터에 포함된 레코드들 중에서 주어진 질의 영역과 겹치는 레코드 스트림을 반환한다.
+	 * 
+	 * @param region			질의 영역
+	 * @param dropDuplicates	복제본 제외 여부
+	 * @return	질의에 포함된 레코드들의 스트림.
+	 */
+	public default FStream<EnvelopeTaggedRecord> query(QueryRegion region, boolean dropDuplicates) {
+		int geomColIdx = getGRecordSchema().getGeometryColumnIdx();
+		Envelope quadBounds = getQuadBounds();
+		
+		FStream<EnvelopeTaggedRecord> strm
+						= query(region.getEnvelope84(), false)
+							.filter(etr -> region.matches(etr.getRecord().getGeometry(geomColIdx)));
+		if ( dropDuplicates && !quadBounds.isNull() ) {
+			strm = strm.filter(etr -> region.isOwnedBy(quadBounds, etr.getEnvelope(),
+														etr.getRecord().getGeometry(geomColIdx)));
+		}
+		return strm;
+	}
+
+	/**
+	 * 클러스터에 포함된 레코드들 중에서 주어진 영역과 겹치는 레코드들을 집계에 반영한다.
+	 * 복제본 레코드는 집계에서 제외된다.
+	 * 
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param agg		집계 객체
+	 */
+	public default void aggregate(Envelope range84, WindowAggregate agg) {
+		query(range84, true).forEach(etr -> agg.accumulate(etr.getEnvelope(), etr.getRecord()));
+		agg.markScanned();
+	}
+
 	public FStream<Record> queryRecord(Envelope range, boolean dropDuplicates);
 }
\ No newline at end of file
@@ -1,14 +1,23 @@
 package marmot.io.geo.cluster;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import marmot.GRecordSchema;
 import marmot.Record;
 import marmot.RecordSchema;
 import marmot.optor.support.Match;
 import marmot.support.EnvelopeTaggedRecord;
+import utils.KeyValue;
 import utils.stream.FStream;
 
 
@@ -133,6 +142,129 @@ public interface QuadClusterFile<T extends QuadCluster> {
 				.map(EnvelopeTaggedRecord::getRecord);
 	}
 
+	/**
+	 * 주어진 질의 영역과 겹치는 레코드들을 반환한다.
+	 * 질의 영역과 겹치지 않는 타일의 클러스터는 적재하지 않는다.
+	 * 
+	 * @param region	질의 영역
+	 * @return	주어진 영역과 겹치는 공간 레코드 스트림. 
+	 */
+	public default FStream<Record> query(QueryRegion region) {
+		return queryClusterKeys(region.getEnvelope84())
+				.filter(region::intersectsTile)
+				.flatMap(qk -> getCluster(qk).query(region, true))
+				.map(EnvelopeTaggedRecord::getRecord);
+	}
+	
+	/**
+	 * 주어진 공간 객체와 겹치는 레코드들을 반환한다.
+	 * 
+	 * @param geom	질의 공간 객체. 레코드의 좌표계 사용
+	 * @return	주어진 공간 객체와 겹치는 공간 레코드 스트림. 
+	 */
+	public default FStream<Record> query(Geometry geom) {
+		return query(QueryRegion.of(geom, getGRecordSchema().getSrid()));
+	}
+
+	/**
+	 * 주어진 여러 개의 위경도 좌표계 사각 영역들 각각과 겹치는 레코드들을 반환한다.
+	 * <p>
+	 * 질의 영역들은 겹치는 클러스터별로 묶이고, 각 클러스터는 한번만 적재되어
+	 * 해당 클러스터와 겹치는 모든 질의 영역에 대한 검색에 사용된다.
+	 * 결과는 (질의 영역 번호, 레코드) 쌍으로 반환되며, 질의 영역 번호는 {@code windows84}에서의
+	 * 순서를 의미한다. 하나의 레코드가 여러 질의 영역과 겹치는 경우는 각 질의 영역별로 반환된다.
+	 * 
+	 * @param windows84	질의 영역 리스트, 위경도(WGS84) 좌표계 사용
+	 * @return	(질의 영역 번호, 레코드) 쌍 스트림. 
+	 */
+	public default FStream<KeyValue<Integer,Record>> queryWindows(List<Envelope> windows84) {
+		Map<String,List<Integer>> groups = Maps.newTreeMap();
+		for ( int i =0; i < windows84.size(); ++i ) {
+			int windowId = i;
+			queryClusterKeys(windows84.get(i))
+				.forEach(qk -> groups.computeIfAbsent(qk, k -> Lists.newArrayList()).add(windowId));
+		}
+		
+		return FStream.from(groups.entrySet())
+						.flatMap(group -> {
+							T cluster = getCluster(group.getKey());
+							return FStream.from(group.getValue())
+											.flatMap(wid -> cluster.query(windows84.get(wid), true)
+																.map(etr -> KeyValue.of(wid, etr.getRecord())));
+						});
+	}
+
+	/**
+	 * 주어진 위경도 좌표계 사각 영역과 겹치는 레코드들을 공유 쓰레드 풀
+	 * ({@link ParallelClusterQuery#getSharedExecutor()})을 이용하여 병렬로 검색한다.
+	 * 동시에 적재되는 클러스터의 수는 {@code parallelism}의 두배로 제한된다.
+	 *
+	 * @param range84		질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param parallelism	동시에 적재/질의할 최대 클러스터 수.
+	 * @param ordered		클러스터의 quad-key 순서대로 결과를 반환할지 여부.
+	 * @return	주어진 영역과 겹치는 공간 레코드 스트림.
+	 */
+	public default ParallelClusterQuery queryParallel(Envelope range84, int parallelism,
+														boolean ordered) {
+		return queryParallel(range84, ParallelClusterQuery.getSharedExecutor(), parallelism,
+							ordered);
+	}
+
+	/**
+	 * 주어진 위경도 좌표계 사각 영역과 겹치는 레코드들을 주어진 executor를 이용하여
+	 * 병렬로 검색한다.
+	 *
+	 * @param range84		질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param executor		클러스터 적재/질의를 수행할 executor.
+	 * @param parallelism	동시에 적재/질의할 최대 클러스터 수.
+	 * @param ordered		클러스터의 quad-key 순서대로 결과를 반환할지 여부.
+	 * @return	주어진 영역과 겹치는 공간 레코드 스트림.
+	 */
+	public default ParallelClusterQuery queryParallel(Envelope range84, Executor executor,
+														int parallelism, boolean ordered) {
+		return new ParallelClusterQuery(this, range84, executor, parallelism, 2*parallelism,
+										ordered);
+	}
+
+	/**
+	 * 주어진 점에서 가장 가까운 최대 k개의 레코드들을 거리 순으로 반환한다.
+	 * 클러스터들은 질의 점과의 거리 순으로 필요한 경우에만 적재된다.
+	 *
+	 * @param point			질의 점. 레코드의 좌표계 사용
+	 * @param k				검색할 최대 레코드 수.
+	 * @param maxDistance	검색 대상 최대 거리. 거리 제한이 없는 경우는
+	 * 						{@link Double#POSITIVE_INFINITY}.
+	 * @return	거리 순으로 정렬된 레코드 스트림.
+	 */
+	public default FStream<Record> knn(Point point, int k, double maxDistance) {
+		KnnQuery query = new KnnQuery(this, point, k, maxDistance);
+		getClusterKeyAll().forEach(query::addCluster);
+		return query;
+	}
+
+	/**
+	 * 주어진 위경도 좌표계 사각 영역과 겹치는 레코드들의 집계 결과를 반환한다.
+	 * 
+	 * @param range84		질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param sumColumns	합계를 구할 컬럼 이름들.
+	 * @return	집계 결과
+	 */
+	public default WindowAggregate aggregate(Envelope range84, String... sumColumns) {
+		WindowAggregate agg = new WindowAggregate(getRecordSchema(), sumColumns);
+		queryClusterKeys(range84).forEach(qk -> getCluster(qk).aggregate(range84, agg));
+		return agg;
+	}
+	
+	/**
+	 * 주어진 위경도 좌표계 사각 영역과 겹치는 레코드의 수를 반환한다.
+	 * 
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	레코드 수
+	 */
+	public default long count(Envelope range84) {
+		return aggregate(range84).count();
+	}
+
 	/**
 	 * 주어진 위경도 좌표계 사각 영역과 겹치는 레코드드의 존재 여부를 반환한다.
 	 * 
@@ -1,7 +1,10 @@
 package marmot.io.geo.cluster;
 
 import java.util.Iterator;
+import java.util.Set;
 
+import marmot.io.geo.quadtree.MortonCodes;
+import marmot.io.geo.quadtree.PackedQuadKeys;
 import marmot.optor.support.Match;
 
 
@@ -10,19 +13,26 @@ import marmot.optor.support.Match;
  * @author Kang-Woo Lee (ETRI)
  */
 class QuadClusterMatchIterator<T extends QuadCluster> implements Iterator<Match<String>> {
-	private final Iterator<String> m_iterLeft;
-	private final Iterator<String> m_iterRight;
-	private String m_left;
-	private String m_right;
+	private final long[] m_lefts;		// quad-key 순으로 정렬된 packed quad-key 배열
+	private final long[] m_rights;
+	private int m_leftIdx = 0;
+	private int m_rightIdx = 0;
+	// packed quad-key로 표현할 수 없는 클러스터 키(예: 'outliers') 중 양쪽 모두에 존재하는 키
+	private final Iterator<String> m_others;
 	private Match<String> m_match;
-	
+
 	QuadClusterMatchIterator(QuadClusterFile<? extends T> left, QuadClusterFile<? extends T> right) {
-		m_iterLeft = left.getClusterKeyAll().stream().sorted().iterator();
-		m_iterRight = right.getClusterKeyAll().stream().sorted().iterator();
-		
-		m_left = m_iterLeft.hasNext() ? m_iterLeft.next() : null;
-		m_right = m_iterRight.hasNext() ? m_iterRight.next() : null;
-		
+		Set<String> leftKeys = left.getClusterKeyAll();
+		Set<String> rightKeys = right.getClusterKeyAll();
+
+		m_lefts = toSortedPackedKeys(leftKeys);
+		m_rights = toSortedPackedKeys(rightKeys);
+		m_others = leftKeys.stream()
+							.filter(k -> !MortonCodes.isEncodable(k))
+							.filter(rightKeys::contains)
+							.sorted()
+							.iterator();
+
 		m_match = matchNext();
 	}
 
@@ -35,43 +45,57 @@ class QuadClusterMatchIterator<T extends QuadCluster> implements Iterator<Match<
 	public Match<String> next() {
 		Match<String> match = m_match;
 		m_match = matchNext();
-		
+
 		return match;
 	}
-	
+
 	private Match<String> matchNext() {
-		Match<String> match = null;
-		while ( m_left != null && m_right != null ) {
-			if ( m_left.equals(m_right) ) {
-				match = new Match<>(m_left, m_right);
+		while ( m_leftIdx < m_lefts.length && m_rightIdx < m_rights.length ) {
+			long left = m_lefts[m_leftIdx];
+			long right = m_rights[m_rightIdx];
+
+			if ( left == right ) {
+				++m_leftIdx;
+				++m_rightIdx;
 
-				m_left = m_iterLeft.hasNext() ? m_iterLeft.next() : null;
-				m_right = m_iterRight.hasNext() ? m_iterRight.next() : null;
+				return toMatch(left, right);
 			}
-			else if ( m_right.startsWith(m_left) ) {	// m_right가  m_left에 포함된 경우.
-				match = new Match<>(m_left, m_right);
+			else if ( PackedQuadKeys.isPrefixOf(left, right) ) {	// right가  left에 포함된 경우.
+				++m_rightIdx;
 
-				m_right = m_iterRight.hasNext() ? m_iterRight.next() : null;
+				return toMatch(left, right);
 			}
-			else if ( m_left.startsWith(m_right) ) {	// m_left가  m_right에 포함된 경우.
-				match = new Match<>(m_left, m_right);
+			else if ( PackedQuadKeys.isPrefixOf(right, left) ) {	// left가  right에 포함된 경우.
+				++m_leftIdx;
 
-				m_left = m_iterLeft.hasNext() ? m_iterLeft.next() : null;
+				return toMatch(left, right);
 			}
-			else {
-				if ( m_left.compareTo(m_right) < 0 ) {
-					m_left = m_iterLeft.hasNext() ? m_iterLeft.next() : null;
-				}
-				else {
-					m_right = m_iterRight.hasNext() ? m_iterRight.next() : null;
-				}
+			else if ( PackedQuadKeys.compare(left, right) < 0 ) {
+				++m_leftIdx;
 			}
-			
-			if ( match != null ) {
-				return match;
+			else {
+				++m_rightIdx;
 			}
 		}
-		
+
+		if ( m_others.hasNext() ) {
+			String key = m_others.next();
+			return new Match<>(key, key);
+		}
+
 		return null;
 	}
-}
\ No newline at end of file
+
+	private static Match<String> toMatch(long left, long right) {
+		return new Match<>(PackedQuadKeys.unpack(left), PackedQuadKeys.unpack(right));
+	}
+
+	private static long[] toSortedPackedKeys(Set<String> quadKeys) {
+		return quadKeys.stream()
+						.filter(MortonCodes::isEncodable)
+						.map(PackedQuadKeys::pack)
+						.sorted(PackedQuadKeys::compare)
+						.mapToLong(Long::longValue)
+						.toArray();
+	}
+}
@@ -1,6 +1,12 @@
 package marmot.io.geo.cluster;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
@@ -11,11 +17,19 @@ import marmot.GRecordSchema;
 import marmot.Record;
 import marmot.geo.CoordinateTransform;
 import marmot.geo.GeoClientUtils;
+import marmot.io.geo.quadtree.LeafNode;
 import marmot.io.geo.quadtree.Pointer;
 import marmot.io.geo.quadtree.PointerPartition;
 import marmot.io.geo.quadtree.QuadTree;
+import marmot.io.geo.quadtree.QuadTreeBuilder;
+import marmot.io.geo.quadtree.QuadTreeCursor;
+import marmot.io.geo.quadtree.QuadTreeVisitor;
+import marmot.io.serializer.MarmotSerializers;
+import marmot.io.serializer.SerializationException;
 import marmot.optor.geo.SpatialRelation;
+import marmot.optor.geo.cluster.Constants;
 import marmot.support.EnvelopeTaggedRecord;
+import marmot.type.MapTile;
 import utils.stream.FStream;
 
 /**
@@ -25,6 +39,8 @@ import utils.stream.FStream;
 public abstract class QuadTreeSpatialCluster extends AbstractQuadCluster {
 	protected final int m_geomColIdx;
 	private final CoordinateTransform m_trans;
+	private final AtomicReference<QuadTreeCursor<Pointer,PointerPartition>> m_cursor
+																= new AtomicReference<>();
 	
 	abstract protected QuadTree<Pointer,PointerPartition> getQuadTree();
 	abstract protected List<EnvelopeTaggedRecord> getRecordList();
@@ -40,6 +56,15 @@ public abstract class QuadTreeSpatialCluster extends AbstractQuadCluster {
 	public long getRecordCount() {
 		return getRecordList().size();
 	}
+	
+	/**
+	 * 클러스터 내부 레코드들의 저장 순서를 반환한다.
+	 * 
+	 * @return	레코드 정렬 순서
+	 */
+	public RecordOrder getRecordOrder() {
+		return RecordOrder.INPUT;
+	}
 
 	@Override
 	public FStream<EnvelopeTaggedRecord> read(boolean dropDuplicates) {
@@ -53,15 +78,199 @@ public abstract class QuadTreeSpatialCluster extends AbstractQuadCluster {
 	@Override
 	public FStream<EnvelopeTaggedRecord> query(Envelope range84, boolean dropDuplicates) {
 		List<EnvelopeTaggedRecord> records = getRecordList();
-		FStream<EnvelopeTaggedRecord> strm =  getQuadTree().query(SpatialRelation.INTERSECTS, range84)
-															.distinct()
-															.map(ptr -> records.get(ptr.index()));
+		FStream<EnvelopeTaggedRecord> strm;
+		if ( getRecordOrder() != RecordOrder.INPUT ) {
+			// 레코드들이 공간 순서로 저장된 경우는 질의 결과 레코드들이 연속된 구간에 모여 있기
+			// 때문에, 결과 레코드 순번들을 bitset에 모은 뒤 저장 순서대로 접근한다.
+			// 레코드들은 클러스터 적재시 모두 해제되어 있으며, 결과 구간만을 골라 해제하지는 않는다.
+			BitSet hits = new BitSet(records.size());
+			getQuadTree().query(SpatialRelation.INTERSECTS, range84)
+						.forEach(ptr -> hits.set(ptr.index()));
+			strm = FStream.from(hits.stream().mapToObj(records::get).iterator());
+		}
+		else {
+			strm = getQuadTree().query(SpatialRelation.INTERSECTS, range84)
+								.distinct()
+								.map(ptr -> records.get(ptr.index()));
+		}
 		if ( !isOutlier() && dropDuplicates ) {
 			strm = strm.filter(etr -> isOwnerOf(etr.getEnvelope().intersection(range84)));
 		}
 		return strm;
 	}
 	
+	/**
+	 * 클러스터에 포함된 레코드들 중에서 주어진 질의 영역과 겹치는 레코드들을 차례로
+	 * visitor에 전달한다.
+	 * <p>
+	 * 클러스터별로 재사용되는 {@link QuadTreeCursor}를 이용하여 QuadTree를 순회하고
+	 * 중복된 포인터는 bitset으로 제거하기 때문에, 질의마다 스트림이나 hash set을 생성하지 않는다.
+	 * cursor가 이미 사용 중인 경우(다른 쓰레드에서의 동시 질의 등)는 새 cursor를 사용한다.
+	 * 
+	 * @param range84			질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param dropDuplicates	복제본 제외 여부
+	 * @param visitor			질의 결과 레코드를 전달받을 visitor
+	 * @return	visitor가 순회를 중단시킨 경우는 {@code false}, 그렇지 않은 경우는 {@code true}.
+	 */
+	@Override
+	public boolean visit(Envelope range84, boolean dropDuplicates,
+						QuadTreeVisitor<? super EnvelopeTaggedRecord> visitor) {
+		List<EnvelopeTaggedRecord> records = getRecordList();
+		boolean checkOwner = !isOutlier() && dropDuplicates;
+		
+		QuadTreeCursor<Pointer,PointerPartition> cursor = m_cursor.getAndSet(null);
+		if ( cursor == null ) {
+			cursor = new QuadTreeCursor<>(Pointer::index);
+		}
+		try {
+			return cursor.visit(getQuadTree(), range84, ptr -> {
+				EnvelopeTaggedRecord etr = records.get(ptr.index());
+				if ( checkOwner && !isOwnerOf(etr.getEnvelope().intersection(range84)) ) {
+					return true;
+				}
+				return visitor.visit(etr);
+			});
+		}
+		finally {
+			m_cursor.set(cursor);
+		}
+	}
+
+	/**
+	 * 클러스터에 포함된 레코드들 중에서 주어진 질의 영역과 겹치는 레코드 스트림을 반환한다.
+	 * <p>
+	 * 클러스터 내부 QuadTree의 단말 노드들 중에서 질의 영역과 겹치지 않는 노드는 제외하고,
+	 * 노드에 포함된 모든 레코드의 MBR이 질의 영역에 포함되는 노드는 레코드별 검사 없이
+	 * 결과에 포함시킨다. 나머지 노드의 레코드들은 질의 영역과의 정밀 검사를 수행한다.
+	 * 
+	 * @param region			질의 영역
+	 * @param dropDuplicates	복제본 제외 여부
+	 * @return	질의에 포함된 레코드들의 스트림.
+	 */
+	@Override
+	public FStream<EnvelopeTaggedRecord> query(QueryRegion region, boolean dropDuplicates) {
+		Envelope range84 = region.getEnvelope84();
+		List<EnvelopeTaggedRecord> records = getRecordList();
+		
+		FStream<EnvelopeTaggedRecord> strm;
+		if ( region.covers84(getQuadTree().getDataBounds()) ) {
+			// 클러스터의 모든 레코드가 질의 영역에 포함되는 경우
+			strm = FStream.from(records);
+		}
+		else {
+			strm = FStream.from(getQuadTree().queryLeafNodes(SpatialRelation.INTERSECTS, range84))
+							.filter(leaf -> region.intersects84(leaf.getDataBounds()))
+							.flatMap(leaf -> {
+								FStream<EnvelopeTaggedRecord> recs
+											= leaf.query(SpatialRelation.INTERSECTS, range84)
+												.map(ptr -> records.get(ptr.index()));
+								if ( region.covers84(leaf.getDataBounds()) ) {
+									return recs;
+								}
+								return recs.filter(etr -> region.matches(getGeometry(etr)));
+							})
+							.distinct();
+		}
+		if ( !isOutlier() && dropDuplicates ) {
+			Envelope quadBounds = getQuadBounds();
+			strm = strm.filter(etr -> region.isOwnedBy(quadBounds, etr.getEnvelope(),
+														getGeometry(etr)));
+		}
+		return strm;
+	}
+
+
+	/**
+	 * 클러스터에 포함된 레코드들 중에서 주어진 영역과 겹치는 레코드들을 집계에 반영한다.
+	 * <p>
+	 * 집계는 클러스터 내부 QuadTree의 {@link Pointer}에 기록된 MBR만을 사용하기 때문에
+	 * 합계 컬럼이 없는 경우는 레코드를 접근하지 않는다. 질의 영역에 완전히 포함된 단말 노드 중에서
+	 * 모든 포인터가 클러스터 소유이고 다른 단말 노드와 공유되지 않는 노드는 포인터를 순회하지 않고
+	 * 노드의 레코드 수와 데이터 영역만으로 집계한다 ({@link PointerPartition#getExclusiveCount()} 참조).
+	 * 나머지 단말 노드는 질의 영역과 겹치는 포인터들을 차례로 집계한다.
+	 * 
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param agg		집계 객체
+	 */
+	@Override
+	public void aggregate(Envelope range84, WindowAggregate agg) {
+		List<EnvelopeTaggedRecord> records = getRecordList();
+		BitSet counteds = new BitSet(records.size());
+		boolean useMetadata = !agg.hasSumColumns();
+		
+		for ( LeafNode<Pointer,PointerPartition> leaf
+					: getQuadTree().queryLeafNodes(SpatialRelation.INTERSECTS, range84) ) {
+			boolean covered = range84.covers(leaf.getDataBounds());
+			if ( covered && useMetadata ) {
+				PointerPartition part = leaf.getPartition();
+				if ( getExclusiveCount(part) == part.size() ) {
+					// 다른 단말 노드와 공유되는 포인터가 없기 때문에 중복 검사도 필요없다.
+					agg.accumulateLeaf(part.size(), leaf.getDataBounds());
+					continue;
+				}
+			}
+			
+			FStream<Pointer> ptrs = (covered) ? leaf.values()
+											: leaf.query(SpatialRelation.INTERSECTS, range84);
+			for ( Pointer ptr: ptrs ) {
+				if ( counteds.get(ptr.index()) ) {
+					continue;
+				}
+				
+				Envelope mbr84 = ptr.getEnvelope();
+				Envelope overlap = (covered) ? mbr84 : mbr84.intersection(range84);
+				if ( isOutlier() || isOwnerOf(overlap) ) {
+					counteds.set(ptr.index());
+					
+					Record record = agg.hasSumColumns() ? records.get(ptr.index()).getRecord() : null;
+					agg.accumulate(mbr84, record);
+				}
+			}
+		}
+		agg.markScanned();
+	}
+	
+	private int getExclusiveCount(PointerPartition part) {
+		int count = part.getExclusiveCount();
+		if ( count < 0 ) {
+			updateExclusiveCounts();
+			count = part.getExclusiveCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * 클러스터 QuadTree의 모든 단말 노드에 대해, 클러스터가 소유하고 해당 단말 노드에만
+	 * 저장된 포인터의 수를 계산하여 partition에 기록한다.
+	 * 단말 노드별 포인터 수는 클러스터 저장시 함께 기록되기 때문에
+	 * ({@link #writeExclusiveCounts(String, QuadTree, int, DataOutput)} 참조), 이 연산은
+	 * 포인터 수가 기록되지 않은 이전 형식의 클러스터이거나 QuadTree가 변경된 경우에만 수행된다.
+	 */
+	private void updateExclusiveCounts() {
+		computeExclusiveCounts(getQuadKey(), getQuadTree(), getRecordList().size());
+	}
+	
+	private static void computeExclusiveCounts(String quadKey, QuadTree<Pointer,PointerPartition> qtree,
+												int recordCount) {
+		boolean isOutlier = quadKey.equals(Constants.QUADKEY_OUTLIER);
+		Envelope quadBounds = (isOutlier) ? null : MapTile.fromQuadKey(quadKey).getBounds();
+		
+		int[] refCounts = new int[recordCount];
+		qtree.streamLeafNodes()
+			.forEach(leaf -> leaf.values().forEach(ptr -> ++refCounts[ptr.index()]));
+		qtree.streamLeafNodes()
+			.forEach(leaf -> {
+				int count = 0;
+				for ( Pointer ptr: leaf.values() ) {
+					if ( refCounts[ptr.index()] == 1
+						&& (isOutlier || quadBounds.contains(ptr.getEnvelope().centre())) ) {
+						++count;
+					}
+				}
+				leaf.getPartition().setExclusiveCount(count);
+			});
+	}
+	
 	public FStream<Record> queryRecord(Envelope range, boolean dropDuplicates) {
 		if ( isOutlier() ) {
 			return FStream.empty();
@@ -93,6 +302,109 @@ public abstract class QuadTreeSpatialCluster extends AbstractQuadCluster {
 		return strm.map(EnvelopeTaggedRecord::getRecord);
 	}
 	
+	private Geometry getGeometry(EnvelopeTaggedRecord etr) {
+		return etr.getRecord().getGeometry(m_geomColIdx);
+	}
+	
+	/**
+	 * 클러스터 QuadTree의 단말 노드들을 주어진 출력 스트림에 기록한다.
+	 * 기록된 QuadTree는 {@link #readQuadTree(DataInput)}를 통해 재구성된다.
+	 * 
+	 * @param quadKey	QuadTree의 최상위 quad-key
+	 * @param qtree		기록할 QuadTree
+	 * @param out		출력 스트림
+	 */
+	protected static void writeQuadTree(String quadKey, QuadTree<Pointer,PointerPartition> qtree,
+										DataOutput out) {
+		MarmotSerializers.writeString(quadKey, out);
+		List<LeafNode<Pointer,PointerPartition>> nodes = qtree.streamLeafNodes().toList();
+		
+		MarmotSerializers.writeVInt(nodes.size(), out);
+		for ( LeafNode<Pointer,PointerPartition> node: nodes ) {
+			MarmotSerializers.writeString(node.getQuadKey(), out);
+			node.getPartition().serialize(out);
+		}
+	}
+	
+	protected static QuadTree<Pointer,PointerPartition> readQuadTree(DataInput input) {
+		String quadKey = MarmotSerializers.readString(input);
+		
+		QuadTreeBuilder<Pointer,PointerPartition> builder
+									= new QuadTreeBuilder<>(quadKey, qkey -> new PointerPartition());
+		int nodeCount = MarmotSerializers.readVInt(input);
+		for ( int i =0; i < nodeCount; ++i ) {
+			String qk = MarmotSerializers.readString(input);
+			PointerPartition part = PointerPartition.deserialize(input);
+			
+			builder.add(qk, part);
+		}
+		QuadTree<Pointer, PointerPartition> qtree = builder.build();
+		qtree.compact();
+		
+		return qtree;
+	}
+	
+	/**
+	 * 클러스터 QuadTree의 단말 노드별로 클러스터가 소유하고 해당 단말 노드에만 저장된
+	 * 포인터의 수({@link PointerPartition#getExclusiveCount()})를 주어진 출력 스트림에 기록한다.
+	 * 포인터 수는 {@link #writeQuadTree(String, QuadTree, DataOutput)}와 동일한 단말 노드
+	 * 순서로 기록되며, 계산되지 않은 경우는 기록 전에 계산한다.
+	 * 이전 형식과의 호환을 위해 클러스터의 가장 마지막에 기록되어야 한다.
+	 * 
+	 * @param quadKey		클러스터의 quad-key
+	 * @param qtree			클러스터 QuadTree
+	 * @param recordCount	클러스터 레코드 수
+	 * @param out			출력 스트림
+	 */
+	protected static void writeExclusiveCounts(String quadKey, QuadTree<Pointer,PointerPartition> qtree,
+												int recordCount, DataOutput out) {
+		List<LeafNode<Pointer,PointerPartition>> nodes = qtree.streamLeafNodes().toList();
+		for ( LeafNode<Pointer,PointerPartition> node: nodes ) {
+			if ( node.getPartition().getExclusiveCount() < 0 ) {
+				computeExclusiveCounts(quadKey, qtree, recordCount);
+				break;
+			}
+		}
+		
+		MarmotSerializers.writeInt(nodes.size(), out);
+		for ( LeafNode<Pointer,PointerPartition> node: nodes ) {
+			MarmotSerializers.writeVInt(node.getPartition().getExclusiveCount(), out);
+		}
+	}
+	
+	/**
+	 * {@link #writeExclusiveCounts(String, QuadTree, int, DataOutput)}로 기록된 단말 노드별
+	 * 포인터 수를 읽어 주어진 QuadTree의 partition들에 설정한다.
+	 * 포인터 수가 기록되지 않은 이전 형식의 클러스터인 경우는 아무런 작업을 하지 않는다.
+	 * 
+	 * @param qtree	{@link #readQuadTree(DataInput)}로 재구성된 클러스터 QuadTree
+	 * @param input	입력 스트림
+	 * @return	포인터 수가 설정된 경우는 {@code true}, 그렇지 않은 경우는 {@code false}.
+	 */
+	protected static boolean readExclusiveCounts(QuadTree<Pointer,PointerPartition> qtree,
+												DataInput input) {
+		int nodeCount;
+		try {
+			nodeCount = input.readInt();
+		}
+		catch ( EOFException e ) {
+			// 단말 노드별 포인터 수가 기록되지 않은 이전 형식의 클러스터
+			return false;
+		}
+		catch ( IOException e ) {
+			throw new SerializationException("" + e);
+		}
+		
+		List<LeafNode<Pointer,PointerPartition>> nodes = qtree.streamLeafNodes().toList();
+		if ( nodes.size() != nodeCount ) {
+			return false;
+		}
+		for ( LeafNode<Pointer,PointerPartition> node: nodes ) {
+			node.getPartition().setExclusiveCount(MarmotSerializers.readVInt(input));
+		}
+		return true;
+	}
+	
 	protected Envelope toWgs84(Envelope envl) {
 		return (m_trans != null) ? m_trans.transform(envl) : envl;
 	}
@@ -0,0 +1,178 @@
+package marmot.io.geo.cluster;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+import utils.Preconditions;
+
+import marmot.geo.CoordinateTransform;
+import marmot.geo.GeoClientUtils;
+import marmot.optor.geo.cluster.Constants;
+import marmot.type.MapTile;
+
+
+/**
+ * 공간 클러스터 파일 질의에 사용되는 임의 형태(polygon 등)의 질의 영역.
+ * <p>
+ * 질의 영역은 레코드의 좌표계로 표현된 공간 객체와 이를 EPSG:4326 좌표계로 변환한 공간
+ * 객체를 함께 유지한다. EPSG:4326 좌표계 공간 객체는 타일 및 QuadTree 노드 영역과의
+ * 관계 검사에 사용되고, 레코드 좌표계 공간 객체는 개별 레코드의 정밀 검사에 사용된다.
+ * 두 공간 객체 모두 반복적인 검사를 위해 {@link PreparedGeometry}로 준비된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class QueryRegion {
+	private final Geometry m_geom;
+	private final Geometry m_geom84;
+	private final Envelope m_envl84;
+	private final PreparedGeometry m_prepared;
+	private final PreparedGeometry m_prepared84;
+	@Nullable private final CoordinateTransform m_toWgs84;
+
+	/**
+	 * 질의 영역 객체를 생성한다.
+	 *
+	 * @param geom	질의 영역 공간 객체. 레코드의 좌표계 사용
+	 * @param srid	공간 객체의 좌표계
+	 * @return	질의 영역 객체
+	 */
+	public static QueryRegion of(Geometry geom, String srid) {
+		Preconditions.checkNotNullArgument(geom, "query geometry is null");
+		Preconditions.checkArgument(!geom.isEmpty(), "query geometry is empty");
+		Preconditions.checkNotNullArgument(srid, "srid is null");
+
+		return new QueryRegion(geom, CoordinateTransform.getTransformToWgs84(srid));
+	}
+
+	private QueryRegion(Geometry geom, @Nullable CoordinateTransform toWgs84) {
+		m_geom = geom;
+		m_toWgs84 = toWgs84;
+		m_geom84 = (toWgs84 != null) ? transform(geom, toWgs84) : geom;
+		m_envl84 = m_geom84.getEnvelopeInternal();
+
+		m_prepared = PreparedGeometryFactory.prepare(m_geom);
+		m_prepared84 = (m_geom84 != m_geom) ? PreparedGeometryFactory.prepare(m_geom84) : m_prepared;
+	}
+
+	/**
+	 * 질의 영역 공간 객체를 반환한다. 반환되는 공간 객체는 레코드의 좌표계를 사용한다.
+	 *
+	 * @return	공간 객체
+	 */
+	public Geometry getGeometry() {
+		return m_geom;
+	}
+
+	/**
+	 * 질의 영역의 MBR을 반환한다. 반환되는 MBR은 EPSG:4326 좌표계를 사용한다.
+	 *
+	 * @return	MBR
+	 */
+	public Envelope getEnvelope84() {
+		return m_envl84;
+	}
+
+	/**
+	 * 주어진 EPSG:4326 좌표계 사각 영역이 질의 영역과 겹치는지 여부를 반환한다.
+	 *
+	 * @param envl84	검사 대상 사각 영역.
+	 * @return	겹치는 경우는 {@code true}, 그렇지 않은 경우는 {@code false}.
+	 */
+	public boolean intersects84(Envelope envl84) {
+		if ( envl84.isNull() || !m_envl84.intersects(envl84) ) {
+			return false;
+		}
+		return m_prepared84.intersects(GeoClientUtils.GEOM_FACT.toGeometry(envl84));
+	}
+
+	/**
+	 * 주어진 EPSG:4326 좌표계 사각 영역이 질의 영역에 완전히 포함되는지 여부를 반환한다.
+	 *
+	 * @param envl84	검사 대상 사각 영역.
+	 * @return	포함되는 경우는 {@code true}, 그렇지 않은 경우는 {@code false}.
+	 */
+	public boolean covers84(Envelope envl84) {
+		if ( envl84.isNull() || !m_envl84.covers(envl84) ) {
+			return false;
+		}
+		return m_prepared84.covers(GeoClientUtils.GEOM_FACT.toGeometry(envl84));
+	}
+
+	/**
+	 * 주어진 quad-key에 해당하는 타일이 질의 영역과 겹치는지 여부를 반환한다.
+	 * Outlier 클러스터의 경우는 영역 정보가 없기 때문에 항상 {@code true}를 반환한다.
+	 *
+	 * @param quadKey	검사 대상 타일의 quad-key.
+	 * @return	겹치는 경우는 {@code true}, 그렇지 않은 경우는 {@code false}.
+	 */
+	public boolean intersectsTile(String quadKey) {
+		if ( quadKey.equals(Constants.QUADKEY_OUTLIER) ) {
+			return true;
+		}
+		return intersects84(MapTile.fromQuadKey(quadKey).getBounds());
+	}
+
+	/**
+	 * 주어진 공간 객체가 질의 영역과 겹치는지 여부를 반환한다.
+	 *
+	 * @param geom	검사 대상 공간 객체. 레코드의 좌표계 사용
+	 * @return	겹치는 경우는 {@code true}, 그렇지 않은 경우는 {@code false}.
+	 */
+	public boolean matches(Geometry geom) {
+		return geom != null && !geom.isEmpty() && m_prepared.intersects(geom);
+	}
+
+	/**
+	 * 질의 결과 레코드가 주어진 타일의 클러스터에 소유되는지 여부를 반환한다.
+	 * <p>
+	 * 여러 클러스터에 중복 저장된 레코드의 경우 레코드와 질의 영역이 겹치는 부분의 대표점을
+	 * 포함하는 클러스터가 해당 레코드를 소유하는 것으로 간주한다. 대표점은 질의 영역과 겹치는
+	 * 곳에 위치하기 때문에, 질의 영역과 겹치지 않아 제외된 클러스터가 소유자로 선택되지 않는다.
+	 *
+	 * @param tile84	클러스터 타일 영역. EPSG:4326 좌표계 사용
+	 * @param mbr84		레코드 공간 객체의 MBR. EPSG:4326 좌표계 사용
+	 * @param geom		레코드 공간 객체. 레코드의 좌표계 사용
+	 * @return	소유 여부
+	 */
+	public boolean isOwnedBy(Envelope tile84, Envelope mbr84, Geometry geom) {
+		if ( tile84.contains(mbr84) ) {
+			// 하나의 타일에만 포함된 레코드는 중복되지 않는다.
+			return true;
+		}
+
+		Geometry overlap = covers84(mbr84) ? geom : m_geom.intersection(geom);
+		if ( overlap.isEmpty() ) {
+			return false;
+		}
+
+		Coordinate pt = overlap.getInteriorPoint().getCoordinate();
+		if ( m_toWgs84 != null ) {
+			pt = m_toWgs84.transform(pt);
+		}
+		return tile84.contains(pt);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%s, mbr84=%s]", getClass().getSimpleName(),
+							m_geom.getGeometryType(), m_envl84);
+	}
+
+	private static Geometry transform(Geometry geom, CoordinateTransform trans) {
+		Geometry transformed = geom.copy();
+		transformed.apply((CoordinateFilter)coord -> {
+			Coordinate tc = trans.transform(coord);
+			coord.x = tc.x;
+			coord.y = tc.y;
+		});
+		transformed.geometryChanged();
+
+		return transformed;
+	}
+}
@@ -0,0 +1,108 @@
+package marmot.io.geo.cluster;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+
+import marmot.io.geo.quadtree.HilbertCodes;
+import marmot.io.geo.quadtree.MortonCodes;
+
+/**
+ * 클러스터 내부 레코드들의 저장 순서.
+ * <p>
+ * 공간 순서({@link #HILBERT}, {@link #MORTON})는 레코드 MBR(EPSG:4326) 중심점의 공간 채움 곡선
+ * 코드 순으로 레코드를 정렬한다. 공간적으로 인접한 레코드들이 저장 위치도 인접하게 되기 때문에
+ * 영역 질의 결과 레코드들이 연속된 구간에 모이게 되고, 인접 레코드들 사이에 공통된 값이 많아져
+ * 압축률도 향상된다. MBR이 빈 레코드들은 가장 뒤에 입력 순서대로 위치한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public enum RecordOrder {
+	/** 입력 순서 */
+	INPUT(0),
+	/** MBR 중심점의 Hilbert 코드 순서 */
+	HILBERT(1),
+	/** MBR 중심점의 Morton 코드 순서 */
+	MORTON(2);
+
+	public static final RecordOrder DEFAULT = HILBERT;
+
+	private final int m_code;
+
+	private RecordOrder(int code) {
+		m_code = code;
+	}
+
+	/**
+	 * 파일에 기록되는 정렬 순서 코드를 반환한다.
+	 *
+	 * @return	정렬 순서 코드
+	 */
+	public int getCode() {
+		return m_code;
+	}
+
+	/**
+	 * 주어진 코드에 해당하는 정렬 순서를 반환한다.
+	 *
+	 * @param code	정렬 순서 코드
+	 * @return	정렬 순서
+	 */
+	public static RecordOrder fromCode(int code) {
+		for ( RecordOrder order: values() ) {
+			if ( order.m_code == code ) {
+				return order;
+			}
+		}
+		throw new IllegalArgumentException("unknown RecordOrder code: " + code);
+	}
+
+	/**
+	 * 주어진 MBR의 정렬 키를 반환한다.
+	 *
+	 * @param mbr84	EPSG:4326 좌표체계의 레코드 MBR
+	 * @return	정렬 키
+	 */
+	public long key(Envelope mbr84) {
+		if ( this == INPUT ) {
+			return 0;
+		}
+		if ( mbr84.isNull() ) {
+			return Long.MAX_VALUE;
+		}
+
+		Coordinate center = mbr84.centre();
+		return (this == HILBERT) ? HilbertCodes.encode(center.x, center.y)
+								: MortonCodes.encode(center.x, center.y);
+	}
+
+	/**
+	 * 주어진 MBR들을 본 정렬 순서로 정렬했을 때의 순번 배열을 반환한다.
+	 * 반환된 배열의 i번째 값은 정렬 후 i번째에 위치할 MBR의 원래 순번이다.
+	 * 정렬 키가 같은 MBR들은 원래 순서를 유지한다.
+	 *
+	 * @param mbr84s	EPSG:4326 좌표체계의 레코드 MBR 리스트
+	 * @return	정렬된 순번 배열
+	 */
+	public int[] sort(List<Envelope> mbr84s) {
+		int count = mbr84s.size();
+		if ( this == INPUT ) {
+			int[] idxes = new int[count];
+			Arrays.setAll(idxes, i -> i);
+			return idxes;
+		}
+
+		// 객체 배열 정렬은 안정(stable) 정렬이기 때문에 정렬 키가 같은 MBR들은 원래 순서를 유지한다.
+		long[] keys = new long[count];
+		Integer[] order = new Integer[count];
+		for ( int i =0; i < count; ++i ) {
+			keys[i] = key(mbr84s.get(i));
+			order[i] = i;
+		}
+		Arrays.sort(order, (i1, i2) -> Long.compare(keys[i1], keys[i2]));
+
+		return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+	}
+}
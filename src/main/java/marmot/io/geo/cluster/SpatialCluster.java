@@ -1,6 +1,7 @@
 package marmot.io.geo.cluster;
 
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
@@ -24,24 +25,36 @@ import marmot.RecordSchema;
 import marmot.io.HdfsPath;
 import marmot.io.MarmotFileException;
 import marmot.io.RecordWritable;
+import marmot.io.geo.quadtree.LeafCapacityPolicy;
 import marmot.io.geo.quadtree.Pointer;
 import marmot.io.geo.quadtree.PointerPartition;
 import marmot.io.geo.quadtree.QuadTree;
+import marmot.io.serializer.MarmotSerializers;
 import marmot.support.EnvelopeTaggedRecord;
 
 /**
+ * 공간 클러스터 파일에 저장된 하나의 클러스터를 적재한 클래스.
+ * <p>
+ * 클러스터 레코드들 뒤에 각 레코드의 EPSG:4326 MBR과 클러스터 QuadTree가 함께 저장된 경우
+ * ({@link SpatialClusterFile#storeCluster} 참조)는 이를 그대로 적재하고, 저장되지 않은 경우는
+ * 적재된 레코드들로부터 QuadTree를 생성한다.
+ * 클러스터 인덱스에 레코드 정렬 순서({@link RecordOrder})가 기록된 경우는 이를 함께 적재한다.
  * 
  * @author Kang-Woo Lee (ETRI)
  */
 public class SpatialCluster extends QuadTreeSpatialCluster
 							implements CacheableQuadCluster, Serializable {
 	private static final long serialVersionUID = 1L;
+	static final int INDEX_MAGIC = 0x4D534349;			// "MSCI"
+	static final int ORDERED_INDEX_MAGIC = 0x4D53434F;	// "MSCO": 레코드 정렬 순서가 포함된 인덱스
+	static final int EXCLUSIVE_INDEX_MAGIC = 0x4D534345;	// "MSCE": 단말노드별 소유 포인터 수가 추가된 인덱스
 	
 	private final HdfsPath m_path;
 	private final SpatialClusterInfo m_info;
 
 	private QuadTree<Pointer,PointerPartition> m_qtree;
 	private List<EnvelopeTaggedRecord> m_records;
+	private RecordOrder m_order = RecordOrder.INPUT;
 	
 	public SpatialCluster(HdfsPath path, SpatialClusterInfo scInfo, GRecordSchema gschema) {
 		super(scInfo.quadKey(), gschema);
@@ -50,27 +63,29 @@ public class SpatialCluster extends QuadTreeSpatialCluster
 		m_info = scInfo;
 		
 		m_records = Lists.newArrayListWithExpectedSize((int)m_info.recordCount());
-		if ( !isOutlier() ) {
-			m_qtree = new QuadTree<>(m_info.quadKey(), qkey->new PointerPartition());
-		}
 		try ( FSDataInputStream fsin = m_path.open() ) {
 			if ( m_info.start() > 0 ) {
 				fsin.seek(m_info.start());
 			}
 			
+			// 클러스터 레코드와 인덱스는 하나의 LZ4 스트림으로 저장되기 때문에, 질의 영역과 무관하게
+			// 전체 레코드를 해제한다.
 			RecordWritable writable = RecordWritable.from(gschema.getRecordSchema());
 			DataInputStream dis = new DataInputStream(Lz4Compressions.decompress(fsin));
+			List<Record> records = Lists.newArrayListWithExpectedSize((int)m_info.recordCount());
 			for ( int idx = 0; idx < m_info.recordCount(); ++idx ) {
 				writable.readFields(dis);
-				
-				Record record = writable.toRecord();
-				Envelope mbr = (isOutlier()) ? new Envelope() : getMbr84(record);
-				m_records.add(new EnvelopeTaggedRecord(mbr, record));
-				
-				if ( !isOutlier() ) {
-					m_qtree.insert(new Pointer(mbr, idx));
+				records.add(writable.toRecord());
+			}
+			
+			if ( isOutlier() ) {
+				for ( Record record: records ) {
+					m_records.add(new EnvelopeTaggedRecord(new Envelope(), record));
 				}
 			}
+			else if ( !loadIndex(dis, records) ) {
+				buildIndex(records);
+			}
 		}
 		catch ( IOException e ) {
 			throw new MarmotFileException("fails to load SpatialCluster: path=" + m_path + ", cause=" + e);
@@ -90,6 +105,11 @@ public class SpatialCluster extends QuadTreeSpatialCluster
 	public SpatialClusterInfo getInfo() {
 		return m_info;
 	}
+	
+	@Override
+	public RecordOrder getRecordOrder() {
+		return m_order;
+	}
 
 	@Override
 	public Envelope getDataBounds() {
@@ -116,6 +136,45 @@ public class SpatialCluster extends QuadTreeSpatialCluster
 		return m_records;
 	}
 	
+	private boolean loadIndex(DataInputStream dis, List<Record> records) throws IOException {
+		int magic;
+		try {
+			magic = dis.readInt();
+		}
+		catch ( EOFException e ) {
+			// QuadTree가 저장되지 않은 이전 형식의 클러스터
+			return false;
+		}
+		
+		if ( magic == ORDERED_INDEX_MAGIC || magic == EXCLUSIVE_INDEX_MAGIC ) {
+			m_order = RecordOrder.fromCode(dis.readByte());
+		}
+		else if ( magic != INDEX_MAGIC ) {
+			return false;
+		}
+		
+		for ( Record record: records ) {
+			Envelope mbr84 = MarmotSerializers.ENVELOPE.deserialize(dis);
+			m_records.add(new EnvelopeTaggedRecord(mbr84, record));
+		}
+		m_qtree = readQuadTree(dis);
+		if ( magic == EXCLUSIVE_INDEX_MAGIC ) {
+			readExclusiveCounts(m_qtree, dis);
+		}
+		
+		return true;
+	}
+	
+	private void buildIndex(List<Record> records) {
+		m_qtree = new QuadTree<>(m_info.quadKey(), qkey->new PointerPartition(qkey, LeafCapacityPolicy.DEFAULT));
+		for ( int idx = 0; idx < records.size(); ++idx ) {
+			Record record = records.get(idx);
+			Envelope mbr = getMbr84(record);
+			m_records.add(new EnvelopeTaggedRecord(mbr, record));
+			m_qtree.insert(new Pointer(mbr, idx));
+		}
+	}
+	
 	private Envelope getMbr84(Record record) {
 		return toWgs84(record.getGeometry(m_geomColIdx).getEnvelopeInternal());
 	}
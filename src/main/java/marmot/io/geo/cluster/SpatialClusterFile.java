@@ -3,6 +3,7 @@ package marmot.io.geo.cluster;
 import static utils.UnitUtils.parseByteSize;
 import static utils.UnitUtils.toByteSizeString;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InvalidObjectException;
@@ -10,11 +11,15 @@ import java.io.ObjectInputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
+
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
@@ -41,11 +46,22 @@ import marmot.io.MarmotFileException;
 import marmot.io.MarmotSequenceFile;
 import marmot.io.MarmotSequenceFile.FileInfo;
 import marmot.io.RecordWritable;
+import marmot.io.geo.quadtree.LeafCapacityPolicy;
+import marmot.io.geo.quadtree.Pointer;
+import marmot.io.geo.quadtree.PointerPartition;
+import marmot.io.geo.quadtree.QuadTree;
+import marmot.io.geo.quadtree.QuadTreeBuilder;
+import marmot.io.serializer.MarmotSerializers;
 import marmot.support.DefaultRecord;
 import marmot.type.MapTile;
 
 
 /**
+ * 공간 클러스터 파일 클래스.
+ * <p>
+ * 클러스터 디렉토리에 클러스터 정보 이진 인덱스 파일({@link #storeClusterIndex(HdfsPath)} 참조)이
+ * 존재하는 경우는 이를 이용하여 파일을 연다. 이 경우 클러스터 정보들은 처음 접근될 때 적재되고,
+ * 전체 레코드 수와 영역 정보는 인덱스 파일에 미리 계산된 값을 사용한다.
  * 
  * @author Kang-Woo Lee (ETRI)
  */
@@ -62,7 +78,8 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 	
 	private final HdfsPath m_path;
 	private final GRecordSchema m_gschema;
-	private final Map<String,SpatialClusterInfo> m_scInfos;
+	@Nullable private final SpatialClusterIndex m_index;
+	@Nullable private final Map<String,SpatialClusterInfo> m_scInfos;	// m_index가 없는 경우만 사용
 	private final Envelope m_dataBounds;
 	private final Envelope m_quadBounds;
 	private final long m_recordCount;
@@ -77,6 +94,18 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 		
 		m_path = path;
 		
+		m_index = SpatialClusterIndex.load(path);
+		if ( m_index != null ) {
+			m_gschema = m_index.getGRecordSchema();
+			m_scInfos = null;
+			m_quadBounds = m_index.getQuadBounds();
+			m_dataBounds = m_index.getDataBounds();
+			m_recordCount = m_index.getRecordCount();
+			m_replicaCount = m_index.getReplicaCount();
+			
+			return;
+		}
+		
 		MarmotSequenceFile idxFile = MarmotSequenceFile.of(path.child(CLUSTER_INDEX_FILE));
 		FileInfo info = idxFile.getFileInfo();
 		Map<String,String> metadata = info.getMetadata();
@@ -151,14 +180,14 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 
 	@Override
 	public int getClusterCount() {
-		return m_scInfos.size();
+		return (m_index != null) ? m_index.getClusterCount() : m_scInfos.size();
 	}
 
 	@Override
 	public SpatialCluster getCluster(String quadKey) {
 		Preconditions.checkNotNullArgument(quadKey, "quadKey is null");
 		
-		SpatialClusterInfo scInfo = m_scInfos.get(quadKey);
+		SpatialClusterInfo scInfo = findClusterInfo(quadKey);
 		if ( scInfo != null ) {
 			return toSpatialCluster(scInfo);
 		}
@@ -170,7 +199,7 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 	public SpatialClusterInfo getClusterInfo(String quadKey) {
 		Preconditions.checkNotNullArgument(quadKey, "quadKey is null");
 		
-		SpatialClusterInfo scInfo = m_scInfos.get(quadKey);
+		SpatialClusterInfo scInfo = findClusterInfo(quadKey);
 		if ( scInfo != null ) {
 			return scInfo;
 		}
@@ -179,6 +208,10 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 		}
 	}
 	
+	private @Nullable SpatialClusterInfo findClusterInfo(String quadKey) {
+		return (m_index != null) ? m_index.get(quadKey) : m_scInfos.get(quadKey);
+	}
+	
 	private SpatialCluster toSpatialCluster(SpatialClusterInfo scInfo) {
 		return new SpatialCluster(m_path.child(scInfo.partitionId()), scInfo, m_gschema);
 	}
@@ -187,30 +220,31 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 	public FStream<String> queryClusterKeys(Envelope range84) {
 		Preconditions.checkNotNullArgument(range84, "range is null");
 		
-		return FStream.from(m_scInfos.values())
-						.filter(scInfo -> scInfo.quadBounds().intersects(range84))
-						.map(SpatialClusterInfo::quadKey);
+		return queryClusterInfos(range84).map(SpatialClusterInfo::quadKey);
 	}
 
 	public FStream<SpatialClusterInfo> queryClusterInfos(Envelope range84) {
 		Preconditions.checkNotNullArgument(range84, "range is null");
 		
+		if ( m_index != null ) {
+			return FStream.from(m_index.query(range84));
+		}
 		return FStream.from(m_scInfos.values())
 						.filter(scInfo -> scInfo.quadBounds().intersects(range84));
 	}
 
 	@Override
 	public Set<String> getClusterKeyAll() {
-		return m_scInfos.keySet();
+		return (m_index != null) ? m_index.getClusterKeyAll() : m_scInfos.keySet();
 	}
 
 	public FStream<SpatialClusterInfo> getClusterInfoAll() {
-		return FStream.from(m_scInfos.values());
+		return (m_index != null) ? m_index.getClusterInfoAll() : FStream.from(m_scInfos.values());
 	}
 
 	@Override
 	public FStream<Record> read() {
-		return FStream.from(m_scInfos.values())
+		return getClusterInfoAll()
 						.flatMap(info -> {
 							HdfsPath path = m_path.child(info.partitionId());
 							return SpatialCluster.readAll(path, info, m_gschema.getRecordSchema())
@@ -219,15 +253,82 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 	}
 	
 	public FStream<Record> queryRecord(Envelope range84, Envelope range) {
-		return queryClusterKeys(range84)
-				.map(qk -> toSpatialCluster(m_scInfos.get(qk)))
+		return queryClusterInfos(range84)
+				.map(this::toSpatialCluster)
 				.flatMap(cluster -> cluster.queryRecord(range, true));
 	}
+	
+	/**
+	 * 주어진 클러스터 디렉토리의 클러스터 정보 파일({@link #CLUSTER_INDEX_FILE})을 읽어
+	 * 클러스터 정보 이진 인덱스 파일을 생성한다.
+	 * 생성된 인덱스 파일은 이후 {@link #of(HdfsPath)}를 통해 파일을 열 때 사용된다.
+	 * 클러스터 정보 파일이 인덱스 파일 생성 이후에 다시 기록된 경우는 인덱스 파일은 무시된다.
+	 * 
+	 * @param path	클러스터 디렉토리 경로.
+	 */
+	public static void storeClusterIndex(HdfsPath path) {
+		MarmotSequenceFile idxFile = MarmotSequenceFile.of(path.child(CLUSTER_INDEX_FILE));
+		Map<String,String> metadata = idxFile.getFileInfo().getMetadata();
+		
+		GeometryColumnInfo gcInfo = new GeometryColumnInfo(metadata.get(PROP_GEOM_COL),
+															metadata.get(PROP_SRID));
+		RecordSchema schema = RecordSchema.parse(metadata.get(PROP_DATASET_SCHEMA));
+		List<SpatialClusterInfo> scInfos = idxFile.read().fstream()
+													.map(SpatialClusterInfo::from)
+													.toList();
+		
+		storeClusterIndex(path, new GRecordSchema(gcInfo, schema), scInfos);
+	}
+	
+	/**
+	 * 주어진 클러스터 정보들로 클러스터 정보 이진 인덱스 파일을 생성한다.
+	 * 클러스터 정보 파일({@link #CLUSTER_INDEX_FILE})이 기록된 후에 호출되어야 한다.
+	 * 
+	 * @param path		클러스터 디렉토리 경로.
+	 * @param gschema	클러스터에 저장된 레코드의 스키마.
+	 * @param scInfos	클러스터 정보들.
+	 */
+	public static void storeClusterIndex(HdfsPath path, GRecordSchema gschema,
+										Collection<SpatialClusterInfo> scInfos) {
+		SpatialClusterIndex.store(path, gschema, scInfos);
+	}
 
 	private static int COMPRESS_BUF_SIZE = (int)parseByteSize("4mb");
 	public static SpatialClusterInfo storeCluster(HdfsPath path, String quadKey,
 													GeometryColumnInfo gcInfo, RecordSet rset,
 													long blockSize) {
+		return storeCluster(path, quadKey, gcInfo, rset, blockSize, LeafCapacityPolicy.DEFAULT);
+	}
+	
+	public static SpatialClusterInfo storeCluster(HdfsPath path, String quadKey,
+													GeometryColumnInfo gcInfo, RecordSet rset,
+													long blockSize, LeafCapacityPolicy policy) {
+		return storeCluster(path, quadKey, gcInfo, rset, blockSize, policy, RecordOrder.DEFAULT);
+	}
+	
+	/**
+	 * 주어진 레코드들을 하나의 클러스터로 클러스터 파일에 추가한다.
+	 * <p>
+	 * 클러스터 영역에 중심점이 포함된 레코드들을 먼저 기록하고, 중심점이 포함되지 않는
+	 * (duplicate) 레코드들을 그 뒤에 기록한다. 각 그룹 내의 레코드들은 주어진 정렬 순서에 따라
+	 * 기록되고, 사용된 정렬 순서는 레코드 뒤에 기록되는 클러스터 인덱스에 함께 기록된다.
+	 * outlier 클러스터는 레코드의 위치 정보를 사용하지 않기 때문에 입력 순서로 기록된다.
+	 * 
+	 * @param path		클러스터 파일 경로
+	 * @param quadKey	클러스터의 quad-key
+	 * @param gcInfo	공간 컬럼 정보
+	 * @param rset		클러스터에 포함될 레코드 세트
+	 * @param blockSize	클러스터 파일 블럭 크기
+	 * @param policy	클러스터 QuadTree의 단말노드 용량 정책
+	 * @param order		클러스터 내부 레코드 정렬 순서
+	 * @return	기록된 클러스터의 정보
+	 */
+	public static SpatialClusterInfo storeCluster(HdfsPath path, String quadKey,
+													GeometryColumnInfo gcInfo, RecordSet rset,
+													long blockSize, LeafCapacityPolicy policy,
+													RecordOrder order) {
+		Preconditions.checkNotNullArgument(order, "RecordOrder is null");
+		
 		Envelope quadBounds = (quadKey.equals("outliers"))
 							? null : MapTile.fromQuadKey(quadKey).getBounds();
 		CoordinateTransform trans = CoordinateTransform.getTransformToWgs84(gcInfo.srid());
@@ -235,6 +336,8 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 		Envelope mbr = new Envelope();
 		long count = 0;
 		long duplicateCount = 0;
+		RecordOrder recOrder = (quadBounds != null) ? order : RecordOrder.INPUT;
+		boolean sorted = recOrder != RecordOrder.INPUT;
 		
 		CopyStream copy = null;
 		PipedInputStream pipeIn = new PipedInputStream(COMPRESS_BUF_SIZE);
@@ -247,11 +350,16 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 			copy = IOUtils.copyAsync(Lz4Compressions.compress(pipeIn), fsdos);
 			copy.start();
 			
-			List<Record> duplicateds = Lists.newArrayList();
+			// 정렬 대상 레코드들은 레코드 객체 대신 직렬화된 상태로 모아둔다.
+			SerializedRecords owneds = new SerializedRecords();	// 정렬이 필요한 경우만 사용됨
+			SerializedRecords duplicateds = new SerializedRecords();
+			List<Envelope> mbr84s = Lists.newArrayList();
+			List<Envelope> duplicatedMbr84s = Lists.newArrayList();
 			
 			Record record = DefaultRecord.of(rset.getRecordSchema());
 			while ( rset.next(record) ) {
 				boolean isDuplicate = false;
+				Envelope mbr84 = new Envelope();
 				
 				if ( quadBounds != null ) {
 					Geometry geom = record.getGeometry(geomColIdx);
@@ -259,6 +367,7 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 						Envelope envl = geom.getEnvelopeInternal();
 						mbr.expandToInclude(envl);
 						
+						mbr84 = (trans != null) ? trans.transform(envl) : envl;
 						Coordinate center = envl.centre();
 						if ( trans != null ) {
 							center = trans.transform(envl.centre());
@@ -271,16 +380,36 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 				}
 				
 				if ( !isDuplicate ) {
-					RecordWritable.from(record).write(dos);
+					if ( sorted ) {
+						owneds.add(record);
+					}
+					else {
+						RecordWritable.from(record).write(dos);
+					}
+					mbr84s.add(mbr84);
 				}
 				else {
-					duplicateds.add(record.duplicate());
+					duplicateds.add(record);
+					duplicatedMbr84s.add(mbr84);
 				}
 				++count;
 			}
 			
+			List<Envelope> writtenMbr84s = Lists.newArrayListWithExpectedSize((int)count);
+			if ( sorted ) {
+				writeRecords(owneds, mbr84s, recOrder, dos, writtenMbr84s);
+			}
+			else {
+				writtenMbr84s.addAll(mbr84s);
+			}
+			
 			// duplicate record들을 마지막에 따로 저장함
-			FStream.from(duplicateds).forEach(rec -> RecordWritable.from(rec).write(dos));
+			writeRecords(duplicateds, duplicatedMbr84s, recOrder, dos, writtenMbr84s);
+			
+			// 적재시 QuadTree를 다시 생성하지 않도록 레코드별 MBR과 QuadTree를 함께 저장함
+			if ( quadBounds != null ) {
+				writeClusterIndex(quadKey, writtenMbr84s, policy, recOrder, dos);
+			}
 			IOUtils.closeQuietly(dos);	//  이 연산으로 인해 'copy' 비동기 연산이 완료됨
 			
 			try {
@@ -289,8 +418,8 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 			catch ( Exception e ) { }
 			
 			long size = fsdos.getPos() - start;
-			s_logger.info("store_cluster: quadkey={}, count={}+{}, start={}, size={}",
-							quadKey, count-duplicateCount, duplicateCount,
+			s_logger.info("store_cluster: quadkey={}, count={}+{}, order={}, start={}, size={}",
+							quadKey, count-duplicateCount, duplicateCount, recOrder,
 							toByteSizeString(start), toByteSizeString(size));
 			
 			String partId = path.getName();
@@ -308,6 +437,62 @@ public class SpatialClusterFile implements QuadClusterFile<SpatialCluster>, Seri
 		}
 	}
 	
+	private static void writeRecords(SerializedRecords records, List<Envelope> mbr84s,
+									RecordOrder order, DataOutputStream dos,
+									List<Envelope> writtenMbr84s) throws IOException {
+		for ( int idx: order.sort(mbr84s) ) {
+			records.writeTo(idx, dos);
+			writtenMbr84s.add(mbr84s.get(idx));
+		}
+	}
+	
+	/**
+	 * 직렬화된 레코드들을 하나의 byte 배열에 차례로 모아두고, 주어진 순번의 레코드를
+	 * 직렬화된 상태 그대로 출력하는 버퍼.
+	 */
+	private static final class SerializedRecords extends ByteArrayOutputStream {
+		private final DataOutputStream m_dos = new DataOutputStream(this);
+		private int[] m_offsets = new int[64];
+		private int m_count = 0;
+		
+		void add(Record record) {
+			if ( m_count+1 >= m_offsets.length ) {
+				m_offsets = Arrays.copyOf(m_offsets, m_offsets.length*2);
+			}
+			RecordWritable.from(record).write(m_dos);
+			m_offsets[++m_count] = count;
+		}
+		
+		void writeTo(int idx, DataOutputStream out) throws IOException {
+			int start = m_offsets[idx];
+			out.write(buf, start, m_offsets[idx+1] - start);
+		}
+	}
+	
+	private static void writeClusterIndex(String quadKey, List<Envelope> mbr84s,
+											LeafCapacityPolicy policy, RecordOrder order,
+											DataOutputStream dos)
+		throws IOException {
+		List<Pointer> ptrs = Lists.newArrayList();
+		for ( int idx = 0; idx < mbr84s.size(); ++idx ) {
+			Envelope mbr84 = mbr84s.get(idx);
+			if ( !mbr84.isNull() ) {
+				ptrs.add(new Pointer(mbr84, idx));
+			}
+		}
+		QuadTree<Pointer,PointerPartition> qtree
+							= QuadTreeBuilder.bulkLoad(quadKey, ptrs,
+														qkey->new PointerPartition(qkey, policy));
+		
+		dos.writeInt(SpatialCluster.EXCLUSIVE_INDEX_MAGIC);
+		dos.writeByte(order.getCode());
+		for ( Envelope mbr84: mbr84s ) {
+			MarmotSerializers.ENVELOPE.serialize(mbr84, dos);
+		}
+		QuadTreeSpatialCluster.writeQuadTree(quadKey, qtree, dos);
+		QuadTreeSpatialCluster.writeExclusiveCounts(quadKey, qtree, mbr84s.size(), dos);
+	}
+	
 	@Override
 	public String toString() {
 		return String.format("%s: path=%s", getClass().getSimpleName(), m_path);
@@ -0,0 +1,320 @@
+package marmot.io.geo.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import utils.Preconditions;
+import utils.stream.FStream;
+
+import marmot.GRecordSchema;
+import marmot.io.HdfsPath;
+import marmot.io.MarmotFileException;
+import marmot.io.geo.quadtree.MortonCodes;
+import marmot.io.geo.quadtree.SortedMortonKeys;
+import marmot.io.serializer.MarmotSerializers;
+import marmot.optor.geo.cluster.Constants;
+
+
+/**
+ * {@link SpatialClusterFile}의 클러스터 정보({@link SpatialClusterInfo})들을 빠르게 적재하기 위한
+ * 이진 인덱스 파일.
+ * <p>
+ * 인덱스 파일은 {@link SpatialClusterFile#CLUSTER_INDEX_FILE}과 같은 디렉토리에
+ * {@value #FILE_NAME} 이름으로 저장되며 다음과 같이 구성된다.
+ * <pre>
+ * header:	magic(int), version(int), record-schema, 클러스터 수(outlier 제외), 전체 레코드 수,
+ * 			전체 복사본 수, 데이터 MBR, 타일 MBR, outlier 클러스터 정보
+ * keys:	Morton 코드로 변환된 quad-key 배열 (long[n], 오름차순 정렬)
+ * levels:	quad-key 길이 배열 (byte[n])
+ * offsets:	클러스터 정보의 시작 위치 배열 (int[n+1])
+ * infos:	직렬화된 클러스터 정보들
+ * </pre>
+ * 파일을 열 때는 header만 해석하고, 개별 클러스터 정보는 처음 접근될 때 생성된다.
+ * 클러스터 quad-key들은 서로 prefix 관계가 없기 때문에 key 배열에 대한 이진 검색만으로
+ * 주어진 영역과 겹치는 클러스터들을 검색할 수 있다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class SpatialClusterIndex {
+	static final String FILE_NAME = "cluster.idx.bin";
+	private static final int MAGIC = 0x4D534358;	// "MSCX"
+	private static final int VERSION = 2;	// 1: outlier가 있는 경우 클러스터 수가 잘못 기록됨
+
+	private final GRecordSchema m_gschema;
+	private final int m_count;
+	private final long m_recordCount;
+	private final long m_replicaCount;
+	private final Envelope m_dataBounds;
+	private final Envelope m_quadBounds;
+	@Nullable private final SpatialClusterInfo m_outlier;
+	private final ByteBuffer m_body;
+	private final int m_levelsOffset;
+	private final int m_offsetsOffset;
+	private final int m_infosOffset;
+	private final SpatialClusterInfo[] m_infos;		// 적재된 클러스터 정보 (lazy)
+	private final SortedMortonKeys m_keys = new SortedMortonKeys() {
+		@Override
+		protected int size() {
+			return m_count;
+		}
+
+		@Override
+		protected long keyAt(int idx) {
+			return SpatialClusterIndex.this.keyAt(idx);
+		}
+
+		@Override
+		protected int levelAt(int idx) {
+			return SpatialClusterIndex.this.levelAt(idx);
+		}
+	};
+
+	private SpatialClusterIndex(GRecordSchema gschema, int count, long recordCount,
+								long replicaCount, Envelope dataBounds, Envelope quadBounds,
+								@Nullable SpatialClusterInfo outlier, byte[] body) {
+		m_gschema = gschema;
+		m_count = count;
+		m_recordCount = recordCount;
+		m_replicaCount = replicaCount;
+		m_dataBounds = dataBounds;
+		m_quadBounds = quadBounds;
+		m_outlier = outlier;
+		m_body = ByteBuffer.wrap(body);
+
+		m_levelsOffset = 8 * count;
+		m_offsetsOffset = m_levelsOffset + count;
+		m_infosOffset = m_offsetsOffset + 4 * (count+1);
+		m_infos = new SpatialClusterInfo[count];
+	}
+
+	static HdfsPath toIndexPath(HdfsPath clusterDir) {
+		return clusterDir.child(FILE_NAME);
+	}
+
+	/**
+	 * 주어진 클러스터 디렉토리의 인덱스 파일을 읽는다.
+	 * 인덱스 파일이 없거나, {@link SpatialClusterFile#CLUSTER_INDEX_FILE}보다 먼저 생성된 경우는
+	 * {@code null}을 반환한다.
+	 *
+	 * @param clusterDir	클러스터 디렉토리 경로.
+	 * @return	인덱스 객체
+	 */
+	static @Nullable SpatialClusterIndex load(HdfsPath clusterDir) {
+		HdfsPath path = toIndexPath(clusterDir);
+		try {
+			if ( !path.exists() ) {
+				return null;
+			}
+			HdfsPath infoPath = clusterDir.child(SpatialClusterFile.CLUSTER_INDEX_FILE);
+			if ( path.getFileStatus().getModificationTime()
+					< infoPath.getFileStatus().getModificationTime() ) {
+				return null;
+			}
+
+			try ( FSDataInputStream fsdis = path.open() ) {
+				if ( fsdis.readInt() != MAGIC ) {
+					return null;
+				}
+				int version = fsdis.readInt();
+				if ( version != VERSION ) {
+					return null;
+				}
+
+				GRecordSchema gschema = MarmotSerializers.readGRecordSchema(fsdis);
+				int count = fsdis.readInt();
+				long recordCount = fsdis.readLong();
+				long replicaCount = fsdis.readLong();
+				Envelope dataBounds = MarmotSerializers.ENVELOPE.deserialize(fsdis);
+				Envelope quadBounds = MarmotSerializers.ENVELOPE.deserialize(fsdis);
+				SpatialClusterInfo outlier = fsdis.readBoolean()
+											? SpatialClusterInfo.deserialize(fsdis) : null;
+
+				byte[] body = new byte[fsdis.readInt()];
+				fsdis.readFully(body);
+
+				return new SpatialClusterIndex(gschema, count, recordCount, replicaCount,
+												dataBounds, quadBounds, outlier, body);
+			}
+		}
+		catch ( IOException e ) {
+			throw new MarmotFileException("fails to read cluster index: path=" + path
+											+ ", cause=" + e);
+		}
+	}
+
+	static void store(HdfsPath clusterDir, GRecordSchema gschema,
+						Collection<SpatialClusterInfo> infos) {
+		SpatialClusterInfo outlier = null;
+		List<SpatialClusterInfo> sorted = Lists.newArrayList();
+		long recordCount = 0;
+		long replicaCount = 0;
+		Envelope dataBounds = new Envelope();
+		Envelope quadBounds = new Envelope();
+		for ( SpatialClusterInfo info: infos ) {
+			if ( info.quadKey().equals(Constants.QUADKEY_OUTLIER) ) {
+				outlier = info;
+			}
+			else {
+				Preconditions.checkArgument(MortonCodes.isEncodable(info.quadKey()),
+											"invalid quad-key: " + info.quadKey());
+				sorted.add(info);
+
+				quadBounds.expandToInclude(info.quadBounds());
+				dataBounds.expandToInclude(info.dataBounds());
+			}
+			recordCount += info.recordCount();
+			replicaCount += info.duplicateCount();
+		}
+		Collections.sort(sorted, Comparator.comparingLong(info -> MortonCodes.encode(info.quadKey())));
+
+		List<byte[]> infoBytes = FStream.from(sorted).map(MarmotSerializers::toBytes).toList();
+		int n = sorted.size();
+		int bodyLength = 8*n + n + 4*(n+1)
+						+ (int)FStream.from(infoBytes).mapToLong(b -> (long)b.length).sum();
+		ByteBuffer body = ByteBuffer.allocate(bodyLength);
+		for ( SpatialClusterInfo info: sorted ) {
+			body.putLong(MortonCodes.encode(info.quadKey()));
+		}
+		for ( SpatialClusterInfo info: sorted ) {
+			body.put((byte)info.quadKey().length());
+		}
+		int offset = 0;
+		for ( byte[] bytes: infoBytes ) {
+			body.putInt(offset);
+			offset += bytes.length;
+		}
+		body.putInt(offset);
+		for ( byte[] bytes: infoBytes ) {
+			body.put(bytes);
+		}
+
+		HdfsPath path = toIndexPath(clusterDir);
+		try ( FSDataOutputStream fsdos = path.create() ) {
+			fsdos.writeInt(MAGIC);
+			fsdos.writeInt(VERSION);
+			MarmotSerializers.writeGRecordSchema(gschema, fsdos);
+			fsdos.writeInt(n);	// outlier 클러스터는 body에 포함되지 않는다.
+			fsdos.writeLong(recordCount);
+			fsdos.writeLong(replicaCount);
+			MarmotSerializers.ENVELOPE.serialize(dataBounds, fsdos);
+			MarmotSerializers.ENVELOPE.serialize(quadBounds, fsdos);
+			fsdos.writeBoolean(outlier != null);
+			if ( outlier != null ) {
+				outlier.serialize(fsdos);
+			}
+			fsdos.writeInt(bodyLength);
+			fsdos.write(body.array());
+		}
+		catch ( IOException e ) {
+			throw new MarmotFileException("fails to write cluster index: path=" + path
+											+ ", cause=" + e);
+		}
+	}
+
+	GRecordSchema getGRecordSchema() {
+		return m_gschema;
+	}
+
+	int getClusterCount() {
+		return m_count + (m_outlier != null ? 1 : 0);
+	}
+
+	long getRecordCount() {
+		return m_recordCount;
+	}
+
+	long getReplicaCount() {
+		return m_replicaCount;
+	}
+
+	Envelope getDataBounds() {
+		return m_dataBounds;
+	}
+
+	Envelope getQuadBounds() {
+		return m_quadBounds;
+	}
+
+	@Nullable SpatialClusterInfo get(String quadKey) {
+		if ( quadKey.equals(Constants.QUADKEY_OUTLIER) ) {
+			return m_outlier;
+		}
+		int idx = m_keys.indexOf(quadKey);
+		return (idx >= 0) ? infoAt(idx) : null;
+	}
+
+	Set<String> getClusterKeyAll() {
+		Set<String> keys = Sets.newHashSetWithExpectedSize(getClusterCount());
+		for ( int i =0; i < m_count; ++i ) {
+			keys.add(MortonCodes.decode(keyAt(i), levelAt(i)));
+		}
+		if ( m_outlier != null ) {
+			keys.add(m_outlier.quadKey());
+		}
+		return Collections.unmodifiableSet(keys);
+	}
+
+	FStream<SpatialClusterInfo> getClusterInfoAll() {
+		FStream<SpatialClusterInfo> infos = FStream.range(0, m_count).map(this::infoAt);
+		return (m_outlier != null) ? infos.concatWith(FStream.of(m_outlier)) : infos;
+	}
+
+	/**
+	 * 주어진 영역과 타일이 겹치는 클러스터 정보들을 quad-key 순서로 반환한다.
+	 * Outlier 클러스터는 타일 영역이 없기 때문에 항상 포함된다.
+	 *
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	클러스터 정보 리스트
+	 */
+	List<SpatialClusterInfo> query(Envelope range84) {
+		List<SpatialClusterInfo> founds = Lists.newArrayList();
+		m_keys.query(range84, idx -> founds.add(infoAt(idx)));
+		if ( m_outlier != null ) {
+			founds.add(m_outlier);
+		}
+		return founds;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[nclusters=%d, nrecords=%d]", getClass().getSimpleName(),
+							getClusterCount(), m_recordCount);
+	}
+
+	private long keyAt(int idx) {
+		return m_body.getLong(8 * idx);
+	}
+
+	private int levelAt(int idx) {
+		return m_body.get(m_levelsOffset + idx);
+	}
+
+	private synchronized SpatialClusterInfo infoAt(int idx) {
+		SpatialClusterInfo info = m_infos[idx];
+		if ( info == null ) {
+			int start = m_body.getInt(m_offsetsOffset + 4*idx);
+			int end = m_body.getInt(m_offsetsOffset + 4*(idx+1));
+			ByteArrayInputStream bais = new ByteArrayInputStream(m_body.array(),
+																m_infosOffset + start, end - start);
+			info = SpatialClusterInfo.deserialize(new DataInputStream(bais));
+			m_infos[idx] = info;
+		}
+		return info;
+	}
+}
@@ -0,0 +1,115 @@
+package marmot.io.geo.cluster;
+
+import java.util.function.Predicate;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+import utils.Preconditions;
+
+import marmot.GRecordSchema;
+import marmot.Record;
+import marmot.geo.CoordinateTransform;
+import marmot.geo.GeoClientUtils;
+import marmot.optor.geo.cluster.Constants;
+
+
+/**
+ * 공간 클러스터를 적재하지 않고, 클러스터에 저장된 레코드들을 순차적으로 읽으면서
+ * 주어진 질의 영역과 겹치는 레코드를 선택하는 필터.
+ * <p>
+ * 선택 기준은 {@link QuadTreeSpatialCluster#queryRecord(Envelope, boolean)}와 동일하다.
+ * 복제본 제외가 요청된 경우, 레코드와 질의 영역이 겹치는 영역의 중심점이 클러스터 타일에 포함된
+ * 경우만 선택한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class SpatialClusterRangeFilter implements Predicate<Record> {
+	private final Envelope m_range;
+	private final Envelope m_range84;
+	private final boolean m_isOutlier;
+	private final boolean m_disjoint;
+	private final boolean m_rangeCoversData;
+	private final Envelope m_quadBounds;
+	private final boolean m_dropDuplicates;
+	private final int m_geomColIdx;
+	private final CoordinateTransform m_trans;
+	private final PreparedGeometry m_pkey;
+
+	/**
+	 * 필터 객체를 생성한다.
+	 *
+	 * @param scInfo			대상 클러스터 정보
+	 * @param gschema			클러스터 레코드 스키마
+	 * @param range				질의 영역. 레코드의 좌표계 사용
+	 * @param dropDuplicates	복제본 제외 여부
+	 */
+	public SpatialClusterRangeFilter(SpatialClusterInfo scInfo, GRecordSchema gschema,
+									Envelope range, boolean dropDuplicates) {
+		Preconditions.checkNotNullArgument(scInfo, "SpatialClusterInfo is null");
+		Preconditions.checkNotNullArgument(range, "range is null");
+
+		m_range = range;
+		m_isOutlier = scInfo.quadKey().equals(Constants.QUADKEY_OUTLIER);
+		m_quadBounds = scInfo.quadBounds();
+		m_dropDuplicates = dropDuplicates;
+		m_geomColIdx = gschema.getGeometryColumnIdx();
+		m_trans = CoordinateTransform.getTransformToWgs84(gschema.getSrid());
+		m_range84 = (m_trans != null) ? m_trans.transform(range) : range;
+		m_pkey = PreparedGeometryFactory.prepare(GeoClientUtils.toPolygon(range));
+
+		Envelope dataBounds = scInfo.dataBounds();
+		m_disjoint = m_isOutlier || dataBounds == null || !dataBounds.intersects(range);
+		m_rangeCoversData = !m_disjoint && range.covers(dataBounds);
+	}
+
+	/**
+	 * 클러스터의 모든 레코드가 질의 영역과 겹치지 않는지 여부를 반환한다.
+	 * {@code true}인 경우는 레코드를 읽을 필요가 없다.
+	 *
+	 * @return	겹치지 않는 경우는 {@code true}, 그렇지 않은 경우는 {@code false}.
+	 */
+	public boolean isDisjoint() {
+		return m_disjoint;
+	}
+
+	@Override
+	public boolean test(Record record) {
+		if ( m_disjoint ) {
+			return false;
+		}
+
+		Geometry geom = record.getGeometry(m_geomColIdx);
+		if ( geom == null || geom.isEmpty() ) {
+			return false;
+		}
+
+		Envelope mbr = geom.getEnvelopeInternal();
+		if ( !m_rangeCoversData ) {
+			if ( !m_range.intersects(mbr) || !m_pkey.intersects(geom) ) {
+				return false;
+			}
+		}
+
+		if ( m_dropDuplicates ) {
+			// duplication 여부는 공간 객체를 EPSG:4326좌표계로 변환하여 확인한다.
+			Envelope mbr84 = (m_trans != null) ? m_trans.transform(mbr) : mbr;
+			Envelope overlap = m_range84.intersection(mbr84);
+			// EPSG:4326 좌표계에서는 겹치지 않는 경우도 발생하기 때문에 한번 더 확인한다.
+			if ( overlap.isNull() ) {
+				return false;
+			}
+			return m_quadBounds.contains(overlap.centre());
+		}
+
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[range=%s, drop_duplicates=%s]", getClass().getSimpleName(),
+							m_range, m_dropDuplicates);
+	}
+}
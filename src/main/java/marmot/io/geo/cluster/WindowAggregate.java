@@ -0,0 +1,166 @@
+package marmot.io.geo.cluster;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.jts.geom.Envelope;
+
+import utils.Preconditions;
+
+import marmot.Record;
+import marmot.RecordSchema;
+
+
+/**
+ * 주어진 질의 영역에 포함된 레코드들에 대한 집계(레코드 수, 영역, 컬럼별 합계) 결과.
+ * <p>
+ * 질의 영역에 완전히 포함된 클러스터는 인덱스에 기록된 메타데이터(레코드 수, 데이터 영역)만으로
+ * 집계되고, 질의 영역의 경계에 걸친 클러스터만 적재되어 집계된다.
+ * 컬럼별 합계는 인덱스에 기록되어 있지 않기 때문에, 합계 컬럼이 지정된 경우는
+ * 모든 클러스터를 적재하여 집계한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class WindowAggregate {
+	private final String[] m_sumCols;
+	private final int[] m_sumColIdxes;
+	private final double[] m_sums;
+	private long m_count = 0;
+	private final Envelope m_bounds84 = new Envelope();
+	private int m_metaClusterCount = 0;
+	private int m_scanClusterCount = 0;
+
+	/**
+	 * 집계 객체를 생성한다.
+	 *
+	 * @param schema	집계 대상 레코드의 스키마.
+	 * @param sumCols	합계를 구할 컬럼 이름들.
+	 */
+	public WindowAggregate(RecordSchema schema, String... sumCols) {
+		Preconditions.checkNotNullArgument(schema, "schema is null");
+
+		m_sumCols = sumCols;
+		m_sumColIdxes = Arrays.stream(sumCols)
+								.mapToInt(col -> schema.getColumn(col).ordinal())
+								.toArray();
+		m_sums = new double[sumCols.length];
+	}
+
+	/**
+	 * 질의 영역에 포함된 레코드의 수를 반환한다.
+	 *
+	 * @return	레코드 수
+	 */
+	public long count() {
+		return m_count;
+	}
+
+	/**
+	 * 질의 영역에 포함된 레코드들의 MBR을 반환한다. 반환되는 MBR은 EPSG:4326 좌표계를 사용한다.
+	 *
+	 * @return	MBR
+	 */
+	public Envelope bounds84() {
+		return m_bounds84;
+	}
+
+	/**
+	 * 주어진 컬럼의 합계를 반환한다.
+	 *
+	 * @param column	합계 컬럼 이름.
+	 * @return	합계
+	 */
+	public double sum(String column) {
+		for ( int i =0; i < m_sumCols.length; ++i ) {
+			if ( m_sumCols[i].equals(column) ) {
+				return m_sums[i];
+			}
+		}
+		throw new IllegalArgumentException("not sum column: " + column);
+	}
+
+	public List<String> getSumColumns() {
+		return Arrays.asList(m_sumCols);
+	}
+
+	public boolean hasSumColumns() {
+		return m_sumCols.length > 0;
+	}
+
+	/**
+	 * 메타데이터만으로 집계된 클러스터의 수를 반환한다.
+	 *
+	 * @return	클러스터 수
+	 */
+	public int getMetadataClusterCount() {
+		return m_metaClusterCount;
+	}
+
+	/**
+	 * 적재되어 집계된 클러스터의 수를 반환한다.
+	 *
+	 * @return	클러스터 수
+	 */
+	public int getScannedClusterCount() {
+		return m_scanClusterCount;
+	}
+
+	/**
+	 * 질의 영역에 완전히 포함된 클러스터의 메타데이터를 집계에 반영한다.
+	 *
+	 * @param ownedCount	클러스터 소유 레코드 수.
+	 * @param dataBounds84	클러스터 데이터 영역. EPSG:4326 좌표계 사용
+	 */
+	public void accumulateCluster(long ownedCount, Envelope dataBounds84) {
+		Preconditions.checkState(!hasSumColumns(), "sum columns cannot be answered from metadata");
+
+		m_count += ownedCount;
+		m_bounds84.expandToInclude(dataBounds84);
+		++m_metaClusterCount;
+	}
+
+	/**
+	 * 질의 영역에 포함된 레코드를 집계에 반영한다.
+	 *
+	 * @param mbr84		레코드 공간 객체의 MBR. EPSG:4326 좌표계 사용
+	 * @param record	레코드 객체. 합계 컬럼이 없는 경우는 {@code null}일 수 있다.
+	 */
+	public void accumulate(Envelope mbr84, @Nullable Record record) {
+		++m_count;
+		m_bounds84.expandToInclude(mbr84);
+
+		for ( int i =0; i < m_sumColIdxes.length; ++i ) {
+			Object value = record.get(m_sumColIdxes[i]);
+			if ( value != null ) {
+				m_sums[i] += ((Number)value).doubleValue();
+			}
+		}
+	}
+
+	/**
+	 * 질의 영역에 완전히 포함된 클러스터 QuadTree 단말노드의 메타데이터를 집계에 반영한다.
+	 * 단말노드의 모든 레코드가 클러스터 소유이고 다른 단말노드와 공유되지 않는 경우에만 사용된다.
+	 *
+	 * @param count			단말노드의 레코드 수.
+	 * @param dataBounds84	단말노드 데이터 영역. EPSG:4326 좌표계 사용
+	 */
+	void accumulateLeaf(long count, Envelope dataBounds84) {
+		Preconditions.checkState(!hasSumColumns(), "sum columns cannot be answered from metadata");
+
+		m_count += count;
+		m_bounds84.expandToInclude(dataBounds84);
+	}
+
+	void markScanned() {
+		++m_scanClusterCount;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[count=%d, bounds=%s, clusters(meta/scan)=%d/%d]",
+							getClass().getSimpleName(), m_count, m_bounds84,
+							m_metaClusterCount, m_scanClusterCount);
+	}
+}
@@ -0,0 +1,195 @@
+package marmot.io.geo.index;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
+
+
+/**
+ * 클러스터들을 pack 파일들에 배치하는 계획을 수립하는 클래스.
+ * <p>
+ * 클러스터들은 quad-key 순서로 주어진다고 가정하고, 공간적으로 인접한 클러스터들이
+ * 같은 pack 파일의 인접한 위치에 저장되도록 순서대로 배치한다. 배치시 다음 조건을 따른다.
+ * <ul>
+ * <li> 블럭 크기 이하의 클러스터는 HDFS 블럭 경계에 걸치지 않도록 배치된다.
+ * 		현재 블럭의 남은 공간이 부족한 경우는 다음 블럭의 시작 위치에 배치한다.
+ * <li> 블럭의 남은 공간이 많은 경우(블럭 사용률이 목표 사용률 미만인 경우)에는
+ * 		뒤따르는 일정 수의 클러스터들 중 남은 공간에 들어가는 클러스터를 먼저 배치한다.
+ * <li> 블럭 크기보다 큰 클러스터는 블럭 시작 위치에 배치한다.
+ * <li> 하나의 pack 파일은 지정된 수의 블럭을 채우면 닫히고, 새 pack 파일이 시작된다.
+ * </ul>
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class ClusterPackPlanner {
+	public static final int DEFAULT_PACK_BLOCK_COUNT = 8;
+	public static final double DEFAULT_BLOCK_UTILIZATION = 0.9;
+	public static final int DEFAULT_LOOKAHEAD = 32;
+
+	private final long m_blockSize;
+	private final int m_packBlockCount;
+	private final double m_utilization;
+	private final int m_lookahead;
+
+	/**
+	 * 클러스터 하나의 배치 정보.
+	 */
+	public static final class Placement {
+		private final int m_index;
+		private final int m_packNo;
+		private final long m_start;
+		private final long m_length;
+
+		Placement(int index, int packNo, long start, long length) {
+			m_index = index;
+			m_packNo = packNo;
+			m_start = start;
+			m_length = length;
+		}
+
+		/**
+		 * 배치된 클러스터의 (입력 리스트에서의) 순번을 반환한다.
+		 *
+		 * @return	클러스터 순번
+		 */
+		public int index() {
+			return m_index;
+		}
+
+		/**
+		 * 클러스터가 배치된 pack 파일의 번호를 반환한다.
+		 *
+		 * @return	pack 번호
+		 */
+		public int packNo() {
+			return m_packNo;
+		}
+
+		/**
+		 * pack 파일 내에서 클러스터가 시작되는 위치를 반환한다.
+		 *
+		 * @return	시작 위치
+		 */
+		public long start() {
+			return m_start;
+		}
+
+		public long length() {
+			return m_length;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("cluster[%d]: pack=%d, start=%d, length=%d",
+								m_index, m_packNo, m_start, m_length);
+		}
+	}
+
+	public ClusterPackPlanner(long blockSize) {
+		this(blockSize, DEFAULT_PACK_BLOCK_COUNT, DEFAULT_BLOCK_UTILIZATION, DEFAULT_LOOKAHEAD);
+	}
+
+	/**
+	 * 배치 계획 수립 객체를 생성한다.
+	 *
+	 * @param blockSize			pack 파일의 HDFS 블럭 크기.
+	 * @param packBlockCount	하나의 pack 파일을 구성하는 블럭 수.
+	 * @param utilization		블럭별 목표 사용률 (0~1).
+	 * @param lookahead			블럭의 남은 공간을 채우기 위해 검사할 후속 클러스터 수.
+	 */
+	public ClusterPackPlanner(long blockSize, int packBlockCount, double utilization,
+								int lookahead) {
+		Preconditions.checkArgument(blockSize > 0, "invalid block size: " + blockSize);
+		Preconditions.checkArgument(packBlockCount > 0, "invalid pack block count: " + packBlockCount);
+		Preconditions.checkArgument(utilization >= 0 && utilization <= 1,
+									"invalid utilization: " + utilization);
+		Preconditions.checkArgument(lookahead >= 0, "invalid lookahead: " + lookahead);
+
+		m_blockSize = blockSize;
+		m_packBlockCount = packBlockCount;
+		m_utilization = utilization;
+		m_lookahead = lookahead;
+	}
+
+	public long getBlockSize() {
+		return m_blockSize;
+	}
+
+	/**
+	 * 주어진 크기의 클러스터들의 배치 계획을 수립한다.
+	 * 반환되는 배치 정보들은 pack 번호와 시작 위치 순서로 정렬되어 있다.
+	 *
+	 * @param lengths	quad-key 순서로 정렬된 클러스터들의 크기.
+	 * @return	배치 정보 리스트
+	 */
+	public List<Placement> plan(long[] lengths) {
+		LinkedList<Integer> pendings = Lists.newLinkedList();
+		for ( int i =0; i < lengths.length; ++i ) {
+			pendings.add(i);
+		}
+
+		List<Placement> placements = Lists.newArrayListWithCapacity(lengths.length);
+		long packSize = m_blockSize * m_packBlockCount;
+		int packNo = 0;
+		long pos = 0;
+		while ( !pendings.isEmpty() ) {
+			if ( pos >= packSize ) {
+				++packNo;
+				pos = 0;
+			}
+
+			long remains = m_blockSize - (pos % m_blockSize);
+			int idx = pendings.getFirst();
+			long length = lengths[idx];
+			if ( length > remains ) {
+				int filler = (length <= m_blockSize) ? findFiller(pendings, lengths, pos, remains) : -1;
+				if ( filler >= 0 ) {
+					idx = filler;
+					length = lengths[idx];
+				}
+				else if ( pos % m_blockSize != 0 ) {
+					// 남은 공간을 비워두고 다음 블럭으로 이동한다.
+					pos += remains;
+					continue;
+				}
+			}
+			pendings.remove((Integer)idx);
+
+			placements.add(new Placement(idx, packNo, pos, length));
+			pos += length;
+		}
+
+		return placements;
+	}
+
+	/**
+	 * 현재 블럭의 사용률이 목표에 미달하는 경우, 뒤따르는 클러스터들 중에서
+	 * 남은 공간에 들어가는 가장 큰 클러스터를 찾는다.
+	 */
+	private int findFiller(LinkedList<Integer> pendings, long[] lengths, long pos, long remains) {
+		long used = pos % m_blockSize;
+		if ( used == 0 || used >= m_blockSize * m_utilization ) {
+			return -1;
+		}
+
+		int filler = -1;
+		ListIterator<Integer> iter = pendings.listIterator(1);
+		for ( int i =0; i < m_lookahead && iter.hasNext(); ++i ) {
+			int idx = iter.next();
+			if ( lengths[idx] <= remains && (filler < 0 || lengths[idx] > lengths[filler]) ) {
+				filler = idx;
+			}
+		}
+		return filler;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[block=%d, nblocks=%d, utilization=%.2f]", getClass().getSimpleName(),
+							m_blockSize, m_packBlockCount, m_utilization);
+	}
+}
@@ -0,0 +1,434 @@
+package marmot.io.geo.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import utils.Preconditions;
+
+import marmot.GRecordSchema;
+import marmot.io.geo.quadtree.MortonCodes;
+import marmot.io.geo.quadtree.SortedMortonKeys;
+import marmot.io.serializer.MarmotSerializers;
+
+
+/**
+ * 고정 길이 엔트리로 구성된 전역 인덱스 파일 (version 2 이후) 포맷을 다루는 클래스.
+ * <p>
+ * 파일은 다음과 같이 구성된다.
+ * <pre>
+ * header:	magic(int), version(int), path, record-schema,
+ * 			pack-id 테이블, 엔트리 수, 전체 레코드 수, 전체 소유 레코드 수,
+ * 			클러스터 타일들의 MBR, 최상위 quad-key
+ * keys:	Morton 코드로 변환된 quad-key 배열 (long[n], 오름차순 정렬)
+ * entries:	고정 길이({@value #ENTRY_SIZE} bytes) 엔트리 배열 (keys와 동일 순서)
+ * histogram:	{@link SpatialHistogram} (version 3 이후)
+ * occupancy:	blob 길이(int), 엔트리별 {@link OccupancyBitmap} 시작 위치(int[n+1]),
+ * 			직렬화된 비트맵들. 비트맵이 없는 엔트리는 길이가 0이다. (version 4 이후)
+ * histograms:	blob 길이(int), 엔트리별 클러스터 {@link SpatialHistogram} 시작 위치(int[n+1]),
+ * 			직렬화된 히스토그램들. 히스토그램이 없는 엔트리는 길이가 0이다. (version 5 이후)
+ * </pre>
+ * 파일을 열 때는 header만 해석하고 나머지 부분은 한번에 읽어 byte 배열로 유지하며,
+ * 개별 {@link GlobalIndexEntry} 객체는 접근될 때 생성된다.
+ * 클러스터 quad-key들은 서로 prefix 관계가 없기 때문에 동일 prefix를 갖는 클러스터들은
+ * key 배열에서 연속된 구간을 차지한다. 따라서 별도의 노드 정보 없이 key 배열에 대한
+ * 이진 검색만으로 quad-tree 탐색을 수행한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class CompactGlobalIndex {
+	static final int MAGIC = 0x4D474958;	// "MGIX"
+	static final int VERSION = 5;
+
+	private static final int KEY_SIZE = 8;
+	// level(1) + pack_idx(4) + block_no(4) + data_bounds(8*4) + count(4) + owned_count(4)
+	// + start(8) + length(8)
+	private static final int ENTRY_SIZE = 65;
+
+	private final String m_path;
+	private final GRecordSchema m_gschema;
+	private final String[] m_packIds;
+	private final int m_count;
+	private final long m_recordCount;
+	private final long m_ownedRecordCount;
+	private final Envelope m_tileUnion;
+	private final String m_rootQuadKey;
+	private final ByteBuffer m_body;
+	@Nullable private final SpatialHistogram m_histogram;
+	@Nullable private final int[] m_occupancyOffsets;
+	@Nullable private final byte[] m_occupancies;
+	@Nullable private final int[] m_histogramOffsets;
+	@Nullable private final byte[] m_histograms;
+	private final SortedMortonKeys m_keys = new SortedMortonKeys() {
+		@Override
+		protected int size() {
+			return m_count;
+		}
+
+		@Override
+		protected long keyAt(int idx) {
+			return CompactGlobalIndex.this.keyAt(idx);
+		}
+
+		@Override
+		protected int levelAt(int idx) {
+			return CompactGlobalIndex.this.levelAt(idx);
+		}
+	};
+
+	private CompactGlobalIndex(String path, GRecordSchema gschema, String[] packIds, int count,
+								long recordCount, long ownedRecordCount, Envelope tileUnion,
+								String rootQuadKey, ByteBuffer body,
+								@Nullable SpatialHistogram histogram,
+								@Nullable int[] occupancyOffsets, @Nullable byte[] occupancies,
+								@Nullable int[] histogramOffsets, @Nullable byte[] histograms) {
+		m_path = path;
+		m_gschema = gschema;
+		m_packIds = packIds;
+		m_count = count;
+		m_recordCount = recordCount;
+		m_ownedRecordCount = ownedRecordCount;
+		m_tileUnion = tileUnion;
+		m_rootQuadKey = rootQuadKey;
+		m_body = body;
+		m_histogram = histogram;
+		m_occupancyOffsets = occupancyOffsets;
+		m_occupancies = occupancies;
+		m_histogramOffsets = histogramOffsets;
+		m_histograms = histograms;
+	}
+
+	String getPath() {
+		return m_path;
+	}
+
+	GRecordSchema getGRecordSchema() {
+		return m_gschema;
+	}
+
+	int getClusterCount() {
+		return m_count;
+	}
+
+	long getRecordCount() {
+		return m_recordCount;
+	}
+
+	long getOwnedRecordCount() {
+		return m_ownedRecordCount;
+	}
+
+	Envelope getTileUnion() {
+		return m_tileUnion;
+	}
+
+	String getRootQuadKey() {
+		return m_rootQuadKey;
+	}
+
+	/**
+	 * 인덱스 파일에 저장된 히스토그램을 반환한다.
+	 * Version 2 파일의 경우는 히스토그램이 저장되지 않기 때문에 {@code null}을 반환한다.
+	 *
+	 * @return	히스토그램
+	 */
+	@Nullable SpatialHistogram getHistogram() {
+		return m_histogram;
+	}
+
+	@Nullable GlobalIndexEntry get(String quadKey) {
+		int idx = m_keys.indexOf(quadKey);
+		return (idx >= 0) ? entryAt(idx) : null;
+	}
+
+	List<GlobalIndexEntry> getEntryAll() {
+		List<GlobalIndexEntry> entries = Lists.newArrayListWithCapacity(m_count);
+		for ( int i =0; i < m_count; ++i ) {
+			entries.add(entryAt(i));
+		}
+		return entries;
+	}
+
+	List<String> getQuadKeyAll() {
+		List<String> keys = Lists.newArrayListWithCapacity(m_count);
+		for ( int i =0; i < m_count; ++i ) {
+			keys.add(MortonCodes.decode(keyAt(i), levelAt(i)));
+		}
+		return keys;
+	}
+
+	/**
+	 * 주어진 영역과 타일이 겹치는 클러스터 인덱스들을 quad-key 순서로 반환한다.
+	 *
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	클러스터 인덱스 리스트
+	 */
+	List<GlobalIndexEntry> query(Envelope range84) {
+		List<GlobalIndexEntry> founds = Lists.newArrayList();
+		m_keys.query(range84, idx -> founds.add(entryAt(idx)));
+		return founds;
+	}
+
+	/**
+	 * 주어진 클러스터 인덱스들을 본 포맷으로 기록할 수 있는지 여부를 반환한다.
+	 * 모든 quad-key는 {@value MortonCodes#MAX_LEVEL} 이하 길이의 '0'~'3' 문자로만 구성되어야 한다.
+	 *
+	 * @param entries	클러스터 인덱스 리스트
+	 * @return	기록 가능 여부
+	 */
+	static boolean isWritable(List<GlobalIndexEntry> entries) {
+		for ( GlobalIndexEntry entry: entries ) {
+			if ( !MortonCodes.isEncodable(entry.quadKey()) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static CompactGlobalIndex read(DataInput in) throws IOException {
+		int version = in.readInt();
+		if ( version < 2 || version > VERSION ) {
+			throw new IOException("unsupported cluster index version: " + version);
+		}
+
+		String path = MarmotSerializers.readString(in);
+		GRecordSchema gschema = MarmotSerializers.readGRecordSchema(in);
+
+		String[] packIds = new String[in.readInt()];
+		for ( int i =0; i < packIds.length; ++i ) {
+			packIds[i] = MarmotSerializers.readString(in);
+		}
+
+		int count = in.readInt();
+		long recordCount = in.readLong();
+		long ownedRecordCount = in.readLong();
+		Envelope tileUnion = readEnvelope(in);
+		String rootQuadKey = MarmotSerializers.readString(in);
+
+		byte[] body = new byte[count * (KEY_SIZE + ENTRY_SIZE)];
+		in.readFully(body);
+
+		SpatialHistogram histogram = (version >= 3) ? SpatialHistogram.deserialize(in) : null;
+
+		int[] occupancyOffsets = null;
+		byte[] occupancies = null;
+		if ( version >= 4 ) {
+			occupancies = new byte[in.readInt()];
+			occupancyOffsets = readOffsets(in, count);
+			in.readFully(occupancies);
+		}
+
+		int[] histogramOffsets = null;
+		byte[] histograms = null;
+		if ( version >= 5 ) {
+			histograms = new byte[in.readInt()];
+			histogramOffsets = readOffsets(in, count);
+			in.readFully(histograms);
+		}
+
+		return new CompactGlobalIndex(path, gschema, packIds, count, recordCount,
+										ownedRecordCount, tileUnion, rootQuadKey,
+										ByteBuffer.wrap(body), histogram, occupancyOffsets,
+										occupancies, histogramOffsets, histograms);
+	}
+
+	static void write(String path, GRecordSchema gschema, List<GlobalIndexEntry> entries,
+						SpatialHistogram histogram, DataOutput out) throws IOException {
+		Preconditions.checkArgument(isWritable(entries), "invalid quad-key in cluster indexes");
+
+		List<GlobalIndexEntry> sorted = Lists.newArrayList(entries);
+		Collections.sort(sorted, Comparator.comparingLong(ent -> MortonCodes.encode(ent.quadKey())));
+
+		Map<String,Integer> packIdxes = Maps.newLinkedHashMap();
+		long recordCount = 0;
+		long ownedRecordCount = 0;
+		Envelope tileUnion = new Envelope();
+		String rootQuadKey = null;
+		for ( GlobalIndexEntry entry: sorted ) {
+			packIdxes.computeIfAbsent(entry.packId(), k -> packIdxes.size());
+			recordCount += entry.getRecordCount();
+			ownedRecordCount += entry.getOwnedRecordCount();
+			tileUnion.expandToInclude(entry.getTileBounds());
+			rootQuadKey = (rootQuadKey != null) ? commonPrefix(rootQuadKey, entry.quadKey())
+												: entry.quadKey();
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		MarmotSerializers.writeString(path, out);
+		MarmotSerializers.writeGRecordSchema(gschema, out);
+
+		out.writeInt(packIdxes.size());
+		for ( String packId: packIdxes.keySet() ) {
+			MarmotSerializers.writeString(packId, out);
+		}
+
+		out.writeInt(sorted.size());
+		out.writeLong(recordCount);
+		out.writeLong(ownedRecordCount);
+		writeEnvelope(tileUnion, out);
+		MarmotSerializers.writeString(rootQuadKey != null ? rootQuadKey : "", out);
+
+		for ( GlobalIndexEntry entry: sorted ) {
+			out.writeLong(MortonCodes.encode(entry.quadKey()));
+		}
+		for ( GlobalIndexEntry entry: sorted ) {
+			out.writeByte(entry.quadKey().length());
+			out.writeInt(packIdxes.get(entry.packId()));
+			out.writeInt(entry.blockNo());
+			writeEnvelope(entry.getDataBounds(), out);
+			out.writeInt(entry.getRecordCount());
+			out.writeInt(entry.getOwnedRecordCount());
+			out.writeLong(entry.start());
+			out.writeLong(entry.length());
+		}
+		histogram.serialize(out);
+
+		List<byte[]> occupancies = Lists.newArrayListWithCapacity(sorted.size());
+		List<byte[]> histograms = Lists.newArrayListWithCapacity(sorted.size());
+		for ( GlobalIndexEntry entry: sorted ) {
+			OccupancyBitmap occupancy = entry.getOccupancy();
+			occupancies.add((occupancy != null) ? MarmotSerializers.toBytes(occupancy) : new byte[0]);
+
+			SpatialHistogram hist = entry.getHistogram();
+			histograms.add((hist != null) ? MarmotSerializers.toBytes(hist) : new byte[0]);
+		}
+		writeBlobs(occupancies, out);
+		writeBlobs(histograms, out);
+	}
+
+	private static int[] readOffsets(DataInput in, int count) throws IOException {
+		int[] offsets = new int[count+1];
+		for ( int i =0; i <= count; ++i ) {
+			offsets[i] = in.readInt();
+		}
+		return offsets;
+	}
+
+	private static void writeBlobs(List<byte[]> blobs, DataOutput out) throws IOException {
+		int total = 0;
+		for ( byte[] bytes: blobs ) {
+			total += bytes.length;
+		}
+		out.writeInt(total);
+
+		int offset = 0;
+		out.writeInt(offset);
+		for ( byte[] bytes: blobs ) {
+			offset += bytes.length;
+			out.writeInt(offset);
+		}
+		for ( byte[] bytes: blobs ) {
+			out.write(bytes);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[path=%s, nclusters=%d]", getClass().getSimpleName(),
+							m_path, m_count);
+	}
+
+	private long keyAt(int idx) {
+		return m_body.getLong(idx * KEY_SIZE);
+	}
+
+	private int entryOffset(int idx) {
+		return m_count * KEY_SIZE + idx * ENTRY_SIZE;
+	}
+
+	private int levelAt(int idx) {
+		return m_body.get(entryOffset(idx));
+	}
+
+	private GlobalIndexEntry entryAt(int idx) {
+		int offset = entryOffset(idx);
+
+		String quadKey = MortonCodes.decode(keyAt(idx), m_body.get(offset));
+		String packId = m_packIds[m_body.getInt(offset + 1)];
+		int blockNo = m_body.getInt(offset + 5);
+		Envelope dataBounds = toEnvelope(m_body.getDouble(offset + 9), m_body.getDouble(offset + 17),
+										m_body.getDouble(offset + 25), m_body.getDouble(offset + 33));
+		int count = m_body.getInt(offset + 41);
+		int ownedCount = m_body.getInt(offset + 45);
+		long start = m_body.getLong(offset + 49);
+		long length = m_body.getLong(offset + 57);
+
+		GlobalIndexEntry entry = new GlobalIndexEntry(packId, blockNo, quadKey, dataBounds, count,
+														ownedCount, start, length);
+		entry.setOccupancy(occupancyAt(idx));
+		entry.setHistogram(histogramAt(idx));
+		return entry;
+	}
+
+	private @Nullable OccupancyBitmap occupancyAt(int idx) {
+		if ( m_occupancyOffsets == null ) {
+			return null;
+		}
+
+		int from = m_occupancyOffsets[idx];
+		int to = m_occupancyOffsets[idx+1];
+		if ( from == to ) {
+			return null;
+		}
+		return MarmotSerializers.fromBytes(m_occupancies, from, to - from,
+											OccupancyBitmap::deserialize);
+	}
+
+	private @Nullable SpatialHistogram histogramAt(int idx) {
+		if ( m_histogramOffsets == null ) {
+			return null;
+		}
+
+		int from = m_histogramOffsets[idx];
+		int to = m_histogramOffsets[idx+1];
+		if ( from == to ) {
+			return null;
+		}
+		return MarmotSerializers.fromBytes(m_histograms, from, to - from,
+											SpatialHistogram::deserialize);
+	}
+
+	private static String commonPrefix(String k1, String k2) {
+		int len = Math.min(k1.length(), k2.length());
+		int i = 0;
+		while ( i < len && k1.charAt(i) == k2.charAt(i) ) {
+			++i;
+		}
+		return k1.substring(0, i);
+	}
+
+	private static void writeEnvelope(Envelope envl, DataOutput out) throws IOException {
+		if ( envl == null || envl.isNull() ) {
+			for ( int i =0; i < 4; ++i ) {
+				out.writeDouble(Double.NaN);
+			}
+		}
+		else {
+			out.writeDouble(envl.getMinX());
+			out.writeDouble(envl.getMaxX());
+			out.writeDouble(envl.getMinY());
+			out.writeDouble(envl.getMaxY());
+		}
+	}
+
+	private static Envelope readEnvelope(DataInput in) throws IOException {
+		return toEnvelope(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+	}
+
+	private static Envelope toEnvelope(double minX, double maxX, double minY, double maxY) {
+		return Double.isNaN(minX) ? new Envelope() : new Envelope(minX, maxX, minY, maxY);
+	}
+}
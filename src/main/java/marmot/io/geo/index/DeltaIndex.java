@@ -0,0 +1,183 @@
+package marmot.io.geo.index;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import utils.Preconditions;
+import utils.stream.FStream;
+
+import marmot.io.HdfsPath;
+import marmot.io.MarmotFileException;
+import marmot.io.serializer.MarmotSerializers;
+
+/**
+ * 기존 공간 인덱스 파일에 추가된 (아직 병합되지 않은) delta 클러스터들의 인덱스.
+ * <p>
+ * 동일 quad-key에 대해 여러 번 추가가 발생할 수 있기 때문에, 하나의 quad-key에
+ * 복수 개의 {@link GlobalIndexEntry}가 대응될 수 있다.
+ * Delta 인덱스는 클러스터 디렉토리의 {@value #DELTA_INDEX_FILE_NAME} 파일에 저장된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class DeltaIndex {
+	public static final String DELTA_INDEX_FILE_NAME = "cluster.delta.idx";
+	public static final String DELTA_PACK_PREFIX = "delta_";
+
+	private final HdfsPath m_path;
+	private final List<GlobalIndexEntry> m_entries;
+	private final Map<String,List<GlobalIndexEntry>> m_entryMap;
+
+	public static HdfsPath toDeltaIndexPath(HdfsPath clusterDir) {
+		return clusterDir.child(DELTA_INDEX_FILE_NAME);
+	}
+
+	/**
+	 * 주어진 클러스터 디렉토리의 delta 인덱스를 읽는다.
+	 * Delta 인덱스 파일이 없는 경우는 빈 인덱스를 반환한다.
+	 *
+	 * @param clusterDir	클러스터 디렉토리 경로.
+	 * @return	delta 인덱스
+	 */
+	public static DeltaIndex load(HdfsPath clusterDir) {
+		Preconditions.checkNotNullArgument(clusterDir, "clusterDir is null");
+
+		HdfsPath path = toDeltaIndexPath(clusterDir);
+		if ( !path.exists() ) {
+			return new DeltaIndex(path, Lists.newArrayList());
+		}
+
+		try ( FSDataInputStream fsdis = path.open() ) {
+			List<GlobalIndexEntry> entries = MarmotSerializers.readList(fsdis,
+																GlobalIndexEntry::deserialize);
+			readHistograms(fsdis, entries);
+			return new DeltaIndex(path, entries);
+		}
+		catch ( IOException e ) {
+			throw new MarmotFileException("fails to read delta index: path=" + path + ", cause=" + e);
+		}
+	}
+
+	private DeltaIndex(HdfsPath path, List<GlobalIndexEntry> entries) {
+		m_path = path;
+		m_entries = entries;
+		m_entryMap = Maps.newHashMap();
+		entries.forEach(this::register);
+	}
+
+	public HdfsPath getPath() {
+		return m_path;
+	}
+
+	public boolean isEmpty() {
+		return m_entries.isEmpty();
+	}
+
+	public List<GlobalIndexEntry> getIndexEntryAll() {
+		return Collections.unmodifiableList(m_entries);
+	}
+
+	public Set<String> getClusterKeyAll() {
+		return Collections.unmodifiableSet(m_entryMap.keySet());
+	}
+
+	/**
+	 * 주어진 quad-key에 해당하는 delta 클러스터들의 인덱스 리스트를 반환한다.
+	 *
+	 * @param quadKey	대상 quad-key
+	 * @return	delta 클러스터 인덱스 리스트. 해당 delta가 없는 경우는 빈 리스트.
+	 */
+	public List<GlobalIndexEntry> get(String quadKey) {
+		return m_entryMap.getOrDefault(quadKey, Collections.emptyList());
+	}
+
+	public long getRecordCount() {
+		return FStream.from(m_entries).mapToLong(ent -> (long)ent.getRecordCount()).sum();
+	}
+
+	public long getOwnedRecordCount() {
+		return FStream.from(m_entries).mapToLong(ent -> (long)ent.getOwnedRecordCount()).sum();
+	}
+
+	/**
+	 * 주어진 영역과 겹치는 delta 클러스터들의 quad-key를 반환한다.
+	 * Delta 클러스터의 수는 기본 클러스터에 비해 매우 작은 것으로 가정하여 순차 검색한다.
+	 *
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	quad-key 스트림
+	 */
+	public FStream<String> queryClusterKeys(Envelope range84) {
+		return FStream.from(m_entryMap.entrySet())
+						.filter(ent -> ent.getValue().get(0).getTileBounds().intersects(range84))
+						.map(ent -> ent.getKey());
+	}
+
+	void addAll(List<GlobalIndexEntry> entries) {
+		m_entries.addAll(entries);
+		entries.forEach(this::register);
+	}
+
+	void clear() {
+		m_entries.clear();
+		m_entryMap.clear();
+	}
+
+	void store() {
+		if ( m_entries.isEmpty() ) {
+			m_path.delete();
+			return;
+		}
+
+		try ( FSDataOutputStream fsdos = m_path.create() ) {
+			MarmotSerializers.writeList(m_entries, fsdos);
+
+			// 클러스터별 히스토그램은 인덱스 리스트 뒤에 인덱스 순서대로 기록한다.
+			for ( GlobalIndexEntry entry: m_entries ) {
+				SpatialHistogram hist = entry.getHistogram();
+				fsdos.writeBoolean(hist != null);
+				if ( hist != null ) {
+					hist.serialize(fsdos);
+				}
+			}
+		}
+		catch ( IOException e ) {
+			throw new MarmotFileException("fails to write delta index: path=" + m_path
+											+ ", cause=" + e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[path=%s, nclusters=%d, nentries=%d]", getClass().getSimpleName(),
+							m_path, m_entryMap.size(), m_entries.size());
+	}
+
+	private static void readHistograms(DataInput in, List<GlobalIndexEntry> entries)
+		throws IOException {
+		try {
+			for ( GlobalIndexEntry entry: entries ) {
+				if ( in.readBoolean() ) {
+					entry.setHistogram(SpatialHistogram.deserialize(in));
+				}
+			}
+		}
+		catch ( EOFException e ) {
+			// 클러스터별 히스토그램이 기록되지 않은 이전 형식의 파일
+		}
+	}
+
+	private void register(GlobalIndexEntry entry) {
+		m_entryMap.computeIfAbsent(entry.quadKey(), k -> Lists.newArrayList()).add(entry);
+	}
+}
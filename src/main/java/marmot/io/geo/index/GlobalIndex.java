@@ -14,6 +14,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
@@ -21,22 +23,31 @@ import org.locationtech.jts.geom.Envelope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 import marmot.GRecordSchema;
 import marmot.io.HdfsPath;
 import marmot.io.MarmotFileException;
 import marmot.io.MarmotSequenceFile;
+import marmot.io.geo.cluster.QueryRegion;
 import marmot.io.geo.quadtree.Partition;
 import marmot.io.geo.quadtree.Pointer;
 import marmot.io.geo.quadtree.QuadTree;
 import marmot.io.geo.quadtree.QuadTreeBuilder;
+import marmot.io.geo.quadtree.QuadTreeCursor;
 import marmot.io.geo.quadtree.QuadTreeJoinMatcher;
 import marmot.io.serializer.MarmotSerializable;
 import marmot.io.serializer.MarmotSerializers;
-import marmot.optor.geo.SpatialRelation;
 import marmot.optor.support.Match;
+import marmot.type.MapTile;
 import utils.stream.FStream;
 
 /**
+ * 공간 클러스터 파일의 클러스터 인덱스 파일 클래스.
+ * <p>
+ * 인덱스 파일은 고정 길이 엔트리 포맷(version 2, {@link CompactGlobalIndex} 참조)으로 기록된다.
+ * 이전 포맷으로 기록된 파일도 {@link #open(HdfsPath)}를 통해 읽을 수 있다.
+ * Version 2 파일을 읽은 경우, 클러스터 인덱스 리스트와 QuadTree는 실제로 필요할 때 생성된다.
  * 
  * @author Kang-Woo Lee (ETRI)
  */
@@ -53,6 +64,8 @@ public class GlobalIndex implements MarmotSerializable, Serializable {
 	private List<GlobalIndexEntry> m_indexes;
 	private Map<String,GlobalIndexEntry> m_indexMap;
 	private QuadTree<Pointer,SinglePointers> m_qtree;
+	@Nullable private transient CompactGlobalIndex m_compact;
+	@Nullable private transient SpatialHistogram m_histogram;
 	
 	public static Path toGlobalIndexPath(Path clusterDir) {
 		return new Path(clusterDir, INDEX_FILE_NAME);
@@ -73,9 +86,32 @@ public class GlobalIndex implements MarmotSerializable, Serializable {
 	 */
 	public static GlobalIndex create(HdfsPath path, GRecordSchema dataSchema,
 												List<GlobalIndexEntry> indexes) {
+		return create(path, dataSchema, indexes, SpatialHistogram.DEFAULT_LEVEL);
+	}
+	
+	/**
+	 * 클러스터 인덱스 파일을 생성한다.
+	 * 인덱스 파일에는 주어진 레벨까지의 공간 분포 히스토그램({@link SpatialHistogram})이
+	 * 함께 저장된다.
+	 * 
+	 * @param path				생성될 클러스트 인덱스 파일 경로.
+	 * @param dataSchema		클러스터에 저장될 레코드의 스키마.
+	 * @param indexes			파일에 저장될 클러스터 인덱스 리스트
+	 * @param histogramLevel	히스토그램 셀의 레벨.
+	 * @return	클러스터 인덱스 파일
+	 */
+	public static GlobalIndex create(HdfsPath path, GRecordSchema dataSchema,
+									List<GlobalIndexEntry> indexes, int histogramLevel) {
 		try ( FSDataOutputStream fsdos = path.create() ) {
 			GlobalIndex idxFile = new GlobalIndex(path.toString(), dataSchema, indexes);
-			idxFile.serialize(fsdos);
+			idxFile.m_histogram = SpatialHistogram.build(indexes, histogramLevel);
+			if ( CompactGlobalIndex.isWritable(indexes) ) {
+				CompactGlobalIndex.write(path.toString(), dataSchema, indexes,
+										idxFile.m_histogram, fsdos);
+			}
+			else {
+				idxFile.serialize(fsdos);
+			}
 			return idxFile;
 		}
 		catch ( IOException e ) {
@@ -103,6 +139,12 @@ public class GlobalIndex implements MarmotSerializable, Serializable {
 			}
 			
 			try ( FSDataInputStream fsdis = path.open() ) {
+				if ( fsdis.readInt() == CompactGlobalIndex.MAGIC ) {
+					return new GlobalIndex(CompactGlobalIndex.read(fsdis));
+				}
+				
+				// 이전 포맷의 인덱스 파일
+				fsdis.seek(0);
 				return deserialize(fsdis);
 			}
 		}
@@ -122,6 +164,13 @@ public class GlobalIndex implements MarmotSerializable, Serializable {
 		m_qtree = buildQuadTree(indexes);
 	}
 	
+	private GlobalIndex(CompactGlobalIndex compact) {
+		m_path = compact.getPath();
+		m_gschema = compact.getGRecordSchema();
+		m_compact = compact;
+		m_histogram = compact.getHistogram();
+	}
+	
 	/**
 	 * 공간 클러스터 인덱스 파일의 저장 경로명을 반환한다.
 	 * 
@@ -149,7 +198,10 @@ public class GlobalIndex implements MarmotSerializable, Serializable {
 	public GlobalIndexEntry get(String quadKey) {
 		checkNotNullArgument(quadKey, "quadKey is null");
 		
-		return m_indexMap.get(quadKey);
+		if ( m_compact != null ) {
+			return m_compact.get(quadKey);
+		}
+		return getIndexMap().get(quadKey);
 	}
 	
 	/**
@@ -158,60 +210,145 @@ public class GlobalIndex implements MarmotSerializable, Serializable {
 	 * @return	MBR
 	 */
 	public Envelope getDataBounds() {
+		if ( m_compact != null ) {
+			return m_compact.getTileUnion();
+		}
 		return m_qtree.getDataBounds();
 	}
 	
 	public Envelope getTileBounds() {
+		if ( m_compact != null ) {
+			return MapTile.fromQuadKey(m_compact.getRootQuadKey()).getBounds();
+		}
 		return m_qtree.getBounds();
 	}
 	
 	public int getClusterCount() {
+		if ( m_compact != null ) {
+			return m_compact.getClusterCount();
+		}
 		return m_indexes.size();
 	}
 	
 	public Set<String> getClusterKeyAll() {
-		return m_indexMap.keySet();
+		return getIndexMap().keySet();
 	}
 	
 	public long getRecordCount() {
+		if ( m_compact != null ) {
+			return m_compact.getRecordCount();
+		}
 		return FStream.from(m_indexes)
 					.mapToLong(ent -> (long)ent.getRecordCount())
 					.sum();
 	}
 	
 	public long getOwnedRecordCount() {
+		if ( m_compact != null ) {
+			return m_compact.getOwnedRecordCount();
+		}
 		return FStream.from(m_indexes)
 						.mapToLong(ent -> (long)ent.getOwnedRecordCount())
 						.sum();
 	}
 	
 	public List<GlobalIndexEntry> getIndexEntryAll() {
-		return Collections.unmodifiableList(m_indexes);
+		return Collections.unmodifiableList(getIndexes());
+	}
+	
+	/**
+	 * 인덱스에 포함된 레코드들의 공간 분포 히스토그램을 반환한다.
+	 * 인덱스 파일에 히스토그램이 저장되지 않은 경우는 클러스터 인덱스들로부터 생성한다.
+	 * 
+	 * @return	히스토그램
+	 */
+	public synchronized SpatialHistogram getHistogram() {
+		if ( m_histogram == null ) {
+			m_histogram = SpatialHistogram.build(getIndexes(), SpatialHistogram.DEFAULT_LEVEL);
+		}
+		return m_histogram;
+	}
+	
+	/**
+	 * 주어진 영역과 겹치는 레코드 수의 추정치를 반환한다.
+	 * 
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	레코드 수 추정치
+	 * @see SpatialHistogram#estimateCount(Envelope)
+	 */
+	public long estimateCount(Envelope range84) {
+		return getHistogram().estimateCount(range84);
+	}
+	
+	/**
+	 * 본 인덱스와 주어진 인덱스의 클러스터들 사이의 공간 조인시 비교 대상 레코드 쌍의 수의
+	 * 추정치를 반환한다.
+	 * 
+	 * @param other	조인 대상 인덱스
+	 * @return	레코드 쌍 수 추정치
+	 * @see SpatialHistogram#estimateJoinPairs(SpatialHistogram)
+	 */
+	public long estimateJoinPairs(GlobalIndex other) {
+		return getHistogram().estimateJoinPairs(other.getHistogram());
+	}
+	
+	/**
+	 * 클러스터 인덱스들로 구성된 QuadTree를 반환한다.
+	 * 반환된 QuadTree에 포함된 {@link Pointer}의 index는 {@link #getIndexEntryAll()}에서의
+	 * 순서를 의미한다.
+	 * 
+	 * @return	QuadTree
+	 */
+	public synchronized QuadTree<Pointer,SinglePointers> getQuadTree() {
+		if ( m_qtree == null ) {
+			m_qtree = buildQuadTree(getIndexes());
+		}
+		return m_qtree;
 	}
 	
 	public FStream<GlobalIndexEntry> query(Envelope range84) {
-		return m_qtree.query(SpatialRelation.INTERSECTS, range84)
-						.distinct()
-						.map(ptr->m_indexes.get(ptr.index()));
+		if ( m_compact != null ) {
+			return FStream.from(m_compact.query(range84));
+		}
+		
+		// 복수개의 단말노드에 등록된 인덱스는 bitset을 이용하여 한번만 포함시킨다.
+		List<GlobalIndexEntry> founds = Lists.newArrayList();
+		new QuadTreeCursor<Pointer,SinglePointers>(Pointer::index)
+				.visit(m_qtree, range84, ptr -> founds.add(m_indexes.get(ptr.index())));
+		return FStream.from(founds);
+	}
+	
+	/**
+	 * 주어진 질의 영역과 겹치는 타일의 클러스터 인덱스들을 반환한다.
+	 * 질의 영역의 MBR과는 겹치지만 실제 질의 영역과는 겹치지 않는 클러스터는 제외된다.
+	 * 
+	 * @param region	질의 영역
+	 * @return	클러스터 인덱스 스트림
+	 */
+	public FStream<GlobalIndexEntry> query(QueryRegion region) {
+		return query(region.getEnvelope84())
+					.filter(ent -> region.intersects84(ent.getTileBounds()));
 	}
 	
 	@Override
 	public String toString() {
-		return String.format("%s[key=%s]", getClass().getSimpleName(), m_qtree.getQuadKey());
+		String quadKey = (m_compact != null) ? m_compact.getRootQuadKey() : m_qtree.getQuadKey();
+		return String.format("%s[key=%s]", getClass().getSimpleName(), quadKey);
 	}
 	
 	public static FStream<Match<GlobalIndexEntry>> matchClusters(GlobalIndex left,
 																	GlobalIndex right) {
 		QuadTreeJoinMatcher<Pointer,SinglePointers> matcher
-						= new QuadTreeJoinMatcher<Pointer,SinglePointers>(left.m_qtree, right.m_qtree);
+						= new QuadTreeJoinMatcher<Pointer,SinglePointers>(left.getQuadTree(),
+																		right.getQuadTree());
 		
 		return matcher.streamLeafNodeMatch()
 						.map(nodeMatch -> {
 							int leftIdx = nodeMatch.m_left.getPartition().m_ptr.index();
 							int rightIdx = nodeMatch.m_right.getPartition().m_ptr.index();
 							
-							GlobalIndexEntry leftEntry = left.m_indexes.get(leftIdx);
-							GlobalIndexEntry rightEntry = right.m_indexes.get(rightIdx);
+							GlobalIndexEntry leftEntry = left.getIndexes().get(leftIdx);
+							GlobalIndexEntry rightEntry = right.getIndexes().get(rightIdx);
 							
 							return new Match<GlobalIndexEntry>(leftEntry, rightEntry);
 						})
@@ -222,6 +359,21 @@ public class GlobalIndex implements MarmotSerializable, Serializable {
 						});
 	}
 	
+	private synchronized List<GlobalIndexEntry> getIndexes() {
+		if ( m_indexes == null ) {
+			m_indexes = m_compact.getEntryAll();
+		}
+		return m_indexes;
+	}
+	
+	private synchronized Map<String,GlobalIndexEntry> getIndexMap() {
+		if ( m_indexMap == null ) {
+			m_indexMap = getIndexes().stream()
+									.collect(Collectors.toMap(GlobalIndexEntry::quadKey, cidx->cidx));
+		}
+		return m_indexMap;
+	}
+	
 	private static QuadTree<Pointer, SinglePointers> buildQuadTree(List<GlobalIndexEntry> indexes) {
 		QuadTreeBuilder<Pointer,SinglePointers> builder
 													= new QuadTreeBuilder<>(qkey->new SinglePointers());
@@ -291,7 +443,7 @@ public class GlobalIndex implements MarmotSerializable, Serializable {
 	public void serialize(DataOutput out) {
 		MarmotSerializers.writeString(m_path, out);
 		MarmotSerializers.writeGRecordSchema(m_gschema, out);
-		MarmotSerializers.writeList(m_indexes, out, GlobalIndexEntry::serialize);
+		MarmotSerializers.writeList(getIndexes(), out, GlobalIndexEntry::serialize);
 	}
 	
 	private void readObject(ObjectInputStream in) throws IOException {
@@ -8,6 +8,8 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Objects;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.lang.builder.CompareToBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.locationtech.jts.geom.Envelope;
@@ -49,6 +51,9 @@ public class GlobalIndexEntry implements EnvelopedValue, MarmotSerializable, Ser
 	private int m_ownedCount;
 	private long m_start;
 	private long m_length;
+	// 인덱스 파일에만 기록되고, 엔트리 자체의 직렬화에는 포함되지 않는다.
+	@Nullable private transient OccupancyBitmap m_occupancy;
+	@Nullable private transient SpatialHistogram m_histogram;
 	
 	public GlobalIndexEntry() {}
 	public GlobalIndexEntry(String packId, int blockNo, String quadKey,
@@ -122,6 +127,48 @@ public class GlobalIndexEntry implements EnvelopedValue, MarmotSerializable, Ser
 		return m_length;
 	}
 	
+	/**
+	 * 클러스터의 점유 비트맵을 반환한다. 비트맵이 기록되지 않은 경우는 {@code null}을 반환한다.
+	 * 
+	 * @return	점유 비트맵
+	 */
+	public @Nullable OccupancyBitmap getOccupancy() {
+		return m_occupancy;
+	}
+	
+	public void setOccupancy(@Nullable OccupancyBitmap occupancy) {
+		m_occupancy = occupancy;
+	}
+	
+	/**
+	 * 클러스터 생성시 기록된 소유 레코드들의 셀별 분포 히스토그램을 반환한다.
+	 * 히스토그램이 기록되지 않은 경우는 {@code null}을 반환한다.
+	 * 
+	 * @return	클러스터 히스토그램
+	 */
+	public @Nullable SpatialHistogram getHistogram() {
+		return m_histogram;
+	}
+	
+	public void setHistogram(@Nullable SpatialHistogram histogram) {
+		m_histogram = histogram;
+	}
+	
+	/**
+	 * 클러스터에 주어진 영역과 겹치는 레코드가 존재할 수 있는지 여부를 반환한다.
+	 * 데이터 영역 및 점유 비트맵을 사용하기 때문에 클러스터를 적재하지 않는다.
+	 * {@code false}인 경우는 겹치는 레코드가 존재하지 않음이 보장된다.
+	 * 
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	존재 가능 여부
+	 */
+	public boolean mayIntersect(Envelope range84) {
+		if ( m_dataBounds != null && !m_dataBounds.intersects(range84) ) {
+			return false;
+		}
+		return m_occupancy == null || m_occupancy.mayIntersect(range84);
+	}
+	
 	public boolean isNull() {
 		return m_packId.length() == 0;
 	}
@@ -0,0 +1,183 @@
+package marmot.io.geo.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+
+import org.locationtech.jts.geom.Envelope;
+
+import utils.Preconditions;
+
+import marmot.io.serializer.MarmotSerializable;
+import marmot.io.serializer.MarmotSerializers;
+
+
+/**
+ * 클러스터 데이터 영역을 {@value #GRID_SIZE}x{@value #GRID_SIZE} 격자로 나누고, 각 격자 셀과
+ * 겹치는 레코드의 존재 여부를 기록한 비트맵.
+ * <p>
+ * 레코드의 MBR이 걸친 모든 셀을 표시하기 때문에, 비트맵이 질의 영역과 겹치는 셀이 없다고
+ * 판단하면 클러스터에는 질의 영역과 겹치는 레코드가 없다. 반대의 경우는 겹치는 레코드가
+ * 존재할 수도 있음을 의미한다. 따라서 클러스터를 적재하지 않고 겹치는 레코드가 없는
+ * 클러스터를 걸러내는 데 사용된다.
+ * <p>
+ * 직렬화시에는 비어 있지 않은 행(row)만 기록한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class OccupancyBitmap implements MarmotSerializable {
+	public static final int GRID_SIZE = 64;
+
+	private final Envelope m_bounds84;
+	private final long[] m_rows;	// m_rows[y]의 x번째 비트: (x,y) 셀의 사용 여부
+
+	private OccupancyBitmap(Envelope bounds84, long[] rows) {
+		m_bounds84 = bounds84;
+		m_rows = rows;
+	}
+
+	/**
+	 * 빈 비트맵을 생성한다.
+	 *
+	 * @param bounds84	비트맵 격자 영역. 클러스터에 저장된 모든 레코드의 MBR을 포함하여야 한다.
+	 */
+	public OccupancyBitmap(Envelope bounds84) {
+		this(new Envelope(bounds84), new long[GRID_SIZE]);
+	}
+
+	/**
+	 * 주어진 레코드 MBR들의 비트맵을 생성한다.
+	 *
+	 * @param bounds84	비트맵 격자 영역. 주어진 모든 MBR을 포함하여야 한다.
+	 * @param mbr84s	레코드 MBR들. EPSG:4326 좌표계 사용
+	 * @return	비트맵
+	 */
+	public static OccupancyBitmap build(Envelope bounds84, Iterable<Envelope> mbr84s) {
+		Preconditions.checkNotNullArgument(bounds84, "bounds is null");
+
+		OccupancyBitmap bitmap = new OccupancyBitmap(bounds84);
+		for ( Envelope mbr84: mbr84s ) {
+			bitmap.add(mbr84);
+		}
+		return bitmap;
+	}
+
+	public Envelope getBounds() {
+		return m_bounds84;
+	}
+
+	/**
+	 * 주어진 MBR과 겹치는 셀들을 표시한다.
+	 *
+	 * @param mbr84	레코드 MBR. EPSG:4326 좌표계 사용
+	 */
+	public void add(Envelope mbr84) {
+		Envelope clip = m_bounds84.intersection(mbr84);
+		if ( clip.isNull() ) {
+			return;
+		}
+
+		long mask = columnMask(clip);
+		for ( int y = toRow(clip.getMinY()); y <= toRow(clip.getMaxY()); ++y ) {
+			m_rows[y] |= mask;
+		}
+	}
+
+	/**
+	 * 주어진 영역과 겹치는 레코드가 존재할 수 있는지 여부를 반환한다.
+	 * {@code false}인 경우는 겹치는 레코드가 존재하지 않음이 보장된다.
+	 *
+	 * @param range84	질의 영역. EPSG:4326 좌표계 사용
+	 * @return	존재 가능 여부
+	 */
+	public boolean mayIntersect(Envelope range84) {
+		Envelope clip = m_bounds84.intersection(range84);
+		if ( clip.isNull() ) {
+			return false;
+		}
+
+		long mask = columnMask(clip);
+		for ( int y = toRow(clip.getMinY()); y <= toRow(clip.getMaxY()); ++y ) {
+			if ( (m_rows[y] & mask) != 0 ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 레코드가 존재하는 셀의 수를 반환한다.
+	 *
+	 * @return	셀 수
+	 */
+	public int getOccupiedCellCount() {
+		int count = 0;
+		for ( long row: m_rows ) {
+			count += Long.bitCount(row);
+		}
+		return count;
+	}
+
+	public static OccupancyBitmap deserialize(DataInput in) {
+		Envelope bounds84 = MarmotSerializers.ENVELOPE.deserialize(in);
+
+		long[] rows = new long[GRID_SIZE];
+		long rowMask = MarmotSerializers.readLong(in);
+		for ( int y =0; y < GRID_SIZE; ++y ) {
+			if ( (rowMask & (1L << y)) != 0 ) {
+				rows[y] = MarmotSerializers.readLong(in);
+			}
+		}
+
+		return new OccupancyBitmap(bounds84, rows);
+	}
+
+	@Override
+	public void serialize(DataOutput out) {
+		MarmotSerializers.ENVELOPE.serialize(m_bounds84, out);
+
+		long rowMask = 0;
+		for ( int y =0; y < GRID_SIZE; ++y ) {
+			if ( m_rows[y] != 0 ) {
+				rowMask |= (1L << y);
+			}
+		}
+		MarmotSerializers.writeLong(rowMask, out);
+		for ( long row: m_rows ) {
+			if ( row != 0 ) {
+				MarmotSerializers.writeLong(row, out);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[bounds=%s, occupied=%d/%d]", getClass().getSimpleName(),
+							m_bounds84, getOccupiedCellCount(), GRID_SIZE*GRID_SIZE);
+	}
+
+	private long columnMask(Envelope clip) {
+		int x0 = toColumn(clip.getMinX());
+		int x1 = toColumn(clip.getMaxX());
+
+		long upper = (x1 == GRID_SIZE-1) ? -1L : (1L << (x1+1)) - 1;
+		long lower = (1L << x0) - 1;
+		return upper & ~lower;
+	}
+
+	private int toColumn(double x) {
+		return toCell(x, m_bounds84.getMinX(), m_bounds84.getWidth());
+	}
+
+	private int toRow(double y) {
+		return toCell(y, m_bounds84.getMinY(), m_bounds84.getHeight());
+	}
+
+	private static int toCell(double v, double min, double extent) {
+		if ( extent <= 0 ) {
+			return 0;
+		}
+
+		int cell = (int)Math.floor((v - min) / extent * GRID_SIZE);
+		return Math.max(0, Math.min(GRID_SIZE-1, cell));
+	}
+}
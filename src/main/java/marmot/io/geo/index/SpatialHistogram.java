@@ -0,0 +1,362 @@
+package marmot.io.geo.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.util.Collection;
+import java.util.Map;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Maps;
+
+import utils.Preconditions;
+
+import marmot.io.geo.quadtree.MortonCodes;
+import marmot.io.serializer.MarmotSerializable;
+import marmot.io.serializer.MarmotSerializers;
+import marmot.type.MapTile;
+
+
+/**
+ * 공간 클러스터 파일에 저장된 레코드들의 공간 분포를 나타내는 다단계 밀도 히스토그램.
+ * <p>
+ * 히스토그램은 지정된 레벨의 타일(셀)별 레코드 수로 구성되며, 레코드가 없는 셀은 저장하지 않는다.
+ * 셀들은 Morton 코드 순서로 정렬되어 있어 동일 prefix의 셀들이 연속된 구간을 차지하기 때문에,
+ * 상위 레벨 타일의 레코드 수는 누적 합 배열을 통해 바로 계산된다.
+ * <p>
+ * 셀별 레코드 수는 클러스터 생성시 소유 레코드들의 MBR 중심점을 셀별로 집계하여 기록한
+ * 클러스터별 히스토그램({@link GlobalIndexEntry#getHistogram()})들을 합산하여 계산한다.
+ * 클러스터별 히스토그램이 기록되지 않은 (이전 형식의) 클러스터는 소유 레코드 수가 클러스터
+ * 데이터 영역 내에서 균등하게 분포한다고 가정하여 계산한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class SpatialHistogram implements MarmotSerializable {
+	public static final int DEFAULT_LEVEL = 8;
+	// 면적이 0인 데이터 영역(점, 수평/수직선 등)에 부여하는 최소 크기 (degree)
+	private static final double EPSILON = 1e-9;
+
+	private final int m_level;
+	private final long[] m_cells;			// Morton 코드 순으로 정렬된 셀 식별자
+	private final double[] m_counts;		// 셀별 레코드 수
+	private final double[] m_cumCounts;		// m_cumCounts[i]: m_counts[0..i)의 합
+
+	private SpatialHistogram(int level, long[] cells, double[] counts) {
+		m_level = level;
+		m_cells = cells;
+		m_counts = counts;
+
+		m_cumCounts = new double[counts.length+1];
+		for ( int i =0; i < counts.length; ++i ) {
+			m_cumCounts[i+1] = m_cumCounts[i] + counts[i];
+		}
+	}
+
+	/**
+	 * 주어진 클러스터 인덱스들로부터 히스토그램을 생성한다.
+	 * 클러스터별 히스토그램이 기록된 클러스터는 이를 합산하고, 그렇지 않은 클러스터는
+	 * 소유 레코드들이 데이터 영역에 균등하게 분포한다고 가정한다.
+	 *
+	 * @param entries	클러스터 인덱스들.
+	 * @param level		히스토그램 셀의 레벨.
+	 * @return	히스토그램
+	 */
+	public static SpatialHistogram build(Collection<GlobalIndexEntry> entries, int level) {
+		Preconditions.checkArgument(level >= 0 && level <= MortonCodes.MAX_LEVEL,
+									"invalid histogram level: " + level);
+
+		Map<Long,Double> accum = Maps.newTreeMap();
+		for ( GlobalIndexEntry entry: entries ) {
+			SpatialHistogram hist = entry.getHistogram();
+			if ( hist != null && hist.m_level >= level ) {
+				hist.coarsen(level).addTo(accum);
+			}
+			else {
+				distribute(entry, level, accum);
+			}
+		}
+
+		return fromCells(level, accum);
+	}
+
+	/**
+	 * 주어진 레코드 MBR들의 중심점을 지정된 레벨의 셀별로 집계한 히스토그램을 생성한다.
+	 * 클러스터 생성시 클러스터별 히스토그램을 기록하는 데 사용된다.
+	 *
+	 * @param mbr84s	레코드 MBR들. EPSG:4326 좌표계 사용
+	 * @param level		히스토그램 셀의 레벨.
+	 * @return	히스토그램
+	 */
+	public static SpatialHistogram ofRecords(Iterable<Envelope> mbr84s, int level) {
+		Preconditions.checkArgument(level >= 0 && level <= MortonCodes.MAX_LEVEL,
+									"invalid histogram level: " + level);
+
+		long mask = ~(MortonCodes.span(level) - 1);
+		Map<Long,Double> accum = Maps.newTreeMap();
+		for ( Envelope mbr84: mbr84s ) {
+			if ( !mbr84.isNull() ) {
+				Coordinate center = mbr84.centre();
+				accum.merge(MortonCodes.encode(center.x, center.y) & mask, 1.0, Double::sum);
+			}
+		}
+
+		return fromCells(level, accum);
+	}
+
+	private static SpatialHistogram fromCells(int level, Map<Long,Double> accum) {
+		long[] cells = new long[accum.size()];
+		double[] counts = new double[accum.size()];
+		int idx = 0;
+		for ( Map.Entry<Long,Double> cell: accum.entrySet() ) {
+			cells[idx] = cell.getKey();
+			counts[idx] = cell.getValue();
+			++idx;
+		}
+
+		return new SpatialHistogram(level, cells, counts);
+	}
+
+	/**
+	 * 히스토그램 셀의 레벨을 반환한다.
+	 *
+	 * @return	레벨
+	 */
+	public int getLevel() {
+		return m_level;
+	}
+
+	/**
+	 * 레코드가 존재하는 셀의 수를 반환한다.
+	 *
+	 * @return	셀 수
+	 */
+	public int getCellCount() {
+		return m_cells.length;
+	}
+
+	/**
+	 * 히스토그램에 반영된 전체 레코드 수를 반환한다.
+	 *
+	 * @return	레코드 수
+	 */
+	public long getTotalCount() {
+		return Math.round(m_cumCounts[m_cells.length]);
+	}
+
+	/**
+	 * 주어진 영역과 겹치는 레코드 수의 추정치를 반환한다.
+	 * 질의 영역에 완전히 포함된 타일은 누적 레코드 수를 사용하고, 질의 영역의 경계에 걸친
+	 * 셀은 겹치는 면적의 비율만큼 레코드 수를 반영한다.
+	 *
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	레코드 수 추정치
+	 */
+	public long estimateCount(Envelope range84) {
+		Preconditions.checkNotNullArgument(range84, "range is null");
+
+		return Math.round(estimate("", 0, m_cells.length, range84));
+	}
+
+	/**
+	 * 본 히스토그램과 주어진 히스토그램 사이의 공간 조인시 비교 대상 레코드 쌍의 수의
+	 * 추정치를 반환한다.
+	 * <p>
+	 * 추정치는 두 히스토그램 중 낮은 레벨의 셀을 기준으로 같은 셀에 속한 레코드 쌍의 수이다.
+	 * 따라서 실제 조인 결과 수보다는 크며, 조인 방식 선택이나 reducer 수 결정 등 상대적인
+	 * 비용 비교에 사용된다.
+	 *
+	 * @param other	조인 대상 히스토그램.
+	 * @return	레코드 쌍 수 추정치
+	 */
+	public long estimateJoinPairs(SpatialHistogram other) {
+		Preconditions.checkNotNullArgument(other, "other histogram is null");
+
+		int level = Math.min(m_level, other.m_level);
+		SpatialHistogram left = coarsen(level);
+		SpatialHistogram right = other.coarsen(level);
+
+		double pairs = 0;
+		int i = 0, j = 0;
+		while ( i < left.m_cells.length && j < right.m_cells.length ) {
+			long lcell = left.m_cells[i];
+			long rcell = right.m_cells[j];
+			if ( lcell < rcell ) {
+				++i;
+			}
+			else if ( lcell > rcell ) {
+				++j;
+			}
+			else {
+				pairs += left.m_counts[i++] * right.m_counts[j++];
+			}
+		}
+
+		return Math.round(pairs);
+	}
+
+	/**
+	 * 주어진 레벨의 셀들로 구성된 히스토그램을 반환한다.
+	 *
+	 * @param level	대상 레벨. 본 히스토그램의 레벨보다 크지 않아야 한다.
+	 * @return	히스토그램
+	 */
+	public SpatialHistogram coarsen(int level) {
+		Preconditions.checkArgument(level >= 0 && level <= m_level,
+									"invalid histogram level: " + level);
+		if ( level == m_level ) {
+			return this;
+		}
+
+		long mask = ~(MortonCodes.span(level) - 1);
+		long[] cells = new long[m_cells.length];
+		double[] counts = new double[m_cells.length];
+		int ncells = 0;
+		for ( int i =0; i < m_cells.length; ++i ) {
+			long cell = m_cells[i] & mask;
+			if ( ncells > 0 && cells[ncells-1] == cell ) {
+				counts[ncells-1] += m_counts[i];
+			}
+			else {
+				cells[ncells] = cell;
+				counts[ncells] = m_counts[i];
+				++ncells;
+			}
+		}
+
+		long[] trimmedCells = new long[ncells];
+		double[] trimmedCounts = new double[ncells];
+		System.arraycopy(cells, 0, trimmedCells, 0, ncells);
+		System.arraycopy(counts, 0, trimmedCounts, 0, ncells);
+
+		return new SpatialHistogram(level, trimmedCells, trimmedCounts);
+	}
+
+	public static SpatialHistogram deserialize(DataInput in) {
+		int level = MarmotSerializers.readVInt(in);
+		int ncells = MarmotSerializers.readVInt(in);
+
+		long[] cells = new long[ncells];
+		double[] counts = new double[ncells];
+		for ( int i =0; i < ncells; ++i ) {
+			cells[i] = MarmotSerializers.readLong(in);
+			counts[i] = MarmotSerializers.readDouble(in);
+		}
+
+		return new SpatialHistogram(level, cells, counts);
+	}
+
+	@Override
+	public void serialize(DataOutput out) {
+		MarmotSerializers.writeVInt(m_level, out);
+		MarmotSerializers.writeVInt(m_cells.length, out);
+		for ( int i =0; i < m_cells.length; ++i ) {
+			MarmotSerializers.writeLong(m_cells[i], out);
+			MarmotSerializers.writeDouble(m_counts[i], out);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[level=%d, ncells=%d, count=%d]", getClass().getSimpleName(),
+							m_level, m_cells.length, getTotalCount());
+	}
+
+	private void addTo(Map<Long,Double> accum) {
+		for ( int i =0; i < m_cells.length; ++i ) {
+			accum.merge(m_cells[i], m_counts[i], Double::sum);
+		}
+	}
+
+	private double estimate(String prefix, int from, int to, Envelope range84) {
+		if ( from >= to ) {
+			return 0;
+		}
+
+		Envelope tile84 = MapTile.fromQuadKey(prefix).getBounds();
+		if ( !tile84.intersects(range84) ) {
+			return 0;
+		}
+		if ( range84.covers(tile84) ) {
+			return m_cumCounts[to] - m_cumCounts[from];
+		}
+		if ( prefix.length() == m_level ) {
+			double ratio = tile84.intersection(range84).getArea() / tile84.getArea();
+			return m_counts[from] * ratio;
+		}
+
+		double total = 0;
+		for ( int i =0; i < 4; ++i ) {
+			String child = prefix + i;
+			long lo = MortonCodes.encode(child);
+			long hi = lo + MortonCodes.span(child.length());
+
+			int childFrom = lowerBound(lo, from, to);
+			int childTo = lowerBound(hi, childFrom, to);
+			total += estimate(child, childFrom, childTo, range84);
+		}
+		return total;
+	}
+
+	private int lowerBound(long cell, int from, int to) {
+		int lo = from;
+		int hi = to;
+		while ( lo < hi ) {
+			int mid = (lo + hi) >>> 1;
+			if ( m_cells[mid] < cell ) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static void distribute(GlobalIndexEntry entry, int level, Map<Long,Double> accum) {
+		double owned = entry.getOwnedRecordCount();
+		if ( owned <= 0 ) {
+			return;
+		}
+
+		String quadKey = entry.quadKey();
+		if ( quadKey.length() >= level ) {
+			accum.merge(MortonCodes.encode(quadKey.substring(0, level)), owned, Double::sum);
+			return;
+		}
+
+		// 소유 레코드들은 클러스터 타일 내부에 중심점을 갖기 때문에,
+		// 데이터 영역 중 타일 내부 영역에 균등하게 분포한다고 가정한다.
+		Envelope tile84 = entry.getTileBounds();
+		Envelope dataBounds = entry.getDataBounds();
+		Envelope clip = (dataBounds != null) ? new Envelope(dataBounds) : new Envelope();
+		if ( clip.isNull() ) {
+			clip = new Envelope(tile84);
+		}
+		if ( clip.getArea() <= 0 ) {
+			clip.expandBy(EPSILON);
+		}
+		clip = clip.intersection(tile84);
+		if ( clip.getArea() <= 0 ) {
+			clip = new Envelope(tile84);
+		}
+
+		spread(quadKey, clip, owned / clip.getArea(), level, accum);
+	}
+
+	private static void spread(String prefix, Envelope clip, double density, int level,
+								Map<Long,Double> accum) {
+		Envelope overlap = MapTile.fromQuadKey(prefix).getBounds().intersection(clip);
+		if ( overlap.getArea() <= 0 ) {
+			return;
+		}
+		if ( prefix.length() == level ) {
+			accum.merge(MortonCodes.encode(prefix), density * overlap.getArea(), Double::sum);
+			return;
+		}
+
+		for ( int i =0; i < 4; ++i ) {
+			spread(prefix + i, clip, density, level, accum);
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -18,6 +19,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 
 import utils.Preconditions;
 import utils.UnitUtils;
@@ -29,14 +32,15 @@ import marmot.GRecordSchema;
 import marmot.io.HdfsPath;
 import marmot.io.geo.cluster.CacheableQuadCluster;
 import marmot.io.geo.cluster.QuadTreeSpatialCluster;
-import marmot.io.geo.quadtree.LeafNode;
+import marmot.io.geo.cluster.RecordOrder;
+import marmot.io.geo.quadtree.LeafCapacityPolicy;
 import marmot.io.geo.quadtree.Pointer;
 import marmot.io.geo.quadtree.PointerPartition;
 import marmot.io.geo.quadtree.QuadTree;
 import marmot.io.geo.quadtree.QuadTreeBuilder;
 import marmot.io.serializer.MarmotSerializable;
 import marmot.io.serializer.MarmotSerializers;
-import marmot.optor.geo.SpatialRelation;
+import marmot.io.serializer.SerializationException;
 import marmot.support.EnvelopeTaggedRecord;
 import marmot.type.MapTile;
 
@@ -54,6 +58,7 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 	private int m_length;
 	private final long m_duplicateCount;
 	private QuadTree<Pointer,PointerPartition> m_qtree;
+	private final RecordOrder m_order;
 	
 	public static SpatialIndexedCluster load(HdfsPath clusterDir,
 										GlobalIndexEntry index) throws SpatialIndexedFileException {
@@ -90,7 +95,7 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 
 	private SpatialIndexedCluster(String quadKey, Envelope dataBounds, GRecordSchema gschema,
 									List<EnvelopeTaggedRecord> recordList, long duplicateCount,
-									QuadTree<Pointer, PointerPartition> qtree) {
+									QuadTree<Pointer, PointerPartition> qtree, RecordOrder order) {
 		super(quadKey, gschema);
 		Preconditions.checkArgument(recordList.size() > 0, "empty records");
 		
@@ -99,6 +104,7 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 		m_length = -1;
 		m_duplicateCount = duplicateCount;
 		m_qtree = qtree;
+		m_order = order;
 	}
 
 	@Override
@@ -121,6 +127,11 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 		return m_length;
 	}
 	
+	@Override
+	public RecordOrder getRecordOrder() {
+		return m_order;
+	}
+	
 	@Override
 	public long getRecordCount() {
 		return m_records.size();
@@ -135,28 +146,55 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 		return strm;
 	}
 
-	@Override
-	public FStream<EnvelopeTaggedRecord> query(Envelope range84, boolean dropDuplicates) {
-		FStream<EnvelopeTaggedRecord> strm =  m_qtree.query(SpatialRelation.INTERSECTS, range84)
-													.distinct()
-													.map(ptr -> m_records.get(ptr.index()));
-		if ( dropDuplicates ) {
-			strm = strm.filter(etr -> isOwnerOf(etr.getEnvelope().intersection(range84)));
-		}
-		return strm;
+	public static SpatialIndexedCluster build(String quadKey, GRecordSchema gschema,
+													FStream<EnvelopeTaggedRecord> recs) {
+		return build(quadKey, gschema, recs, LeafCapacityPolicy.DEFAULT);
 	}
 	
+	/**
+	 * 주어진 레코드들로 구성된 클러스터를 생성한다.
+	 * 
+	 * @param quadKey	클러스터의 quad-key
+	 * @param gschema	클러스터 레코드 스키마
+	 * @param recs		클러스터에 포함될 레코드 스트림
+	 * @param policy	클러스터 내부 QuadTree의 단말노드 용량 정책
+	 * @return	클러스터
+	 */
 	public static SpatialIndexedCluster build(String quadKey, GRecordSchema gschema,
-													FStream<EnvelopeTaggedRecord> recs) {
+													FStream<EnvelopeTaggedRecord> recs,
+													LeafCapacityPolicy policy) {
+		return build(quadKey, gschema, recs, policy, RecordOrder.DEFAULT);
+	}
+	
+	/**
+	 * 주어진 레코드들로 구성된 클러스터를 생성한다.
+	 * 클러스터에 포함된 레코드들은 주어진 정렬 순서에 따라 재배치된다.
+	 * 
+	 * @param quadKey	클러스터의 quad-key
+	 * @param gschema	클러스터 레코드 스키마
+	 * @param recs		클러스터에 포함될 레코드 스트림
+	 * @param policy	클러스터 내부 QuadTree의 단말노드 용량 정책
+	 * @param order		클러스터 내부 레코드 정렬 순서
+	 * @return	클러스터
+	 */
+	public static SpatialIndexedCluster build(String quadKey, GRecordSchema gschema,
+													FStream<EnvelopeTaggedRecord> recs,
+													LeafCapacityPolicy policy, RecordOrder order) {
+		Preconditions.checkNotNullArgument(order, "RecordOrder is null");
+		
 		int geomColIdx = gschema.getGeometryColumnIdx();
 		final Envelope tileBounds =  MapTile.fromQuadKey(quadKey).getBounds();
 		Envelope dataBounds = new Envelope();
-		List<EnvelopeTaggedRecord> recList = Lists.newArrayList();
-		QuadTree<Pointer,PointerPartition> qtree = new QuadTree<>(quadKey, qkey->new PointerPartition());
+		List<EnvelopeTaggedRecord> inputs = recs.toList();
+		List<EnvelopeTaggedRecord> recList = Lists.newArrayListWithExpectedSize(inputs.size());
+		List<Pointer> ptrs = Lists.newArrayListWithExpectedSize(inputs.size());
+		
+		int[] idxes = order.sort(FStream.from(inputs).map(EnvelopeTaggedRecord::getEnvelope).toList());
 		
 		int m_count = 0;
 		int m_ownedCount = 0;
-		for ( EnvelopeTaggedRecord record: recs ) {
+		for ( int idx: idxes ) {
+			EnvelopeTaggedRecord record = inputs.get(idx);
 			recList.add(record);
 			
 			Geometry geom = record.getRecord().getGeometry(geomColIdx);
@@ -168,13 +206,39 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 				++m_ownedCount;
 			}
 			
-			qtree.insert(new Pointer(mbr, m_count));
+			ptrs.add(new Pointer(mbr, m_count));
 			++m_count;
 		}
+		QuadTree<Pointer,PointerPartition> qtree
+							= QuadTreeBuilder.bulkLoad(quadKey, ptrs,
+														qkey->new PointerPartition(qkey, policy));
 		
-		return new SpatialIndexedCluster(quadKey, dataBounds, gschema, recList, m_ownedCount, qtree);
+		return new SpatialIndexedCluster(quadKey, dataBounds, gschema, recList, m_ownedCount, qtree,
+											order);
 	}
-	
+
+	/**
+	 * 동일 quad-key를 갖는 복수개의 클러스터(기본 클러스터와 delta 클러스터들)를
+	 * 하나의 클러스터로 병합한다.
+	 *
+	 * @param quadKey	병합될 클러스터의 quad-key
+	 * @param gschema	클러스터 레코드 스키마
+	 * @param clusters	병합 대상 클러스터 리스트
+	 * @return	병합된 클러스터
+	 */
+	public static SpatialIndexedCluster merge(String quadKey, GRecordSchema gschema,
+												List<SpatialIndexedCluster> clusters) {
+		Preconditions.checkArgument(clusters.size() > 0, "empty clusters");
+
+		if ( clusters.size() == 1 ) {
+			return clusters.get(0);
+		}
+
+		int length = (int)FStream.from(clusters).mapToLong(c -> (long)c.length()).sum();
+		FStream<EnvelopeTaggedRecord> recs = FStream.from(clusters).flatMap(c -> c.read(false));
+		return build(quadKey, gschema, recs).length(length);
+	}
+
 	public static SpatialIndexedCluster deserialize(DataInput input) {
 		String quadKey = MarmotSerializers.readString(input);
 		Envelope dataBounds = MarmotSerializers.ENVELOPE.deserialize(input);
@@ -184,10 +248,25 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 		List<EnvelopeTaggedRecord> records
 				= MarmotSerializers.readList(input,
 							in -> EnvelopeTaggedRecord.deserialize(gschema.getRecordSchema(), in));
-		QuadTree<Pointer,PointerPartition> qtree = readIndexFrom(input);
+		QuadTree<Pointer,PointerPartition> qtree = readQuadTree(input);
+		RecordOrder order = readRecordOrder(input);
+		readExclusiveCounts(qtree, input);
 		
 		return new SpatialIndexedCluster(quadKey, dataBounds, gschema, records,
-											duplicateCount, qtree);
+											duplicateCount, qtree, order);
+	}
+	
+	private static RecordOrder readRecordOrder(DataInput input) {
+		try {
+			return RecordOrder.fromCode(input.readByte());
+		}
+		catch ( EOFException e ) {
+			// 레코드 정렬 순서가 기록되지 않은 이전 형식의 클러스터
+			return RecordOrder.INPUT;
+		}
+		catch ( IOException e ) {
+			throw new SerializationException("" + e);
+		}
 	}
 	
 	@Override
@@ -198,7 +277,12 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 		MarmotSerializers.writeGRecordSchema(getGRecordSchema(), out);
 		
 		MarmotSerializers.writeList(m_records, out);
-		writeIndexInto(out);
+		writeQuadTree(getQuadKey(), m_qtree, out);
+		
+		// 레코드 정렬 순서와 단말 노드별 소유 포인터 수는 이전 형식과의 호환을 위해
+		// 가장 마지막에 기록한다.
+		MarmotSerializers.writeByte((byte)m_order.getCode(), out);
+		writeExclusiveCounts(getQuadKey(), m_qtree, m_records.size(), out);
 	}
 
 	@Override
@@ -211,35 +295,6 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 		return m_records;
 	}
 	
-	private static QuadTree<Pointer, PointerPartition> readIndexFrom(DataInput input) {
-		String quadKey = MarmotSerializers.readString(input);
-		
-		QuadTreeBuilder<Pointer,PointerPartition> builder
-									= new QuadTreeBuilder<>(quadKey, qkey -> new PointerPartition());
-		int nodeCount = MarmotSerializers.readVInt(input);
-		for ( int i =0; i < nodeCount; ++i ) {
-			String qk = MarmotSerializers.readString(input);
-			PointerPartition part = PointerPartition.deserialize(input);
-			
-			builder.add(qk, part);
-		}
-		QuadTree<Pointer, PointerPartition> qtree = builder.build();
-		qtree.compact();
-		
-		return qtree;
-	}
-
-	private void writeIndexInto(DataOutput out) {
-		MarmotSerializers.writeString(getQuadKey(), out);
-		List<LeafNode<Pointer,PointerPartition>> nodes = m_qtree.streamLeafNodes().toList();
-		
-		MarmotSerializers.writeVInt(nodes.size(), out);
-		for ( LeafNode<Pointer,PointerPartition> node: nodes ) {
-			MarmotSerializers.writeString(node.getQuadKey(), out);
-			node.getPartition().serialize(out);
-		}
-	}
-
 	private static final int LZ4_BLOCK_SIZE = (int)UnitUtils.parseByteSize("1mb");
 	public static SpatialIndexedCluster fromBytes(byte[] bytes, int offset, int length) {
 		try ( ByteArrayInputStream bais = new ByteArrayInputStream(bytes, offset, length);
@@ -254,14 +309,30 @@ public class SpatialIndexedCluster extends QuadTreeSpatialCluster
 	
 	public byte[] toBytes(int blockSize) {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream(blockSize);
-		try ( OutputStream compressed = Lz4Compressions.toCompressedStream(baos, LZ4_BLOCK_SIZE);
+		writeCompressed(baos);
+		return baos.toByteArray();
+	}
+	
+	/**
+	 * {@link #toBytes(int)}가 반환할 byte 배열의 길이를 계산한다.
+	 * 직렬화된 결과는 유지하지 않고 길이만 계산한다.
+	 * 
+	 * @return	직렬화된 클러스터의 길이
+	 */
+	public long getSerializedLength() {
+		CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+		writeCompressed(counter);
+		return counter.getCount();
+	}
+	
+	private void writeCompressed(OutputStream out) {
+		try ( OutputStream compressed = Lz4Compressions.toCompressedStream(out, LZ4_BLOCK_SIZE);
 				DataOutputStream output = new DataOutputStream(compressed) ) {
 			serialize(output);
 		}
 		catch ( IOException e ) {
 			throw new AssertionError(e);
 		}
-		return baos.toByteArray();
 	}
 	
 	@Override
@@ -1,18 +1,26 @@
 package marmot.io.geo.index;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Point;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import utils.Preconditions;
 import utils.stream.FStream;
 
 import marmot.GRecordSchema;
+import marmot.Record;
 import marmot.RecordSchema;
 import marmot.io.HdfsPath;
 import marmot.io.MarmotFileException;
+import marmot.io.geo.cluster.KnnQuery;
 import marmot.io.geo.cluster.QuadClusterFile;
+import marmot.io.geo.cluster.WindowAggregate;
 import marmot.optor.support.Match;
 
 /**
@@ -23,6 +31,7 @@ public class SpatialIndexedFile implements QuadClusterFile<SpatialIndexedCluster
 	private final HdfsPath m_clusterDir;
 	private final HdfsPath m_indexFilePath;
 	private final GlobalIndex m_globalIdx;
+	private final DeltaIndex m_deltaIdx;
 	private final RecordSchema m_schema;
 	
 	public static SpatialIndexedFile load(HdfsPath clusterDir) {
@@ -42,6 +51,7 @@ public class SpatialIndexedFile implements QuadClusterFile<SpatialIndexedCluster
 			}
 
 			m_globalIdx = GlobalIndex.open(m_indexFilePath);
+			m_deltaIdx = DeltaIndex.load(m_clusterDir);
 			m_schema = m_globalIdx.getGRecordSchema().getRecordSchema();
 		}
 		catch ( IOException e ) {
@@ -67,6 +77,16 @@ public class SpatialIndexedFile implements QuadClusterFile<SpatialIndexedCluster
 		return m_globalIdx;
 	}
 	
+	/**
+	 * 본 파일에 추가되었지만 아직 기본 클러스터에 병합되지 않은 delta 클러스터들의
+	 * 인덱스를 반환한다.
+	 * 
+	 * @return	delta 인덱스
+	 */
+	public DeltaIndex getDeltaIndex() {
+		return m_deltaIdx;
+	}
+	
 	public GRecordSchema getGRecordSchema() {
 		return m_globalIdx.getGRecordSchema();
 	}
@@ -88,39 +108,178 @@ public class SpatialIndexedFile implements QuadClusterFile<SpatialIndexedCluster
 
 	@Override
 	public int getClusterCount() {
-		return m_globalIdx.getClusterCount();
+		if ( m_deltaIdx.isEmpty() ) {
+			return m_globalIdx.getClusterCount();
+		}
+		return getClusterKeyAll().size();
 	}
 
 	@Override
 	public long getRecordCount() {
-		return m_globalIdx.getRecordCount();
+		return m_globalIdx.getRecordCount() + m_deltaIdx.getRecordCount();
 	}
 
 	@Override
 	public long getDuplicateCount() {
-		return m_globalIdx.getOwnedRecordCount();
+		return m_globalIdx.getOwnedRecordCount() + m_deltaIdx.getOwnedRecordCount();
 	}
 
 	@Override
 	public Set<String> getClusterKeyAll() {
-		return m_globalIdx.getClusterKeyAll();
+		if ( m_deltaIdx.isEmpty() ) {
+			return m_globalIdx.getClusterKeyAll();
+		}
+		else {
+			return Sets.union(m_globalIdx.getClusterKeyAll(), m_deltaIdx.getClusterKeyAll());
+		}
 	}
 
+	/**
+	 * 주어진 식별자(quadKey)에 해당하는 클러스터 객체를 반환한다.
+	 * 해당 클러스터에 추가된 delta 클러스터가 있는 경우는 이들을 병합한 클러스터를 반환한다.
+	 * 
+	 * @param quadKey	대상 클러스터의 quad-key.
+	 * @return	적재된 클러스터 객체.
+	 */
 	@Override
 	public SpatialIndexedCluster getCluster(String quadKey) throws SpatialIndexedFileException {
 		Preconditions.checkNotNullArgument(quadKey, "quadkey is null");
 		
 		GlobalIndexEntry cidx = m_globalIdx.get(quadKey);
-		if ( cidx == null ) {
+		List<GlobalIndexEntry> deltas = m_deltaIdx.get(quadKey);
+		if ( cidx == null && deltas.isEmpty() ) {
 			throw new IllegalArgumentException("invalid quadkey: " + quadKey);
 		}
+		if ( deltas.isEmpty() ) {
+			return SpatialIndexedCluster.load(m_clusterDir, cidx);
+		}
+		
+		List<SpatialIndexedCluster> parts = Lists.newArrayList();
+		if ( cidx != null ) {
+			parts.add(SpatialIndexedCluster.load(m_clusterDir, cidx));
+		}
+		for ( GlobalIndexEntry delta: deltas ) {
+			parts.add(SpatialIndexedCluster.load(m_clusterDir, delta));
+		}
 		
-		return SpatialIndexedCluster.load(m_clusterDir, cidx);
+		return SpatialIndexedCluster.merge(quadKey, getGRecordSchema(), parts);
 	}
 
+	/**
+	 * 주어진 위경도 좌표계 사각 영역과 겹치는 레코드를 포함할 수 있는 클러스터들의
+	 * 식별자를 반환한다.
+	 * 전역 인덱스의 데이터 영역과 점유 비트맵을 통해 겹치는 레코드가 없음이 확인된
+	 * 클러스터는 (delta 클러스터가 없는 경우) 제외된다.
+	 * 
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	클러스터 식별자 스트림
+	 */
 	@Override
 	public FStream<String> queryClusterKeys(Envelope range84) {
-		return m_globalIdx.query(range84).map(GlobalIndexEntry::quadKey);
+		FStream<String> keys = m_globalIdx.query(range84)
+										.filter(ent -> ent.mayIntersect(range84))
+										.map(GlobalIndexEntry::quadKey);
+		if ( !m_deltaIdx.isEmpty() ) {
+			keys = keys.concatWith(m_deltaIdx.queryClusterKeys(range84)).distinct();
+		}
+		
+		return keys;
+	}
+	
+	/**
+	 * 주어진 위경도 좌표계 사각 영역과 겹치는 레코드들의 집계 결과를 반환한다.
+	 * 질의 영역에 모든 데이터가 포함되는 클러스터는 전역 인덱스에 기록된 레코드 수와
+	 * 데이터 영역으로 집계하고, 경계에 걸친 클러스터만 적재하여 집계한다.
+	 * 
+	 * @param range84		질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param sumColumns	합계를 구할 컬럼 이름들.
+	 * @return	집계 결과
+	 */
+	@Override
+	public WindowAggregate aggregate(Envelope range84, String... sumColumns) {
+		WindowAggregate agg = new WindowAggregate(getRecordSchema(), sumColumns);
+		
+		Set<String> scanKeys = Sets.newTreeSet();
+		for ( GlobalIndexEntry entry: m_globalIdx.query(range84) ) {
+			if ( !agg.hasSumColumns() && range84.covers(entry.getDataBounds())
+				&& m_deltaIdx.get(entry.quadKey()).isEmpty() ) {
+				agg.accumulateCluster(entry.getOwnedRecordCount(), entry.getDataBounds());
+			}
+			else {
+				scanKeys.add(entry.quadKey());
+			}
+		}
+		m_deltaIdx.queryClusterKeys(range84).forEach(scanKeys::add);
+		
+		for ( String quadKey: scanKeys ) {
+			getCluster(quadKey).aggregate(range84, agg);
+		}
+		
+		return agg;
+	}
+	
+	/**
+	 * 본 파일에 저장된 레코드들의 공간 분포 히스토그램을 반환한다.
+	 * 병합되지 않은 delta 클러스터가 있는 경우는 이들도 반영된 히스토그램을 생성한다.
+	 * 
+	 * @return	히스토그램
+	 */
+	public SpatialHistogram getHistogram() {
+		SpatialHistogram hist = m_globalIdx.getHistogram();
+		if ( m_deltaIdx.isEmpty() ) {
+			return hist;
+		}
+		
+		List<GlobalIndexEntry> entries = Lists.newArrayList(m_globalIdx.getIndexEntryAll());
+		entries.addAll(m_deltaIdx.getIndexEntryAll());
+		return SpatialHistogram.build(entries, hist.getLevel());
+	}
+	
+	/**
+	 * 주어진 위경도 좌표계 사각 영역과 겹치는 레코드 수의 추정치를 반환한다.
+	 * 클러스터를 적재하지 않고 히스토그램만을 사용하여 추정한다.
+	 * 
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @return	레코드 수 추정치
+	 */
+	public long estimateCount(Envelope range84) {
+		return getHistogram().estimateCount(range84);
+	}
+	
+	/**
+	 * 본 파일과 주어진 파일 사이의 공간 조인시 비교 대상 레코드 쌍의 수의 추정치를 반환한다.
+	 * 
+	 * @param other	조인 대상 파일
+	 * @return	레코드 쌍 수 추정치
+	 * @see SpatialHistogram#estimateJoinPairs(SpatialHistogram)
+	 */
+	public long estimateJoinPairs(SpatialIndexedFile other) {
+		return getHistogram().estimateJoinPairs(other.getHistogram());
+	}
+	
+	/**
+	 * 주어진 점에서 가장 가까운 최대 k개의 레코드들을 거리 순으로 반환한다.
+	 * 전역 인덱스의 QuadTree를 질의 점과의 거리 순으로 탐색하여 필요한 클러스터만 적재한다.
+	 *
+	 * @param point			질의 점. 레코드의 좌표계 사용
+	 * @param k				검색할 최대 레코드 수.
+	 * @param maxDistance	검색 대상 최대 거리. 거리 제한이 없는 경우는
+	 * 						{@link Double#POSITIVE_INFINITY}.
+	 * @return	거리 순으로 정렬된 레코드 스트림.
+	 */
+	@Override
+	public FStream<Record> knn(Point point, int k, double maxDistance) {
+		List<GlobalIndexEntry> entries = m_globalIdx.getIndexEntryAll();
+		
+		KnnQuery query = new KnnQuery(this, point, k, maxDistance);
+		query.addClusterIndex(m_globalIdx.getQuadTree(), idx -> entries.get(idx).quadKey());
+		
+		// 기본 클러스터가 없이 delta 클러스터로만 구성된 클러스터를 추가한다.
+		FStream.from(m_deltaIdx.getClusterKeyAll())
+				.filter(qk -> m_globalIdx.get(qk) == null)
+				.forEach(query::addCluster);
+		
+		return query;
 	}
 	
 	public static FStream<Match<GlobalIndexEntry>>
@@ -0,0 +1,303 @@
+package marmot.io.geo.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import utils.Preconditions;
+import utils.StopWatch;
+import utils.stream.FStream;
+
+import marmot.GRecordSchema;
+import marmot.Record;
+import marmot.RecordSet;
+import marmot.geo.CoordinateTransform;
+import marmot.io.HdfsPath;
+import marmot.io.MarmotFileException;
+import marmot.io.geo.index.ClusterPackPlanner.Placement;
+import marmot.io.geo.quadtree.LeafCapacityPolicy;
+import marmot.optor.support.QuadKeyBinder;
+import marmot.optor.support.QuadKeyBinder.QuadKeyBinding;
+import marmot.support.EnvelopeTaggedRecord;
+import marmot.type.MapTile;
+
+/**
+ * 이미 생성된 공간 인덱스 파일 ({@link SpatialIndexedFile})에 전체 인덱스 재생성 없이
+ * 레코드를 추가하는 기능을 제공하는 클래스.
+ * <p>
+ * 추가되는 레코드들은 기존 클러스터의 quad-key별로 묶여 delta 클러스터로 저장되고,
+ * 이들의 인덱스 정보는 {@link DeltaIndex}에 기록된다. 따라서 추가 비용은 추가되는 데이터의
+ * 크기에 비례한다. 누적된 delta 클러스터들은 {@link #compact()}를 통해 기본 클러스터에
+ * 병합되며, 이때 delta가 존재하는 클러스터들만 새로 기록된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class SpatialIndexedFileAppender {
+	private static final Logger s_logger = LoggerFactory.getLogger(SpatialIndexedFileAppender.class);
+	private static final String COMPACTED_PACK_PREFIX = "compacted_";
+	private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+	private final HdfsPath m_clusterDir;
+	private LeafCapacityPolicy m_capacityPolicy = LeafCapacityPolicy.DEFAULT;
+
+	public SpatialIndexedFileAppender(HdfsPath clusterDir) {
+		Preconditions.checkNotNullArgument(clusterDir, "clusterDir is null");
+
+		m_clusterDir = clusterDir;
+	}
+
+	/**
+	 * 새로 기록되는 클러스터들의 내부 QuadTree가 사용할 단말노드 용량 정책을 설정한다.
+	 *
+	 * @param policy	단말노드 용량 정책
+	 * @return	본 객체
+	 */
+	public SpatialIndexedFileAppender setLeafCapacityPolicy(LeafCapacityPolicy policy) {
+		Preconditions.checkNotNullArgument(policy, "LeafCapacityPolicy is null");
+
+		m_capacityPolicy = policy;
+		return this;
+	}
+
+	/**
+	 * 주어진 레코드들을 delta 클러스터로 추가한다.
+	 * 각 레코드는 기존 클러스터들 중에서 공간적으로 겹치는 모든 클러스터에 추가되고,
+	 * 겹치는 클러스터가 없는 레코드는 새로 계산된 quad-key의 delta 클러스터에 추가된다.
+	 *
+	 * @param rset	추가할 레코드 세트.
+	 * @return	새로 생성된 delta 클러스터의 인덱스 리스트.
+	 */
+	public List<GlobalIndexEntry> append(RecordSet rset) {
+		Preconditions.checkNotNullArgument(rset, "rset is null");
+
+		StopWatch watch = StopWatch.start();
+		SpatialIndexedFile idxFile = SpatialIndexedFile.load(m_clusterDir);
+		GRecordSchema gschema = idxFile.getGRecordSchema();
+		int geomColIdx = gschema.getGeometryColumnIdx();
+		CoordinateTransform trans = CoordinateTransform.getTransformToWgs84(gschema.getSrid());
+
+		Set<String> quadKeys = Sets.newHashSet(idxFile.getClusterKeyAll());
+		QuadKeyBinder binder = new QuadKeyBinder(quadKeys, true);
+
+		Map<String,List<EnvelopeTaggedRecord>> groups = Maps.newTreeMap();
+		long nskippeds = 0;
+		try {
+			Record record;
+			while ( (record = rset.nextCopy()) != null ) {
+				Geometry geom = record.getGeometry(geomColIdx);
+				if ( geom == null || geom.isEmpty() ) {
+					++nskippeds;
+					continue;
+				}
+
+				Envelope mbr84 = geom.getEnvelopeInternal();
+				if ( trans != null ) {
+					mbr84 = trans.transform(mbr84);
+				}
+
+				List<QuadKeyBinding> bindings = binder.bindQuadKeys(mbr84);
+				if ( bindings.isEmpty() || bindings.get(0).quadkey().isEmpty() ) {
+					++nskippeds;
+					continue;
+				}
+				for ( QuadKeyBinding binding: bindings ) {
+					EnvelopeTaggedRecord etr = new EnvelopeTaggedRecord(mbr84, record);
+					groups.computeIfAbsent(binding.quadkey(), k -> Lists.newArrayList()).add(etr);
+				}
+			}
+		}
+		finally {
+			rset.closeQuietly();
+		}
+		if ( groups.isEmpty() ) {
+			return Lists.newArrayList();
+		}
+
+		String packId = DeltaIndex.DELTA_PACK_PREFIX + System.currentTimeMillis();
+		List<GlobalIndexEntry> entries = writePack(packId, gschema, groups, idxFile.getBlockSize());
+
+		DeltaIndex deltaIdx = idxFile.getDeltaIndex();
+		deltaIdx.addAll(entries);
+		deltaIdx.store();
+		watch.stop();
+
+		s_logger.info("appended: dir={}, pack={}, nclusters={}, nrecords={}, skipped={}, elapsed={}",
+						m_clusterDir, packId, entries.size(),
+						FStream.from(groups.values()).mapToLong(l -> (long)l.size()).sum(),
+						nskippeds, watch.getElapsedMillisString());
+
+		return entries;
+	}
+
+	/**
+	 * 누적된 delta 클러스터들을 기본 클러스터에 병합한다.
+	 * Delta가 존재하는 클러스터들만 병합되어 새로운 pack 파일에 기록되고,
+	 * 나머지 클러스터들은 기존 pack 파일을 그대로 사용한다.
+	 * 병합 이후 더 이상 참조되지 않는 pack 파일과 delta 인덱스는 삭제된다.
+	 *
+	 * @return	병합된 클러스터의 갯수.
+	 */
+	public int compact() {
+		StopWatch watch = StopWatch.start();
+		SpatialIndexedFile idxFile = SpatialIndexedFile.load(m_clusterDir);
+		DeltaIndex deltaIdx = idxFile.getDeltaIndex();
+		if ( deltaIdx.isEmpty() ) {
+			return 0;
+		}
+
+		GlobalIndex globalIdx = idxFile.getGlobalIndex();
+		GRecordSchema gschema = idxFile.getGRecordSchema();
+
+		Map<String,SpatialIndexedCluster> merged = Maps.newTreeMap();
+		for ( String quadKey: deltaIdx.getClusterKeyAll() ) {
+			merged.put(quadKey, idxFile.getCluster(quadKey));
+		}
+
+		String packId = COMPACTED_PACK_PREFIX + System.currentTimeMillis();
+		List<GlobalIndexEntry> compacteds = writeClusters(packId, merged, idxFile.getBlockSize());
+		Map<String,GlobalIndexEntry> replacements = FStream.from(compacteds)
+															.tagKey(GlobalIndexEntry::quadKey)
+															.toMap();
+
+		// 병합된 클러스터는 새 인덱스로 대체하고, 기존에 없던 클러스터는 추가한다.
+		List<GlobalIndexEntry> entries = Lists.newArrayList();
+		for ( GlobalIndexEntry entry: globalIdx.getIndexEntryAll() ) {
+			GlobalIndexEntry replaced = replacements.remove(entry.quadKey());
+			entries.add(replaced != null ? replaced : entry);
+		}
+		entries.addAll(replacements.values());
+
+		Set<String> prevPackIds = FStream.from(globalIdx.getIndexEntryAll())
+										.map(GlobalIndexEntry::packId)
+										.toSet();
+		Set<String> deltaPackIds = FStream.from(deltaIdx.getIndexEntryAll())
+										.map(GlobalIndexEntry::packId)
+										.toSet();
+
+		GlobalIndex.create(GlobalIndex.toGlobalIndexPath(m_clusterDir), gschema, entries);
+		deltaIdx.clear();
+		deltaIdx.store();
+
+		// 더 이상 참조되지 않는 pack 파일들을 삭제한다.
+		Set<String> livePackIds = FStream.from(entries).map(GlobalIndexEntry::packId).toSet();
+		FStream.from(Sets.union(prevPackIds, deltaPackIds))
+				.filter(id -> !livePackIds.contains(id))
+				.forEach(id -> m_clusterDir.child(id).delete());
+
+		watch.stop();
+		s_logger.info("compacted: dir={}, pack={}, nclusters={}, elapsed={}",
+						m_clusterDir, packId, merged.size(), watch.getElapsedMillisString());
+
+		return merged.size();
+	}
+
+	private List<GlobalIndexEntry> writePack(String packId, GRecordSchema gschema,
+											Map<String,List<EnvelopeTaggedRecord>> groups,
+											long blockSize) {
+		Map<String,SpatialIndexedCluster> clusters = Maps.newTreeMap();
+		for ( Map.Entry<String,List<EnvelopeTaggedRecord>> group: groups.entrySet() ) {
+			String quadKey = group.getKey();
+			clusters.put(quadKey, SpatialIndexedCluster.build(quadKey, gschema,
+															FStream.from(group.getValue()),
+															m_capacityPolicy));
+		}
+
+		return writeClusters(packId, clusters, blockSize);
+	}
+
+	private List<GlobalIndexEntry> writeClusters(String packId,
+												Map<String,SpatialIndexedCluster> clusters,
+												long blockSize) {
+		// 직렬화된 클러스터들을 모두 메모리에 유지하지 않도록, 먼저 클러스터별 직렬화 길이만으로
+		// pack 파일 배치를 계획하고 실제 직렬화는 배치 순서대로 기록할 때 수행한다.
+		List<SpatialIndexedCluster> clusterList = Lists.newArrayList(clusters.values());
+		long[] lengths = new long[clusterList.size()];
+		for ( int i =0; i < clusterList.size(); ++i ) {
+			lengths[i] = clusterList.get(i).getSerializedLength();
+		}
+
+		ClusterPackPlanner planner = new ClusterPackPlanner(blockSize);
+		List<Placement> placements = planner.plan(lengths);
+
+		List<GlobalIndexEntry> entries = Lists.newArrayList();
+		int idx = 0;
+		while ( idx < placements.size() ) {
+			int packNo = placements.get(idx).packNo();
+			String id = String.format("%s_%d", packId, packNo);
+			HdfsPath packPath = m_clusterDir.child(id);
+
+			try ( FSDataOutputStream fsdos = packPath.create(true, blockSize) ) {
+				for (; idx < placements.size() && placements.get(idx).packNo() == packNo; ++idx ) {
+					Placement placement = placements.get(idx);
+					SpatialIndexedCluster cluster = clusterList.get(placement.index());
+
+					// 블럭 경계에 맞추기 위해 남은 공간을 채운다.
+					long start = placement.start();
+					writePadding(fsdos, start - fsdos.getPos());
+					byte[] bytes = cluster.toBytes(INITIAL_BUFFER_SIZE);
+					Preconditions.checkState(bytes.length == placement.length(),
+											"cluster length mismatch: quadKey=" + cluster.getQuadKey());
+					fsdos.write(bytes);
+
+					Envelope tileBounds = MapTile.fromQuadKey(cluster.getQuadKey()).getBounds();
+					List<Envelope> mbr84s = cluster.read(false)
+													.map(EnvelopeTaggedRecord::getEnvelope)
+													.toList();
+					List<Envelope> ownedMbr84s = FStream.from(mbr84s)
+														.filter(mbr84 -> tileBounds.contains(mbr84.centre()))
+														.toList();
+					int blockNo = (int)(start / blockSize);
+					GlobalIndexEntry entry = new GlobalIndexEntry(id, blockNo, cluster.getQuadKey(),
+													cluster.getDataBounds(), (int)cluster.getRecordCount(),
+													ownedMbr84s.size(), start, placement.length());
+					entry.setHistogram(SpatialHistogram.ofRecords(ownedMbr84s,
+																SpatialHistogram.DEFAULT_LEVEL));
+					
+					// 클러스터 데이터 영역은 데이터셋 좌표계의 geometry MBR도 포함하기 때문에,
+					// 비트맵 격자는 EPSG:4326 레코드 MBR들의 합 영역을 기준으로 생성한다.
+					Envelope bounds84 = new Envelope();
+					mbr84s.forEach(bounds84::expandToInclude);
+					entry.setOccupancy(OccupancyBitmap.build(bounds84, mbr84s));
+					entries.add(entry);
+				}
+			}
+			catch ( IOException e ) {
+				throw new MarmotFileException("fails to write cluster pack: path=" + packPath
+												+ ", cause=" + e);
+			}
+		}
+
+		if ( s_logger.isDebugEnabled() ) {
+			long total = FStream.from(placements).mapToLong(Placement::length).sum();
+			s_logger.debug("placed clusters: {}, nclusters={}, npacks={}, size={}",
+							planner, placements.size(),
+							placements.isEmpty() ? 0 : placements.get(placements.size()-1).packNo()+1,
+							total);
+		}
+
+		return entries;
+	}
+
+	private static void writePadding(FSDataOutputStream fsdos, long length) throws IOException {
+		byte[] zeros = new byte[(int)Math.min(length, INITIAL_BUFFER_SIZE)];
+		for ( long remains = length; remains > 0; remains -= zeros.length ) {
+			fsdos.write(zeros, 0, (int)Math.min(remains, zeros.length));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[dir=%s]", getClass().getSimpleName(), m_clusterDir);
+	}
+}
@@ -34,6 +34,30 @@ public abstract class AbstractPartition<T extends EnvelopedValue> implements Par
 		return m_bounds;
 	}
 
+	@Override
+	public boolean visitIntersects(Envelope query, QuadTreeVisitor<? super T> visitor) {
+		for ( int i =0; i < m_values.size(); ++i ) {
+			T value = m_values.get(i);
+			if ( value.getEnvelope().intersects(query) && !visitor.visit(value) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean remove(T value) {
+		if ( !m_values.remove(value) ) {
+			return false;
+		}
+		
+		m_bounds.setToNull();
+		for ( T remain: m_values ) {
+			m_bounds.expandToInclude(remain.getEnvelope());
+		}
+		return true;
+	}
+
 	@Override
 	public boolean add(T value) {
 		if ( mayOverflow(value) ) {
@@ -0,0 +1,250 @@
+package marmot.io.geo.quadtree;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
+import utils.stream.FStream;
+
+import marmot.optor.geo.SpatialRelation;
+import marmot.type.MapTile;
+
+
+/**
+ * 복수개의 쓰레드가 동시에 데이터를 삽입하고 질의할 수 있는 QuadTree.
+ * <p>
+ * 최상위 타일을 지정된 레벨({@code stripeLevel})만큼 미리 분할하여 4<sup>stripeLevel</sup>개의
+ * 하위 타일(stripe)을 만들고, 각 stripe마다 독립된 {@link QuadTree}와 read-write lock을 둔다.
+ * 데이터 삽입시에는 데이터와 겹치는 stripe들에 대해서만 차례로 쓰기 lock을 잡고 삽입하기 때문에,
+ * 서로 다른 stripe에 속한 데이터들은 동시에 삽입된다. 단말노드 분할(split) 및 단말노드 사이의
+ * 연결 관계 변경은 하나의 stripe 내부에서만 발생하므로 해당 stripe의 lock으로 보호된다.
+ * 질의는 겹치는 stripe들의 읽기 lock을 잡고 결과를 수집한다.
+ * <p>
+ * 복수개의 stripe에 걸치는 데이터는 겹치는 모든 stripe에 삽입되며, 이는 단일 QuadTree에서
+ * 복수개의 단말노드에 걸치는 데이터가 모든 단말노드에 삽입되는 것과 같다.
+ * 삽입이 끝나면 {@link #toQuadTree()}를 통해 일반 {@link QuadTree}로 변환하여 사용한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class ConcurrentQuadTree<T extends EnvelopedValue, P extends Partition<T>> {
+	public static final int DEFAULT_STRIPE_LEVEL = 2;
+
+	private final String m_quadKey;
+	private final Envelope m_bounds;
+	private final Function<String,P> m_partitionSupplier;
+	private final List<Stripe<T,P>> m_stripes;
+
+	private static final class Stripe<T extends EnvelopedValue, P extends Partition<T>> {
+		private final Envelope m_tileBounds;
+		private final ReentrantReadWriteLock m_lock = new ReentrantReadWriteLock();
+		@GuardedBy("m_lock") private final QuadTree<T,P> m_qtree;
+		@GuardedBy("m_lock") private boolean m_frozen = false;
+
+		Stripe(String quadKey, Function<String,P> partitionSupplier) {
+			m_tileBounds = MapTile.fromQuadKey(quadKey).getBounds();
+			m_qtree = new QuadTree<>(quadKey, partitionSupplier);
+			m_qtree.setRangeExpandable(false);
+		}
+	}
+
+	public ConcurrentQuadTree(String quadKey, Function<String,P> partitionSupplier) {
+		this(quadKey, DEFAULT_STRIPE_LEVEL, partitionSupplier);
+	}
+
+	/**
+	 * 동시 접근 QuadTree를 생성한다.
+	 *
+	 * @param quadKey		QuadTree의 최상위 quad-key.
+	 * @param stripeLevel	stripe 분할 레벨. 4<sup>stripeLevel</sup>개의 stripe가 생성된다.
+	 * @param partitionSupplier	partition 생성기.
+	 */
+	public ConcurrentQuadTree(String quadKey, int stripeLevel, Function<String,P> partitionSupplier) {
+		Preconditions.checkNotNullArgument(quadKey, "quadKey is null");
+		Preconditions.checkNotNullArgument(partitionSupplier, "partitionSupplier is null");
+		Preconditions.checkArgument(stripeLevel >= 0
+									&& quadKey.length() + stripeLevel <= MortonCodes.MAX_LEVEL,
+									"invalid stripe level: " + stripeLevel);
+
+		m_quadKey = quadKey;
+		m_bounds = MapTile.fromQuadKey(quadKey).getBounds();
+		m_partitionSupplier = partitionSupplier;
+
+		int nstripes = 1 << (2*stripeLevel);
+		m_stripes = Lists.newArrayListWithCapacity(nstripes);
+		for ( int i =0; i < nstripes; ++i ) {
+			long code = ((long)i) << (2*(MortonCodes.MAX_LEVEL - stripeLevel));
+			String suffix = MortonCodes.decode(code, stripeLevel);
+			m_stripes.add(new Stripe<>(quadKey + suffix, partitionSupplier));
+		}
+	}
+
+	public String getQuadKey() {
+		return m_quadKey;
+	}
+
+	public int getStripeCount() {
+		return m_stripes.size();
+	}
+
+	/**
+	 * 입력 공간 데이터를 삽입한다.
+	 * 본 메소드는 복수개의 쓰레드에서 동시에 호출될 수 있다.
+	 *
+	 * @param value	삽입할 공간 데이터.
+	 * @throws OutOfRangeException	데이터가 QuadTree 영역과 겹치지 않는 경우.
+	 * @throws TooBigValueException	삽입할 데이터가 너무커서 단말노드에 저장할 수 없는 경우.
+	 * @throws IllegalStateException	{@link #toQuadTree()}가 이미 호출된 경우.
+	 */
+	public void insert(T value) {
+		Preconditions.checkNotNullArgument(value, "value is null");
+
+		Envelope mbr = value.getEnvelope();
+		if ( !m_bounds.intersects(mbr) ) {
+			String vqk = MapTile.getSmallestContainingTile(mbr).getQuadKey();
+			throw new OutOfRangeException("tree=" + m_quadKey + ", value=" + vqk);
+		}
+
+		for ( Stripe<T,P> stripe: m_stripes ) {
+			if ( stripe.m_tileBounds.intersects(mbr) ) {
+				Lock lock = stripe.m_lock.writeLock();
+				lock.lock();
+				try {
+					Preconditions.checkState(!stripe.m_frozen, "QuadTree has been frozen");
+					stripe.m_qtree.insert(value);
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 주어진 공간 데이터들을 삽입한다.
+	 * <p>
+	 * Stripe별로 하나의 쓰레드가 자신과 겹치는 데이터들을 입력 순서대로 삽입하고, 서로 다른
+	 * stripe들은 동시에 삽입된다. 단말노드의 분할 위치는 삽입 순서에 따라 달라지지만 stripe
+	 * 내부의 삽입 순서는 항상 입력 순서와 같기 때문에, 동일한 입력에 대해서는 쓰레드 스케쥴링과
+	 * 무관하게 항상 동일한 QuadTree가 생성된다.
+	 *
+	 * @param values	삽입할 공간 데이터 리스트.
+	 * @throws OutOfRangeException	데이터가 QuadTree 영역과 겹치지 않는 경우.
+	 * @throws TooBigValueException	삽입할 데이터가 너무커서 단말노드에 저장할 수 없는 경우.
+	 * @throws IllegalStateException	{@link #toQuadTree()}가 이미 호출된 경우.
+	 */
+	public void insertAll(List<T> values) {
+		Preconditions.checkNotNullArgument(values, "values is null");
+
+		for ( T value: values ) {
+			Envelope mbr = value.getEnvelope();
+			if ( !m_bounds.intersects(mbr) ) {
+				String vqk = MapTile.getSmallestContainingTile(mbr).getQuadKey();
+				throw new OutOfRangeException("tree=" + m_quadKey + ", value=" + vqk);
+			}
+		}
+
+		m_stripes.parallelStream().forEach(stripe -> {
+			Lock lock = stripe.m_lock.writeLock();
+			lock.lock();
+			try {
+				Preconditions.checkState(!stripe.m_frozen, "QuadTree has been frozen");
+				for ( T value: values ) {
+					if ( stripe.m_tileBounds.intersects(value.getEnvelope()) ) {
+						stripe.m_qtree.insert(value);
+					}
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+		});
+	}
+
+	/**
+	 * 주어진 질의 사각형과 겹치는 데이터들을 반환한다.
+	 * 질의 도중에 삽입되는 데이터는 stripe별로 질의 시점에 따라 결과에 포함되지 않을 수 있다.
+	 * 질의 사각형 ({@code key84})은 반드시 EPSG:4326 좌표체계로 기술되어야 한다.
+	 *
+	 * @param op	공간 질의 연산자
+	 * @param key84	질의 box.
+	 * @return	데이터 스트림
+	 */
+	public FStream<T> query(SpatialRelation op, Envelope key84) {
+		List<T> founds = Lists.newArrayList();
+		for ( Stripe<T,P> stripe: m_stripes ) {
+			if ( op == SpatialRelation.ALL || stripe.m_tileBounds.intersects(key84) ) {
+				Lock lock = stripe.m_lock.readLock();
+				lock.lock();
+				try {
+					// lock 범위 안에서 결과를 모두 수집한다.
+					founds.addAll(stripe.m_qtree.query(op, key84).toList());
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		return FStream.from(founds);
+	}
+
+	/**
+	 * 삽입된 데이터 수를 반환한다. 복수개의 stripe에 삽입된 데이터는 중복되어 계산된다.
+	 *
+	 * @return	데이터 수
+	 */
+	public long getValueCount() {
+		long count = 0;
+		for ( Stripe<T,P> stripe: m_stripes ) {
+			Lock lock = stripe.m_lock.readLock();
+			lock.lock();
+			try {
+				count += stripe.m_qtree.getRootNode().getValueCount();
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 지금까지 삽입된 데이터들로 구성된 {@link QuadTree}를 생성한다.
+	 * 생성된 QuadTree는 본 객체의 단말노드들을 공유하기 때문에, 이후 본 객체에 대한
+	 * 데이터 삽입은 허용되지 않는다.
+	 *
+	 * @return	QuadTree
+	 */
+	public QuadTree<T,P> toQuadTree() {
+		List<Lock> locks = FStream.from(m_stripes)
+									.map(stripe -> (Lock)stripe.m_lock.writeLock())
+									.toList();
+		locks.forEach(Lock::lock);
+		try {
+			QuadTreeBuilder<T,P> builder = new QuadTreeBuilder<>(m_quadKey, m_partitionSupplier);
+			for ( Stripe<T,P> stripe: m_stripes ) {
+				stripe.m_frozen = true;
+				stripe.m_qtree.streamLeafNodes().forEach(builder::add);
+			}
+
+			return builder.build();
+		}
+		finally {
+			locks.forEach(Lock::unlock);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[key=%s, nstripes=%d]", getClass().getSimpleName(),
+							m_quadKey, m_stripes.size());
+	}
+}
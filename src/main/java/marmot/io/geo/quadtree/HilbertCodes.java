@@ -0,0 +1,59 @@
+package marmot.io.geo.quadtree;
+
+/**
+ * EPSG:4326 좌표의 점을 Hilbert 곡선 상의 위치({@code long})로 변환하는 기능을 제공하는 클래스.
+ * <p>
+ * 좌표는 {@link MortonCodes}와 동일하게 quad-key (Web Mercator 기반) 타일 체계의
+ * {@value MortonCodes#MAX_LEVEL} 레벨 타일 좌표로 변환된 뒤 Hilbert 코드로 변환된다.
+ * Morton 코드와 달리 Hilbert 곡선은 인접한 코드 값을 갖는 타일들이 항상 공간적으로도 인접하기 때문에,
+ * 코드 순으로 정렬된 데이터의 공간 지역성이 더 높다.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class HilbertCodes {
+	private HilbertCodes() {
+		throw new AssertionError("Should not be called: class=" + getClass());
+	}
+	
+	/**
+	 * EPSG:4326 좌표의 점을 포함하는 {@value MortonCodes#MAX_LEVEL} 레벨 타일의
+	 * Hilbert 코드를 반환한다.
+	 * 
+	 * @param lon	경도
+	 * @param lat	위도
+	 * @return	Hilbert 코드
+	 */
+	public static long encode(double lon, double lat) {
+		return encode(MortonCodes.toTileX(lon), MortonCodes.toTileY(lat));
+	}
+	
+	/**
+	 * {@value MortonCodes#MAX_LEVEL} 레벨 타일 좌표를 Hilbert 코드로 변환한다.
+	 * 
+	 * @param x	타일 x 좌표
+	 * @param y	타일 y 좌표
+	 * @return	Hilbert 코드
+	 */
+	static long encode(long x, long y) {
+		final long mask = (1L << MortonCodes.MAX_LEVEL) - 1;
+		
+		long code = 0;
+		for ( long s = 1L << (MortonCodes.MAX_LEVEL-1); s > 0; s >>>= 1 ) {
+			long rx = ((x & s) != 0) ? 1 : 0;
+			long ry = ((y & s) != 0) ? 1 : 0;
+			code += s * s * ((3 * rx) ^ ry);
+			
+			// 하위 사분면의 방향에 맞도록 좌표를 회전시킨다.
+			if ( ry == 0 ) {
+				if ( rx == 1 ) {
+					x = mask - x;
+					y = mask - y;
+				}
+				long t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return code;
+	}
+}
@@ -0,0 +1,179 @@
+package marmot.io.geo.quadtree;
+
+import java.io.Serializable;
+
+import org.locationtech.jts.geom.Envelope;
+
+import utils.Preconditions;
+
+
+/**
+ * {@link PointerPartition}의 단말노드 용량을 결정하는 정책.
+ * <p>
+ * 단말노드가 가득 찬 경우, 노드를 분할(split)할 것인지 아니면 노드의 용량을 늘릴 것인지를
+ * 단말노드에 저장된 데이터의 밀집도를 바탕으로 한 질의 비용 모델로 결정한다.
+ * 노드에 저장된 데이터의 MBR이 노드 타일에 비해 작은 경우(즉, 데이터가 밀집된 경우)는
+ * 노드를 분할하여도 대부분의 데이터가 하나의 하위 노드로만 이동하기 때문에, 데이터가
+ * 분리될 때까지 여러 단계의 분할이 발생하여 트리의 깊이만 깊어진다. 비용 모델은 이렇게 추가로
+ * 생성될 것으로 예상되는 레벨 수를 MBR과 타일의 크기 비율로 추정하고, 질의시 레벨당 노드 방문
+ * 비용과 단말노드의 slot당 검사 비용을 비교하여 용량 확장이 유리한 경우에만 용량을 늘린다.
+ * <ul>
+ * 	<li> 분할 비용: {@code (추정 추가 레벨 + 1) * nodeVisitCost + (slots / 2) * slotScanCost}
+ * 	<li> 확장 비용: {@code slots * slotScanCost}
+ * </ul>
+ * 용량은 {@code growthFactor}배씩 늘어나며 {@code maxCapacity}를 넘지 않는다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class LeafCapacityPolicy implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 64;
+	public static final int DEFAULT_MAX_CAPACITY = 1024;
+	public static final float DEFAULT_FILL_RATIO = 0.85f;
+	public static final float DEFAULT_GROWTH_FACTOR = 2f;
+	public static final double DEFAULT_NODE_VISIT_COST = 16;
+	public static final double DEFAULT_SLOT_SCAN_COST = 1;
+
+	/** 기존과 동일하게 고정 용량({@value #DEFAULT_INITIAL_CAPACITY})을 사용하는 정책. */
+	public static final LeafCapacityPolicy FIXED
+					= new LeafCapacityPolicy(DEFAULT_INITIAL_CAPACITY, DEFAULT_INITIAL_CAPACITY,
+											DEFAULT_FILL_RATIO, DEFAULT_GROWTH_FACTOR,
+											DEFAULT_NODE_VISIT_COST, DEFAULT_SLOT_SCAN_COST);
+	/** 밀집도에 따라 용량을 조절하는 기본 정책. */
+	public static final LeafCapacityPolicy DEFAULT
+					= new LeafCapacityPolicy(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_CAPACITY,
+											DEFAULT_FILL_RATIO, DEFAULT_GROWTH_FACTOR,
+											DEFAULT_NODE_VISIT_COST, DEFAULT_SLOT_SCAN_COST);
+
+	private final int m_initialCapacity;
+	private final int m_maxCapacity;
+	private final float m_fillRatio;
+	private final float m_growthFactor;
+	private final double m_nodeVisitCost;
+	private final double m_slotScanCost;
+
+	/**
+	 * 단말노드 용량 정책을 생성한다.
+	 *
+	 * @param initialCapacity	단말노드의 초기 slot 수
+	 * @param maxCapacity		밀집도에 따라 늘릴 수 있는 최대 slot 수
+	 * @param fillRatio			삽입 성능을 위해 compact 이후 허용되는 최대 채움 비율
+	 * @param growthFactor		용량 확장시 증가 배수
+	 * @param nodeVisitCost		질의시 노드 하나를 방문하는 비용
+	 * @param slotScanCost		질의시 단말노드 slot 하나를 검사하는 비용
+	 */
+	public LeafCapacityPolicy(int initialCapacity, int maxCapacity, float fillRatio,
+							float growthFactor, double nodeVisitCost, double slotScanCost) {
+		Preconditions.checkArgument(initialCapacity > 0, "invalid initial capacity: " + initialCapacity);
+		Preconditions.checkArgument(maxCapacity >= initialCapacity,
+									"max capacity is smaller than initial one: " + maxCapacity);
+		Preconditions.checkArgument(fillRatio > 0 && fillRatio <= 1, "invalid fill ratio: " + fillRatio);
+		Preconditions.checkArgument(growthFactor > 1, "invalid growth factor: " + growthFactor);
+		Preconditions.checkArgument(nodeVisitCost >= 0 && slotScanCost > 0,
+									"invalid cost: node=" + nodeVisitCost + ", slot=" + slotScanCost);
+
+		m_initialCapacity = initialCapacity;
+		m_maxCapacity = maxCapacity;
+		m_fillRatio = fillRatio;
+		m_growthFactor = growthFactor;
+		m_nodeVisitCost = nodeVisitCost;
+		m_slotScanCost = slotScanCost;
+	}
+
+	/**
+	 * 주어진 초기 용량과 최대 용량을 사용하고, 나머지 설정은 기본 값을 사용하는 정책을 생성한다.
+	 *
+	 * @param initialCapacity	단말노드의 초기 slot 수
+	 * @param maxCapacity		밀집도에 따라 늘릴 수 있는 최대 slot 수
+	 * @return	단말노드 용량 정책
+	 */
+	public static LeafCapacityPolicy of(int initialCapacity, int maxCapacity) {
+		return new LeafCapacityPolicy(initialCapacity, maxCapacity, DEFAULT_FILL_RATIO,
+										DEFAULT_GROWTH_FACTOR, DEFAULT_NODE_VISIT_COST,
+										DEFAULT_SLOT_SCAN_COST);
+	}
+
+	public int getInitialCapacity() {
+		return m_initialCapacity;
+	}
+
+	public int getMaxCapacity() {
+		return m_maxCapacity;
+	}
+
+	public float getFillRatio() {
+		return m_fillRatio;
+	}
+
+	public float getGrowthFactor() {
+		return m_growthFactor;
+	}
+
+	/**
+	 * 주어진 용량을 한단계 확장한 용량을 반환한다.
+	 * 반환 값은 {@code maxCapacity}의 제한을 받지 않는다.
+	 *
+	 * @param capacity	현재 용량
+	 * @return	확장된 용량
+	 */
+	public int grow(int capacity) {
+		return Math.max(capacity+1, (int)Math.ceil(capacity * m_growthFactor));
+	}
+
+	/**
+	 * 가득 찬 단말노드를 분할하는 대신 용량을 확장할 것인지 여부를 결정한다.
+	 *
+	 * @param tileBounds	단말노드의 타일 영역
+	 * @param dataBounds	새로 삽입될 데이터를 포함한 단말노드 데이터의 MBR
+	 * @param capacity		단말노드의 현재 용량
+	 * @return	용량 확장 여부
+	 */
+	public boolean shouldExpand(Envelope tileBounds, Envelope dataBounds, int capacity) {
+		if ( capacity >= m_maxCapacity || tileBounds == null || dataBounds.isNull() ) {
+			return false;
+		}
+
+		double splitCost = (estimateSplitDepth(tileBounds, dataBounds) + 1) * m_nodeVisitCost
+							+ (capacity / 2.0) * m_slotScanCost;
+		double expandCost = capacity * m_slotScanCost;
+
+		return expandCost < splitCost;
+	}
+
+	/**
+	 * 주어진 단말노드를 분할할 때, 데이터가 복수개의 하위 노드로 나뉘기 전까지 추가로
+	 * 생성될 것으로 예상되는 레벨 수를 추정한다.
+	 * 분할할 때마다 타일의 폭과 높이가 절반으로 줄어들기 때문에, 타일 크기에 대한
+	 * 데이터 MBR 크기 비율의 log<sub>2</sub> 값으로 추정한다.
+	 *
+	 * @param tileBounds	단말노드의 타일 영역
+	 * @param dataBounds	단말노드 데이터의 MBR
+	 * @return	추가 레벨 수
+	 */
+	static int estimateSplitDepth(Envelope tileBounds, Envelope dataBounds) {
+		double xratio = ratio(dataBounds.getWidth(), tileBounds.getWidth());
+		double yratio = ratio(dataBounds.getHeight(), tileBounds.getHeight());
+		double ratio = Math.max(xratio, yratio);
+		if ( ratio >= 0.5 ) {
+			return 0;
+		}
+
+		// 모든 데이터가 하나의 점에 몰려있는 경우는 최대 레벨까지 분할될 수 있다.
+		if ( ratio <= 0 ) {
+			return MortonCodes.MAX_LEVEL;
+		}
+		return Math.min(MortonCodes.MAX_LEVEL, (int)Math.floor(-Math.log(ratio) / Math.log(2)));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[capacity=%d~%d, fill=%.2f, growth=%.1f, cost(node/slot)=%.1f/%.1f]",
+							getClass().getSimpleName(), m_initialCapacity, m_maxCapacity,
+							m_fillRatio, m_growthFactor, m_nodeVisitCost, m_slotScanCost);
+	}
+
+	private static double ratio(double length, double tileLength) {
+		return (tileLength > 0) ? length / tileLength : 1;
+	}
+}
@@ -34,9 +34,13 @@ public class LeafNode<T extends EnvelopedValue, P extends Partition<T>> extends
 	private LeafNode<T,P> m_next;
 	
 	LeafNode(String quadKey, P partition) {
+		this(quadKey, partition, null);
+	}
+	
+	LeafNode(String quadKey, P partition, @Nullable Function<String,P> partSupplier) {
 		super(quadKey);
 		
-		m_partSupplier = null;
+		m_partSupplier = partSupplier;
 		m_partition = partition;
 	}
 	
@@ -103,6 +107,10 @@ public class LeafNode<T extends EnvelopedValue, P extends Partition<T>> extends
 		}
 	}
 	
+	boolean remove(T value) {
+		return m_partition.remove(value);
+	}
+	
 	boolean expand() {
 		return m_partition.expand();
 	}
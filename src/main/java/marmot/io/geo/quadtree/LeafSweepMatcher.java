@@ -0,0 +1,278 @@
+package marmot.io.geo.quadtree;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+
+import marmot.optor.geo.SpatialQueryOperation;
+import marmot.optor.support.Match;
+
+
+/**
+ * 두 단말노드 partition에 저장된 value들 사이의 공간 조인을 plane-sweep 방식으로 수행한다.
+ * <p>
+ * 각 partition의 value들 중 상대 partition의 MBR과 겹치는 value들의 MBR 좌표를 primitive 배열에
+ * 적재하고 minX 순으로 정렬한 뒤, 두 배열을 x축 방향으로 동시에 sweep하면서 x 구간이 겹치는
+ * value 쌍에 대해서만 y 구간 및 연산자 조건을 검사한다. 따라서 모든 value 쌍을 비교하는
+ * O(n·m) 대신 O((n+m)·log(n+m) + k) 비교로 조인이 수행된다 (k는 x 구간이 겹치는 쌍의 수).
+ * <p>
+ * 좌표 배열은 객체 내부에서 재사용되기 때문에, 배열의 크기가 늘어나는 경우를 제외하면
+ * 결과 {@link Match} 객체만 생성된다. 본 객체는 쓰레드에 안전하지 않다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class LeafSweepMatcher<T extends EnvelopedValue> {
+	private static final int INITIAL_CAPACITY = 128;
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private final SpatialQueryOperation m_op;
+	private final Side<T> m_left = new Side<>();
+	private final Side<T> m_right = new Side<>();
+
+	LeafSweepMatcher(SpatialQueryOperation op) {
+		checkOperation(op);
+		m_op = op;
+	}
+	
+	/**
+	 * 주어진 연산자가 지원되는지 확인한다.
+	 *
+	 * @param op	조인 연산자
+	 * @throws IllegalArgumentException	지원하지 않는 연산자인 경우.
+	 */
+	static void checkOperation(SpatialQueryOperation op) {
+		switch ( op ) {
+			case INTERSECTS:
+			case CONTAINS:
+			case CONTAINED_BY:
+				break;
+			default:
+				throw new IllegalArgumentException("unsupported SpatialQueryOperation: " + op);
+		}
+	}
+
+	/**
+	 * 주어진 두 partition의 value들 중에서 조인 조건을 만족하는 value 쌍들을 반환한다.
+	 *
+	 * @param leftPart	왼쪽 partition
+	 * @param rightPart	오른쪽 partition
+	 * @return	조인 조건을 만족하는 value 쌍 리스트
+	 */
+	List<Match<T>> match(Partition<T> leftPart, Partition<T> rightPart) {
+		m_left.load(leftPart);
+		m_right.load(rightPart);
+		try {
+			// 상대편 MBR과 겹치지 않는 value들은 조인 대상에서 제외한다.
+			m_left.retainIntersecting(m_right.m_bounds);
+			m_right.retainIntersecting(m_left.m_bounds);
+
+			List<Match<T>> matches = Lists.newArrayList();
+			if ( m_left.m_size == 0 || m_right.m_size == 0 ) {
+				return matches;
+			}
+
+			m_left.sort();
+			m_right.sort();
+			sweep(matches);
+
+			return matches;
+		}
+		finally {
+			m_left.clear();
+			m_right.clear();
+		}
+	}
+
+	private void sweep(List<Match<T>> matches) {
+		final Side<T> l = m_left;
+		final Side<T> r = m_right;
+
+		int i = 0;
+		int j = 0;
+		while ( i < l.m_size && j < r.m_size ) {
+			if ( l.m_minXs[i] <= r.m_minXs[j] ) {
+				// 왼쪽 i번째 value와 x 구간이 겹치는 오른쪽 value들을 검사한다.
+				double maxX = l.m_maxXs[i];
+				for ( int k = j; k < r.m_size && r.m_minXs[k] <= maxX; ++k ) {
+					if ( test(i, k) ) {
+						matches.add(new Match<>(l.m_values[i], r.m_values[k]));
+					}
+				}
+				++i;
+			}
+			else {
+				// 오른쪽 j번째 value와 x 구간이 겹치는 왼쪽 value들을 검사한다.
+				double maxX = r.m_maxXs[j];
+				for ( int k = i; k < l.m_size && l.m_minXs[k] <= maxX; ++k ) {
+					if ( test(k, j) ) {
+						matches.add(new Match<>(l.m_values[k], r.m_values[j]));
+					}
+				}
+				++j;
+			}
+		}
+	}
+
+	private boolean test(int li, int ri) {
+		final Side<T> l = m_left;
+		final Side<T> r = m_right;
+
+		// sweep 과정에서 x 구간은 겹치는 것이 보장되기 때문에 y 구간만 검사한다.
+		if ( l.m_minYs[li] > r.m_maxYs[ri] || r.m_minYs[ri] > l.m_maxYs[li] ) {
+			return false;
+		}
+
+		switch ( m_op ) {
+			case INTERSECTS:
+				return true;
+			case CONTAINS:
+				return l.m_minXs[li] <= r.m_minXs[ri] && r.m_maxXs[ri] <= l.m_maxXs[li]
+					&& l.m_minYs[li] <= r.m_minYs[ri] && r.m_maxYs[ri] <= l.m_maxYs[li];
+			case CONTAINED_BY:
+				return r.m_minXs[ri] <= l.m_minXs[li] && l.m_maxXs[li] <= r.m_maxXs[ri]
+					&& r.m_minYs[ri] <= l.m_minYs[li] && l.m_maxYs[li] <= r.m_maxYs[ri];
+			default:
+				throw new AssertionError();
+		}
+	}
+
+	private static final class Side<T extends EnvelopedValue> {
+		private final Envelope m_bounds = new Envelope();
+		private double[] m_minXs = new double[INITIAL_CAPACITY];
+		private double[] m_maxXs = new double[INITIAL_CAPACITY];
+		private double[] m_minYs = new double[INITIAL_CAPACITY];
+		private double[] m_maxYs = new double[INITIAL_CAPACITY];
+		@SuppressWarnings("unchecked")
+		private T[] m_values = (T[])new EnvelopedValue[INITIAL_CAPACITY];
+		private int m_size = 0;
+
+		void load(Partition<T> part) {
+			ensureCapacity(part.size());
+			part.values().forEach(this::add);
+		}
+
+		private void add(T value) {
+			Envelope envl = value.getEnvelope();
+			if ( envl.isNull() ) {
+				// 빈 MBR은 어떤 value와도 겹치지 않는다.
+				return;
+			}
+
+			ensureCapacity(m_size+1);
+			m_minXs[m_size] = envl.getMinX();
+			m_maxXs[m_size] = envl.getMaxX();
+			m_minYs[m_size] = envl.getMinY();
+			m_maxYs[m_size] = envl.getMaxY();
+			m_values[m_size] = value;
+			++m_size;
+
+			m_bounds.expandToInclude(envl);
+		}
+
+		void retainIntersecting(Envelope bounds) {
+			int n = 0;
+			for ( int i =0; i < m_size; ++i ) {
+				if ( m_minXs[i] <= bounds.getMaxX() && bounds.getMinX() <= m_maxXs[i]
+					&& m_minYs[i] <= bounds.getMaxY() && bounds.getMinY() <= m_maxYs[i] ) {
+					if ( n != i ) {
+						m_minXs[n] = m_minXs[i];
+						m_maxXs[n] = m_maxXs[i];
+						m_minYs[n] = m_minYs[i];
+						m_maxYs[n] = m_maxYs[i];
+						m_values[n] = m_values[i];
+					}
+					++n;
+				}
+			}
+			Arrays.fill(m_values, n, m_size, null);
+			m_size = n;
+		}
+
+		void clear() {
+			Arrays.fill(m_values, 0, m_size, null);
+			m_size = 0;
+			m_bounds.setToNull();
+		}
+
+		void sort() {
+			quickSort(0, m_size-1);
+		}
+
+		private void quickSort(int lo, int hi) {
+			while ( hi - lo >= INSERTION_SORT_THRESHOLD ) {
+				int mid = (lo + hi) >>> 1;
+				if ( m_minXs[mid] < m_minXs[lo] ) {
+					swap(mid, lo);
+				}
+				if ( m_minXs[hi] < m_minXs[lo] ) {
+					swap(hi, lo);
+				}
+				if ( m_minXs[hi] < m_minXs[mid] ) {
+					swap(hi, mid);
+				}
+				double pivot = m_minXs[mid];
+
+				int i = lo;
+				int j = hi;
+				while ( i <= j ) {
+					while ( m_minXs[i] < pivot ) {
+						++i;
+					}
+					while ( m_minXs[j] > pivot ) {
+						--j;
+					}
+					if ( i <= j ) {
+						swap(i++, j--);
+					}
+				}
+
+				// 작은 쪽을 재귀 호출하여 스택 깊이를 제한한다.
+				if ( j - lo < hi - i ) {
+					quickSort(lo, j);
+					lo = i;
+				}
+				else {
+					quickSort(i, hi);
+					hi = j;
+				}
+			}
+
+			for ( int i = lo+1; i <= hi; ++i ) {
+				for ( int j = i; j > lo && m_minXs[j] < m_minXs[j-1]; --j ) {
+					swap(j, j-1);
+				}
+			}
+		}
+
+		private void swap(int i, int j) {
+			swap(m_minXs, i, j);
+			swap(m_maxXs, i, j);
+			swap(m_minYs, i, j);
+			swap(m_maxYs, i, j);
+
+			T v = m_values[i];
+			m_values[i] = m_values[j];
+			m_values[j] = v;
+		}
+
+		private static void swap(double[] array, int i, int j) {
+			double d = array[i];
+			array[i] = array[j];
+			array[j] = d;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if ( capacity > m_minXs.length ) {
+				int length = Math.max(capacity, m_minXs.length*2);
+				m_minXs = Arrays.copyOf(m_minXs, length);
+				m_maxXs = Arrays.copyOf(m_maxXs, length);
+				m_minYs = Arrays.copyOf(m_minYs, length);
+				m_maxYs = Arrays.copyOf(m_maxYs, length);
+				m_values = Arrays.copyOf(m_values, length);
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package marmot.io.geo.quadtree;
+
+/**
+ * quad-key 문자열과 Morton 코드({@code long}) 사이의 변환 기능을 제공하는 클래스.
+ * <p>
+ * quad-key의 각 자리수는 2 bit로 표현되며, 상위 bit부터 왼쪽 정렬되어 저장된다.
+ * 따라서 서로 prefix 관계가 없는 quad-key들의 Morton 코드 순서는 quad-key의 사전 순서와 같고,
+ * 주어진 quad-key로 시작하는 모든 quad-key들의 Morton 코드는
+ * [{@code encode(prefix)}, {@code encode(prefix) + span(prefix.length())}) 구간에 포함된다.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class MortonCodes {
+	public static final int MAX_LEVEL = 31;
+	
+	private static final double MIN_LATITUDE = -85.05112878;
+	private static final double MAX_LATITUDE = 85.05112878;
+	private static final double MIN_LONGITUDE = -180;
+	private static final double MAX_LONGITUDE = 180;
+	private static final long MAP_SIZE = 1L << MAX_LEVEL;
+	
+	private MortonCodes() {
+		throw new AssertionError("Should not be called: class=" + getClass());
+	}
+	
+	/**
+	 * 주어진 quad-key를 Morton 코드로 변환할 수 있는지 여부를 반환한다.
+	 * quad-key는 {@value #MAX_LEVEL} 이하 길이의 '0'~'3' 문자로만 구성되어야 한다.
+	 * 
+	 * @param quadKey	검사 대상 quad-key
+	 * @return	변환 가능 여부
+	 */
+	public static boolean isEncodable(String quadKey) {
+		if ( quadKey.length() > MAX_LEVEL ) {
+			return false;
+		}
+		for ( int i =0; i < quadKey.length(); ++i ) {
+			char c = quadKey.charAt(i);
+			if ( c < '0' || c > '3' ) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * quad-key를 Morton 코드로 변환한다.
+	 * 
+	 * @param quadKey	변환 대상 quad-key
+	 * @return	Morton 코드
+	 */
+	public static long encode(String quadKey) {
+		long code = 0;
+		for ( int i =0; i < quadKey.length(); ++i ) {
+			code |= ((long)(quadKey.charAt(i) - '0')) << (2*(MAX_LEVEL - 1 - i));
+		}
+		return code;
+	}
+	
+	/**
+	 * EPSG:4326 좌표의 점을 포함하는 {@value #MAX_LEVEL} 레벨 타일의 Morton 코드를 반환한다.
+	 * 타일 좌표는 quad-key와 동일한 (Web Mercator 기반) 타일 체계로 계산된다.
+	 * 
+	 * @param lon	경도
+	 * @param lat	위도
+	 * @return	Morton 코드
+	 */
+	public static long encode(double lon, double lat) {
+		// quad-key 각 자리수의 하위 bit는 x, 상위 bit는 y 좌표에 해당한다.
+		return spread(toTileX(lon)) | (spread(toTileY(lat)) << 1);
+	}
+	
+	/**
+	 * Morton 코드를 주어진 길이(레벨)의 quad-key로 변환한다.
+	 * 
+	 * @param code	Morton 코드
+	 * @param level	quad-key 길이
+	 * @return	quad-key
+	 */
+	public static String decode(long code, int level) {
+		char[] digits = new char[level];
+		for ( int i =0; i < level; ++i ) {
+			digits[i] = (char)('0' + ((code >>> (2*(MAX_LEVEL - 1 - i))) & 3));
+		}
+		return new String(digits);
+	}
+	
+	/**
+	 * 주어진 레벨의 quad-key로 시작하는 Morton 코드 구간의 크기를 반환한다.
+	 * 
+	 * @param level	prefix quad-key의 길이
+	 * @return	구간 크기
+	 */
+	public static long span(int level) {
+		return 1L << (2*(MAX_LEVEL - level));
+	}
+
+	/**
+	 * 주어진 경도를 포함하는 {@value #MAX_LEVEL} 레벨 타일의 x 좌표를 반환한다.
+	 * 
+	 * @param lon	경도
+	 * @return	타일 x 좌표
+	 */
+	static long toTileX(double lon) {
+		lon = Math.max(MIN_LONGITUDE, Math.min(MAX_LONGITUDE, lon));
+		return toTileCoordinate((lon + 180) / 360);
+	}
+	
+	/**
+	 * 주어진 위도를 포함하는 {@value #MAX_LEVEL} 레벨 타일의 y 좌표를 반환한다.
+	 * 
+	 * @param lat	위도
+	 * @return	타일 y 좌표
+	 */
+	static long toTileY(double lat) {
+		lat = Math.max(MIN_LATITUDE, Math.min(MAX_LATITUDE, lat));
+		double sinLat = Math.sin(lat * Math.PI / 180);
+		return toTileCoordinate(0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI));
+	}
+
+	private static long toTileCoordinate(double ratio) {
+		long coord = (long)(ratio * MAP_SIZE);
+		return Math.max(0, Math.min(MAP_SIZE-1, coord));
+	}
+	
+	// 하위 32 bit를 짝수 번째 bit들로 펼친다.
+	private static long spread(long v) {
+		v &= 0xFFFFFFFFL;
+		v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+		v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+		v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+		v = (v | (v << 2)) & 0x3333333333333333L;
+		v = (v | (v << 1)) & 0x5555555555555555L;
+		return v;
+	}
+}
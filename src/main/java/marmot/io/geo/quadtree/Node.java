@@ -12,6 +12,7 @@ import marmot.type.MapTile;
  */
 public abstract class Node<T extends EnvelopedValue, P extends Partition<T>> {
 	private final String m_quadKey;
+	private final long m_packedKey;
 	private final MapTile m_tile;
 	
 	public abstract int getValueCount();
@@ -21,6 +22,7 @@ public abstract class Node<T extends EnvelopedValue, P extends Partition<T>> {
 		Preconditions.checkArgument(quadKey != null, "Node's quad-key is null");
 		
 		m_quadKey = quadKey;
+		m_packedKey = PackedQuadKeys.packOrInvalid(quadKey);
 		m_tile = MapTile.fromQuadKey(quadKey);
 	}
 	
@@ -28,6 +30,16 @@ public abstract class Node<T extends EnvelopedValue, P extends Partition<T>> {
 		return m_quadKey;
 	}
 	
+	/**
+	 * 노드의 quad-key를 {@link PackedQuadKeys} 형태로 반환한다.
+	 * quad-key를 packed 형태로 표현할 수 없는 경우는 {@link PackedQuadKeys#INVALID}가 반환된다.
+	 * 
+	 * @return	packed quad-key
+	 */
+	public long getPackedQuadKey() {
+		return m_packedKey;
+	}
+	
 	public int getSiblingOrdinal() {
 		int length = m_quadKey.length();
 		if ( length == 0 ) {
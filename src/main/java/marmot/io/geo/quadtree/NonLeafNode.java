@@ -43,6 +43,21 @@ public class NonLeafNode<T extends EnvelopedValue, P extends Partition<T>> exten
 		return m_children;
 	}
 	
+	void setChildNode(int idx, Node<T,P> child) {
+		m_children[idx] = child;
+	}
+	
+	/**
+	 * 하위 노드들의 MBR로 본 노드의 MBR을 다시 계산한다.
+	 * 하위 노드에서 데이터가 삭제되거나 이동된 경우 호출된다.
+	 */
+	void updateDataBounds() {
+		m_dataBounds.setToNull();
+		for ( Node<T,P> child: m_children ) {
+			m_dataBounds.expandToInclude(child.getDataBounds());
+		}
+	}
+	
 	public LeafNode<T,P> getFirstLeafNode() {
 		Node<T,P> first = m_children[0];
 		if ( first instanceof NonLeafNode ) {
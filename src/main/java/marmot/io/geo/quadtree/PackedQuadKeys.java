@@ -0,0 +1,234 @@
+package marmot.io.geo.quadtree;
+
+import utils.Preconditions;
+
+/**
+ * quad-key를 하나의 {@code long} 값으로 표현(packed quad-key)하고, 이를 이용한 연산 기능을
+ * 제공하는 클래스.
+ * <p>
+ * packed quad-key는 quad-key의 각 자리수를 2 bit로 하여 오른쪽 정렬한 값 앞에 레벨을
+ * 나타내는 표지(marker) bit 1개를 붙인 값이다. 즉, 길이 {@code L}인 quad-key의 packed 값은
+ * {@code (1 << 2L) | bits}이며, 빈 quad-key("")는 {@link #ROOT}({@code 1})로 표현된다.
+ * 표지 bit의 위치로 레벨을 알 수 있기 때문에 레벨과 자리수 정보가 하나의 값에 함께 저장되고,
+ * 서로 다른 quad-key는 항상 서로 다른 packed 값을 갖는다.
+ * <p>
+ * 문자열 quad-key와 달리 객체 생성, 문자열 hashing 및 비교 없이 prefix(포함) 관계 검사,
+ * 부모/자식 quad-key 계산, quad-key 순서 비교를 수행할 수 있기 때문에 레코드 단위로
+ * quad-key를 다루는 경로에서 사용된다. 문자열 변환은 저장 및 외부 API 경계에서만 수행한다.
+ * <p>
+ * 최대 {@value MortonCodes#MAX_LEVEL} 길이의 quad-key까지 표현할 수 있다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class PackedQuadKeys {
+	/** 빈 quad-key("")에 해당하는 packed quad-key. */
+	public static final long ROOT = 1L;
+	/** quad-key로 표현할 수 없는 경우 사용되는 값. */
+	public static final long INVALID = 0L;
+
+	private PackedQuadKeys() {
+		throw new AssertionError("Should not be called: class=" + getClass());
+	}
+
+	/**
+	 * 문자열 quad-key를 packed quad-key로 변환한다.
+	 *
+	 * @param quadKey	변환 대상 quad-key
+	 * @return	packed quad-key.
+	 * @throws IllegalArgumentException	주어진 quad-key를 변환할 수 없는 경우.
+	 */
+	public static long pack(String quadKey) {
+		Preconditions.checkArgument(MortonCodes.isEncodable(quadKey),
+									"quad-key is not packable: " + quadKey);
+
+		long packed = ROOT;
+		for ( int i =0; i < quadKey.length(); ++i ) {
+			packed = (packed << 2) | (quadKey.charAt(i) - '0');
+		}
+		return packed;
+	}
+
+	/**
+	 * 문자열 quad-key를 packed quad-key로 변환한다.
+	 * 변환할 수 없는 quad-key인 경우(예: "outliers")는 {@link #INVALID}를 반환한다.
+	 *
+	 * @param quadKey	변환 대상 quad-key
+	 * @return	packed quad-key 또는 {@link #INVALID}.
+	 */
+	public static long packOrInvalid(String quadKey) {
+		return MortonCodes.isEncodable(quadKey) ? pack(quadKey) : INVALID;
+	}
+
+	/**
+	 * packed quad-key를 문자열 quad-key로 변환한다.
+	 *
+	 * @param packed	packed quad-key
+	 * @return	quad-key
+	 * @throws IllegalArgumentException	올바른 packed quad-key가 아닌 경우.
+	 */
+	public static String unpack(long packed) {
+		Preconditions.checkArgument(isValid(packed), "invalid packed quad-key: " + packed);
+		
+		int level = level(packed);
+		char[] digits = new char[level];
+		for ( int i = level-1; i >= 0; --i ) {
+			digits[i] = (char)('0' + (packed & 3));
+			packed >>>= 2;
+		}
+		return new String(digits);
+	}
+
+	/**
+	 * 주어진 값이 올바른 packed quad-key인지 여부를 반환한다.
+	 *
+	 * @param packed	검사 대상 값
+	 * @return	올바른 packed quad-key 여부
+	 */
+	public static boolean isValid(long packed) {
+		if ( packed <= 0 ) {
+			return false;
+		}
+		int nbits = 63 - Long.numberOfLeadingZeros(packed);
+		return (nbits & 1) == 0 && nbits/2 <= MortonCodes.MAX_LEVEL;
+	}
+
+	/**
+	 * packed quad-key의 레벨(quad-key 길이)을 반환한다.
+	 *
+	 * @param packed	packed quad-key
+	 * @return	레벨
+	 */
+	public static int level(long packed) {
+		return (63 - Long.numberOfLeadingZeros(packed)) >>> 1;
+	}
+
+	/**
+	 * 주어진 packed quad-key의 부모 quad-key를 반환한다.
+	 *
+	 * @param packed	packed quad-key
+	 * @return	부모 packed quad-key
+	 * @throws IllegalArgumentException	주어진 quad-key가 {@link #ROOT}인 경우.
+	 */
+	public static long parent(long packed) {
+		Preconditions.checkArgument(packed != ROOT, "root quad-key does not have parent");
+
+		return packed >>> 2;
+	}
+
+	/**
+	 * 주어진 packed quad-key의 {@code ordinal}번째 자식 quad-key를 반환한다.
+	 *
+	 * @param packed	packed quad-key
+	 * @param ordinal	자식 순번 (0~3)
+	 * @return	자식 packed quad-key
+	 */
+	public static long child(long packed, int ordinal) {
+		return (packed << 2) | (ordinal & 3);
+	}
+
+	/**
+	 * 주어진 packed quad-key의 {@code level} 레벨 조상 quad-key를 반환한다.
+	 *
+	 * @param packed	packed quad-key
+	 * @param level		조상 quad-key의 레벨. 주어진 quad-key의 레벨 이하이어야 한다.
+	 * @return	조상 packed quad-key
+	 */
+	public static long ancestor(long packed, int level) {
+		return packed >>> (2 * (level(packed) - level));
+	}
+
+	/**
+	 * {@code prefix}가 {@code packed}의 prefix인지 (즉, {@code prefix}의 타일이
+	 * {@code packed}의 타일을 포함하는지) 여부를 반환한다.
+	 * 두 quad-key가 동일한 경우도 {@code true}를 반환한다.
+	 *
+	 * @param prefix	prefix packed quad-key
+	 * @param packed	검사 대상 packed quad-key
+	 * @return	prefix 여부
+	 */
+	public static boolean isPrefixOf(long prefix, long packed) {
+		int shift = 2 * (level(packed) - level(prefix));
+		return shift >= 0 && (packed >>> shift) == prefix;
+	}
+
+	/**
+	 * 두 quad-key가 prefix 관계에 있는지 (즉, 두 타일 중 하나가 다른 하나를 포함하는지)
+	 * 여부를 반환한다.
+	 *
+	 * @param key1	packed quad-key
+	 * @param key2	packed quad-key
+	 * @return	prefix 관계 여부
+	 */
+	public static boolean overlaps(long key1, long key2) {
+		return isPrefixOf(key1, key2) || isPrefixOf(key2, key1);
+	}
+
+	/**
+	 * 두 quad-key가 공유하는 가장 긴 prefix의 길이를 반환한다.
+	 *
+	 * @param key1	packed quad-key
+	 * @param key2	packed quad-key
+	 * @return	공통 prefix 길이
+	 */
+	public static int commonPrefixLevel(long key1, long key2) {
+		int minLevel = Math.min(level(key1), level(key2));
+		long diff = toMortonCode(key1) ^ toMortonCode(key2);
+		if ( diff == 0 ) {
+			return minLevel;
+		}
+		
+		// Morton 코드는 하위 62 bit만 사용하기 때문에 상위 2 bit를 제외한다.
+		int commons = (Long.numberOfLeadingZeros(diff) - 2) / 2;
+		return Math.min(commons, minLevel);
+	}
+
+	/**
+	 * 두 packed quad-key를 문자열 quad-key의 사전 순서로 비교한다.
+	 *
+	 * @param key1	packed quad-key
+	 * @param key2	packed quad-key
+	 * @return	{@code key1}이 앞서는 경우는 음수, 뒤선 경우는 양수, 같은 경우는 0.
+	 */
+	public static int compare(long key1, long key2) {
+		int cmp = Long.compare(toMortonCode(key1), toMortonCode(key2));
+		return (cmp != 0) ? cmp : Integer.compare(level(key1), level(key2));
+	}
+
+	/**
+	 * packed quad-key를 (왼쪽 정렬된) Morton 코드로 변환한다.
+	 *
+	 * @param packed	packed quad-key
+	 * @return	Morton 코드
+	 * @see MortonCodes
+	 */
+	public static long toMortonCode(long packed) {
+		int level = level(packed);
+		long bits = packed & ~(1L << (2*level));
+		return bits << (2 * (MortonCodes.MAX_LEVEL - level));
+	}
+
+	/**
+	 * Morton 코드와 레벨로부터 packed quad-key를 생성한다.
+	 *
+	 * @param code	Morton 코드
+	 * @param level	quad-key 길이
+	 * @return	packed quad-key
+	 * @see MortonCodes
+	 */
+	public static long fromMortonCode(long code, int level) {
+		long bits = (level > 0) ? code >>> (2 * (MortonCodes.MAX_LEVEL - level)) : 0;
+		return (1L << (2*level)) | bits;
+	}
+
+	/**
+	 * EPSG:4326 좌표의 점을 포함하는 {@code level} 레벨 타일의 packed quad-key를 반환한다.
+	 *
+	 * @param lon	경도
+	 * @param lat	위도
+	 * @param level	타일 레벨
+	 * @return	packed quad-key
+	 */
+	public static long fromLonLat(double lon, double lat, int level) {
+		return fromMortonCode(MortonCodes.encode(lon, lat), level);
+	}
+}
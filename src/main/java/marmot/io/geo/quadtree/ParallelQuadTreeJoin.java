@@ -0,0 +1,216 @@
+package marmot.io.geo.quadtree;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
+import utils.Throwables;
+import utils.func.FOption;
+import utils.stream.FStreams.AbstractFStream;
+
+import marmot.optor.geo.SpatialQueryOperation;
+import marmot.optor.support.Match;
+
+
+/**
+ * 두 QuadTree의 단말노드 쌍들을 복수개의 쓰레드에서 동시에 조인하는 value 쌍 스트림 클래스.
+ * <p>
+ * {@link QuadTreeJoinMatcher#streamLeafNodeMatch()}가 생성하는 단말노드 쌍들을 순서대로
+ * 묶어 작업 단위(work unit)를 만든다. 작업 단위의 크기는 포함된 단말노드 쌍들의
+ * {@code leftCount*rightCount} 합이 {@code unitCost}를 넘지 않도록 정해지며, 각 작업 단위는
+ * 외부에서 주어진 {@link Executor}에서 {@link LeafSweepMatcher}를 통해 조인된다.
+ * 본 객체는 쓰레드 풀을 따로 생성하지 않기 때문에, 스트림이 close되지 않더라도 쓰레드가
+ * 남지 않는다.
+ * <p>
+ * 동시에 처리 중인 작업 단위의 수는 {@code parallelism}으로, 처리 중이거나 소비를 대기하는
+ * 작업 단위의 수는 {@code maxInFlight}로 제한되어, 소비 속도가 느린 경우에는 더 이상의
+ * 작업 단위가 제출되지 않는다 (backpressure).
+ * {@code ordered}가 {@code true}인 경우는 순차 조인({@link QuadTreeJoinMatcher#streamMatch})과
+ * 동일한 단말노드 쌍 순서로 결과를 반환하고, 그렇지 않은 경우는 먼저 처리가 완료된 작업 단위의
+ * 결과부터 반환한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class ParallelQuadTreeJoin<T extends EnvelopedValue, P extends Partition<T>>
+													extends AbstractFStream<Match<T>> {
+	private static final Logger s_logger = LoggerFactory.getLogger(ParallelQuadTreeJoin.class);
+	public static final long DEFAULT_UNIT_COST = 256 * 1024;
+
+	private final SpatialQueryOperation m_op;
+	private final boolean m_ordered;
+	private final int m_maxInFlight;
+	private final long m_unitCost;
+
+	private final Executor m_executor;
+	private final Semaphore m_running;
+	private final Iterator<Match<LeafNode<T,P>>> m_leafMatches;
+	private final Deque<Future<List<Match<T>>>> m_pendings = new ArrayDeque<>();	// 제출 순서
+	private final CompletionService<List<Match<T>>> m_completion;				// unordered 경우
+	private int m_inFlight = 0;
+	private int m_unitCount = 0;
+
+	private Iterator<Match<T>> m_current = Collections.emptyIterator();
+
+	/**
+	 * 병렬 QuadTree 조인 객체를 생성한다.
+	 *
+	 * @param left			왼쪽 QuadTree
+	 * @param right			오른쪽 QuadTree
+	 * @param op			조인 연산자
+	 * @param executor		작업 단위를 처리할 executor.
+	 * @param parallelism	동시에 처리할 최대 작업 단위 수.
+	 * @param maxInFlight	동시에 처리 중이거나 소비를 대기하는 최대 작업 단위 수.
+	 * @param unitCost		작업 단위별 최대 비교 비용 ({@code leftCount*rightCount}의 합).
+	 * @param ordered		순차 조인과 동일한 순서로 결과를 반환할지 여부.
+	 */
+	public ParallelQuadTreeJoin(QuadTree<T,P> left, QuadTree<T,P> right, SpatialQueryOperation op,
+								Executor executor, int parallelism, int maxInFlight, long unitCost,
+								boolean ordered) {
+		Preconditions.checkNotNullArgument(left, "left QuadTree is null");
+		Preconditions.checkNotNullArgument(right, "right QuadTree is null");
+		Preconditions.checkNotNullArgument(executor, "executor is null");
+		Preconditions.checkArgument(parallelism > 0, "invalid parallelism: " + parallelism);
+		Preconditions.checkArgument(maxInFlight >= parallelism,
+									"maxInFlight should be larger than or equal to parallelism");
+		Preconditions.checkArgument(unitCost > 0, "invalid unit cost: " + unitCost);
+
+		// 지원하지 않는 연산자인 경우는 작업 제출 전에 오류를 발생시킨다.
+		LeafSweepMatcher.checkOperation(op);
+
+		m_op = op;
+		m_ordered = ordered;
+		m_maxInFlight = maxInFlight;
+		m_unitCost = unitCost;
+
+		m_executor = executor;
+		m_running = new Semaphore(parallelism);
+		m_completion = new ExecutorCompletionService<>(executor);
+		m_leafMatches = new QuadTreeJoinMatcher.MatchIterator<T,P>(left, right);
+	}
+
+	@Override
+	protected void closeInGuard() throws Exception {
+		m_pendings.forEach(future -> future.cancel(true));
+		m_pendings.clear();
+	}
+
+	@Override
+	public FOption<Match<T>> nextInGuard() {
+		while ( true ) {
+			if ( m_current.hasNext() ) {
+				return FOption.of(m_current.next());
+			}
+
+			fillUp();
+			if ( m_inFlight == 0 ) {
+				return FOption.empty();
+			}
+
+			List<Match<T>> matches = takeNext();
+			--m_inFlight;
+
+			m_current = matches.iterator();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[op=%s, ordered=%s, units=%d, in_flight=%d]",
+							getClass().getSimpleName(), m_op, m_ordered, m_unitCount, m_inFlight);
+	}
+
+	private void fillUp() {
+		// 처리 중인 작업 단위는 완료 즉시 permit을 반환하기 때문에, 소비되지 않은 작업 단위가
+		// 없는 경우(m_inFlight == 0)는 항상 permit을 얻을 수 있다.
+		while ( m_inFlight < m_maxInFlight && m_leafMatches.hasNext() && m_running.tryAcquire() ) {
+			List<Match<LeafNode<T,P>>> unit = nextUnit();
+			if ( m_ordered ) {
+				FutureTask<List<Match<T>>> task = new FutureTask<>(() -> run(unit));
+				m_executor.execute(task);
+				m_pendings.addLast(task);
+			}
+			else {
+				m_pendings.addLast(m_completion.submit(() -> run(unit)));
+			}
+			++m_inFlight;
+			++m_unitCount;
+		}
+	}
+
+	private List<Match<LeafNode<T,P>>> nextUnit() {
+		List<Match<LeafNode<T,P>>> unit = Lists.newArrayList();
+
+		long cost = 0;
+		while ( m_leafMatches.hasNext() ) {
+			Match<LeafNode<T,P>> leafMatch = m_leafMatches.next();
+			unit.add(leafMatch);
+
+			cost += (long)leafMatch.m_left.getValueCount() * leafMatch.m_right.getValueCount();
+			if ( cost >= m_unitCost ) {
+				break;
+			}
+		}
+
+		return unit;
+	}
+
+	private List<Match<T>> run(List<Match<LeafNode<T,P>>> unit) {
+		try {
+			return match(unit);
+		}
+		finally {
+			m_running.release();
+		}
+	}
+
+	private List<Match<T>> match(List<Match<LeafNode<T,P>>> unit) {
+		LeafSweepMatcher<T> sweeper = new LeafSweepMatcher<>(m_op);
+
+		List<Match<T>> matches = Lists.newArrayList();
+		for ( Match<LeafNode<T,P>> leafMatch: unit ) {
+			matches.addAll(sweeper.match(leafMatch.m_left.getPartition(),
+										leafMatch.m_right.getPartition()));
+		}
+		if ( s_logger.isDebugEnabled() ) {
+			s_logger.debug("matched: unit={} leaf-pairs, matches={}", unit.size(), matches.size());
+		}
+
+		return matches;
+	}
+
+	private List<Match<T>> takeNext() {
+		try {
+			Future<List<Match<T>>> future;
+			if ( m_ordered ) {
+				future = m_pendings.removeFirst();
+			}
+			else {
+				future = m_completion.take();
+				m_pendings.remove(future);
+			}
+			return future.get();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw Throwables.toRuntimeException(e);
+		}
+		catch ( ExecutionException e ) {
+			throw Throwables.toRuntimeException(Throwables.unwrapThrowable(e));
+		}
+	}
+}
@@ -16,6 +16,26 @@ public interface Partition<T extends EnvelopedValue> {
 	 */
 	public int size();
 	
+	/**
+	 * 파티션이 현재 수용할 수 있는 value의 갯수를 반환한다.
+	 * 용량을 정의할 수 없는 파티션인 경우는 음수를 반환한다.
+	 * 
+	 * @return	파티션 용량
+	 */
+	public default int getCapacity() {
+		return -1;
+	}
+	
+	/**
+	 * {@link #expand()}를 통해 파티션이 도달할 수 있는 최대 용량을 반환한다.
+	 * 용량을 정의할 수 없는 파티션인 경우는 음수를 반환한다.
+	 * 
+	 * @return	최대 파티션 용량
+	 */
+	public default int getMaxCapacity() {
+		return getCapacity();
+	}
+	
 	/**
 	 * 파티션에 저장된 value의 MBR을 반환한다.
 	 * 
@@ -41,6 +61,23 @@ public interface Partition<T extends EnvelopedValue> {
 		return values().filter(v -> v.getEnvelope().intersects(query));
 	}
 	
+	/**
+	 * 파티션에 저장된 value들 중에서 주어진 query와 겹치는 value들을 차례로
+	 * visitor에 전달한다.
+	 * 
+	 * @param query		질의 영역
+	 * @param visitor	결과 value를 전달받을 visitor
+	 * @return	visitor가 순회를 중단시킨 경우는 {@code false}, 그렇지 않은 경우는 {@code true}.
+	 */
+	public default boolean visitIntersects(final Envelope query, QuadTreeVisitor<? super T> visitor) {
+		for ( T value: intersects(query) ) {
+			if ( !visitor.visit(value) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * 파티션에 새 value를 추가한다.
 	 * 파티션 용량이 넘치는 경우 추가가 실패되고, {@code false}가 반환된다.
@@ -62,6 +99,19 @@ public interface Partition<T extends EnvelopedValue> {
 		return add(value);
 	}
 	
+	/**
+	 * 파티션에서 주어진 value를 삭제한다.
+	 * value의 동일성은 {@link Object#equals(Object)}로 판단하고, 삭제 후 파티션 MBR은
+	 * 남은 value들의 MBR로 갱신된다.
+	 * 
+	 * @param value		삭제할 value
+	 * @return	삭제 여부. 주어진 value가 파티션에 없는 경우는 {@code false}.
+	 * @throws UnsupportedOperationException	삭제를 지원하지 않는 파티션인 경우.
+	 */
+	public default boolean remove(T value) {
+		throw new UnsupportedOperationException("remove: class=" + getClass().getName());
+	}
+	
 	/**
 	 * 파티션에 새 value 추가시 용량부족으로 실패한 경우, 용량 확장을 시도한다.
 	 * 용량 확장이 실패한 경우는 {@code false}를 반환한다.
@@ -17,6 +17,9 @@ import utils.stream.IntFStream;
 final class PointerGroup implements EnvelopedValue, MarmotSerializable {
 	private final Envelope m_envl;
 	private final int[] m_indexes;
+	// visit()용 Pointer 객체들 (최초 사용시 생성).
+	// 복수개의 쓰레드에서 동시에 visit()할 수 있기 때문에 volatile을 통해 안전하게 공개한다.
+	private volatile Pointer[] m_pointers;
 	
 	PointerGroup(Envelope envl, int[] indexes) {
 		m_envl = envl;
@@ -33,6 +36,57 @@ final class PointerGroup implements EnvelopedValue, MarmotSerializable {
 					.mapToObj(index -> new Pointer(m_envl, index));
 	}
 	
+	/**
+	 * 주어진 pointer index가 본 그룹에 포함된 위치를 반환한다.
+	 * 
+	 * @param index	pointer index
+	 * @return	포함된 위치. 포함되지 않은 경우는 -1.
+	 */
+	int indexOf(int index) {
+		for ( int i =0; i < m_indexes.length; ++i ) {
+			if ( m_indexes[i] == index ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * 주어진 위치의 pointer를 제외한 slot을 반환한다.
+	 * 제외 후 남는 pointer가 하나인 경우는 {@link Pointer}를 반환한다.
+	 * 
+	 * @param pos	제외할 pointer의 위치
+	 * @return	pointer가 제외된 slot
+	 */
+	EnvelopedValue without(int pos) {
+		if ( m_indexes.length == 2 ) {
+			return new Pointer(m_envl, m_indexes[1-pos]);
+		}
+		
+		int[] remains = new int[m_indexes.length-1];
+		System.arraycopy(m_indexes, 0, remains, 0, pos);
+		System.arraycopy(m_indexes, pos+1, remains, pos, remains.length-pos);
+		return new PointerGroup(m_envl, remains);
+	}
+	
+	boolean visit(QuadTreeVisitor<? super Pointer> visitor) {
+		Pointer[] pointers = m_pointers;
+		if ( pointers == null ) {
+			pointers = new Pointer[m_indexes.length];
+			for ( int i =0; i < pointers.length; ++i ) {
+				pointers[i] = new Pointer(m_envl, m_indexes[i]);
+			}
+			m_pointers = pointers;
+		}
+		
+		for ( Pointer ptr: pointers ) {
+			if ( !visitor.visit(ptr) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	public static PointerGroup deserialize(DataInput in) {
 		Envelope envl = MarmotSerializers.ENVELOPE.deserialize(in);
 		int count = MarmotSerializers.readVInt(in);
@@ -12,49 +12,113 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 
+import utils.Preconditions;
 import utils.stream.FStream;
 import utils.stream.KeyedGroups;
 
 import marmot.io.serializer.MarmotSerializable;
 import marmot.io.serializer.MarmotSerializers;
+import marmot.type.MapTile;
 
 
 /**
+ * {@link Pointer}들을 저장하는 QuadTree 단말노드 partition.
+ * <p>
+ * partition의 용량(slot 수)은 {@link LeafCapacityPolicy}에 따라 결정된다. partition이 가득 찬 경우
+ * 정책의 비용 모델이 단말노드 분할보다 용량 확장이 유리하다고 판단하면 용량을 확장하여 데이터를
+ * 삽입하고, 그렇지 않은 경우는 삽입이 실패된 것으로 처리하여 단말노드가 분할되도록 한다.
  * 
  * @author Kang-Woo Lee (ETRI)
  */
 public final class PointerPartition implements Partition<Pointer>, MarmotSerializable {
 	private static final Logger s_logger = LoggerFactory.getLogger(PointerPartition.class);
-//	private static final int MAX_MINI_PARTITION_SLOTS = 512;
-	private static final int MAX_MINI_PARTITION_SLOTS = 64;
-	private static final float FILL_RATIO = 0.85f;
 	
+	private final LeafCapacityPolicy m_policy;
+	private final Envelope m_tileBounds;	// 밀집도 계산용 단말노드 타일 영역 (null인 경우 용량 확장 안함)
 	private Envelope m_dataBounds;
 	private List<EnvelopedValue> m_slots;
-	private int m_maxLength = MAX_MINI_PARTITION_SLOTS;
+	private int m_maxLength;
 	private int m_ptrCount;
 	private boolean m_grouped;
+	private volatile int m_exclusiveCount = -1;	// 다른 단말노드와 공유되지 않는 소유 포인터 수 (-1: 미계산)
 	
+	/**
+	 * 고정 용량({@link LeafCapacityPolicy#FIXED})을 사용하는 partition을 생성한다.
+	 */
 	public PointerPartition() {
+		this(null, LeafCapacityPolicy.FIXED);
+	}
+	
+	/**
+	 * 주어진 용량 정책을 사용하는 partition을 생성한다.
+	 * 
+	 * @param quadKey	partition이 저장될 단말노드의 quad-key.
+	 * 					{@code null}인 경우는 밀집도를 계산할 수 없기 때문에 용량을 확장하지 않는다.
+	 * @param policy	단말노드 용량 정책
+	 */
+	public PointerPartition(String quadKey, LeafCapacityPolicy policy) {
+		Preconditions.checkNotNullArgument(policy, "LeafCapacityPolicy is null");
+		
+		m_policy = policy;
+		m_tileBounds = (quadKey != null && MortonCodes.isEncodable(quadKey))
+						? MapTile.fromQuadKey(quadKey).getBounds() : null;
 		m_dataBounds = new Envelope();
 		m_slots = Lists.newArrayList();
+		m_maxLength = policy.getInitialCapacity();
 		m_ptrCount = 0;
 		m_grouped = false;
 	}
 	
 	private PointerPartition(Envelope dataBounds, int count, List<Pointer> ptrs,
 							List<PointerGroup> grps) {
+		m_policy = LeafCapacityPolicy.FIXED;
+		m_tileBounds = null;
 		m_dataBounds = dataBounds;
 		m_slots = Lists.newArrayListWithExpectedSize(ptrs.size() + grps.size());
 		m_slots.addAll(grps);
 		m_slots.addAll(ptrs);
 		m_ptrCount = count;
 		m_grouped = grps.size() > 0;
+		m_maxLength = Math.max(m_policy.getInitialCapacity(), m_slots.size());
 	}
 	
 	public int getMaxSlots() {
 		return m_maxLength;
 	}
+	
+	public int getSlotCount() {
+		return m_slots.size();
+	}
+	
+	@Override
+	public int getCapacity() {
+		return m_maxLength;
+	}
+	
+	@Override
+	public int getMaxCapacity() {
+		return Math.max(m_maxLength, m_policy.getMaxCapacity());
+	}
+	
+	public LeafCapacityPolicy getCapacityPolicy() {
+		return m_policy;
+	}
+	
+	/**
+	 * 본 partition에 저장된 포인터들 중에서 클러스터가 소유하고 다른 단말노드에는 저장되지 않은
+	 * 포인터의 수를 반환한다.
+	 * 값은 클러스터가 {@link #setExclusiveCount(int)}로 설정하며, 설정되지 않았거나
+	 * 이후 partition이 변경된 경우는 음수를 반환한다.
+	 * 
+	 * @return	포인터 수
+	 */
+	public int getExclusiveCount() {
+		return m_exclusiveCount;
+	}
+	
+	public void setExclusiveCount(int count) {
+		m_exclusiveCount = count;
+	}
 
 	@Override
 	public Envelope getBounds() {
@@ -68,6 +132,8 @@ public final class PointerPartition implements Partition<Pointer>, MarmotSeriali
 	
 	@Override
 	public boolean add(Pointer value, boolean reserveForSpeed) {
+		m_exclusiveCount = -1;
+		
 		if ( m_slots.size() < m_maxLength ) {
 			m_dataBounds.expandToInclude(value.getEnvelope());
 			m_slots.add(value);
@@ -78,9 +144,9 @@ public final class PointerPartition implements Partition<Pointer>, MarmotSeriali
 		
 		// 본 partition에서 수용할 수 있는 수의 데이터가 넘어선 경우.
 		
-		// 입력 데이터가 point가 아닌 경우는 삽입에 실패했다고 반환한다.
+		// 입력 데이터가 point가 아닌 경우는 용량을 확장하지 않는 한 삽입에 실패했다고 반환한다.
 		if ( value.getEnvelope().getArea() > 0 ) {
-			return false;
+			return addByExpanding(value);
 		}	
 		
 		int prevSlotCount = m_slots.size();
@@ -93,9 +159,9 @@ public final class PointerPartition implements Partition<Pointer>, MarmotSeriali
 		
 		// compact 작업 이후에도 어느정도 수 이상의로 slot을 차지하게 되면
 		// leaf-node가 split되도록 삽입이 실패된 것으로 처리한다.
-		if ( (reserveForSpeed && fillRatio > FILL_RATIO)
+		if ( (reserveForSpeed && fillRatio > m_policy.getFillRatio())
 			||  m_slots.size() > m_maxLength) {
-			return false;
+			return addByExpanding(value);
 		}
 		
 		m_dataBounds.expandToInclude(value.getEnvelope());
@@ -105,13 +171,54 @@ public final class PointerPartition implements Partition<Pointer>, MarmotSeriali
 		return true;
 	}
 	
+	@Override
+	public boolean remove(Pointer value) {
+		for ( int i =0; i < m_slots.size(); ++i ) {
+			EnvelopedValue slot = m_slots.get(i);
+			if ( slot instanceof Pointer ) {
+				if ( ((Pointer)slot).index() != value.index() ) {
+					continue;
+				}
+				m_slots.remove(i);
+			}
+			else {
+				PointerGroup grp = (PointerGroup)slot;
+				int pos = grp.indexOf(value.index());
+				if ( pos < 0 ) {
+					continue;
+				}
+				EnvelopedValue remain = grp.without(pos);
+				m_slots.set(i, remain);
+				if ( !(remain instanceof PointerGroup) ) {
+					m_grouped = m_slots.stream().anyMatch(PointerGroup.class::isInstance);
+				}
+			}
+			--m_ptrCount;
+			m_exclusiveCount = -1;
+			
+			m_dataBounds.setToNull();
+			for ( EnvelopedValue remain: m_slots ) {
+				m_dataBounds.expandToInclude(remain.getEnvelope());
+			}
+			return true;
+		}
+		
+		return false;
+	}
+	
 	@Override
 	public boolean expand() {
+		// 밀도에 따른 확장(addByExpanding)과 동일하게 정책의 최대 용량을 넘지 않도록 한다.
+		if ( m_maxLength >= m_policy.getMaxCapacity() ) {
+			return false;
+		}
+		
+		int expanded = Math.min(m_policy.grow(m_maxLength), m_policy.getMaxCapacity());
 		if ( s_logger.isDebugEnabled() ) {
 			s_logger.debug("{} slot expanded: {} -> {}", getClass().getSimpleName(),
-							m_maxLength, m_maxLength*2);
+							m_maxLength, expanded);
 		}
-		m_maxLength *= 2;
+		m_maxLength = expanded;
 		return true;
 	}
 
@@ -138,6 +245,24 @@ public final class PointerPartition implements Partition<Pointer>, MarmotSeriali
 		}
 	}
 
+	@Override
+	public boolean visitIntersects(Envelope query, QuadTreeVisitor<? super Pointer> visitor) {
+		for ( int i =0; i < m_slots.size(); ++i ) {
+			EnvelopedValue slot = m_slots.get(i);
+			if ( !slot.getEnvelope().intersects(query) ) {
+				continue;
+			}
+			
+			boolean cont = (slot instanceof PointerGroup)
+						? ((PointerGroup)slot).visit(visitor)
+						: visitor.visit((Pointer)slot);
+			if ( !cont ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public static PointerPartition deserialize(DataInput in) {
 		Envelope dataBounds = MarmotSerializers.ENVELOPE.deserialize(in);
 		int count = MarmotSerializers.readVInt(in);
@@ -178,6 +303,27 @@ public final class PointerPartition implements Partition<Pointer>, MarmotSeriali
 								(double)m_ptrCount/m_maxLength*100);
 	}
 	
+	private boolean addByExpanding(Pointer value) {
+		Envelope dataBounds = new Envelope(m_dataBounds);
+		dataBounds.expandToInclude(value.getEnvelope());
+		if ( !m_policy.shouldExpand(m_tileBounds, dataBounds, m_maxLength) ) {
+			return false;
+		}
+		
+		int expanded = Math.min(m_policy.grow(m_maxLength), m_policy.getMaxCapacity());
+		if ( s_logger.isDebugEnabled() ) {
+			s_logger.debug("{} slot expanded by density: {} -> {}, data={}, tile={}",
+							getClass().getSimpleName(), m_maxLength, expanded, dataBounds, m_tileBounds);
+		}
+		m_maxLength = expanded;
+		
+		m_dataBounds = dataBounds;
+		m_slots.add(value);
+		++m_ptrCount;
+		
+		return true;
+	}
+	
 	private List<EnvelopedValue> compact() {
 		List<EnvelopedValue> compacteds = Lists.newArrayList();
 		KeyedGroups<Envelope,EnvelopedValue> groups = FStream.from(m_slots)
@@ -2,6 +2,7 @@ package marmot.io.geo.quadtree;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 
@@ -10,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import utils.Preconditions;
 import utils.stream.FStream;
@@ -117,6 +119,24 @@ public class QuadTree<T extends EnvelopedValue, P extends Partition<T>> {
 		return m_enforcedQuadKey != null ? m_enforcedBounds : m_root.getTileBounds();
 	}
 	
+	/**
+	 * QuadTree의 최상위 노드를 반환한다.
+	 * 
+	 * @return	최상위 노드
+	 */
+	public Node<T,P> getRootNode() {
+		return m_root;
+	}
+	
+	/**
+	 * QuadTree의 깊이, 단말노드 수 및 채움 비율 등의 통계 정보를 수집한다.
+	 * 
+	 * @return	통계 정보
+	 */
+	public QuadTreeStats getStatistics() {
+		return QuadTreeStats.of(this);
+	}
+	
 	public boolean getRangeExpandable() {
 		return m_rangeExpandable;
 	}
@@ -180,6 +200,105 @@ public class QuadTree<T extends EnvelopedValue, P extends Partition<T>> {
 		return ((NonLeafNode<T,P>)m_root).insert(value);
 	}
 	
+	/**
+	 * 주어진 공간 데이터를 삭제한다.
+	 * 데이터가 복수개의 단말노드에 저장된 경우는 모든 단말노드에서 삭제된다.
+	 * 삭제 후 형제 단말노드들에 저장된 데이터의 수가 용량의 절반 이하로 줄어든 경우는
+	 * 형제 단말노드들을 부모 노드 위치의 하나의 단말노드로 병합하고, 단말노드 연결 리스트와
+	 * 상위 노드들의 MBR을 갱신한다.
+	 * 데이터의 동일성은 partition에서 {@link Object#equals(Object)}로 판단되며, 검색 범위는
+	 * 데이터의 MBR로 제한되기 때문에 주어진 데이터의 MBR은 삽입 당시의 MBR과 같아야 한다.
+	 * 
+	 * @param value	삭제할 공간 데이터.
+	 * @return	삭제 여부. 주어진 데이터가 QuadTree에 없는 경우는 {@code false}.
+	 */
+	public boolean remove(T value) {
+		Preconditions.checkNotNullArgument(value, "value is null");
+		
+		if ( m_root instanceof LeafNode ) {
+			return ((LeafNode<T,P>)m_root).remove(value);
+		}
+		
+		NonLeafNode<T,P> root = (NonLeafNode<T,P>)m_root;
+		if ( !remove(root, value, value.getEnvelope()) ) {
+			return false;
+		}
+		
+		LeafNode<T,P> merged = tryMerge(root);
+		if ( merged != null ) {
+			merged.setPreviousLeafNode(null);
+			merged.setNextLeafNode(null);
+			m_root = merged;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * 주어진 공간 데이터의 위치(MBR)를 변경한다.
+	 * <p>
+	 * 이전 MBR과 새 MBR이 모두 동일 단말노드의 타일 내부에 포함되는 경우는 해당 단말노드
+	 * 내에서만 데이터를 교체하고 상위 노드들의 MBR만 갱신한다. 그렇지 않은 경우는
+	 * {@link #remove(EnvelopedValue)}와 {@link #insert(EnvelopedValue)}를 차례로 수행한다.
+	 * 
+	 * @param oldValue	QuadTree에 저장된 기존 데이터.
+	 * @param newValue	새로 저장될 데이터.
+	 * @return	새 데이터가 저장된 단말 노드 리스트.
+	 * @throws IllegalArgumentException	기존 데이터가 QuadTree에 없는 경우.
+	 * @throws TooBigValueException	새 데이터가 너무커서 단말노드에 저장할 수 없는 경우.
+	 */
+	public List<LeafNode<T,P>> update(T oldValue, T newValue) throws TooBigValueException {
+		Preconditions.checkNotNullArgument(oldValue, "old value is null");
+		Preconditions.checkNotNullArgument(newValue, "new value is null");
+		
+		Envelope oldEnvl = oldValue.getEnvelope();
+		Envelope newEnvl = newValue.getEnvelope();
+		if ( containsInterior(m_root.getTileBounds(), oldEnvl)
+			&& containsInterior(m_root.getTileBounds(), newEnvl) ) {
+			// 두 MBR을 모두 타일 내부에 포함하는 가장 깊은 노드를 찾는다.
+			// 타일 경계에 걸친 데이터는 인접한 단말노드에도 저장되기 때문에 내부 포함 여부를 검사한다.
+			List<NonLeafNode<T,P>> path = Lists.newArrayList();
+			Node<T,P> node = m_root;
+			while ( node instanceof NonLeafNode ) {
+				NonLeafNode<T,P> nonLeaf = (NonLeafNode<T,P>)node;
+				Node<T,P> next = FStream.of(nonLeaf.getChildrenNode())
+										.filter(c -> containsInterior(c.getTileBounds(), oldEnvl)
+													&& containsInterior(c.getTileBounds(), newEnvl))
+										.findFirst()
+										.getOrNull();
+				if ( next == null ) {
+					break;
+				}
+				
+				path.add(nonLeaf);
+				node = next;
+			}
+			
+			if ( node instanceof LeafNode ) {
+				LeafNode<T,P> leaf = (LeafNode<T,P>)node;
+				if ( !leaf.remove(oldValue) ) {
+					throw new IllegalArgumentException("value not found: " + oldValue);
+				}
+				
+				boolean done = leaf.insert(newValue);
+				for ( int i = path.size()-1; i >= 0; --i ) {
+					path.get(i).updateDataBounds();
+				}
+				if ( done ) {
+					return Lists.newArrayList(leaf);
+				}
+				
+				// 단말노드가 가득 찬 경우는 최상위 노드부터 다시 삽입하여 분할되도록 한다.
+				return insert(newValue);
+			}
+		}
+		
+		if ( !remove(oldValue) ) {
+			throw new IllegalArgumentException("value not found: " + oldValue);
+		}
+		return insert(newValue);
+	}
+	
 	/**
 	 * 본 quad-tree에 포함된 단말 노드 중에서 quad-key 순으로 가장 작은 값의 단말 노드를 반환한다.
 	 * 
@@ -266,6 +385,41 @@ public class QuadTree<T extends EnvelopedValue, P extends Partition<T>> {
 						.flatMap(node -> node.query(op, keyWgs84));
 	}
 	
+	/**
+	 * QuadTree에 저장된 모든 데이터 중 주어진 질의 사각형과 겹치는 데이터를 차례로
+	 * visitor에 전달한다.
+	 * {@link #query(SpatialRelation, Envelope)}와 달리 단말노드 리스트나 스트림을 생성하지 않고
+	 * 노드들을 직접 순회한다. 복수개의 단말노드에 저장된 데이터는 중복되어 전달될 수 있다.
+	 * 중복 제거가 필요한 경우는 {@link QuadTreeCursor}를 사용한다.
+	 * 질의 사각형 ({@code key84})은 반드시 EPSG:4326 좌표체계로 기술되어야 한다.
+	 * 
+	 * @param key84		질의 box.
+	 * @param visitor	질의 결과 데이터를 전달받을 visitor.
+	 * @return	visitor가 순회를 중단시킨 경우는 {@code false}, 그렇지 않은 경우는 {@code true}.
+	 */
+	public boolean visit(Envelope key84, QuadTreeVisitor<? super T> visitor) {
+		return visit(m_root, key84, visitor);
+	}
+	
+	static <T extends EnvelopedValue, P extends Partition<T>>
+	boolean visit(Node<T,P> node, Envelope key84, QuadTreeVisitor<? super T> visitor) {
+		if ( !node.getDataBounds().intersects(key84) ) {
+			return true;
+		}
+		
+		if ( node instanceof LeafNode ) {
+			return ((LeafNode<T,P>)node).getPartition().visitIntersects(key84, visitor);
+		}
+		else {
+			for ( Node<T,P> child: ((NonLeafNode<T,P>)node).getChildrenNode() ) {
+				if ( !visit(child, key84, visitor) ) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
 	public void compact() {
 		String mbrQuadKey = MapTile.getSmallestContainingTile(m_root.getDataBounds()).getQuadKey();
 		String quadKey = getQuadKey();
@@ -337,6 +491,121 @@ public class QuadTree<T extends EnvelopedValue, P extends Partition<T>> {
 		s_logger.debug("expanded: {}", this);
 	}
 	
+	private boolean remove(NonLeafNode<T,P> node, T value, Envelope envl) {
+		boolean removed = false;
+		
+		Node<T,P>[] children = node.getChildrenNode();
+		for ( int i =0; i < children.length; ++i ) {
+			Node<T,P> child = children[i];
+			
+			// 빈 MBR의 데이터는 위치를 알 수 없기 때문에 모든 하위 노드를 검색한다.
+			if ( !envl.isNull() && !child.getDataBounds().intersects(envl) ) {
+				continue;
+			}
+			
+			if ( child instanceof LeafNode ) {
+				removed |= ((LeafNode<T,P>)child).remove(value);
+			}
+			else {
+				NonLeafNode<T,P> nonLeaf = (NonLeafNode<T,P>)child;
+				if ( remove(nonLeaf, value, envl) ) {
+					removed = true;
+					
+					LeafNode<T,P> merged = tryMerge(nonLeaf);
+					if ( merged != null ) {
+						node.setChildNode(i, merged);
+					}
+				}
+			}
+		}
+		if ( removed ) {
+			node.updateDataBounds();
+		}
+		
+		return removed;
+	}
+	
+	/**
+	 * 주어진 비단말노드의 하위 노드들이 모두 단말노드이고, 이들에 저장된 데이터의 수가
+	 * 단말노드가 확장을 통해 도달할 수 있는 최대 용량({@link Partition#getMaxCapacity()})의
+	 * 절반 이하인 경우 하나의 단말노드로 병합한다.
+	 * 분할 직후 다시 병합되는 현상을 막기 위해 용량의 절반을 기준으로 사용한다.
+	 * 최대 용량을 알 수 없는 partition(음수 반환)인 경우는 병합하지 않는다.
+	 * 
+	 * @param node	병합 대상 비단말노드
+	 * @return	병합된 단말노드. 병합되지 않은 경우는 {@code null}.
+	 */
+	private LeafNode<T,P> tryMerge(NonLeafNode<T,P> node) {
+		if ( m_partitionSupplier == null ) {
+			return null;
+		}
+		
+		Node<T,P>[] children = node.getChildrenNode();
+		int capacity = -1;
+		int maxSize = 0;
+		for ( Node<T,P> child: children ) {
+			if ( !(child instanceof LeafNode) ) {
+				return null;
+			}
+			
+			// 하위 단말노드들은 동일한 partition 생성기로 생성되기 때문에,
+			// 병합된 단말노드도 이들과 동일한 최대 용량을 갖는다.
+			P part = ((LeafNode<T,P>)child).getPartition();
+			capacity = Math.max(capacity, part.getMaxCapacity());
+			maxSize = Math.max(maxSize, part.size());
+		}
+		
+		// 용량을 알 수 없는 partition은 병합 기준을 정할 수 없으므로 병합하지 않는다.
+		if ( capacity <= 0 ) {
+			return null;
+		}
+		
+		// 병합 후의 데이터 수는 가장 많은 데이터를 가진 하위 노드의 데이터 수 이상이므로,
+		// 데이터를 모으기 전에 병합 가능 여부를 먼저 판단한다.
+		int threshold = capacity / 2;
+		if ( maxSize > threshold ) {
+			return null;
+		}
+		
+		// 타일 경계에 걸쳐 복수개의 단말노드에 저장된 데이터는 한번만 포함시킨다.
+		Set<T> values = Sets.newLinkedHashSet();
+		for ( Node<T,P> child: children ) {
+			((LeafNode<T,P>)child).values().forEach(values::add);
+		}
+		if ( values.size() > threshold ) {
+			return null;
+		}
+		
+		// 삽입 도중 용량 부족으로 실패하지 않도록 병합된 partition의 용량을 미리 확보한다.
+		LeafNode<T,P> merged = new LeafNode<>(node.getQuadKey(), m_partitionSupplier);
+		P mergedPart = merged.getPartition();
+		while ( mergedPart.getCapacity() >= 0 && mergedPart.getCapacity() < values.size() ) {
+			if ( !mergedPart.expand() ) {
+				return null;
+			}
+		}
+		for ( T value: values ) {
+			if ( !mergedPart.add(value, false) ) {
+				return null;
+			}
+		}
+		
+		LeafNode<T,P> first = (LeafNode<T,P>)children[0];
+		LeafNode<T,P> last = (LeafNode<T,P>)children[children.length-1];
+		link(first.getPreviousLeafNode(), merged);
+		link(merged, last.getNextLeafNode());
+		
+		s_logger.debug("merged: {}, values={}", node.getQuadKey(), values.size());
+		
+		return merged;
+	}
+	
+	private static boolean containsInterior(Envelope tile, Envelope envl) {
+		return !envl.isNull()
+			&& tile.getMinX() < envl.getMinX() && envl.getMaxX() < tile.getMaxX()
+			&& tile.getMinY() < envl.getMinY() && envl.getMaxY() < tile.getMaxY();
+	}
+	
 	static <T extends EnvelopedValue, P extends Partition<T>> void link(Node<T,P> prev, Node<T,P> next) {
 		LeafNode<T,P> lprev = (prev != null && prev instanceof NonLeafNode)
 							? ((NonLeafNode<T,P>)prev).getLastLeafNode()
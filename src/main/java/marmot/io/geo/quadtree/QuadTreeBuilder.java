@@ -1,18 +1,29 @@
 package marmot.io.geo.quadtree;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import org.locationtech.jts.geom.Envelope;
+
 import com.google.common.collect.Lists;
 
+import utils.Preconditions;
+
+import marmot.type.MapTile;
+
 /**
  * 
  * @author Kang-Woo Lee (ETRI)
  */
 public class QuadTreeBuilder<T extends EnvelopedValue, P extends Partition<T>> {
+	private static final int PARALLEL_SORT_THRESHOLD = 64 * 1024;
+	
 	private final String m_quadKey;
 	private final List<LeafNode<T,P>> m_leaves = Lists.newArrayList();
 	private final Function<String,P> m_supplier;
@@ -47,6 +58,189 @@ public class QuadTreeBuilder<T extends EnvelopedValue, P extends Partition<T>> {
 		return new QuadTree<>(m_quadKey, root.getTileBounds(), nodes.get(0), m_supplier);
 	}
 
+	/**
+	 * 주어진 value들을 일괄 적재한 QuadTree를 생성한다.
+	 * <p>
+	 * value들을 MBR 중심점의 Morton 코드 순서로 정렬한 뒤, 최상위 노드부터 영역을 4분할해 가며
+	 * 모든 value가 partition에 들어가는 노드를 단말노드로 생성한다.
+	 * {@link QuadTree#insert(EnvelopedValue)}로 value를 하나씩 삽입하는 경우와 달리
+	 * 단말노드 분할에 따른 value의 재배치가 발생하지 않는다.
+	 * 분할시 value가 배정되는 하위 노드는 삽입 방식과 동일하게 타일 영역과의 겹침 여부로
+	 * 결정되기 때문에, 생성된 QuadTree의 질의 결과는 삽입 방식으로 생성된 QuadTree와 같다.
+	 * 
+	 * @param quadKey	QuadTree에 부여할 quad-key. {@code null}인 경우는
+	 * 					모든 value를 포함하는 최소 타일이 최상위 노드가 된다.
+	 * @param values	적재할 value 리스트.
+	 * @param supplier	partition 생성기.
+	 * @return	생성된 QuadTree
+	 * @throws TooBigValueException	단말노드에 저장할 수 없을 정도로 큰 value가 포함된 경우.
+	 */
+	public static <T extends EnvelopedValue, P extends Partition<T>>
+	QuadTree<T,P> bulkLoad(String quadKey, List<T> values, Function<String,P> supplier) {
+		Preconditions.checkNotNullArgument(values, "values is null");
+		Preconditions.checkNotNullArgument(supplier, "partition supplier is null");
+		
+		Envelope bounds = new Envelope();
+		for ( T value: values ) {
+			bounds.expandToInclude(value.getEnvelope());
+		}
+		
+		List<LeafNode<T,P>> leaves = Lists.newArrayList();
+		Node<T,P> root = load(getRootQuadKey(quadKey, bounds), sortByMortonCode(values),
+								supplier, leaves);
+		for ( int i =1; i < leaves.size(); ++i ) {
+			QuadTree.link(leaves.get(i-1), leaves.get(i));
+		}
+		
+		if ( quadKey != null ) {
+			return new QuadTree<>(quadKey, MapTile.fromQuadKey(quadKey).getBounds(), root, supplier);
+		}
+		else {
+			return new QuadTree<>(root, supplier);
+		}
+	}
+	
+	private static <T extends EnvelopedValue, P extends Partition<T>>
+	Node<T,P> load(String quadKey, ArrayList<T> values, Function<String,P> supplier,
+					List<LeafNode<T,P>> leaves) {
+		P partition = fill(quadKey, values, supplier);
+		if ( partition != null ) {
+			LeafNode<T,P> leaf = new LeafNode<>(quadKey, partition, supplier);
+			leaves.add(leaf);
+			
+			return leaf;
+		}
+		
+		// 하나의 partition에 모든 value를 저장할 수 없는 경우는 4분할하여
+		// 각 하위 타일과 겹치는 value들을 배정한다. (정렬 순서 유지)
+		@SuppressWarnings("unchecked")
+		ArrayList<T>[] childValues = new ArrayList[QuadTree.QUAD];
+		Envelope[] childTiles = new Envelope[QuadTree.QUAD];
+		for ( int i =0; i < QuadTree.QUAD; ++i ) {
+			childValues[i] = Lists.newArrayList();
+			childTiles[i] = MapTile.fromQuadKey(quadKey + i).getBounds();
+		}
+		for ( T value: values ) {
+			Envelope mbr = value.getEnvelope();
+			for ( int i =0; i < QuadTree.QUAD; ++i ) {
+				if ( childTiles[i].intersects(mbr) ) {
+					childValues[i].add(value);
+				}
+			}
+		}
+		
+		int nvalues = values.size();
+		if ( Arrays.stream(childValues).allMatch(vlist -> vlist.size() == nvalues) ) {
+			// 분할하여도 모든 value가 모든 하위 노드에 배정되는 경우는
+			// partition을 확장하여 단말노드를 생성한다.
+			LeafNode<T,P> leaf = new LeafNode<>(quadKey, fillExpanding(quadKey, values, supplier),
+												supplier);
+			leaves.add(leaf);
+			
+			return leaf;
+		}
+		
+		// 하위 노드를 적재하는 동안 현 노드의 value 리스트가 메모리를 점유하지 않도록 한다.
+		values.clear();
+		values.trimToSize();
+		
+		@SuppressWarnings("unchecked")
+		Node<T,P>[] children = new Node[QuadTree.QUAD];
+		for ( int i =0; i < QuadTree.QUAD; ++i ) {
+			children[i] = load(quadKey + i, childValues[i], supplier, leaves);
+			childValues[i] = null;
+		}
+		
+		return new NonLeafNode<>(quadKey, children);
+	}
+	
+	private static <T extends EnvelopedValue, P extends Partition<T>>
+	P fill(String quadKey, List<T> values, Function<String,P> supplier) {
+		P partition = supplier.apply(quadKey);
+		for ( T value: values ) {
+			if ( !partition.add(value, false) ) {
+				return null;
+			}
+		}
+		
+		return partition;
+	}
+	
+	private static <T extends EnvelopedValue, P extends Partition<T>>
+	P fillExpanding(String quadKey, List<T> values, Function<String,P> supplier) {
+		P partition = supplier.apply(quadKey);
+		for ( T value: values ) {
+			while ( !partition.add(value, false) ) {
+				if ( !partition.expand() ) {
+					throw new TooBigValueException("value=" + value + ", partition=" + partition);
+				}
+			}
+		}
+		
+		return partition;
+	}
+	
+	private static String getRootQuadKey(String quadKey, Envelope bounds) {
+		if ( bounds.isNull() ) {
+			return (quadKey != null) ? quadKey : "";
+		}
+		
+		String dataKey = MapTile.getSmallestContainingTile(bounds).getQuadKey();
+		if ( quadKey == null ) {
+			return dataKey;
+		}
+		
+		// 주어진 quad-key 영역을 벗어나는 value가 있는 경우는
+		// 삽입 방식과 마찬가지로 모든 value를 포함할 때까지 최상위 노드를 확장한다.
+		int len = 0;
+		while ( len < quadKey.length() && len < dataKey.length()
+				&& quadKey.charAt(len) == dataKey.charAt(len) ) {
+			++len;
+		}
+		return quadKey.substring(0, len);
+	}
+	
+	private static <T extends EnvelopedValue> ArrayList<T> sortByMortonCode(List<T> values) {
+		@SuppressWarnings("unchecked")
+		CodedValue<T>[] codeds = new CodedValue[values.size()];
+		int idx = 0;
+		for ( T value: values ) {
+			codeds[idx++] = new CodedValue<>(toMortonCode(value.getEnvelope()), value);
+		}
+		
+		Comparator<CodedValue<T>> cmptor = (v1,v2) -> Long.compare(v1.m_code, v2.m_code);
+		if ( codeds.length >= PARALLEL_SORT_THRESHOLD ) {
+			Arrays.parallelSort(codeds, cmptor);
+		}
+		else {
+			Arrays.sort(codeds, cmptor);
+		}
+		
+		ArrayList<T> sorteds = new ArrayList<>(codeds.length);
+		for ( CodedValue<T> coded: codeds ) {
+			sorteds.add(coded.m_value);
+		}
+		return sorteds;
+	}
+	
+	private static long toMortonCode(Envelope mbr) {
+		if ( mbr == null || mbr.isNull() ) {
+			return 0;
+		}
+		return MortonCodes.encode((mbr.getMinX() + mbr.getMaxX()) / 2,
+									(mbr.getMinY() + mbr.getMaxY()) / 2);
+	}
+	
+	private static final class CodedValue<T> {
+		private final long m_code;
+		private final T m_value;
+		
+		CodedValue(long code, T value) {
+			m_code = code;
+			m_value = value;
+		}
+	}
+
 	private List<NonLeafNode<T,P>> buildUp(final List<Node<T,P>> nodes) {
 		List<NonLeafNode<T,P>> parents = Lists.newArrayList();
 		
@@ -61,7 +255,8 @@ public class QuadTreeBuilder<T extends EnvelopedValue, P extends Partition<T>> {
 			IntStream.range(0, children.length)
 						.filter(idx -> children[idx] == null)
 						.forEach(idx -> children[idx] = new LeafNode<>(parentKey+idx,
-																		m_supplier.apply(parentKey+idx)));
+																		m_supplier.apply(parentKey+idx),
+																		m_supplier));
 			
 			// 자식 단말노드들 사이의 next-previous 관계를 설정한다.
 			linkLeafNodes(children);
@@ -0,0 +1,213 @@
+package marmot.io.geo.quadtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.jts.geom.Envelope;
+
+import utils.Preconditions;
+
+
+/**
+ * QuadTree 영역 질의를 반복적으로 수행하기 위한 재사용 가능한 cursor.
+ * <p>
+ * 노드 순회를 위한 스택, 단말노드 결과 버퍼, 중복 제거용 bitset을 내부에 유지하고 질의마다
+ * 재사용하기 때문에, 질의를 반복하여도 (버퍼 크기가 늘어나는 경우를 제외하고) 중간 객체를
+ * 생성하지 않는다. 질의 결과는 {@link #reset(QuadTree, Envelope)} 이후
+ * {@link Iterator} 인터페이스로 접근하거나, {@link #visit(QuadTree, Envelope, QuadTreeVisitor)}를
+ * 통해 visitor로 전달받을 수 있다.
+ * <p>
+ * 생성시 value 식별자 함수가 주어진 경우는 복수개의 단말노드에 저장된 value를 한번만 반환한다.
+ * 식별자는 0 이상의 정수이어야 하며, 중복 검사에는 bitset이 사용된다.
+ * 본 객체는 쓰레드에 안전하지 않다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class QuadTreeCursor<T extends EnvelopedValue, P extends Partition<T>> implements Iterator<T> {
+	private static final int INITIAL_DEPTH = 16;
+
+	private final @Nullable ToIntFunction<? super T> m_idFunc;
+	private final BitSet m_visiteds = new BitSet();
+	private int[] m_visitedIds = new int[64];
+	private int m_visitedCount = 0;
+
+	// iterator 방식 순회 상태
+	private Envelope m_key84;
+	@SuppressWarnings("unchecked")
+	private Node<T,P>[] m_stack = new Node[INITIAL_DEPTH];
+	private int[] m_childIdxes = new int[INITIAL_DEPTH];
+	private int m_depth = 0;
+	private final ArrayList<T> m_buffer = new ArrayList<>();
+	private int m_bufferIdx = 0;
+	private final QuadTreeVisitor<T> m_collector;
+
+	// visitor 방식 순회 상태
+	private QuadTreeVisitor<? super T> m_target;
+	private final QuadTreeVisitor<T> m_dedupVisitor;
+
+	/**
+	 * 중복 제거 기능이 없는 cursor를 생성한다.
+	 */
+	public QuadTreeCursor() {
+		this(null);
+	}
+
+	/**
+	 * cursor를 생성한다.
+	 *
+	 * @param idFunc	중복 제거에 사용할 value 식별자 함수. {@code null}인 경우는 중복을 제거하지 않는다.
+	 */
+	public QuadTreeCursor(@Nullable ToIntFunction<? super T> idFunc) {
+		m_idFunc = idFunc;
+		m_collector = v -> {
+			if ( markVisited(v) ) {
+				m_buffer.add(v);
+			}
+			return true;
+		};
+		m_dedupVisitor = v -> !markVisited(v) || m_target.visit(v);
+	}
+
+	/**
+	 * 주어진 QuadTree에 대한 새 질의를 시작한다.
+	 * 이전 질의의 순회 상태는 모두 제거된다.
+	 *
+	 * @param qtree		질의 대상 QuadTree
+	 * @param key84		질의 box. EPSG:4326 좌표계 사용.
+	 * @return	본 cursor 객체
+	 */
+	public QuadTreeCursor<T,P> reset(QuadTree<T,P> qtree, Envelope key84) {
+		Preconditions.checkNotNullArgument(qtree, "QuadTree is null");
+		Preconditions.checkNotNullArgument(key84, "query key is null");
+
+		clearVisiteds();
+		m_key84 = key84;
+		m_depth = 0;
+		m_buffer.clear();
+		m_bufferIdx = 0;
+
+		Node<T,P> root = qtree.getRootNode();
+		if ( root.getDataBounds().intersects(key84) ) {
+			push(root);
+		}
+
+		return this;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while ( m_bufferIdx >= m_buffer.size() ) {
+			if ( !fillNextLeaf() ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if ( !hasNext() ) {
+			throw new NoSuchElementException();
+		}
+		return m_buffer.get(m_bufferIdx++);
+	}
+
+	/**
+	 * 주어진 QuadTree에서 질의 box와 겹치는 value들을 차례로 visitor에 전달한다.
+	 *
+	 * @param qtree		질의 대상 QuadTree
+	 * @param key84		질의 box. EPSG:4326 좌표계 사용.
+	 * @param visitor	결과 value를 전달받을 visitor
+	 * @return	visitor가 순회를 중단시킨 경우는 {@code false}, 그렇지 않은 경우는 {@code true}.
+	 */
+	public boolean visit(QuadTree<T,P> qtree, Envelope key84, QuadTreeVisitor<? super T> visitor) {
+		Preconditions.checkNotNullArgument(qtree, "QuadTree is null");
+		Preconditions.checkNotNullArgument(visitor, "visitor is null");
+
+		clearVisiteds();
+		if ( m_idFunc == null ) {
+			return qtree.visit(key84, visitor);
+		}
+
+		m_target = visitor;
+		try {
+			return qtree.visit(key84, m_dedupVisitor);
+		}
+		finally {
+			m_target = null;
+		}
+	}
+
+	private boolean fillNextLeaf() {
+		m_buffer.clear();
+		m_bufferIdx = 0;
+
+		while ( m_depth > 0 ) {
+			Node<T,P> top = m_stack[m_depth-1];
+			if ( top instanceof LeafNode ) {
+				--m_depth;
+				((LeafNode<T,P>)top).getPartition().visitIntersects(m_key84, m_collector);
+
+				return true;
+			}
+
+			Node<T,P>[] children = ((NonLeafNode<T,P>)top).getChildrenNode();
+			int idx = m_childIdxes[m_depth-1];
+			if ( idx >= children.length ) {
+				--m_depth;
+				continue;
+			}
+			m_childIdxes[m_depth-1] = idx + 1;
+
+			Node<T,P> child = children[idx];
+			if ( child.getDataBounds().intersects(m_key84) ) {
+				push(child);
+			}
+		}
+
+		return false;
+	}
+
+	private void push(Node<T,P> node) {
+		if ( m_depth == m_stack.length ) {
+			m_stack = Arrays.copyOf(m_stack, m_depth*2);
+			m_childIdxes = Arrays.copyOf(m_childIdxes, m_depth*2);
+		}
+		m_stack[m_depth] = node;
+		m_childIdxes[m_depth] = 0;
+		++m_depth;
+	}
+
+	private boolean markVisited(T value) {
+		if ( m_idFunc == null ) {
+			return true;
+		}
+
+		int id = m_idFunc.applyAsInt(value);
+		if ( m_visiteds.get(id) ) {
+			return false;
+		}
+		m_visiteds.set(id);
+
+		if ( m_visitedCount == m_visitedIds.length ) {
+			m_visitedIds = Arrays.copyOf(m_visitedIds, m_visitedCount*2);
+		}
+		m_visitedIds[m_visitedCount++] = id;
+
+		return true;
+	}
+
+	private void clearVisiteds() {
+		// bitset 전체를 지우지 않고 이전 질의에서 설정된 bit만 지운다.
+		for ( int i =0; i < m_visitedCount; ++i ) {
+			m_visiteds.clear(m_visitedIds[i]);
+		}
+		m_visitedCount = 0;
+	}
+}
@@ -2,13 +2,13 @@ package marmot.io.geo.quadtree;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Lists;
-
 import marmot.optor.geo.SpatialQueryOperation;
 import marmot.optor.support.Match;
 import utils.stream.FStream;
@@ -36,12 +36,49 @@ public class QuadTreeJoinMatcher<T extends EnvelopedValue, P extends Partition<T
 		return streamLeafNodeMatch().flatMap(new ToValueMatchStream<T,P>(op));
 	}
 	
+	/**
+	 * 두 QuadTree의 단말노드 쌍들을 공용 {@link ForkJoinPool}에서 동시에 조인한다.
+	 * 결과 스트림은 사용 후 close되어야 아직 처리되지 않은 작업들이 취소된다.
+	 * 
+	 * @param op			조인 연산자
+	 * @param parallelism	동시에 조인을 수행할 최대 작업 수
+	 * @param ordered		{@link #streamMatch(SpatialQueryOperation)}와 동일한 단말노드 쌍 순서로
+	 * 						결과를 반환할지 여부
+	 * @return	조인 결과 value 쌍 스트림
+	 * @see ParallelQuadTreeJoin
+	 */
+	public FStream<Match<T>> streamMatch(SpatialQueryOperation op, int parallelism, boolean ordered) {
+		return streamMatch(op, ForkJoinPool.commonPool(), parallelism, ordered);
+	}
+	
+	/**
+	 * 두 QuadTree의 단말노드 쌍들을 주어진 executor에서 동시에 조인한다.
+	 * 
+	 * @param op			조인 연산자
+	 * @param executor		조인 작업을 수행할 executor
+	 * @param parallelism	동시에 조인을 수행할 최대 작업 수
+	 * @param ordered		{@link #streamMatch(SpatialQueryOperation)}와 동일한 단말노드 쌍 순서로
+	 * 						결과를 반환할지 여부
+	 * @return	조인 결과 value 쌍 스트림
+	 * @see ParallelQuadTreeJoin
+	 */
+	public FStream<Match<T>> streamMatch(SpatialQueryOperation op, Executor executor,
+										int parallelism, boolean ordered) {
+		return new ParallelQuadTreeJoin<>(m_left, m_right, op, executor, parallelism,
+										4*parallelism, ParallelQuadTreeJoin.DEFAULT_UNIT_COST,
+										ordered);
+	}
+	
+	/**
+	 * 매칭된 단말노드 쌍에 저장된 value들 중에서 주어진 연산자를 만족하는 쌍들을 반환한다.
+	 * value 쌍은 {@link LeafSweepMatcher}를 이용한 plane-sweep 방식으로 계산된다.
+	 */
 	private static class ToValueMatchStream<T extends EnvelopedValue, P extends Partition<T>>
 											implements Function<Match<LeafNode<T,P>>,FStream<Match<T>>> {
-		private final SpatialQueryOperation m_op;
+		private final LeafSweepMatcher<T> m_sweeper;
 		
 		ToValueMatchStream(SpatialQueryOperation op) {
-			m_op = op;
+			m_sweeper = new LeafSweepMatcher<>(op);
 		}
 		
 		@Override
@@ -49,40 +86,14 @@ public class QuadTreeJoinMatcher<T extends EnvelopedValue, P extends Partition<T
 			P leftPart = nodeMatch.m_left.getPartition();
 			P rightPart = nodeMatch.m_right.getPartition();
 			
-			List<Match<T>> matches = Lists.newArrayList();
-			switch ( m_op ) {
-				case INTERSECTS:
-					if ( s_logger.isDebugEnabled() ) {
-						leftPart.values()
-								.forEach(left -> rightPart.values()
-														.filter(right -> left.intersects(right))
-														.forEach(right -> 
-															matches.add(new Match<>(left,right))));
-						s_logger.debug(String.format("matches: %dx%d -> %d (%.1f%%)",
-												leftPart.size(), rightPart.size(), matches.size(),
-												(double)matches.size()/(leftPart.size()*rightPart.size())*100));
-						return FStream.from(matches);
-					}
-					else {
-						return leftPart.values()
-								.flatMap(lv -> rightPart.values()
-														.filter(rv -> lv.intersects(rv))
-														.map(rv -> new Match<>(lv, rv)));
-						
-					}
-				case CONTAINS:
-					return leftPart.values()
-							.flatMap(lv -> rightPart.values()
-													.filter(rv -> lv.contains(rv))
-													.map(rv -> new Match<>(lv, rv)));
-				case CONTAINED_BY:
-					return leftPart.values()
-							.flatMap(lv -> rightPart.values()
-													.filter(rv -> lv.containedBy(rv))
-													.map(rv -> new Match<>(lv, rv)));
-				default:
-					return null;
+			List<Match<T>> matches = m_sweeper.match(leftPart, rightPart);
+			if ( s_logger.isDebugEnabled() ) {
+				s_logger.debug(String.format("matches: %dx%d -> %d (%.1f%%)",
+										leftPart.size(), rightPart.size(), matches.size(),
+										(double)matches.size()/(leftPart.size()*rightPart.size())*100));
 			}
+			
+			return FStream.from(matches);
 		}
 	}
 	
@@ -0,0 +1,419 @@
+package marmot.io.geo.quadtree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
+import utils.stream.FStream;
+
+import marmot.io.MarmotFileException;
+
+
+/**
+ * 노드 객체 없이 {@link ByteBuffer} 상에서 직접 질의할 수 있는 QuadTree 스냅샷.
+ * <p>
+ * 스냅샷은 QuadTree의 노드들을 너비 우선 순서로 배치한 고정 길이 노드 배열과, 단말노드 순서로
+ * 배치된 value 배열로 구성된다. 노드들 사이의 관계는 객체 참조 대신 배열 상의 순번으로
+ * 표현되기 때문에(pointer-free), 파일에 기록된 스냅샷을 메모리 매핑하여 그대로 질의할 수 있다.
+ * <pre>
+ * header:		magic(int), version(int), node 수(int), value 수(int), payload 길이(int)
+ * nodes:		node 수 * {@value #NODE_SIZE} bytes
+ * 				= packed quad-key(long), data bounds(double*4), kind(int), start(int), count(int)
+ * 				비단말노드는 첫번째 자식 노드 순번과 자식 노드 수를,
+ * 				단말노드는 첫번째 value 순번과 value 수를 start/count에 기록한다.
+ * envelopes:	value 수 * {@value #ENVELOPE_SIZE} bytes. value별 MBR (double*4)
+ * offsets:		(value 수 + 1) * int. value별 payload 시작 위치
+ * payload:		{@link ValueCodec}으로 직렬화된 value들
+ * </pre>
+ * 질의시에는 노드 bounds와 value MBR을 버퍼에서 직접 비교하고, 질의 조건을 만족하는 value만
+ * {@link ValueCodec}을 통해 생성한다. 복수개의 단말노드에 저장된 value는 {@link QuadTree}와
+ * 동일하게 단말노드마다 중복되어 저장되고 반환된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class QuadTreeSnapshot<T extends EnvelopedValue> {
+	public static final int MAGIC = 0x4D515453;	// "MQTS"
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 4 * 5;
+	private static final int NODE_SIZE = 8 + 8*4 + 4*3;
+	private static final int ENVELOPE_SIZE = 8*4;
+	private static final int KIND_LEAF = 0;
+	private static final int KIND_NON_LEAF = 1;
+
+	private final ByteBuffer m_buffer;
+	private final ValueCodec<T> m_codec;
+	private final int m_nodeCount;
+	private final int m_valueCount;
+	private final int m_nodesOffset;
+	private final int m_envelopesOffset;
+	private final int m_offsetsOffset;
+	private final int m_payloadOffset;
+
+	/**
+	 * 스냅샷 value의 직렬화/역직렬화를 담당하는 인터페이스.
+	 * value의 MBR은 스냅샷에 별도로 저장되기 때문에 payload에는 MBR을 제외한 정보만 기록한다.
+	 */
+	public static interface ValueCodec<T extends EnvelopedValue> {
+		/**
+		 * value의 payload를 기록한다.
+		 *
+		 * @param value	기록할 value
+		 * @param out	출력 스트림
+		 */
+		public void encode(T value, DataOutput out) throws IOException;
+
+		/**
+		 * 버퍼에 기록된 payload로부터 value를 생성한다.
+		 *
+		 * @param envl		value의 MBR
+		 * @param buffer	스냅샷 버퍼
+		 * @param offset	payload 시작 위치
+		 * @param length	payload 길이
+		 * @return	value
+		 */
+		public T decode(Envelope envl, ByteBuffer buffer, int offset, int length);
+	}
+
+	/** {@link Pointer}용 codec. payload로 pointer의 index만 기록한다. */
+	public static final ValueCodec<Pointer> POINTER_CODEC = new ValueCodec<Pointer>() {
+		@Override
+		public void encode(Pointer value, DataOutput out) throws IOException {
+			out.writeInt(value.index());
+		}
+
+		@Override
+		public Pointer decode(Envelope envl, ByteBuffer buffer, int offset, int length) {
+			return new Pointer(envl, buffer.getInt(offset));
+		}
+	};
+
+	private QuadTreeSnapshot(ByteBuffer buffer, ValueCodec<T> codec) {
+		int base = buffer.position();
+		int magic = buffer.getInt(base);
+		if ( magic != MAGIC ) {
+			throw new IllegalArgumentException("invalid QuadTree snapshot: magic=" + magic);
+		}
+		int version = buffer.getInt(base + 4);
+		if ( version != VERSION ) {
+			throw new IllegalArgumentException("unsupported QuadTree snapshot version: " + version);
+		}
+
+		m_buffer = buffer;
+		m_codec = codec;
+		m_nodeCount = buffer.getInt(base + 8);
+		m_valueCount = buffer.getInt(base + 12);
+		m_nodesOffset = base + HEADER_SIZE;
+		m_envelopesOffset = m_nodesOffset + m_nodeCount * NODE_SIZE;
+		m_offsetsOffset = m_envelopesOffset + m_valueCount * ENVELOPE_SIZE;
+		m_payloadOffset = m_offsetsOffset + (m_valueCount+1) * 4;
+
+		int payloadLength = buffer.getInt(base + 16);
+		Preconditions.checkArgument(m_payloadOffset + payloadLength <= buffer.limit(),
+									"truncated QuadTree snapshot");
+	}
+
+	/**
+	 * 주어진 버퍼에 기록된 스냅샷을 연다.
+	 * 스냅샷은 버퍼의 현재 위치(position)부터 기록되어 있어야 하며, 버퍼의 내용은 복사되지 않는다.
+	 *
+	 * @param buffer	스냅샷이 기록된 버퍼
+	 * @param codec		value codec
+	 * @return	스냅샷
+	 */
+	public static <T extends EnvelopedValue> QuadTreeSnapshot<T> open(ByteBuffer buffer,
+																	ValueCodec<T> codec) {
+		Preconditions.checkNotNullArgument(buffer, "buffer is null");
+		Preconditions.checkNotNullArgument(codec, "ValueCodec is null");
+
+		return new QuadTreeSnapshot<>(buffer, codec);
+	}
+
+	/**
+	 * 주어진 파일에 기록된 스냅샷을 메모리 매핑하여 연다.
+	 *
+	 * @param file	스냅샷 파일
+	 * @param codec	value codec
+	 * @return	스냅샷
+	 */
+	public static <T extends EnvelopedValue> QuadTreeSnapshot<T> map(File file, ValueCodec<T> codec) {
+		Preconditions.checkNotNullArgument(file, "file is null");
+
+		try ( FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ) ) {
+			// 매핑된 버퍼는 channel이 닫힌 이후에도 유효하다.
+			return open(channel.map(MapMode.READ_ONLY, 0, channel.size()), codec);
+		}
+		catch ( IOException e ) {
+			throw new MarmotFileException("fails to map QuadTree snapshot: file=" + file
+											+ ", cause=" + e);
+		}
+	}
+
+	/**
+	 * 주어진 QuadTree의 스냅샷을 생성한다.
+	 *
+	 * @param qtree	대상 QuadTree
+	 * @param codec	value codec
+	 * @return	스냅샷
+	 */
+	public static <T extends EnvelopedValue, P extends Partition<T>>
+	QuadTreeSnapshot<T> of(QuadTree<T,P> qtree, ValueCodec<T> codec) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try ( DataOutputStream dos = new DataOutputStream(baos) ) {
+			write(qtree, codec, dos);
+		}
+		catch ( IOException e ) {
+			throw new AssertionError(e);
+		}
+
+		return open(ByteBuffer.wrap(baos.toByteArray()), codec);
+	}
+
+	/**
+	 * 주어진 QuadTree의 스냅샷을 출력 스트림에 기록한다.
+	 *
+	 * @param qtree	대상 QuadTree
+	 * @param codec	value codec
+	 * @param out	출력 스트림
+	 * @throws IOException	기록 중 오류가 발생된 경우.
+	 */
+	public static <T extends EnvelopedValue, P extends Partition<T>>
+	void write(QuadTree<T,P> qtree, ValueCodec<T> codec, DataOutput out) throws IOException {
+		Preconditions.checkNotNullArgument(qtree, "QuadTree is null");
+		Preconditions.checkNotNullArgument(codec, "ValueCodec is null");
+
+		// 노드들을 너비 우선 순서로 배치하여 자식 노드들이 연속된 순번을 갖도록 한다.
+		List<Node<T,P>> nodes = Lists.newArrayList();
+		Deque<Node<T,P>> queue = new ArrayDeque<>();
+		queue.add(qtree.getRootNode());
+		while ( !queue.isEmpty() ) {
+			Node<T,P> node = queue.removeFirst();
+			nodes.add(node);
+			if ( node instanceof NonLeafNode ) {
+				queue.addAll(Arrays.asList(((NonLeafNode<T,P>)node).getChildrenNode()));
+			}
+		}
+
+		List<T> values = Lists.newArrayList();
+		int[] leafCounts = new int[nodes.size()];
+		for ( int i =0; i < nodes.size(); ++i ) {
+			Node<T,P> node = nodes.get(i);
+			if ( node instanceof LeafNode ) {
+				int before = values.size();
+				((LeafNode<T,P>)node).getPartition().values().forEach(values::add);
+				leafCounts[i] = values.size() - before;
+			}
+		}
+
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream payloadOut = new DataOutputStream(payload);
+		int[] offsets = new int[values.size()+1];
+		for ( int i =0; i < values.size(); ++i ) {
+			offsets[i] = payloadOut.size();
+			codec.encode(values.get(i), payloadOut);
+		}
+		payloadOut.flush();
+		offsets[values.size()] = payloadOut.size();
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(nodes.size());
+		out.writeInt(values.size());
+		out.writeInt(payload.size());
+
+		int nextChild = 1;
+		int nextValue = 0;
+		for ( int i =0; i < nodes.size(); ++i ) {
+			Node<T,P> node = nodes.get(i);
+			out.writeLong(node.getPackedQuadKey());
+			writeEnvelope(node.getDataBounds(), out);
+			if ( node instanceof NonLeafNode ) {
+				int nchildren = ((NonLeafNode<T,P>)node).getChildrenNode().length;
+				out.writeInt(KIND_NON_LEAF);
+				out.writeInt(nextChild);
+				out.writeInt(nchildren);
+				nextChild += nchildren;
+			}
+			else {
+				int nvalues = leafCounts[i];
+				out.writeInt(KIND_LEAF);
+				out.writeInt(nextValue);
+				out.writeInt(nvalues);
+				nextValue += nvalues;
+			}
+		}
+		for ( T value: values ) {
+			writeEnvelope(value.getEnvelope(), out);
+		}
+		for ( int offset: offsets ) {
+			out.writeInt(offset);
+		}
+		out.write(payload.toByteArray());
+	}
+
+	public int getNodeCount() {
+		return m_nodeCount;
+	}
+
+	/**
+	 * 스냅샷에 저장된 value의 수를 반환한다.
+	 * 복수개의 단말노드에 저장된 value는 중복되어 계산된다.
+	 *
+	 * @return	value 수
+	 */
+	public int getValueCount() {
+		return m_valueCount;
+	}
+
+	/**
+	 * 스냅샷에 저장된 모든 value들의 MBR을 반환한다.
+	 *
+	 * @return	MBR
+	 */
+	public Envelope getDataBounds() {
+		return readEnvelope(m_nodesOffset + 8);
+	}
+
+	/**
+	 * 최상위 노드의 quad-key를 반환한다.
+	 *
+	 * @return	quad-key
+	 */
+	public String getQuadKey() {
+		return PackedQuadKeys.unpack(m_buffer.getLong(m_nodesOffset));
+	}
+
+	/**
+	 * 주어진 질의 사각형과 겹치는 value들의 스트림을 반환한다.
+	 * 질의 사각형 ({@code key84})은 반드시 EPSG:4326 좌표체계로 기술되어야 한다.
+	 *
+	 * @param key84	질의 box.
+	 * @return	value 스트림
+	 */
+	public FStream<T> query(Envelope key84) {
+		List<T> founds = Lists.newArrayList();
+		visit(key84, v -> founds.add(v));
+		return FStream.from(founds);
+	}
+
+	/**
+	 * 주어진 질의 사각형과 겹치는 value들을 차례로 visitor에 전달한다.
+	 * 노드 객체를 생성하지 않고 버퍼 상의 노드 배열을 직접 순회한다.
+	 * 질의 사각형 ({@code key84})은 반드시 EPSG:4326 좌표체계로 기술되어야 한다.
+	 *
+	 * @param key84		질의 box.
+	 * @param visitor	질의 결과 value를 전달받을 visitor.
+	 * @return	visitor가 순회를 중단시킨 경우는 {@code false}, 그렇지 않은 경우는 {@code true}.
+	 */
+	public boolean visit(Envelope key84, QuadTreeVisitor<? super T> visitor) {
+		Preconditions.checkNotNullArgument(key84, "query key is null");
+		Preconditions.checkNotNullArgument(visitor, "visitor is null");
+
+		if ( key84.isNull() || m_nodeCount == 0 ) {
+			return true;
+		}
+
+		double minX = key84.getMinX();
+		double maxX = key84.getMaxX();
+		double minY = key84.getMinY();
+		double maxY = key84.getMaxY();
+
+		int[] stack = new int[64];
+		int depth = 0;
+		stack[depth++] = 0;
+		while ( depth > 0 ) {
+			int nodeOffset = m_nodesOffset + stack[--depth] * NODE_SIZE;
+			if ( !intersects(nodeOffset + 8, minX, maxX, minY, maxY) ) {
+				continue;
+			}
+
+			int kind = m_buffer.getInt(nodeOffset + 40);
+			int start = m_buffer.getInt(nodeOffset + 44);
+			int count = m_buffer.getInt(nodeOffset + 48);
+			if ( kind == KIND_NON_LEAF ) {
+				if ( depth + count > stack.length ) {
+					stack = Arrays.copyOf(stack, Math.max(stack.length*2, depth + count));
+				}
+				// 자식 노드들이 순서대로 방문되도록 역순으로 push한다.
+				for ( int i = start + count - 1; i >= start; --i ) {
+					stack[depth++] = i;
+				}
+			}
+			else {
+				for ( int i = start; i < start + count; ++i ) {
+					int envlOffset = m_envelopesOffset + i * ENVELOPE_SIZE;
+					if ( intersects(envlOffset, minX, maxX, minY, maxY)
+						&& !visitor.visit(readValue(i)) ) {
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[nodes=%d, values=%d]", getClass().getSimpleName(),
+							m_nodeCount, m_valueCount);
+	}
+
+	private T readValue(int index) {
+		Envelope envl = readEnvelope(m_envelopesOffset + index * ENVELOPE_SIZE);
+		int start = m_buffer.getInt(m_offsetsOffset + index * 4);
+		int end = m_buffer.getInt(m_offsetsOffset + (index+1) * 4);
+
+		return m_codec.decode(envl, m_buffer, m_payloadOffset + start, end - start);
+	}
+
+	private boolean intersects(int offset, double minX, double maxX, double minY, double maxY) {
+		double eMinX = m_buffer.getDouble(offset);
+		double eMaxX = m_buffer.getDouble(offset + 8);
+		if ( eMaxX < eMinX ) {	// 빈 MBR
+			return false;
+		}
+
+		return eMinX <= maxX && minX <= eMaxX
+			&& m_buffer.getDouble(offset + 16) <= maxY && minY <= m_buffer.getDouble(offset + 24);
+	}
+
+	private Envelope readEnvelope(int offset) {
+		double minX = m_buffer.getDouble(offset);
+		double maxX = m_buffer.getDouble(offset + 8);
+		double minY = m_buffer.getDouble(offset + 16);
+		double maxY = m_buffer.getDouble(offset + 24);
+
+		return (maxX < minX) ? new Envelope() : new Envelope(minX, maxX, minY, maxY);
+	}
+
+	private static void writeEnvelope(Envelope envl, DataOutput out) throws IOException {
+		if ( envl == null || envl.isNull() ) {
+			out.writeDouble(0);
+			out.writeDouble(-1);
+			out.writeDouble(0);
+			out.writeDouble(-1);
+		}
+		else {
+			out.writeDouble(envl.getMinX());
+			out.writeDouble(envl.getMaxX());
+			out.writeDouble(envl.getMinY());
+			out.writeDouble(envl.getMaxY());
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package marmot.io.geo.quadtree;
+
+import utils.Preconditions;
+
+
+/**
+ * QuadTree의 구조 통계 정보.
+ * <p>
+ * 노드의 깊이는 최상위 노드를 기준(0)으로 한 상대 깊이이다.
+ * 단말노드 채움 비율은 용량({@link Partition#getCapacity()})을 정의한 partition을
+ * 사용하는 단말노드들만을 대상으로 계산된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class QuadTreeStats {
+	private final int m_leafCount;
+	private final int m_nonLeafCount;
+	private final int m_emptyLeafCount;
+	private final long m_valueCount;
+	private final int m_maxDepth;
+	private final double m_avgLeafDepth;
+	private final int m_maxLeafSize;
+	private final double m_avgFillRatio;
+	private final int m_maxCapacity;
+
+	private QuadTreeStats(int leafCount, int nonLeafCount, int emptyLeafCount, long valueCount,
+						int maxDepth, double avgLeafDepth, int maxLeafSize, double avgFillRatio,
+						int maxCapacity) {
+		m_leafCount = leafCount;
+		m_nonLeafCount = nonLeafCount;
+		m_emptyLeafCount = emptyLeafCount;
+		m_valueCount = valueCount;
+		m_maxDepth = maxDepth;
+		m_avgLeafDepth = avgLeafDepth;
+		m_maxLeafSize = maxLeafSize;
+		m_avgFillRatio = avgFillRatio;
+		m_maxCapacity = maxCapacity;
+	}
+
+	/**
+	 * 주어진 QuadTree의 통계 정보를 수집한다.
+	 *
+	 * @param qtree	대상 QuadTree
+	 * @return	통계 정보
+	 */
+	public static QuadTreeStats of(QuadTree<?,?> qtree) {
+		Preconditions.checkNotNullArgument(qtree, "QuadTree is null");
+
+		Collector collector = new Collector(qtree.getRootNode().getQuadKey().length());
+		collector.collect(qtree.getRootNode());
+
+		return collector.toStats();
+	}
+
+	/**
+	 * 단말노드의 수를 반환한다.
+	 *
+	 * @return	단말노드 수
+	 */
+	public int getLeafCount() {
+		return m_leafCount;
+	}
+
+	/**
+	 * 비단말노드의 수를 반환한다.
+	 *
+	 * @return	비단말노드 수
+	 */
+	public int getNonLeafCount() {
+		return m_nonLeafCount;
+	}
+
+	/**
+	 * 데이터가 저장되지 않은 단말노드의 수를 반환한다.
+	 *
+	 * @return	빈 단말노드 수
+	 */
+	public int getEmptyLeafCount() {
+		return m_emptyLeafCount;
+	}
+
+	/**
+	 * 단말노드들에 저장된 value의 수를 반환한다.
+	 * 복수개의 단말노드에 저장된 value는 중복되어 계산된다.
+	 *
+	 * @return	value 수
+	 */
+	public long getValueCount() {
+		return m_valueCount;
+	}
+
+	/**
+	 * 단말노드의 최대 깊이를 반환한다.
+	 *
+	 * @return	최대 깊이
+	 */
+	public int getMaxDepth() {
+		return m_maxDepth;
+	}
+
+	/**
+	 * 단말노드의 평균 깊이를 반환한다.
+	 *
+	 * @return	평균 깊이
+	 */
+	public double getAverageLeafDepth() {
+		return m_avgLeafDepth;
+	}
+
+	/**
+	 * 단말노드에 저장된 value 수의 평균을 반환한다.
+	 *
+	 * @return	평균 value 수
+	 */
+	public double getAverageLeafSize() {
+		return (m_leafCount > 0) ? (double)m_valueCount / m_leafCount : 0;
+	}
+
+	/**
+	 * 단말노드에 저장된 value 수의 최대값을 반환한다.
+	 *
+	 * @return	최대 value 수
+	 */
+	public int getMaxLeafSize() {
+		return m_maxLeafSize;
+	}
+
+	/**
+	 * 단말노드 용량 대비 저장된 value 수의 평균 비율을 반환한다.
+	 * 용량을 정의한 partition이 없는 경우는 음수를 반환한다.
+	 *
+	 * @return	평균 채움 비율
+	 */
+	public double getAverageFillRatio() {
+		return m_avgFillRatio;
+	}
+
+	/**
+	 * 단말노드 용량의 최대값을 반환한다.
+	 * 용량을 정의한 partition이 없는 경우는 음수를 반환한다.
+	 *
+	 * @return	최대 용량
+	 */
+	public int getMaxCapacity() {
+		return m_maxCapacity;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("leaves=%d(empty=%d), non-leaves=%d, values=%d, depth(avg/max)=%.1f/%d, "
+							+ "leaf_size(avg/max)=%.1f/%d, fill=%.1f%%, max_capacity=%d",
+							m_leafCount, m_emptyLeafCount, m_nonLeafCount, m_valueCount,
+							m_avgLeafDepth, m_maxDepth, getAverageLeafSize(), m_maxLeafSize,
+							m_avgFillRatio*100, m_maxCapacity);
+	}
+
+	private static final class Collector {
+		private final int m_rootLevel;
+		private int m_leafCount = 0;
+		private int m_nonLeafCount = 0;
+		private int m_emptyLeafCount = 0;
+		private long m_valueCount = 0;
+		private int m_maxDepth = 0;
+		private long m_depthSum = 0;
+		private int m_maxLeafSize = 0;
+		private int m_cappedCount = 0;
+		private double m_fillSum = 0;
+		private int m_maxCapacity = -1;
+
+		Collector(int rootLevel) {
+			m_rootLevel = rootLevel;
+		}
+
+		void collect(Node<?,?> node) {
+			if ( node instanceof LeafNode ) {
+				collectLeaf((LeafNode<?,?>)node);
+			}
+			else {
+				++m_nonLeafCount;
+				for ( Node<?,?> child: ((NonLeafNode<?,?>)node).getChildrenNode() ) {
+					collect(child);
+				}
+			}
+		}
+
+		private void collectLeaf(LeafNode<?,?> leaf) {
+			Partition<?> part = leaf.getPartition();
+			int size = part.size();
+			int depth = leaf.getQuadKey().length() - m_rootLevel;
+
+			++m_leafCount;
+			if ( size == 0 ) {
+				++m_emptyLeafCount;
+			}
+			m_valueCount += size;
+			m_maxLeafSize = Math.max(m_maxLeafSize, size);
+			m_maxDepth = Math.max(m_maxDepth, depth);
+			m_depthSum += depth;
+
+			int capacity = part.getCapacity();
+			if ( capacity > 0 ) {
+				++m_cappedCount;
+				m_fillSum += Math.min(1.0, (double)size / capacity);
+				m_maxCapacity = Math.max(m_maxCapacity, capacity);
+			}
+		}
+
+		QuadTreeStats toStats() {
+			double avgDepth = (m_leafCount > 0) ? (double)m_depthSum / m_leafCount : 0;
+			double avgFill = (m_cappedCount > 0) ? m_fillSum / m_cappedCount : -1;
+
+			return new QuadTreeStats(m_leafCount, m_nonLeafCount, m_emptyLeafCount, m_valueCount,
+									m_maxDepth, avgDepth, m_maxLeafSize, avgFill, m_maxCapacity);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package marmot.io.geo.quadtree;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+
+import marmot.type.MapTile;
+
+
+/**
+ * QuadTree 생성 및 갱신 방식별 수행 시간을 측정하는 명령행 프로그램.
+ * <p>
+ * 고정된 seed로 생성한 임의의 사각형(EPSG:4326) 데이터에 대해 다음을 측정한다.
+ * <ul>
+ * 	<li>{@code bulk}: {@link QuadTree#insert}를 통한 순차 삽입과
+ * 		{@link QuadTreeBuilder#bulkLoad}를 통한 일괄 적재.
+ * 	<li>{@code concurrent}: 순차 삽입과 {@link ConcurrentQuadTree#insertAll}을 통한
+ * 		stripe별 동시 삽입.
+ * 	<li>{@code update}: 이동 객체 시나리오에서의 {@link QuadTree#update}와 절반 데이터에 대한
+ * 		{@link QuadTree#remove}.
+ * </ul>
+ * 각 항목은 지정된 횟수만큼 반복 수행되며, 첫 수행은 JIT 예열을 위해 결과에서 제외하고
+ * 나머지 수행 시간들의 최소값과 중간값을 출력한다.
+ * <pre>
+ * 사용법: QuadTreeTimings [bulk|concurrent|update|all] [데이터 수] [반복 횟수] [seed]
+ * </pre>
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class QuadTreeTimings {
+	private static final Envelope DATA_BOUNDS = new Envelope(124, 132, 33, 39);
+	private static final double MAX_EXTENT = 0.001;
+	private static final double MOVE_DISTANCE = 0.0005;
+
+	private QuadTreeTimings() {
+		throw new AssertionError("Should not be called: class=" + QuadTreeTimings.class);
+	}
+
+	public static void main(String... args) {
+		String target = (args.length > 0) ? args[0] : "all";
+		int count = (args.length > 1) ? Integer.parseInt(args[1]) : 1_000_000;
+		int repeat = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 20200212L;
+
+		List<Pointer> values = generate(count, seed);
+		String quadKey = MapTile.getSmallestContainingTile(DATA_BOUNDS).getQuadKey();
+		Function<String,PointerPartition> supplier
+							= qkey -> new PointerPartition(qkey, LeafCapacityPolicy.DEFAULT);
+
+		System.out.printf("count=%d, repeat=%d, seed=%d, cpus=%d%n", count, repeat, seed,
+							Runtime.getRuntime().availableProcessors());
+		if ( target.equals("all") || target.equals("bulk") ) {
+			report("insert", repeat, () -> insertAll(quadKey, values, supplier));
+			report("bulk-load", repeat, () -> QuadTreeBuilder.bulkLoad(quadKey, values, supplier));
+		}
+		if ( target.equals("all") || target.equals("concurrent") ) {
+			report("insert", repeat, () -> insertAll(quadKey, values, supplier));
+			report("concurrent-insert", repeat, () -> {
+				ConcurrentQuadTree<Pointer,PointerPartition> ctree
+											= new ConcurrentQuadTree<>(quadKey, supplier);
+				ctree.insertAll(values);
+				ctree.toQuadTree();
+			});
+		}
+		if ( target.equals("all") || target.equals("update") ) {
+			List<Pointer> moveds = move(values, seed);
+			report("update", repeat, () -> {
+				QuadTree<Pointer,PointerPartition> qtree = insertAll(quadKey, values, supplier);
+				long started = System.nanoTime();
+				for ( int i =0; i < values.size(); ++i ) {
+					qtree.update(values.get(i), moveds.get(i));
+				}
+				return System.nanoTime() - started;
+			});
+			report("remove-half", repeat, () -> {
+				QuadTree<Pointer,PointerPartition> qtree = insertAll(quadKey, values, supplier);
+				long started = System.nanoTime();
+				for ( int i =0; i < values.size(); i += 2 ) {
+					qtree.remove(values.get(i));
+				}
+				return System.nanoTime() - started;
+			});
+		}
+	}
+
+	private static QuadTree<Pointer,PointerPartition>
+	insertAll(String quadKey, List<Pointer> values, Function<String,PointerPartition> supplier) {
+		QuadTree<Pointer,PointerPartition> qtree = new QuadTree<>(quadKey, supplier);
+		values.forEach(qtree::insert);
+		return qtree;
+	}
+
+	private static List<Pointer> generate(int count, long seed) {
+		Random random = new Random(seed);
+		List<Pointer> values = Lists.newArrayListWithCapacity(count);
+		for ( int i =0; i < count; ++i ) {
+			double x = DATA_BOUNDS.getMinX() + random.nextDouble() * DATA_BOUNDS.getWidth();
+			double y = DATA_BOUNDS.getMinY() + random.nextDouble() * DATA_BOUNDS.getHeight();
+			double w = random.nextDouble() * MAX_EXTENT;
+			double h = random.nextDouble() * MAX_EXTENT;
+			values.add(new Pointer(new Envelope(x, Math.min(x+w, DATA_BOUNDS.getMaxX()),
+												y, Math.min(y+h, DATA_BOUNDS.getMaxY())), i));
+		}
+		return values;
+	}
+
+	private static List<Pointer> move(List<Pointer> values, long seed) {
+		Random random = new Random(seed+1);
+		List<Pointer> moveds = Lists.newArrayListWithCapacity(values.size());
+		for ( Pointer ptr: values ) {
+			Envelope envl = new Envelope(ptr.getEnvelope());
+			double dx = (random.nextDouble()*2 - 1) * MOVE_DISTANCE;
+			double dy = (random.nextDouble()*2 - 1) * MOVE_DISTANCE;
+			if ( DATA_BOUNDS.contains(envl.getMinX()+dx, envl.getMinY()+dy)
+				&& DATA_BOUNDS.contains(envl.getMaxX()+dx, envl.getMaxY()+dy) ) {
+				envl.translate(dx, dy);
+			}
+			moveds.add(new Pointer(envl, ptr.index()));
+		}
+		return moveds;
+	}
+
+	private static void report(String name, int repeat, Runnable task) {
+		report(name, repeat, () -> {
+			long started = System.nanoTime();
+			task.run();
+			return System.nanoTime() - started;
+		});
+	}
+
+	private static void report(String name, int repeat, TimedTask task) {
+		task.run();		// JIT 예열
+
+		long[] elapseds = new long[Math.max(repeat, 1)];
+		for ( int i =0; i < elapseds.length; ++i ) {
+			elapseds[i] = task.run();
+		}
+		Arrays.sort(elapseds);
+
+		System.out.printf("%-18s min=%8.1fms, median=%8.1fms%n", name,
+							elapseds[0] / 1e6, elapseds[elapseds.length/2] / 1e6);
+	}
+
+	@FunctionalInterface
+	private interface TimedTask {
+		/**
+		 * 측정 대상 작업을 수행하고 측정된 수행 시간(ns)을 반환한다.
+		 *
+		 * @return	수행 시간 (nano-seconds)
+		 */
+		public long run();
+	}
+}
@@ -0,0 +1,20 @@
+package marmot.io.geo.quadtree;
+
+/**
+ * QuadTree 질의 결과 value들을 차례로 전달받는 visitor 인터페이스.
+ * <p>
+ * 질의 결과를 스트림이나 리스트로 만들지 않고 바로 전달하기 때문에 레코드 단위로 반복되는
+ * 질의(예: 공간 조인의 레코드별 probe)에서 중간 객체 생성을 줄이는 데 사용된다.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+@FunctionalInterface
+public interface QuadTreeVisitor<T> {
+	/**
+	 * 질의 결과 value를 전달받는다.
+	 * 
+	 * @param value	질의 결과 value.
+	 * @return	순회를 계속하는 경우는 {@code true}, 중단하는 경우는 {@code false}.
+	 */
+	public boolean visit(T value);
+}
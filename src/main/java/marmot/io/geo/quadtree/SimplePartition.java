@@ -11,6 +11,11 @@ public class SimplePartition<T extends EnvelopedValue> extends AbstractPartition
 		m_maxCount = maxCount;
 	}
 
+	@Override
+	public int getCapacity() {
+		return m_maxCount;
+	}
+
 	@Override
 	protected boolean mayOverflow(T value) {
 		return size() + 1 > m_maxCount;
@@ -0,0 +1,118 @@
+package marmot.io.geo.quadtree;
+
+import java.util.function.IntConsumer;
+
+import org.locationtech.jts.geom.Envelope;
+
+import marmot.type.MapTile;
+
+
+/**
+ * Morton 코드 오름차순으로 정렬된 quad-key 배열에 대한 검색 기능을 제공하는 클래스.
+ * <p>
+ * 배열에 포함된 quad-key들은 서로 prefix 관계가 없어야 한다. 이 경우 동일 prefix를 갖는
+ * quad-key들은 배열에서 연속된 구간을 차지하기 때문에 ({@link MortonCodes} 참고),
+ * 별도의 노드 정보 없이 이진 검색만으로 quad-tree 탐색을 수행할 수 있다.
+ * 하위 클래스는 배열의 저장 방식에 따라 {@link #size()}, {@link #keyAt(int)},
+ * {@link #levelAt(int)}를 구현한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public abstract class SortedMortonKeys {
+	/**
+	 * 배열에 포함된 quad-key의 갯수를 반환한다.
+	 *
+	 * @return	quad-key 갯수
+	 */
+	protected abstract int size();
+
+	/**
+	 * 주어진 위치의 quad-key에 해당하는 Morton 코드를 반환한다.
+	 *
+	 * @param idx	배열 내 위치
+	 * @return	Morton 코드
+	 */
+	protected abstract long keyAt(int idx);
+
+	/**
+	 * 주어진 위치의 quad-key 길이를 반환한다.
+	 *
+	 * @param idx	배열 내 위치
+	 * @return	quad-key 길이
+	 */
+	protected abstract int levelAt(int idx);
+
+	/**
+	 * 주어진 quad-key의 배열 내 위치를 반환한다.
+	 *
+	 * @param quadKey	검색 대상 quad-key
+	 * @return	배열 내 위치. 배열에 포함되지 않은 경우는 음수.
+	 */
+	public int indexOf(String quadKey) {
+		if ( !MortonCodes.isEncodable(quadKey) ) {
+			return -1;
+		}
+
+		int count = size();
+		long key = MortonCodes.encode(quadKey);
+		int idx = lowerBound(key, 0, count);
+		if ( idx < count && keyAt(idx) == key && levelAt(idx) == quadKey.length() ) {
+			return idx;
+		}
+		else {
+			return -1;
+		}
+	}
+
+	/**
+	 * 주어진 영역과 타일이 겹치는 quad-key들의 배열 내 위치를 오름차순으로 전달한다.
+	 *
+	 * @param range84	질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param collector	검색된 위치를 전달받을 consumer
+	 */
+	public void query(Envelope range84, IntConsumer collector) {
+		collect("", 0, size(), range84, collector);
+	}
+
+	private void collect(String prefix, int from, int to, Envelope range84, IntConsumer collector) {
+		if ( from >= to ) {
+			return;
+		}
+		if ( to - from == 1 ) {
+			String quadKey = MortonCodes.decode(keyAt(from), levelAt(from));
+			if ( MapTile.fromQuadKey(quadKey).getBounds().intersects(range84) ) {
+				collector.accept(from);
+			}
+			return;
+		}
+		if ( !MapTile.fromQuadKey(prefix).getBounds().intersects(range84) ) {
+			return;
+		}
+
+		// 동일 prefix를 갖는 quad-key들이 2개 이상이므로, prefix 자체는 배열에 포함되지 않는다.
+		for ( int i =0; i < 4; ++i ) {
+			String child = prefix + i;
+			long lo = MortonCodes.encode(child);
+			long hi = lo + MortonCodes.span(child.length());
+
+			int childFrom = lowerBound(lo, from, to);
+			int childTo = lowerBound(hi, childFrom, to);
+			collect(child, childFrom, childTo, range84, collector);
+		}
+	}
+
+	private int lowerBound(long key, int from, int to) {
+		int lo = from;
+		int hi = to;
+		while ( lo < hi ) {
+			int mid = (lo + hi) >>> 1;
+			if ( keyAt(mid) < key ) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+}
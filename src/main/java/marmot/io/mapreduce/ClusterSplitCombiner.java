@@ -0,0 +1,195 @@
+package marmot.io.mapreduce;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import utils.Preconditions;
+
+
+/**
+ * 클러스터 단위로 생성된 split들을 병합하고, split별 데이터 지역성 정보를 계산하는 클래스.
+ * <p>
+ * 병합 대상 split들은 클러스터의 quad-key 순서로 정렬되어 있다고 가정하고,
+ * 인접한 작은 split들을 목표 크기를 넘지 않도록 하나의 그룹으로 묶는다.
+ * split의 위치 정보는 split이 참조하는 파일 영역의 HDFS 블럭 위치를 기준으로
+ * 가장 많은 데이터를 보유한 노드들로 정해진다. 파일별 블럭 위치는 한번만 조회된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class ClusterSplitCombiner {
+	private static final String PROP_TARGET_SIZE = "marmot.geo.cluster.split.target_size";
+	private static final String PROP_MAX_RECORDS = "marmot.geo.cluster.split.max_records";
+	private static final int MAX_HOSTS = 3;
+	private static final String[] EMPTY_HOSTS = new String[0];
+
+	private final FileSystem m_fs;
+	private final Map<Path,BlockLocation[]> m_blocks = Maps.newHashMap();
+
+	public ClusterSplitCombiner(FileSystem fs) {
+		Preconditions.checkNotNullArgument(fs, "FileSystem is null");
+
+		m_fs = fs;
+	}
+
+	/**
+	 * 병합된 split의 목표 크기(byte)를 반환한다.
+	 * 0 이하인 경우는 split을 병합하지 않는다. 설정되지 않은 경우는 0이다.
+	 *
+	 * @param conf	Hadoop 설정 객체.
+	 * @return	목표 크기
+	 */
+	public static long getTargetSplitSize(Configuration conf) {
+		return conf.getLong(PROP_TARGET_SIZE, 0);
+	}
+
+	public static void setTargetSplitSize(Configuration conf, long size) {
+		conf.setLong(PROP_TARGET_SIZE, size);
+	}
+
+	/**
+	 * 하나의 split이 처리할 최대 레코드 수를 반환한다.
+	 * 이보다 많은 레코드를 갖는 클러스터는 가능한 경우 레코드 구간별로 나누어진다.
+	 * 0 이하인 경우는 클러스터를 나누지 않는다. 설정되지 않은 경우는 0이다.
+	 *
+	 * @param conf	Hadoop 설정 객체.
+	 * @return	최대 레코드 수
+	 */
+	public static long getMaxSplitRecordCount(Configuration conf) {
+		return conf.getLong(PROP_MAX_RECORDS, 0);
+	}
+
+	public static void setMaxSplitRecordCount(Configuration conf, long count) {
+		conf.setLong(PROP_MAX_RECORDS, count);
+	}
+
+	/**
+	 * 레코드 수 {@code count}를 {@code maxCount} 이하의 구간들로 나눈 경계 값들을 반환한다.
+	 * 반환 배열의 i번째 구간은 [bounds[i], bounds[i+1])이다.
+	 *
+	 * @param count		전체 레코드 수.
+	 * @param maxCount	구간별 최대 레코드 수. 0 이하인 경우는 나누지 않는다.
+	 * @return	구간 경계 배열
+	 */
+	public static long[] sliceRecords(long count, long maxCount) {
+		if ( maxCount <= 0 || count <= maxCount ) {
+			return new long[]{0, count};
+		}
+
+		int nslices = (int)((count + maxCount - 1) / maxCount);
+		long[] bounds = new long[nslices+1];
+		for ( int i =0; i <= nslices; ++i ) {
+			bounds[i] = (count * i) / nslices;
+		}
+		return bounds;
+	}
+
+	/**
+	 * quad-key 순서로 정렬된 split들 중 인접한 split들을 목표 크기 이내로 묶는다.
+	 * 목표 크기 이상인 split은 단독으로 하나의 그룹을 구성한다.
+	 *
+	 * @param splits		병합 대상 split 리스트.
+	 * @param sizeFunc		split 크기 계산 함수.
+	 * @param targetSize	병합된 split의 목표 크기. 0 이하인 경우는 병합하지 않는다.
+	 * @return	병합된 split 그룹 리스트
+	 */
+	public static <T> List<List<T>> combine(List<T> splits, ToLongFunction<T> sizeFunc,
+											long targetSize) {
+		List<List<T>> groups = Lists.newArrayList();
+
+		List<T> group = Lists.newArrayList();
+		long groupSize = 0;
+		for ( T split: splits ) {
+			long size = sizeFunc.applyAsLong(split);
+			if ( !group.isEmpty() && (targetSize <= 0 || groupSize + size > targetSize) ) {
+				groups.add(group);
+				group = Lists.newArrayList();
+				groupSize = 0;
+			}
+
+			group.add(split);
+			groupSize += size;
+		}
+		if ( !group.isEmpty() ) {
+			groups.add(group);
+		}
+
+		return groups;
+	}
+
+	/**
+	 * 주어진 split들이 참조하는 파일 영역을 가장 많이 보유한 노드들을 반환한다.
+	 *
+	 * @param splits	대상 split 리스트.
+	 * @return	노드 이름 배열
+	 * @throws IOException	블럭 위치 정보 조회 중 오류가 발생된 경우.
+	 */
+	public String[] getHosts(List<? extends FileSplit> splits) throws IOException {
+		Map<String,Long> hostBytes = Maps.newHashMap();
+		for ( FileSplit split: splits ) {
+			collectHostBytes(split.getPath(), split.getStart(), split.getLength(), hostBytes);
+		}
+		return selectHosts(hostBytes);
+	}
+
+	public String[] getHosts(Path path, long start, long length) throws IOException {
+		Map<String,Long> hostBytes = Maps.newHashMap();
+		collectHostBytes(path, start, length, hostBytes);
+		return selectHosts(hostBytes);
+	}
+
+	/**
+	 * 주어진 파일 영역과 겹치는 블럭들을 보유한 노드별로 겹치는 데이터 크기를 누적한다.
+	 *
+	 * @param path		대상 파일 경로.
+	 * @param start		영역 시작 위치.
+	 * @param length	영역 길이.
+	 * @param hostBytes	노드별 누적 데이터 크기.
+	 * @throws IOException	블럭 위치 정보 조회 중 오류가 발생된 경우.
+	 */
+	public void collectHostBytes(Path path, long start, long length, Map<String,Long> hostBytes)
+		throws IOException {
+		long end = start + length;
+		for ( BlockLocation block: getBlockLocations(path) ) {
+			long overlap = Math.min(end, block.getOffset() + block.getLength())
+							- Math.max(start, block.getOffset());
+			if ( overlap > 0 ) {
+				for ( String host: block.getHosts() ) {
+					hostBytes.merge(host, overlap, Long::sum);
+				}
+			}
+		}
+	}
+
+	public static String[] selectHosts(Map<String,Long> hostBytes) {
+		if ( hostBytes.isEmpty() ) {
+			return EMPTY_HOSTS;
+		}
+
+		return hostBytes.entrySet().stream()
+						.sorted((e1,e2) -> Long.compare(e2.getValue(), e1.getValue()))
+						.limit(MAX_HOSTS)
+						.map(Map.Entry::getKey)
+						.toArray(String[]::new);
+	}
+
+	private BlockLocation[] getBlockLocations(Path path) throws IOException {
+		BlockLocation[] blocks = m_blocks.get(path);
+		if ( blocks == null ) {
+			long length = m_fs.getFileStatus(path).getLen();
+			blocks = m_fs.getFileBlockLocations(path, 0, length);
+			m_blocks.put(path, blocks);
+		}
+		return blocks;
+	}
+}
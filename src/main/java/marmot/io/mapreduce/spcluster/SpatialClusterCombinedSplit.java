@@ -0,0 +1,72 @@
+package marmot.io.mapreduce.spcluster;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+import marmot.io.serializer.MarmotSerializers;
+
+/**
+ * quad-key 순서상 인접한 여러 클러스터 split들을 하나로 묶은 split.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class SpatialClusterCombinedSplit extends InputSplit implements Writable {
+	private static final String[] EMPTY_HOSTS = new String[0];
+	
+	private List<SpatialClusterFileSplit> m_splits;
+	private String[] m_hosts = EMPTY_HOSTS;	// split을 전송할 때는 포함되지 않는다.
+	
+	public SpatialClusterCombinedSplit() { }
+	public SpatialClusterCombinedSplit(List<SpatialClusterFileSplit> splits, String[] hosts) {
+		m_splits = splits;
+		m_hosts = hosts;
+	}
+	
+	/**
+	 * 본 split에 포함된 클러스터 split들을 반환한다.
+	 * 
+	 * @return	클러스터 split 리스트
+	 */
+	public List<SpatialClusterFileSplit> getSplits() {
+		return m_splits;
+	}
+
+	@Override
+	public long getLength() throws IOException, InterruptedException {
+		long length = 0;
+		for ( SpatialClusterFileSplit split: m_splits ) {
+			length += split.getLength();
+		}
+		return length;
+	}
+
+	@Override
+	public String[] getLocations() throws IOException, InterruptedException {
+		return m_hosts;
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		m_splits = MarmotSerializers.readList(in, input -> {
+			SpatialClusterFileSplit split = new SpatialClusterFileSplit();
+			split.readFields(input);
+			return split;
+		});
+		m_hosts = EMPTY_HOSTS;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		MarmotSerializers.writeList(m_splits, out, (split, output) -> split.write(output));
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s[nclusters=%d]", getClass().getSimpleName(), m_splits.size());
+	}
+}
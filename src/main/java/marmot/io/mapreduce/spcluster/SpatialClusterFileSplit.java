@@ -8,6 +8,7 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 
 import marmot.io.geo.cluster.SpatialClusterInfo;
+import marmot.io.serializer.MarmotSerializers;
 
 /**
  * 
@@ -17,23 +18,65 @@ public class SpatialClusterFileSplit extends FileSplit {
 	private static final String[] EMPTY_HOSTS = new String[0];
 	
 	private SpatialClusterInfo m_scInfo;		// 공간 클러스터 등록정보
+	private long m_from = 0;	// 읽을 첫번째 (비중복) 레코드의 순번
+	private long m_to = -1;		// 읽을 마지막 레코드의 다음 순번. 음수인 경우는 클러스터 끝까지.
 	
 	public SpatialClusterFileSplit() { }
 	public SpatialClusterFileSplit(Path path, SpatialClusterInfo scInfo) {
-		super(path, scInfo.start(), scInfo.length(), EMPTY_HOSTS);
+		this(path, scInfo, EMPTY_HOSTS);
+	}
+	
+	public SpatialClusterFileSplit(Path path, SpatialClusterInfo scInfo, String[] hosts) {
+		super(path, scInfo.start(), scInfo.length(), hosts);
 		
 		m_scInfo = scInfo;
 	}
 	
+	/**
+	 * 클러스터의 비중복 레코드들 중 일부 구간만을 읽는 split을 생성한다.
+	 * 
+	 * @param path		클러스터가 저장된 파일 경로.
+	 * @param scInfo	공간 클러스터 등록정보.
+	 * @param from		읽을 첫번째 레코드의 순번.
+	 * @param to		읽을 마지막 레코드의 다음 순번.
+	 * @param hosts		split 위치 정보.
+	 */
+	public SpatialClusterFileSplit(Path path, SpatialClusterInfo scInfo, long from, long to,
+									String[] hosts) {
+		this(path, scInfo, hosts);
+		
+		m_from = from;
+		m_to = to;
+	}
+	
 	public SpatialClusterInfo getSpatialClusterInfo() {
 		return m_scInfo;
 	}
+	
+	/**
+	 * 본 split이 클러스터의 일부 레코드 구간만을 읽는지 여부를 반환한다.
+	 * 
+	 * @return	구간 여부
+	 */
+	public boolean isSliced() {
+		return m_to >= 0;
+	}
+	
+	public long getRecordFrom() {
+		return m_from;
+	}
+	
+	public long getRecordTo() {
+		return m_to;
+	}
 
 	@Override
 	public void readFields(DataInput in) throws IOException {
 		super.readFields(in);
 		
 		m_scInfo = SpatialClusterInfo.deserialize(in);
+		m_from = MarmotSerializers.readVLong(in);
+		m_to = MarmotSerializers.readVLong(in);
 	}
 
 	@Override
@@ -41,5 +84,7 @@ public class SpatialClusterFileSplit extends FileSplit {
 		super.write(out);
 		
 		m_scInfo.serialize(out);
+		MarmotSerializers.writeVLong(m_from, out);
+		MarmotSerializers.writeVLong(m_to, out);
 	}
 }
\ No newline at end of file
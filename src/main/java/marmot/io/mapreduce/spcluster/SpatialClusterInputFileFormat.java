@@ -16,14 +16,17 @@ import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 
 import com.google.common.collect.Lists;
 
 import marmot.GRecordSchema;
 import marmot.io.HdfsPath;
 import marmot.io.RecordWritable;
+import marmot.io.geo.cluster.QueryRegion;
 import marmot.io.geo.cluster.SpatialClusterFile;
 import marmot.io.geo.cluster.SpatialClusterInfo;
+import marmot.io.mapreduce.ClusterSplitCombiner;
 import marmot.io.serializer.MarmotSerializable;
 import marmot.io.serializer.MarmotSerializers;
 import marmot.io.serializer.SerializationException;
@@ -37,19 +40,31 @@ import utils.stream.FStream;
  */
 public class SpatialClusterInputFileFormat extends FileInputFormat<NullWritable, RecordWritable> {
 	private static final String PROP_PARAMETER = "marmot.geo.cluster.parameters";
+	private static final String PROP_STREAMING_RANGE_FILTER = "marmot.geo.cluster.streaming_range_filter";
 	
 	public static class Parameters implements MarmotSerializable {
 		public final Path m_path;					// 대상 공간 클러스터 파일의 경로명
 		public final GRecordSchema m_gschema;		// 공간 클러스터의 스키마
 		@Nullable public final Envelope m_range;	// 원래 데이터의 좌료계 사용
 		@Nullable public final Envelope m_range84;	// EPSG4326 좌료계 사용
+		@Nullable public final Geometry m_region;	// 원래 데이터의 좌료계 사용
 		
 		public Parameters(Path path, GRecordSchema gschema, @Nullable Envelope range,
 							@Nullable Envelope range84) {
+			this(path, gschema, range, range84, null);
+		}
+		
+		public Parameters(Path path, GRecordSchema gschema, @Nullable Envelope range,
+							@Nullable Envelope range84, @Nullable Geometry region) {
 			m_path = path;
 			m_gschema = gschema;
 			m_range = range;
 			m_range84 = range84;
+			m_region = region;
+		}
+		
+		public @Nullable QueryRegion getQueryRegion() {
+			return (m_region != null) ? QueryRegion.of(m_region, m_gschema.getSrid()) : null;
 		}
 		
 		public static Parameters deserialize(DataInput input) {
@@ -59,8 +74,9 @@ public class SpatialClusterInputFileFormat extends FileInputFormat<NullWritable,
 				GRecordSchema gschema = GRecordSchema.fromProto(GRecordSchemaProto.parseFrom(bytes));
 				Envelope range = MarmotSerializers.readNullableObject(input);
 				Envelope range84 = MarmotSerializers.readNullableObject(input);
+				Geometry region = MarmotSerializers.GEOMETRY.deserialize(input);
 				
-				return new Parameters(new Path(path), gschema, range, range84);
+				return new Parameters(new Path(path), gschema, range, range84, region);
 			}
 			catch ( SerializationException e ) {
 				throw e;
@@ -77,6 +93,7 @@ public class SpatialClusterInputFileFormat extends FileInputFormat<NullWritable,
 			MarmotSerializers.writeBinary(bytes, output);
 			MarmotSerializers.ENVELOPE.serializeNullable(m_range, output);
 			MarmotSerializers.ENVELOPE.serializeNullable(m_range84, output);
+			MarmotSerializers.GEOMETRY.serialize(m_region, output);
 		}
 		
 		@Override
@@ -86,6 +103,9 @@ public class SpatialClusterInputFileFormat extends FileInputFormat<NullWritable,
 			if ( m_range != null ) {
 				paramList.add("range=" + m_range);
 			}
+			if ( m_region != null ) {
+				paramList.add("region=" + m_region.getGeometryType());
+			}
 			return String.format("%s[%s]", getClass().getSimpleName(),
 								FStream.from(paramList).join(','));
 		}
@@ -100,12 +120,48 @@ public class SpatialClusterInputFileFormat extends FileInputFormat<NullWritable,
 		
 		SpatialClusterFile scFile = SpatialClusterFile.of(path);
 		
+		QueryRegion region = params.getQueryRegion();
+		
 		@SuppressWarnings("resource")
-		FStream<SpatialClusterInfo> infos = (params.m_range84 != null)
-											? scFile.queryClusterInfos(params.m_range84)
-											: scFile.getClusterInfoAll();
-		List<InputSplit> splits = infos.mapOrThrow(info -> toInputSplit(path, info)).toList();
-		return splits;
+		FStream<SpatialClusterInfo> infos;
+		if ( region != null ) {
+			// 질의 영역과 겹치지 않는 타일의 클러스터는 제외한다.
+			infos = scFile.queryClusterInfos(region.getEnvelope84())
+							.filter(info -> region.intersectsTile(info.quadKey()));
+		}
+		else {
+			infos = (params.m_range84 != null) ? scFile.queryClusterInfos(params.m_range84)
+												: scFile.getClusterInfoAll();
+		}
+		
+		// 질의 영역이 없는 경우에만 큰 클러스터를 레코드 구간별로 나눈다.
+		long maxRecords = (region == null && params.m_range84 == null)
+						? ClusterSplitCombiner.getMaxSplitRecordCount(conf) : 0;
+		ClusterSplitCombiner combiner = new ClusterSplitCombiner(path.getFileSystem());
+		List<SpatialClusterFileSplit> splits = Lists.newArrayList();
+		for ( SpatialClusterInfo info: infos.toList() ) {
+			splits.addAll(toInputSplits(path, info, maxRecords, combiner));
+		}
+		
+		long targetSize = ClusterSplitCombiner.getTargetSplitSize(conf);
+		if ( targetSize <= 0 ) {
+			return Lists.newArrayList(splits);
+		}
+		
+		// quad-key 순서로 인접한 작은 클러스터들을 하나의 split으로 묶는다.
+		splits.sort((s1,s2) -> s1.getSpatialClusterInfo().quadKey()
+								.compareTo(s2.getSpatialClusterInfo().quadKey()));
+		List<InputSplit> combineds = Lists.newArrayList();
+		for ( List<SpatialClusterFileSplit> group
+					: ClusterSplitCombiner.combine(splits, SpatialClusterFileSplit::getLength, targetSize) ) {
+			if ( group.size() == 1 ) {
+				combineds.add(group.get(0));
+			}
+			else {
+				combineds.add(new SpatialClusterCombinedSplit(group, combiner.getHosts(group)));
+			}
+		}
+		return combineds;
 	}
 	
 
@@ -128,9 +184,40 @@ public class SpatialClusterInputFileFormat extends FileInputFormat<NullWritable,
 		conf.set(PROP_PARAMETER, MarmotSerializers.toBase64String(param));
 	}
 	
-	private static InputSplit toInputSplit(HdfsPath path, SpatialClusterInfo scInfo)
+	/**
+	 * 사각 영역 질의시 클러스터를 메모리에 적재하지 않고 레코드를 순차적으로 읽으면서
+	 * 검사하는 방식의 사용 여부를 반환한다. 설정되지 않은 경우는 {@code true}이다.
+	 * 
+	 * @param conf	Hadoop 설정 객체.
+	 * @return	사용 여부
+	 */
+	public static boolean isStreamingRangeFilter(Configuration conf) {
+		return conf.getBoolean(PROP_STREAMING_RANGE_FILTER, true);
+	}
+	
+	public static void setStreamingRangeFilter(Configuration conf, boolean flag) {
+		conf.setBoolean(PROP_STREAMING_RANGE_FILTER, flag);
+	}
+	
+	private static List<SpatialClusterFileSplit> toInputSplits(HdfsPath path, SpatialClusterInfo scInfo,
+																long maxRecords,
+																ClusterSplitCombiner combiner)
 		throws IOException {
 		Path clusterPath = path.child(scInfo.partitionId()).getPath();
-		return new SpatialClusterFileSplit(clusterPath, scInfo);
+		String[] hosts = combiner.getHosts(clusterPath, scInfo.start(), scInfo.length());
+		
+		long nonDupCount = scInfo.recordCount() - scInfo.duplicateCount();
+		long[] bounds = ClusterSplitCombiner.sliceRecords(nonDupCount, maxRecords);
+		if ( bounds.length == 2 ) {
+			return Lists.newArrayList(new SpatialClusterFileSplit(clusterPath, scInfo, hosts));
+		}
+		
+		// 클러스터는 압축되어 저장되어 있어 중간부터 읽을 수 없기 때문에, 나누어진 split들은
+		// 클러스터를 처음부터 읽지만 각자의 레코드 구간만을 반환한다.
+		List<SpatialClusterFileSplit> slices = Lists.newArrayList();
+		for ( int i =0; i < bounds.length-1; ++i ) {
+			slices.add(new SpatialClusterFileSplit(clusterPath, scInfo, bounds[i], bounds[i+1], hosts));
+		}
+		return slices;
 	}
 }
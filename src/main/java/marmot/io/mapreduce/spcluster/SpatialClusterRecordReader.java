@@ -1,6 +1,8 @@
 package marmot.io.mapreduce.spcluster;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
@@ -16,9 +18,12 @@ import marmot.RecordSet;
 import marmot.io.HdfsPath;
 import marmot.io.RecordWritable;
 import marmot.io.geo.cluster.SpatialCluster;
+import marmot.io.geo.cluster.QueryRegion;
 import marmot.io.geo.cluster.SpatialClusterInfo;
+import marmot.io.geo.cluster.SpatialClusterRangeFilter;
 import marmot.io.mapreduce.spcluster.SpatialClusterInputFileFormat.Parameters;
 import marmot.support.DefaultRecord;
+import marmot.support.EnvelopeTaggedRecord;
 import utils.StopWatch;
 import utils.io.IOUtils;
 import utils.stream.FStream;
@@ -36,35 +41,84 @@ class SpatialClusterRecordReader extends RecordReader<NullWritable, RecordWritab
 	private RecordWritable m_next;
 	private Record m_record;
 	private StopWatch m_watch;
+	private long m_total;		// 읽을 전체 레코드 수. 알 수 없는 경우는 0.
+	private long m_consumed;	// 지금까지 읽은 레코드 수
+	private int m_splitCount;	// split에 포함된 클러스터 수
+	private int m_splitIdx;		// 현재 읽고 있는 클러스터의 순번 (1부터 시작)
 
 	@Override
 	public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
 		Configuration conf = context.getConfiguration();
-		SpatialClusterFileSplit scfSplit = (SpatialClusterFileSplit)split;
 		
 		m_watch = StopWatch.start();
 
 		Parameters params = SpatialClusterInputFileFormat.getParameters(conf);
 		
+		// 여러 클러스터가 병합된 split인 경우는 클러스터를 차례대로 읽는다.
+		List<SpatialClusterFileSplit> splits = (split instanceof SpatialClusterCombinedSplit)
+											? ((SpatialClusterCombinedSplit)split).getSplits()
+											: Collections.singletonList((SpatialClusterFileSplit)split);
+		m_splitCount = splits.size();
+		m_splitIdx = 0;
+		FStream<Record> strm = FStream.from(splits)
+										.flatMap(scfSplit -> read(conf, scfSplit, params));
+		m_rset = RecordSet.from(params.m_gschema.getRecordSchema(), strm);
+		
+		RecordSchema schema = params.m_gschema.getRecordSchema();
+		m_next = RecordWritable.from(schema);
+		m_record = DefaultRecord.of(schema);
+		
+		s_logger.info("open {}", this);
+	}
+	
+	private FStream<Record> read(Configuration conf, SpatialClusterFileSplit scfSplit,
+								Parameters params) {
 		HdfsPath path = HdfsPath.of(conf, scfSplit.getPath());
 		SpatialClusterInfo scInfo = scfSplit.getSpatialClusterInfo();
 		
+		++m_splitIdx;
+		m_total = 0;
+		m_consumed = 0;
+		
 		FStream<Record> strm;
-		if ( params.m_range != null ) {
+		QueryRegion region = params.getQueryRegion();
+		if ( region != null ) {
+			SpatialCluster cluster = new SpatialCluster(path, scInfo, params.m_gschema);
+			strm = cluster.query(region, true).map(EnvelopeTaggedRecord::getRecord);
+		}
+		else if ( params.m_range != null
+				&& SpatialClusterInputFileFormat.isStreamingRangeFilter(conf) ) {
+			// 클러스터를 적재하지 않고, 레코드를 순차적으로 읽으면서 질의 영역과 비교한다.
+			SpatialClusterRangeFilter filter
+							= new SpatialClusterRangeFilter(scInfo, params.m_gschema, params.m_range, true);
+			if ( filter.isDisjoint() ) {
+				strm = FStream.empty();
+			}
+			else {
+				m_total = scInfo.recordCount();
+				strm = countConsumed(SpatialCluster.readAll(path, scInfo,
+															params.m_gschema.getRecordSchema()))
+							.filter(filter);
+			}
+		}
+		else if ( params.m_range != null ) {
 			SpatialCluster cluster = new SpatialCluster(path, scInfo, params.m_gschema);
 			strm = cluster.queryRecord(params.m_range, true);
 		}
+		else if ( scfSplit.isSliced() ) {
+			long from = scfSplit.getRecordFrom();
+			m_total = scfSplit.getRecordTo();
+			strm = countConsumed(SpatialCluster.readAll(path, scInfo, params.m_gschema.getRecordSchema())
+												.take(m_total))
+						.drop(from);
+		}
 		else {
-			strm = SpatialCluster.readAll(path, scInfo, params.m_gschema.getRecordSchema())
-								.take(scInfo.recordCount() - scInfo.duplicateCount());
+			m_total = scInfo.recordCount() - scInfo.duplicateCount();
+			strm = countConsumed(SpatialCluster.readAll(path, scInfo, params.m_gschema.getRecordSchema())
+												.take(m_total));
 		}
-		m_rset = RecordSet.from(params.m_gschema.getRecordSchema(), strm);
 		
-		RecordSchema schema = params.m_gschema.getRecordSchema();
-		m_next = RecordWritable.from(schema);
-		m_record = DefaultRecord.of(schema);
-		
-		s_logger.info("open {}", this);
+		return strm;
 	}
 
 	@Override
@@ -99,7 +153,15 @@ class SpatialClusterRecordReader extends RecordReader<NullWritable, RecordWritab
 
 	@Override
 	public float getProgress() throws IOException, InterruptedException {
-		return 0f;
+		float current = (m_total > 0) ? Math.min(1f, m_consumed / (float)m_total) : 0f;
+		return (Math.max(0, m_splitIdx-1) + current) / Math.max(1, m_splitCount);
+	}
+	
+	private FStream<Record> countConsumed(FStream<Record> strm) {
+		return strm.map(rec -> {
+			++m_consumed;
+			return rec;
+		});
 	}
 	
 	@Override
@@ -1,6 +1,8 @@
 package marmot.io.mapreduce.spindex;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
@@ -14,6 +16,7 @@ import marmot.MarmotInternalException;
 import marmot.Record;
 import marmot.io.HdfsPath;
 import marmot.io.RecordWritable;
+import marmot.io.geo.cluster.QueryRegion;
 import marmot.io.geo.index.GlobalIndexEntry;
 import marmot.io.geo.index.SpatialIndexedCluster;
 import marmot.io.mapreduce.spindex.SpatialIndexedFileInputFormat.Parameters;
@@ -31,7 +34,8 @@ class SpatialIndexedClusterRecordReader extends RecordReader<NullWritable, Recor
 	private static final Logger s_logger = LoggerFactory.getLogger(SpatialIndexedClusterRecordReader.class);
 	private static final NullWritable NULL = NullWritable.get();
 	
-	private GlobalIndexEntry m_entry;
+	private List<SpatialIndexedFileSplit> m_splits;
+	private int m_splitIdx;
 	private FStream<Record> m_records;
 	private RecordWritable m_current;
 	private int m_idx;
@@ -40,7 +44,6 @@ class SpatialIndexedClusterRecordReader extends RecordReader<NullWritable, Recor
 	@Override
 	public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
 		Configuration conf = context.getConfiguration();
-		SpatialIndexedFileSplit cfsplit = (SpatialIndexedFileSplit)split;
 		
 		m_watch = StopWatch.start();
 		
@@ -51,26 +54,19 @@ class SpatialIndexedClusterRecordReader extends RecordReader<NullWritable, Recor
 		catch ( ColumnSelectionException e ) {
 			throw new MarmotInternalException("fails to initialize ClusterRecordReader", e);
 		}
+		QueryRegion region = params.getQueryRegion();
 		
-		// get target index entry
-		m_entry = cfsplit.getIndexEntry();
-
-		// open the target spatial cluster
-		HdfsPath clusterPath = HdfsPath.of(conf, cfsplit.getPath());
-		SpatialIndexedCluster cluster = SpatialIndexedCluster.load(clusterPath, cfsplit.getStart(),
-																	cfsplit.getLength());
-		
-		m_records = (params.m_range != null)
-					? cluster.queryRecord(params.m_range, true)
-					: cluster.read(true).map(EnvelopeTaggedRecord::getRecord);
+		// 여러 클러스터가 병합된 split인 경우는 클러스터를 차례대로 적재한다.
+		m_splits = (split instanceof SpatialIndexedCombinedSplit)
+					? ((SpatialIndexedCombinedSplit)split).getSplits()
+					: Collections.singletonList((SpatialIndexedFileSplit)split);
+		m_splitIdx = 0;
+		m_records = FStream.from(m_splits)
+							.flatMap(cfsplit -> {
+								++m_splitIdx;
+								return read(conf, cfsplit, params, region);
+							});
 		m_idx = 0;
-		
-		if ( s_logger.isInfoEnabled() ) {
-			s_logger.info(String.format("open: SpatialCluster[quadkey=%s%s]: from=%s:%s",
-										m_entry.quadKey(),
-										params.m_range != null ? ",range=" +  params.m_range : "",
-										cfsplit.getPath(), cfsplit.getStart()));
-		}
 	}
 
 	@Override
@@ -78,8 +74,11 @@ class SpatialIndexedClusterRecordReader extends RecordReader<NullWritable, Recor
 		m_watch.stop();
 		
 		if ( s_logger.isInfoEnabled() ) {
+			String keys = FStream.from(m_splits)
+								.map(cfsplit -> cfsplit.getIndexEntry().quadKey())
+								.join(',');
 			s_logger.info(String.format("close: SpatialCluster[key=%s,count=%d], elapsed=%s",
-										m_entry.quadKey(), m_idx, m_watch.getElapsedMillisString()));
+										keys, m_idx, m_watch.getElapsedMillisString()));
 		}
 	}
 
@@ -105,6 +104,44 @@ class SpatialIndexedClusterRecordReader extends RecordReader<NullWritable, Recor
 
 	@Override
 	public float getProgress() throws IOException, InterruptedException {
-		return 0;
+		return (m_splits.size() > 1) ? (float)Math.max(0, m_splitIdx-1) / m_splits.size() : 0;
+	}
+	
+	private FStream<Record> read(Configuration conf, SpatialIndexedFileSplit cfsplit,
+								Parameters params, QueryRegion region) {
+		GlobalIndexEntry entry = cfsplit.getIndexEntry();
+
+		// open the target spatial cluster
+		HdfsPath clusterPath = HdfsPath.of(conf, cfsplit.getPath());
+		SpatialIndexedCluster cluster = SpatialIndexedCluster.load(clusterPath, cfsplit.getStart(),
+																	cfsplit.getLength());
+		
+		FStream<Record> records;
+		if ( region != null ) {
+			records = cluster.query(region, true).map(EnvelopeTaggedRecord::getRecord);
+		}
+		else if ( params.m_range != null ) {
+			records = cluster.queryRecord(params.m_range, true);
+		}
+		else {
+			records = cluster.read(true).map(EnvelopeTaggedRecord::getRecord);
+			if ( cfsplit.isSliced() ) {
+				records = records.drop(cfsplit.getRecordFrom())
+								.take(cfsplit.getRecordTo() - cfsplit.getRecordFrom());
+			}
+		}
+		
+		if ( s_logger.isInfoEnabled() ) {
+			String sliceStr = cfsplit.isSliced()
+							? String.format(",slice=[%d,%d)", cfsplit.getRecordFrom(), cfsplit.getRecordTo())
+							: "";
+			s_logger.info(String.format("open: SpatialCluster[quadkey=%s%s%s]: from=%s:%s",
+										entry.quadKey(),
+										region != null ? ",region=" + region
+												: (params.m_range != null ? ",range=" +  params.m_range : ""),
+										sliceStr, cfsplit.getPath(), cfsplit.getStart()));
+		}
+		
+		return records;
 	}
 }
\ No newline at end of file
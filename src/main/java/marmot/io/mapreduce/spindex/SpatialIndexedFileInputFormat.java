@@ -8,6 +8,7 @@ import java.util.List;
 import javax.annotation.Nullable;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
@@ -15,12 +16,20 @@ import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import com.google.common.collect.Lists;
+
+import utils.stream.FStream;
 
 import marmot.dataset.GeometryColumnInfo;
 import marmot.io.HdfsPath;
 import marmot.io.RecordWritable;
+import marmot.io.geo.cluster.QueryRegion;
+import marmot.io.geo.index.DeltaIndex;
 import marmot.io.geo.index.GlobalIndex;
 import marmot.io.geo.index.GlobalIndexEntry;
+import marmot.io.mapreduce.ClusterSplitCombiner;
 import marmot.io.serializer.MarmotSerializable;
 import marmot.io.serializer.MarmotSerializers;
 
@@ -36,12 +45,23 @@ public class SpatialIndexedFileInputFormat extends FileInputFormat<NullWritable,
 		public final GeometryColumnInfo m_gcInfo;
 		@Nullable public final Envelope m_range;	// 원래 데이터의 좌료계 사용
 		@Nullable public final Envelope m_range84;	// EPSG4326 좌료계 사용
+		@Nullable public final Geometry m_region;	// 원래 데이터의 좌료계 사용
 		
 		public Parameters(GeometryColumnInfo gcInfo, @Nullable Envelope range,
 							@Nullable Envelope range84) {
+			this(gcInfo, range, range84, null);
+		}
+		
+		public Parameters(GeometryColumnInfo gcInfo, @Nullable Envelope range,
+							@Nullable Envelope range84, @Nullable Geometry region) {
 			m_gcInfo = gcInfo;
 			m_range = range;
 			m_range84 = range84;
+			m_region = region;
+		}
+		
+		public @Nullable QueryRegion getQueryRegion() {
+			return (m_region != null) ? QueryRegion.of(m_region, m_gcInfo.srid()) : null;
 		}
 		
 		public static Parameters deserialize(DataInput input) {
@@ -51,8 +71,9 @@ public class SpatialIndexedFileInputFormat extends FileInputFormat<NullWritable,
 			
 			Envelope range = MarmotSerializers.readNullableObject(input);
 			Envelope range84 = MarmotSerializers.readNullableObject(input);
+			Geometry region = MarmotSerializers.GEOMETRY.deserialize(input);
 			
-			return new Parameters(gcInfo, range, range84);
+			return new Parameters(gcInfo, range, range84, region);
 		}
 
 		@Override
@@ -61,6 +82,7 @@ public class SpatialIndexedFileInputFormat extends FileInputFormat<NullWritable,
 			MarmotSerializers.writeString(m_gcInfo.srid(), output);
 			MarmotSerializers.ENVELOPE.serializeNullable(m_range, output);
 			MarmotSerializers.ENVELOPE.serializeNullable(m_range84, output);
+			MarmotSerializers.GEOMETRY.serialize(m_region, output);
 		}
 		
 		@Override
@@ -79,10 +101,59 @@ public class SpatialIndexedFileInputFormat extends FileInputFormat<NullWritable,
 		HdfsPath globalIdxPath = GlobalIndex.toGlobalIndexPath(clusterDir);
 		Parameters params = getParameters(conf);
 
-		return GlobalIndex.open(globalIdxPath)
-							.query(params.m_range84)
-							.map(cidx -> toInputSplit(clusterDir, cidx))
-							.toList();
+		GlobalIndex globalIdx = GlobalIndex.open(globalIdxPath);
+		QueryRegion region = params.getQueryRegion();
+		FStream<GlobalIndexEntry> entries = (region != null)
+											? globalIdx.query(region)
+											: globalIdx.query(params.m_range84);
+		
+		// 점유 비트맵을 통해 질의 영역과 겹치는 레코드가 없음이 확인된 클러스터는 제외한다.
+		Envelope range84 = (region != null) ? region.getEnvelope84() : params.m_range84;
+		if ( range84 != null ) {
+			entries = entries.filter(ent -> ent.mayIntersect(range84));
+		}
+		
+		// 아직 병합되지 않은 delta 클러스터들도 별도의 split으로 추가한다.
+		DeltaIndex deltaIdx = DeltaIndex.load(clusterDir);
+		if ( !deltaIdx.isEmpty() ) {
+			FStream<String> deltaKeys;
+			if ( region != null ) {
+				deltaKeys = deltaIdx.queryClusterKeys(region.getEnvelope84())
+									.filter(region::intersectsTile);
+			}
+			else {
+				deltaKeys = deltaIdx.queryClusterKeys(params.m_range84);
+			}
+			entries = entries.concatWith(deltaKeys.flatMap(qk -> FStream.from(deltaIdx.get(qk))));
+		}
+		
+		// 질의 영역이 없는 경우에만 큰 클러스터를 레코드 구간별로 나눈다.
+		long maxRecords = (region == null && params.m_range84 == null)
+						? ClusterSplitCombiner.getMaxSplitRecordCount(conf) : 0;
+		ClusterSplitCombiner combiner = new ClusterSplitCombiner(clusterDir.getFileSystem());
+		List<SpatialIndexedFileSplit> splits = Lists.newArrayList();
+		for ( GlobalIndexEntry cidx: entries.toList() ) {
+			splits.addAll(toInputSplits(clusterDir, cidx, maxRecords, combiner));
+		}
+		
+		long targetSize = ClusterSplitCombiner.getTargetSplitSize(conf);
+		if ( targetSize <= 0 ) {
+			return Lists.newArrayList(splits);
+		}
+		
+		// quad-key 순서로 인접한 작은 클러스터들을 하나의 split으로 묶는다.
+		splits.sort((s1,s2) -> s1.getIndexEntry().quadKey().compareTo(s2.getIndexEntry().quadKey()));
+		List<InputSplit> combineds = Lists.newArrayList();
+		for ( List<SpatialIndexedFileSplit> group
+					: ClusterSplitCombiner.combine(splits, SpatialIndexedFileSplit::getLength, targetSize) ) {
+			if ( group.size() == 1 ) {
+				combineds.add(group.get(0));
+			}
+			else {
+				combineds.add(new SpatialIndexedCombinedSplit(group, combiner.getHosts(group)));
+			}
+		}
+		return combineds;
 	}
 	
 	@Override
@@ -104,8 +175,26 @@ public class SpatialIndexedFileInputFormat extends FileInputFormat<NullWritable,
 		conf.set(PROP_PARAMETER, MarmotSerializers.toBase64String(param));
 	}
 	
-	private static InputSplit toInputSplit(HdfsPath clusterDir, GlobalIndexEntry cidx) {
-		HdfsPath packFile = clusterDir.child(cidx.packId());
-		return new SpatialIndexedFileSplit(packFile.getPath(), cidx.start(),cidx.length(), cidx);
+	private static List<SpatialIndexedFileSplit> toInputSplits(HdfsPath clusterDir,
+													GlobalIndexEntry cidx, long maxRecords,
+													ClusterSplitCombiner combiner)
+		throws IOException {
+		Path packFile = clusterDir.child(cidx.packId()).getPath();
+		String[] hosts = combiner.getHosts(packFile, cidx.start(), cidx.length());
+		
+		long[] bounds = ClusterSplitCombiner.sliceRecords(cidx.getOwnedRecordCount(), maxRecords);
+		if ( bounds.length == 2 ) {
+			return Lists.newArrayList(new SpatialIndexedFileSplit(packFile, cidx.start(),
+																cidx.length(), cidx, hosts));
+		}
+		
+		// 클러스터는 한번에 적재되어야 하기 때문에, 나누어진 split들은 모두 클러스터 전체를
+		// 읽지만 각자의 레코드 구간만을 반환한다.
+		List<SpatialIndexedFileSplit> slices = Lists.newArrayList();
+		for ( int i =0; i < bounds.length-1; ++i ) {
+			slices.add(new SpatialIndexedFileSplit(packFile, cidx.start(), cidx.length(), cidx,
+													bounds[i], bounds[i+1], hosts));
+		}
+		return slices;
 	}
 }
@@ -8,6 +8,7 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 
 import marmot.io.geo.index.GlobalIndexEntry;
+import marmot.io.serializer.MarmotSerializers;
 
 /**
  * 
@@ -17,27 +18,74 @@ public class SpatialIndexedFileSplit extends FileSplit {
 	private static final String[] EMPTY_HOSTS = new String[0];
 	
 	private GlobalIndexEntry m_info;
+	private long m_from = 0;	// 읽을 첫번째 (소유) 레코드의 순번
+	private long m_to = -1;		// 읽을 마지막 레코드의 다음 순번. 음수인 경우는 클러스터 끝까지.
 	
 	public SpatialIndexedFileSplit() { }
 	public SpatialIndexedFileSplit(Path file, long start, long length, GlobalIndexEntry info) {
-		super(file, start, length, EMPTY_HOSTS);
+		this(file, start, length, info, EMPTY_HOSTS);
+	}
+	
+	public SpatialIndexedFileSplit(Path file, long start, long length, GlobalIndexEntry info,
+									String[] hosts) {
+		super(file, start, length, hosts);
 		
 		m_info = info;
 	}
 	
+	/**
+	 * 클러스터의 소유 레코드들 중 일부 구간만을 읽는 split을 생성한다.
+	 * 
+	 * @param file		클러스터가 저장된 pack 파일 경로.
+	 * @param start		pack 파일에서 클러스터의 시작 위치.
+	 * @param length	클러스터의 길이.
+	 * @param info		클러스터 인덱스.
+	 * @param from		읽을 첫번째 레코드의 순번.
+	 * @param to		읽을 마지막 레코드의 다음 순번.
+	 * @param hosts		split 위치 정보.
+	 */
+	public SpatialIndexedFileSplit(Path file, long start, long length, GlobalIndexEntry info,
+									long from, long to, String[] hosts) {
+		this(file, start, length, info, hosts);
+		
+		m_from = from;
+		m_to = to;
+	}
+	
 	public GlobalIndexEntry getIndexEntry() {
 		return m_info;
 	}
+	
+	/**
+	 * 본 split이 클러스터의 일부 레코드 구간만을 읽는지 여부를 반환한다.
+	 * 
+	 * @return	구간 여부
+	 */
+	public boolean isSliced() {
+		return m_to >= 0;
+	}
+	
+	public long getRecordFrom() {
+		return m_from;
+	}
+	
+	public long getRecordTo() {
+		return m_to;
+	}
 
 	@Override
 	public void readFields(DataInput in) throws IOException {
 		super.readFields(in);
 		m_info = GlobalIndexEntry.deserialize(in);
+		m_from = MarmotSerializers.readVLong(in);
+		m_to = MarmotSerializers.readVLong(in);
 	}
 
 	@Override
 	public void write(DataOutput out) throws IOException {
 		super.write(out);
 		m_info.serialize(out);
+		MarmotSerializers.writeVLong(m_from, out);
+		MarmotSerializers.writeVLong(m_to, out);
 	}
 }
\ No newline at end of file
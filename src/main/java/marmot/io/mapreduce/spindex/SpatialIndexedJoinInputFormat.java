@@ -0,0 +1,172 @@
+package marmot.io.mapreduce.spindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import utils.stream.FStream;
+
+import marmot.io.HdfsPath;
+import marmot.io.RecordWritable;
+import marmot.io.geo.index.GlobalIndexEntry;
+import marmot.io.geo.index.SpatialIndexedFile;
+import marmot.io.mapreduce.ClusterSplitCombiner;
+import marmot.io.serializer.MarmotSerializable;
+import marmot.io.serializer.MarmotSerializers;
+import marmot.optor.support.Match;
+
+
+/**
+ * 두 공간 인덱스 파일 사이의 공간 조인을 위한 InputFormat.
+ * <p>
+ * 두 파일의 클러스터 인덱스로부터 서로 겹치는 클러스터 쌍들을 구하고, 하나의 큰 클러스터를
+ * 공유하는 클러스터 쌍들을 묶어 하나의 split으로 생성한다. 생성된 split의 record reader는
+ * 두 클러스터를 적재하여 조인을 수행하고, 조인 결과 레코드 쌍을 각각 key(left)와
+ * value(right)로 반환한다.
+ * <p>
+ * split의 가중치는 포함된 클러스터들의 레코드 수의 합이며, split의 위치 정보는
+ * 클러스터들이 저장된 pack 파일의 블럭 위치 중 가장 많은 데이터를 보유한 노드들로 정해진다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class SpatialIndexedJoinInputFormat extends InputFormat<RecordWritable, RecordWritable> {
+	private static final Logger s_logger = LoggerFactory.getLogger(SpatialIndexedJoinInputFormat.class);
+	private static final String PROP_PARAMETER = "marmot.geo.index_join.parameters";
+
+	public static class Parameters implements MarmotSerializable {
+		public final String m_leftClusterDir;
+		public final String m_rightClusterDir;
+		public final String m_joinExpr;
+
+		public Parameters(String leftClusterDir, String rightClusterDir, String joinExpr) {
+			m_leftClusterDir = leftClusterDir;
+			m_rightClusterDir = rightClusterDir;
+			m_joinExpr = joinExpr;
+		}
+
+		public static Parameters deserialize(DataInput input) {
+			String leftDir = MarmotSerializers.readString(input);
+			String rightDir = MarmotSerializers.readString(input);
+			String joinExpr = MarmotSerializers.readString(input);
+
+			return new Parameters(leftDir, rightDir, joinExpr);
+		}
+
+		@Override
+		public void serialize(DataOutput output) {
+			MarmotSerializers.writeString(m_leftClusterDir, output);
+			MarmotSerializers.writeString(m_rightClusterDir, output);
+			MarmotSerializers.writeString(m_joinExpr, output);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s[%s<->%s, expr=%s]", getClass().getSimpleName(),
+								m_leftClusterDir, m_rightClusterDir, m_joinExpr);
+		}
+	}
+
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		Configuration conf = job.getConfiguration();
+		Parameters params = getParameters(conf);
+
+		HdfsPath leftDir = HdfsPath.of(conf, new Path(params.m_leftClusterDir));
+		HdfsPath rightDir = HdfsPath.of(conf, new Path(params.m_rightClusterDir));
+		SpatialIndexedFile left = SpatialIndexedFile.load(leftDir);
+		SpatialIndexedFile right = SpatialIndexedFile.load(rightDir);
+		if ( !left.getDeltaIndex().isEmpty() || !right.getDeltaIndex().isEmpty() ) {
+			throw new IllegalStateException("spatial indexed file has unmerged delta clusters: "
+											+ "left=" + leftDir + ", right=" + rightDir);
+		}
+
+		// 클러스터 쌍들을 레코드 수가 큰 쪽 클러스터를 기준으로 묶는다.
+		Map<String,List<Match<GlobalIndexEntry>>> groups = Maps.newLinkedHashMap();
+		SpatialIndexedFile.matchClusters(left, right)
+							.forEach(match -> {
+								String anchor = (match.m_left.getRecordCount()
+													>= match.m_right.getRecordCount())
+												? "L:" + match.m_left.quadKey()
+												: "R:" + match.m_right.quadKey();
+								groups.computeIfAbsent(anchor, k -> Lists.newArrayList())
+										.add(match);
+							});
+
+		ClusterSplitCombiner combiner = new ClusterSplitCombiner(leftDir.getFileSystem());
+		List<InputSplit> splits = Lists.newArrayList();
+		for ( List<Match<GlobalIndexEntry>> matches: groups.values() ) {
+			splits.add(toInputSplit(combiner, leftDir, rightDir, matches));
+		}
+
+		if ( s_logger.isInfoEnabled() ) {
+			s_logger.info("join splits: {}<->{}, nsplits={}, nmatches={}",
+							leftDir, rightDir, splits.size(),
+							FStream.from(groups.values()).mapToLong(List::size).sum());
+		}
+
+		return splits;
+	}
+
+	@Override
+	public RecordReader<RecordWritable, RecordWritable> createRecordReader(InputSplit split,
+																TaskAttemptContext context)
+		throws IOException, InterruptedException {
+		return new SpatialIndexedJoinRecordReader();
+	}
+
+	public static final Parameters getParameters(Configuration conf) {
+		String encoded = conf.get(PROP_PARAMETER);
+		if ( encoded == null ) {
+			throw new IllegalStateException("unknown parameters: name=" + PROP_PARAMETER);
+		}
+		return MarmotSerializers.fromBase64String(encoded, Parameters::deserialize);
+	}
+
+	public static void setParameters(Configuration conf, Parameters param) {
+		conf.set(PROP_PARAMETER, MarmotSerializers.toBase64String(param));
+	}
+
+	private static InputSplit toInputSplit(ClusterSplitCombiner combiner, HdfsPath leftDir,
+											HdfsPath rightDir, List<Match<GlobalIndexEntry>> matches)
+		throws IOException {
+		Set<GlobalIndexEntry> lefts = Sets.newHashSet();
+		Set<GlobalIndexEntry> rights = Sets.newHashSet();
+		for ( Match<GlobalIndexEntry> match: matches ) {
+			lefts.add(match.m_left);
+			rights.add(match.m_right);
+		}
+
+		long weight = 0;
+		Map<String,Long> hostBytes = Maps.newHashMap();
+		for ( GlobalIndexEntry entry: lefts ) {
+			weight += entry.getRecordCount();
+			combiner.collectHostBytes(leftDir.child(entry.packId()).getPath(), entry.start(),
+										entry.length(), hostBytes);
+		}
+		for ( GlobalIndexEntry entry: rights ) {
+			weight += entry.getRecordCount();
+			combiner.collectHostBytes(rightDir.child(entry.packId()).getPath(), entry.start(),
+										entry.length(), hostBytes);
+		}
+
+		String[] hosts = ClusterSplitCombiner.selectHosts(hostBytes);
+		return new SpatialIndexedJoinSplit(matches, weight, hosts);
+	}
+}
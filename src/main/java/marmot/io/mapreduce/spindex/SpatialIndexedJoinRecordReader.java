@@ -0,0 +1,139 @@
+package marmot.io.mapreduce.spindex;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import marmot.GRecordSchema;
+import marmot.io.HdfsPath;
+import marmot.io.RecordWritable;
+import marmot.io.geo.index.GlobalIndex;
+import marmot.io.geo.index.GlobalIndexEntry;
+import marmot.io.geo.index.SpatialIndexedCluster;
+import marmot.io.mapreduce.spindex.SpatialIndexedJoinInputFormat.Parameters;
+import marmot.optor.geo.join.AbstractSpatialJoinMatcher;
+import marmot.optor.geo.join.SpatialJoinMatchers;
+import marmot.optor.support.Match;
+import marmot.support.EnvelopeTaggedRecord;
+import utils.StopWatch;
+import utils.stream.FStream;
+
+
+/**
+ * split에 포함된 클러스터 쌍별로 두 클러스터를 적재하여 공간 조인을 수행하는 레코드 reader.
+ * <p>
+ * 연속된 클러스터 쌍이 동일 클러스터를 공유하는 경우는 이미 적재된 클러스터를 재사용한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+class SpatialIndexedJoinRecordReader extends RecordReader<RecordWritable, RecordWritable> {
+	private static final Logger s_logger = LoggerFactory.getLogger(SpatialIndexedJoinRecordReader.class);
+
+	private HdfsPath m_leftDir;
+	private HdfsPath m_rightDir;
+	private AbstractSpatialJoinMatcher m_matcher;
+	private List<Match<GlobalIndexEntry>> m_matches;
+	private int m_matchIdx;
+	private FStream<Match<EnvelopeTaggedRecord>> m_joineds;
+
+	private GlobalIndexEntry m_leftEntry;
+	private SpatialIndexedCluster m_leftCluster;
+	private GlobalIndexEntry m_rightEntry;
+	private SpatialIndexedCluster m_rightCluster;
+
+	private RecordWritable m_currentKey;
+	private RecordWritable m_currentValue;
+	private long m_count;
+	private StopWatch m_watch;
+
+	@Override
+	public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+		Configuration conf = context.getConfiguration();
+		SpatialIndexedJoinSplit jsplit = (SpatialIndexedJoinSplit)split;
+
+		m_watch = StopWatch.start();
+
+		Parameters params = SpatialIndexedJoinInputFormat.getParameters(conf);
+		m_leftDir = HdfsPath.of(conf, new Path(params.m_leftClusterDir));
+		m_rightDir = HdfsPath.of(conf, new Path(params.m_rightClusterDir));
+
+		GRecordSchema leftSchema = GlobalIndex.open(GlobalIndex.toGlobalIndexPath(m_leftDir))
+												.getGRecordSchema();
+		GRecordSchema rightSchema = GlobalIndex.open(GlobalIndex.toGlobalIndexPath(m_rightDir))
+												.getGRecordSchema();
+		m_matcher = (AbstractSpatialJoinMatcher)SpatialJoinMatchers.parse(params.m_joinExpr);
+		m_matcher.open(leftSchema.getGeometryColumnIdx(), rightSchema.getGeometryColumnIdx(),
+						rightSchema.getSrid());
+
+		m_matches = jsplit.getMatches();
+		m_matchIdx = 0;
+		m_joineds = FStream.empty();
+		m_count = 0;
+
+		if ( s_logger.isInfoEnabled() ) {
+			s_logger.info("open: {}, expr={}", jsplit, params.m_joinExpr);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_watch.stop();
+		m_matcher.close();
+
+		if ( s_logger.isInfoEnabled() ) {
+			s_logger.info(String.format("close: SpatialJoin[nmatches=%d,count=%d], elapsed=%s",
+										m_matches.size(), m_count, m_watch.getElapsedMillisString()));
+		}
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+		while ( true ) {
+			Match<EnvelopeTaggedRecord> joined = m_joineds.next().getOrNull();
+			if ( joined != null ) {
+				m_currentKey = RecordWritable.from(joined.m_left.getRecord());
+				m_currentValue = RecordWritable.from(joined.m_right.getRecord());
+				++m_count;
+
+				return true;
+			}
+
+			if ( m_matchIdx >= m_matches.size() ) {
+				return false;
+			}
+
+			Match<GlobalIndexEntry> match = m_matches.get(m_matchIdx++);
+			if ( !match.m_left.equals(m_leftEntry) ) {
+				m_leftEntry = match.m_left;
+				m_leftCluster = SpatialIndexedCluster.load(m_leftDir, m_leftEntry);
+			}
+			if ( !match.m_right.equals(m_rightEntry) ) {
+				m_rightEntry = match.m_right;
+				m_rightCluster = SpatialIndexedCluster.load(m_rightDir, m_rightEntry);
+			}
+			m_joineds = m_matcher.match(m_leftCluster, m_rightCluster);
+		}
+	}
+
+	@Override
+	public RecordWritable getCurrentKey() throws IOException, InterruptedException {
+		return m_currentKey;
+	}
+
+	@Override
+	public RecordWritable getCurrentValue() throws IOException, InterruptedException {
+		return m_currentValue;
+	}
+
+	@Override
+	public float getProgress() throws IOException, InterruptedException {
+		return m_matches.isEmpty() ? 1f : (float)m_matchIdx / m_matches.size();
+	}
+}
@@ -0,0 +1,83 @@
+package marmot.io.mapreduce.spindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+import marmot.io.geo.index.GlobalIndexEntry;
+import marmot.io.serializer.MarmotSerializers;
+import marmot.optor.support.Match;
+
+/**
+ * 공간 조인 대상 클러스터 쌍들로 구성된 split.
+ * <p>
+ * 하나의 split에 포함된 클러스터 쌍들은 대부분 하나의 큰 클러스터를 공유하기 때문에
+ * record reader는 공유 클러스터를 한번만 적재한다.
+ * split의 길이는 포함된 클러스터들의 레코드 수의 합이다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class SpatialIndexedJoinSplit extends InputSplit implements Writable {
+	private static final String[] EMPTY_HOSTS = new String[0];
+
+	private List<Match<GlobalIndexEntry>> m_matches;
+	private long m_weight;
+	private String[] m_hosts = EMPTY_HOSTS;	// split을 전송할 때는 포함되지 않는다.
+
+	public SpatialIndexedJoinSplit() { }
+	public SpatialIndexedJoinSplit(List<Match<GlobalIndexEntry>> matches, long weight,
+									String[] hosts) {
+		m_matches = matches;
+		m_weight = weight;
+		m_hosts = hosts;
+	}
+
+	/**
+	 * 본 split에 포함된 조인 대상 클러스터 쌍들을 반환한다.
+	 *
+	 * @return	클러스터 쌍 리스트
+	 */
+	public List<Match<GlobalIndexEntry>> getMatches() {
+		return m_matches;
+	}
+
+	@Override
+	public long getLength() throws IOException, InterruptedException {
+		return m_weight;
+	}
+
+	@Override
+	public String[] getLocations() throws IOException, InterruptedException {
+		return m_hosts;
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		m_weight = MarmotSerializers.readVLong(in);
+		m_matches = MarmotSerializers.readList(in, input -> {
+			GlobalIndexEntry left = GlobalIndexEntry.deserialize(input);
+			GlobalIndexEntry right = GlobalIndexEntry.deserialize(input);
+			return new Match<>(left, right);
+		});
+		m_hosts = EMPTY_HOSTS;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		MarmotSerializers.writeVLong(m_weight, out);
+		MarmotSerializers.writeList(m_matches, out, (match, output) -> {
+			match.m_left.serialize(output);
+			match.m_right.serialize(output);
+		});
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[nmatches=%d, weight=%d]", getClass().getSimpleName(),
+							m_matches.size(), m_weight);
+	}
+}
@@ -0,0 +1,127 @@
+package marmot.io.mapreduce.spindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import utils.Preconditions;
+import utils.stream.FStream;
+
+import marmot.io.HdfsPath;
+import marmot.io.RecordWritable;
+import marmot.io.geo.index.DeltaIndex;
+import marmot.io.geo.index.GlobalIndex;
+import marmot.io.geo.index.GlobalIndexEntry;
+import marmot.io.serializer.MarmotSerializable;
+import marmot.io.serializer.MarmotSerializers;
+
+
+/**
+ * 여러 개의 질의 영역에 대한 검색을 한번에 수행하는 입력 포맷.
+ * <p>
+ * 질의 영역들은 겹치는 클러스터별로 묶여 클러스터당 하나의 split으로 생성되기 때문에,
+ * 여러 질의 영역과 겹치는 클러스터도 한번만 적재된다.
+ * 생성되는 레코드의 key는 질의 영역 번호({@link Parameters#m_windows84}에서의 순서)이다.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class SpatialIndexedWindowInputFormat extends FileInputFormat<IntWritable, RecordWritable> {
+	private static final String PROP_PARAMETER = "marmot.geo.index_window_query.parameters";
+	
+	public static class Parameters implements MarmotSerializable {
+		public final List<Envelope> m_windows84;	// EPSG4326 좌료계 사용
+		
+		public Parameters(List<Envelope> windows84) {
+			Preconditions.checkNotNullArgument(windows84, "query windows are null");
+			
+			m_windows84 = windows84;
+		}
+		
+		public static Parameters deserialize(DataInput input) {
+			return new Parameters(MarmotSerializers.readList(input,
+													MarmotSerializers.ENVELOPE::deserialize));
+		}
+
+		@Override
+		public void serialize(DataOutput output) {
+			MarmotSerializers.writeList(m_windows84, output, MarmotSerializers.ENVELOPE::serialize);
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s[nwindows=%d]", getClass().getSimpleName(), m_windows84.size());
+		}
+	}
+
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		Configuration conf = job.getConfiguration();
+		
+		HdfsPath clusterDir = HdfsPath.of(conf, FileInputFormat.getInputPaths(job)[0]);
+		Parameters params = getParameters(conf);
+
+		GlobalIndex globalIdx = GlobalIndex.open(GlobalIndex.toGlobalIndexPath(clusterDir));
+		DeltaIndex deltaIdx = DeltaIndex.load(clusterDir);
+		
+		// 각 질의 영역을 겹치는 클러스터별로 묶는다.
+		// 아직 병합되지 않은 delta 클러스터들도 별도의 split으로 추가한다.
+		Map<GlobalIndexEntry,List<Integer>> groups = Maps.newTreeMap();
+		for ( int i =0; i < params.m_windows84.size(); ++i ) {
+			int windowId = i;
+			Envelope window84 = params.m_windows84.get(i);
+			
+			FStream<GlobalIndexEntry> entries = globalIdx.query(window84)
+													.filter(ent -> ent.mayIntersect(window84));
+			if ( !deltaIdx.isEmpty() ) {
+				entries = entries.concatWith(deltaIdx.queryClusterKeys(window84)
+														.flatMap(qk -> FStream.from(deltaIdx.get(qk))));
+			}
+			entries.forEach(ent -> groups.computeIfAbsent(ent, k -> Lists.newArrayList()).add(windowId));
+		}
+		
+		return FStream.from(groups.entrySet())
+						.map(group -> toInputSplit(clusterDir, group.getKey(), group.getValue()))
+						.toList();
+	}
+	
+	@Override
+	public RecordReader<IntWritable, RecordWritable> createRecordReader(InputSplit split,
+																TaskAttemptContext context)
+		throws IOException, InterruptedException {
+		return new SpatialIndexedWindowRecordReader();
+	}
+	
+	public static final Parameters getParameters(Configuration conf) {
+		String encoded = conf.get(PROP_PARAMETER);
+		if ( encoded == null ) {
+			throw new IllegalStateException("unknown parameters: name=" + PROP_PARAMETER);
+		}
+		return MarmotSerializers.fromBase64String(encoded, Parameters::deserialize);
+	}
+	
+	public static void setParameters(Configuration conf, Parameters param) {
+		conf.set(PROP_PARAMETER, MarmotSerializers.toBase64String(param));
+	}
+	
+	private static InputSplit toInputSplit(HdfsPath clusterDir, GlobalIndexEntry cidx,
+											List<Integer> windowIds) {
+		HdfsPath packFile = clusterDir.child(cidx.packId());
+		int[] ids = windowIds.stream().mapToInt(Integer::intValue).toArray();
+		return new SpatialIndexedWindowSplit(packFile.getPath(), cidx.start(), cidx.length(), cidx,
+											ids);
+	}
+}
@@ -0,0 +1,115 @@
+package marmot.io.mapreduce.spindex;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import marmot.Record;
+import marmot.io.HdfsPath;
+import marmot.io.RecordWritable;
+import marmot.io.geo.index.SpatialIndexedCluster;
+import marmot.support.EnvelopeTaggedRecord;
+import utils.StopWatch;
+import utils.stream.FStream;
+
+
+/**
+ * 하나의 클러스터를 적재하여 split에 포함된 모든 질의 영역들에 대한 검색을 수행하는
+ * 레코드 reader.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+class SpatialIndexedWindowRecordReader extends RecordReader<IntWritable, RecordWritable> {
+	private static final Logger s_logger = LoggerFactory.getLogger(SpatialIndexedWindowRecordReader.class);
+	
+	private SpatialIndexedCluster m_cluster;
+	private List<Envelope> m_windows84;
+	private int[] m_windowIds;
+	private int m_windowIdx;
+	private FStream<Record> m_records;
+	private final IntWritable m_currentKey = new IntWritable();
+	private RecordWritable m_current;
+	private int m_count;
+	private StopWatch m_watch;
+
+	@Override
+	public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+		Configuration conf = context.getConfiguration();
+		SpatialIndexedWindowSplit wsplit = (SpatialIndexedWindowSplit)split;
+		
+		m_watch = StopWatch.start();
+		
+		m_windows84 = SpatialIndexedWindowInputFormat.getParameters(conf).m_windows84;
+		m_windowIds = wsplit.getWindowIds();
+
+		HdfsPath clusterPath = HdfsPath.of(conf, wsplit.getPath());
+		m_cluster = SpatialIndexedCluster.load(clusterPath, wsplit.getStart(), wsplit.getLength());
+		
+		m_windowIdx = -1;
+		m_records = FStream.empty();
+		m_count = 0;
+		
+		if ( s_logger.isInfoEnabled() ) {
+			s_logger.info(String.format("open: SpatialCluster[quadkey=%s,nwindows=%d]: from=%s:%s",
+										wsplit.getIndexEntry().quadKey(), m_windowIds.length,
+										wsplit.getPath(), wsplit.getStart()));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_watch.stop();
+		
+		if ( s_logger.isInfoEnabled() ) {
+			s_logger.info(String.format("close: SpatialCluster[key=%s,nwindows=%d,count=%d], elapsed=%s",
+										m_cluster.getQuadKey(), m_windowIds.length, m_count,
+										m_watch.getElapsedMillisString()));
+		}
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+		while ( true ) {
+			Record record = m_records.next().getOrNull();
+			if ( record != null ) {
+				m_currentKey.set(m_windowIds[m_windowIdx]);
+				m_current = RecordWritable.from(record);
+				++m_count;
+				
+				return true;
+			}
+			
+			if ( ++m_windowIdx >= m_windowIds.length ) {
+				return false;
+			}
+			Envelope window84 = m_windows84.get(m_windowIds[m_windowIdx]);
+			m_records = m_cluster.query(window84, true).map(EnvelopeTaggedRecord::getRecord);
+		}
+	}
+
+	@Override
+	public IntWritable getCurrentKey() throws IOException, InterruptedException {
+		return m_currentKey;
+	}
+
+	@Override
+	public RecordWritable getCurrentValue() throws IOException, InterruptedException {
+		return m_current;
+	}
+
+	@Override
+	public float getProgress() throws IOException, InterruptedException {
+		if ( m_windowIds.length == 0 ) {
+			return 1f;
+		}
+		return Math.max(0, m_windowIdx) / (float)m_windowIds.length;
+	}
+}
@@ -0,0 +1,56 @@
+package marmot.io.mapreduce.spindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+
+import marmot.io.geo.index.GlobalIndexEntry;
+import marmot.io.serializer.MarmotSerializers;
+
+/**
+ * 하나의 클러스터와 이와 겹치는 질의 영역들의 번호로 구성된 split.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class SpatialIndexedWindowSplit extends SpatialIndexedFileSplit {
+	private int[] m_windowIds;
+	
+	public SpatialIndexedWindowSplit() { }
+	public SpatialIndexedWindowSplit(Path file, long start, long length, GlobalIndexEntry info,
+									int[] windowIds) {
+		super(file, start, length, info);
+		
+		m_windowIds = windowIds;
+	}
+	
+	/**
+	 * 본 split의 클러스터와 겹치는 질의 영역들의 번호를 반환한다.
+	 * 
+	 * @return	질의 영역 번호 배열
+	 */
+	public int[] getWindowIds() {
+		return m_windowIds;
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		super.readFields(in);
+		
+		m_windowIds = new int[MarmotSerializers.readVInt(in)];
+		for ( int i =0; i < m_windowIds.length; ++i ) {
+			m_windowIds[i] = MarmotSerializers.readVInt(in);
+		}
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		
+		MarmotSerializers.writeVInt(m_windowIds.length, out);
+		for ( int windowId: m_windowIds ) {
+			MarmotSerializers.writeVInt(windowId, out);
+		}
+	}
+}
@@ -1,18 +1,25 @@
 package marmot.optor.geo.cluster;
 
+import java.util.List;
+
 import org.locationtech.jts.geom.Envelope;
 import org.slf4j.Logger;
 
+import com.google.common.collect.Lists;
+
 import marmot.Record;
 import marmot.RecordSchema;
 import marmot.RecordSet;
+import marmot.io.geo.quadtree.ConcurrentQuadTree;
 import marmot.io.geo.quadtree.LeafNode;
+import marmot.io.geo.quadtree.MortonCodes;
 import marmot.io.geo.quadtree.QuadTree;
 import marmot.optor.geo.cluster.RecordSizePartition.RecordSize;
 import marmot.rset.AbstractRecordSet;
 import marmot.support.DefaultRecord;
 import marmot.support.ProgressReportable;
 import marmot.type.DataType;
+import marmot.type.MapTile;
 import utils.StopWatch;
 import utils.UnitUtils;
 import utils.func.FOption;
@@ -111,18 +118,35 @@ public class SampledQuadSpace extends AbstractRecordSet implements ProgressRepor
 	}
 	
 	private void buildRecordSizeIndex(RecordSet rset) {
-		QuadTree<RecordSize,RecordSizePartition> qtree
-			= new QuadTree<>(qkey->new RecordSizePartition(m_splitSize));
-		
+		// 샘플 레코드들을 모두 읽은 뒤, stripe별로 동시에 삽입한다.
+		// 각 stripe 내부에서는 입력 순서대로 삽입되므로 결과는 실행마다 동일하다.
+		List<RecordSize> samples = Lists.newArrayList();
+		Envelope bounds = new Envelope();
 		Record inputRecord = DefaultRecord.of(rset.getRecordSchema());
 		while ( rset.next(inputRecord) ) {
 			Envelope mbr = (Envelope)inputRecord.get(0);
 			int length = inputRecord.getInt(1);
-			qtree.insert(new RecordSize(mbr, length));
+			samples.add(new RecordSize(mbr, length));
+			bounds.expandToInclude(mbr);
 		}
-		qtree.compact();
 		m_input.closeQuietly();
 		
+		if ( samples.isEmpty() ) {
+			m_leafNodes = FStream.empty();
+			return;
+		}
+		
+		String rootQuadKey = MapTile.getSmallestContainingTile(bounds).getQuadKey();
+		int stripeLevel = Math.min(ConcurrentQuadTree.DEFAULT_STRIPE_LEVEL,
+									MortonCodes.MAX_LEVEL - rootQuadKey.length());
+		ConcurrentQuadTree<RecordSize,RecordSizePartition> ctree
+			= new ConcurrentQuadTree<>(rootQuadKey, stripeLevel,
+										qkey->new RecordSizePartition(m_splitSize));
+		ctree.insertAll(samples);
+		
+		QuadTree<RecordSize,RecordSizePartition> qtree = ctree.toQuadTree();
+		qtree.compact();
+		
 		m_leafNodes = qtree.streamLeafNodes()
 							.filter(leaf -> leaf.getValueCount() > 0);
 	}
@@ -22,6 +22,7 @@ import marmot.RecordSet;
 import marmot.io.geo.cluster.CacheableQuadCluster;
 import marmot.io.geo.cluster.QuadClusterCache;
 import marmot.io.geo.cluster.QuadClusterFile;
+import marmot.io.geo.quadtree.PackedQuadKeys;
 import marmot.optor.geo.SpatialRelation;
 import marmot.optor.support.JoinUtils;
 import marmot.optor.support.QuadKeyBinder;
@@ -48,6 +49,7 @@ public class ClusteredNLJoinRecordSet extends AbstractRecordSet implements Progr
 	private final ColumnSelector m_selector;
 
 	private CacheableQuadCluster m_cluster;
+	private long m_clusterKey = PackedQuadKeys.INVALID;	// m_cluster의 packed quad-key
 	private final FStream<Record> m_output;
 	private final Map<String,Record> m_binding = Maps.newHashMap();
 
@@ -90,7 +92,7 @@ public class ClusteredNLJoinRecordSet extends AbstractRecordSet implements Progr
 							
 							Envelope envl84 = m_sjMatcher.toMatchKey(geom);
 							return FStream.from(qkBinder.bindQuadKeys(envl84))
-											.map(b -> KeyValue.of(b.quadkey(), rec));
+											.map(b -> KeyValue.of(b.packedQuadKey(), rec));
 						})
 						.toKeyValueStream(kv -> kv)
 						.liftKeyValues(input -> new FindBiggestGroupWithinWindow<>(input, MAX_WINDOW_SIZE, MIN_WINDOW_SIZE))
@@ -146,9 +148,11 @@ public class ClusteredNLJoinRecordSet extends AbstractRecordSet implements Progr
 						.getRecordSchema();
 	}
 	
-	private FStream<Record> joinWithOuterGroup(String quadKey, List<Record> lefts) {
-		if ( m_cluster == null || !quadKey.equals(m_cluster.getQuadKey()) ) {
-			m_cluster = m_rightClusterCache.getCluster(quadKey);
+	private FStream<Record> joinWithOuterGroup(long packedKey, List<Record> lefts) {
+		if ( m_cluster == null || packedKey != m_clusterKey ) {
+			// 문자열 quad-key는 클러스터를 적재하는 경우에만 생성한다.
+			m_cluster = m_rightClusterCache.getCluster(PackedQuadKeys.unpack(packedKey));
+			m_clusterKey = packedKey;
 
 			if ( s_logger.isInfoEnabled() ) {
 				String szStr = UnitUtils.toByteSizeString(m_cluster.length());
@@ -159,7 +163,7 @@ public class ClusteredNLJoinRecordSet extends AbstractRecordSet implements Progr
 								m_rightClusterCache.getLoadCount(), m_rightClusterCache.size());
 			}
 		}
-		else if ( quadKey.equals(m_cluster.getQuadKey()) ) {
+		else {
 			if ( s_logger.isDebugEnabled() ) {
 				s_logger.debug("reuse the loaded QuadCluster: {}, in={}, out={}, load_count={}, cacheds={}",
 								m_cluster.getQuadKey(), m_leftRecCount, m_outputCount,
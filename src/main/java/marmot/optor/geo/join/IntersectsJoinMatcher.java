@@ -1,5 +1,7 @@
 package marmot.optor.geo.join;
 
+import java.util.List;
+
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
@@ -7,6 +9,8 @@ import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 import marmot.Record;
 import marmot.optor.geo.SpatialRelation;
 import marmot.support.EnvelopeTaggedRecord;
@@ -35,11 +39,16 @@ public class IntersectsJoinMatcher extends AbstractSpatialJoinMatcher {
 		Envelope key = toMatchKey(outerGeom);
 		PreparedGeometry pouter = PreparedGeometryFactory.prepare(outerGeom);
 
-		return slut.query(key, true)
-					.filter(inner -> {
-						Geometry innerGeom = inner.getRecord().getGeometry(m_innerGeomColIdx);
-						return pouter.intersects(innerGeom);
-					});
+		List<EnvelopeTaggedRecord> matcheds = Lists.newArrayList();
+		slut.visit(key, true, inner -> {
+			Geometry innerGeom = inner.getRecord().getGeometry(m_innerGeomColIdx);
+			if ( pouter.intersects(innerGeom) ) {
+				matcheds.add(inner);
+			}
+			return true;
+		});
+		
+		return FStream.from(matcheds);
 	}
 
 	@Override
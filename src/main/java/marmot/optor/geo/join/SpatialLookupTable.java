@@ -2,6 +2,7 @@ package marmot.optor.geo.join;
 
 import org.locationtech.jts.geom.Envelope;
 
+import marmot.io.geo.quadtree.QuadTreeVisitor;
 import marmot.support.EnvelopeTaggedRecord;
 import utils.stream.FStream;
 
@@ -19,4 +20,23 @@ public interface SpatialLookupTable {
 	 * @return	질의에 포함된 레코드들의 스트림.
 	 */
 	public FStream<EnvelopeTaggedRecord> query(Envelope range84, boolean dropDuplicates);
+	
+	/**
+	 * 클러스터에 포함된 레코드들 중에서 주어진 키와 겹치는 레코드들을 차례로 visitor에 전달한다.
+	 * 결과 스트림을 생성하지 않기 때문에 레코드 단위로 반복되는 질의에 사용된다.
+	 * 
+	 * @param range84			질의 영역, 위경도(WGS84) 좌표계 사용
+	 * @param dropDuplicates	복제본 제외 여부
+	 * @param visitor			질의 결과 레코드를 전달받을 visitor
+	 * @return	visitor가 순회를 중단시킨 경우는 {@code false}, 그렇지 않은 경우는 {@code true}.
+	 */
+	public default boolean visit(Envelope range84, boolean dropDuplicates,
+								QuadTreeVisitor<? super EnvelopeTaggedRecord> visitor) {
+		for ( EnvelopeTaggedRecord etr: query(range84, dropDuplicates) ) {
+			if ( !visitor.visit(etr) ) {
+				return false;
+			}
+		}
+		return true;
+	}
 }
\ No newline at end of file
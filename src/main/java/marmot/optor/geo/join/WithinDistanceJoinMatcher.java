@@ -2,11 +2,15 @@ package marmot.optor.geo.join;
 
 import static marmot.optor.geo.SpatialRelation.WITHIN_DISTANCE;
 
+import java.util.List;
+
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 import marmot.Record;
 import marmot.optor.geo.SpatialRelation;
 import marmot.support.EnvelopeTaggedRecord;
@@ -35,11 +39,16 @@ class WithinDistanceJoinMatcher extends AbstractSpatialJoinMatcher {
 	protected FStream<EnvelopeTaggedRecord> match(Geometry outerGeom, Record outer,
 													SpatialLookupTable slut) {
 		Envelope key = toMatchKey(outerGeom);
-		return slut.query(key, true)
-					.filter(inner -> {
-						Geometry innerGeom = inner.getRecord().getGeometry(m_innerGeomColIdx);
-						return outerGeom.isWithinDistance(innerGeom, m_distance);
-					});
+		List<EnvelopeTaggedRecord> matcheds = Lists.newArrayList();
+		slut.visit(key, true, inner -> {
+			Geometry innerGeom = inner.getRecord().getGeometry(m_innerGeomColIdx);
+			if ( outerGeom.isWithinDistance(innerGeom, m_distance) ) {
+				matcheds.add(inner);
+			}
+			return true;
+		});
+		
+		return FStream.from(matcheds);
 	}
 
 	@Override
@@ -12,10 +12,10 @@ import org.locationtech.jts.geom.Envelope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Strings;
-
 import marmot.io.geo.quadtree.EnvelopedValue;
 import marmot.io.geo.quadtree.LeafNode;
+import marmot.io.geo.quadtree.MortonCodes;
+import marmot.io.geo.quadtree.PackedQuadKeys;
 import marmot.io.geo.quadtree.Partition;
 import marmot.io.geo.quadtree.QuadTree;
 import marmot.io.geo.quadtree.QuadTreeBuilder;
@@ -31,6 +31,7 @@ public class QuadKeyBinder {
 	private static final Logger s_logger = LoggerFactory.getLogger(QuadKeyBinder.class);
 	
 	private final Collection<String> m_qkeys;
+	private final long[] m_packedKeys;
 	private final boolean m_bindOutlier;
 	private final boolean m_bindOwner;
 	private List<LeafInfo> m_leafInfos;
@@ -59,6 +60,9 @@ public class QuadKeyBinder {
 							.filter(k -> !k.equals("outliers"))
 							.map(qk -> new LeafInfo(qk, MapTile.fromQuadKey(qk).getBounds()))
 							.toList();
+		m_packedKeys = m_leafInfos.stream()
+								.mapToLong(info -> PackedQuadKeys.pack(info.m_quadKey))
+								.toArray();
 		
 		// input RecordSet에 포함된 레코드에 해당하는 quad-key를 신속하게
 		// 접근하기 위한 quad-tree를 생성한다.
@@ -90,7 +94,8 @@ public class QuadKeyBinder {
 			else {
 				bindings = FStream.from(leaves)
 								.filter(leaf -> leaf.getTileBounds().contains(refPt))
-								.map(leaf -> new QuadKeyBinding(envl84, leaf.getQuadKey()))
+								.map(leaf -> new QuadKeyBinding(envl84, leaf.getQuadKey(),
+																leaf.getPackedQuadKey()))
 								.toList();
 				if ( bindings.size() != 1 ) {
 					System.err.println("SOMETHING WRONG XXXXXXXXXXXXXXXXXXXXXXXXXXX");
@@ -100,13 +105,14 @@ public class QuadKeyBinder {
 		}
 		else {
 			bindings = FStream.from(m_qtree.queryLeafNodes(INTERSECTS, envl84))
-							.map(LeafNode::getQuadKey)
-							.map(qk -> new QuadKeyBinding(envl84, qk))
+							.map(leaf -> new QuadKeyBinding(envl84, leaf.getQuadKey(),
+															leaf.getPackedQuadKey()))
 							.toList();
 		}
 		if ( bindings.isEmpty() && m_bindOutlier ) {
 			bindings = FStream.from(getOutlierQuadKey(envl84))
-								.map(qkey -> new QuadKeyBinding(envl84, qkey))
+								.map(qkey -> new QuadKeyBinding(envl84, qkey,
+																PackedQuadKeys.packOrInvalid(qkey)))
 								.toList();
 		}
 		
@@ -132,10 +138,13 @@ public class QuadKeyBinder {
 		// 가장 가까운 동일 조상을 갖는 quadkey들과 같은 자식이 되도록 quadkey 길이를 줄인다. 
 		
 		// 구해진 quadkey와 가장 긴 prefix를 공유하는 quadkey들을 찾는다.
-		int prefixLen = m_qkeys.stream()
-								.mapToInt(k -> Strings.commonPrefix(quadKey, k).length())
-								.max()
-								.getAsInt();
+		// 공통 prefix 계산에는 최대 길이 이상의 quad-key 부분이 필요없다.
+		long packedKey = PackedQuadKeys.pack(quadKey.length() > MortonCodes.MAX_LEVEL
+											? quadKey.substring(0, MortonCodes.MAX_LEVEL) : quadKey);
+		int prefixLen = 0;
+		for ( long key: m_packedKeys ) {
+			prefixLen = Math.max(prefixLen, PackedQuadKeys.commonPrefixLevel(packedKey, key));
+		}
 		
 		List<String> quadKeys;
 		if ( quadKey.length() > prefixLen ) {
@@ -173,11 +182,13 @@ public class QuadKeyBinder {
 	
 	public final static class QuadKeyBinding {
 		private final String m_quadKey;
+		private final long m_packedKey;
 		private final Envelope m_mbr4326;
 		
-		private QuadKeyBinding(Envelope mbr4326, String quadKey) {
+		private QuadKeyBinding(Envelope mbr4326, String quadKey, long packedKey) {
 			m_mbr4326 = mbr4326;
 			m_quadKey = quadKey;
+			m_packedKey = packedKey;
 		}
 		
 		public Envelope mbr4326() {
@@ -188,6 +199,15 @@ public class QuadKeyBinder {
 			return m_quadKey;
 		}
 		
+		/**
+		 * 바인딩된 quad-key를 {@link PackedQuadKeys} 형태로 반환한다.
+		 * 
+		 * @return	packed quad-key
+		 */
+		public long packedQuadKey() {
+			return m_packedKey;
+		}
+		
 		@Override
 		public String toString() {
 			return String.format("quadkey_binding[key=%s]", m_quadKey);